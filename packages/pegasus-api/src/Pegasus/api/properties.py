@@ -82,6 +82,7 @@ class Properties:
         "pegasus.log.manager",
         "pegasus.log.manager.formatter",
         "pegasus.log.memory.usage",
+        "pegasus.log.stage.metrics",
         "pegasus.metrics.app",
         "pegasus.file.cleanup.strategy",
         "pegasus.file.cleanup.impl",
@@ -111,12 +111,26 @@ public class CloudWatchLog {
                 build();
         DescribeJobsResponse jobsResponse = mBatchClient.describeJobs(jobsRequest);
         for (JobDetail jobDetail : jobsResponse.jobs()) {
-            try {
-                Tuple<String, String> log = determineLog(jobDetail);
-                return this.retrieve(jobDetail.jobName(), log.getKey(), log.getValue(), summary );
-            } catch (Exception e) {
-                mLogger.error("Error while retrieving cloud watch log for job " + awsJobID, e);
-            }
+            return this.retrieve(jobDetail, summary);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves a cloud watch log for an AWS Job, whose details have already
+     * been described.
+     *
+     * @param jobDetail the job detail as returned by AWS Batch
+     * @param summary  the task summary record
+     *
+     * @return a Tuple containing the stdout and stderr files to which it is retrieved
+     */
+    public Tuple<File,File> retrieve(JobDetail jobDetail, String summary ) {
+        try {
+            Tuple<String, String> log = determineLog(jobDetail);
+            return this.retrieve(jobDetail.jobName(), log.getKey(), log.getValue(), summary );
+        } catch (Exception e) {
+            mLogger.error("Error while retrieving cloud watch log for job " + jobDetail.jobId(), e);
         }
         return null;
     }
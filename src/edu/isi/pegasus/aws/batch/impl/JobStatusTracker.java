@@ -0,0 +1,324 @@
+/**
+ * Copyright 2007-2017 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.aws.batch.impl;
+
+import edu.isi.pegasus.aws.batch.classes.AWSJob;
+import edu.isi.pegasus.aws.batch.classes.Tuple;
+import edu.isi.pegasus.aws.batch.common.AWSJobstateWriter;
+import edu.isi.pegasus.aws.batch.common.CloudWatchLog;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.batch.BatchClient;
+import software.amazon.awssdk.services.batch.model.DescribeJobsRequest;
+import software.amazon.awssdk.services.batch.model.DescribeJobsResponse;
+import software.amazon.awssdk.services.batch.model.JobDetail;
+
+/**
+ * Tracks the status of the jobs submitted to AWS Batch. Only the jobs that are outstanding are
+ * queried for, using DescribeJobs requests of at most {@link #MAX_JOBS_PER_DESCRIBE} jobs each,
+ * instead of listing all the jobs in the job queue. A job is no longer queried for once it has
+ * succeeded or failed, and the cloud watch log for it is then retrieved on a separate thread pool,
+ * so that the polling is not held up by the log retrieval.
+ *
+ * <p>The interval between the polls grows with the number of DescribeJobs requests a poll takes,
+ * and backs off exponentially while the jobs do not change state, up to a maximum interval.
+ *
+ * <p>The tracker is meant to be used from the monitoring thread only.
+ *
+ * @author Karan Vahi
+ */
+public class JobStatusTracker {
+
+    /** The maximum number of jobs that can be described in a single DescribeJobs request. */
+    public static final int MAX_JOBS_PER_DESCRIBE = 100;
+
+    /** The interval in milliseconds between polls per DescribeJobs request a poll takes. */
+    public static final long POLL_INTERVAL_PER_REQUEST = 1000;
+
+    /** The maximum number of times the poll interval is doubled while nothing changes. */
+    private static final int MAX_BACKOFF = 5;
+
+    /** The default number of threads to retrieve the cloud watch logs with. */
+    public static final int DEFAULT_LOG_RETRIEVAL_THREADS = 4;
+
+    /** The client to describe the jobs with. */
+    private final BatchClient mBatchClient;
+
+    /** The cloud watch log to retrieve the logs of completed jobs from. Can be null. */
+    private final CloudWatchLog mCloudWatchLog;
+
+    /** The writer to record the changes in job states to. Can be null. */
+    private final AWSJobstateWriter mJobstateWriter;
+
+    private final Logger mLogger;
+
+    /** The maximum interval between polls in milliseconds. */
+    private final long mMaxPollInterval;
+
+    /** The outstanding jobs indexed by AWS job id, in the order they were tracked. */
+    private final Map<String, AWSJob> mOutstanding;
+
+    /** The thread pool to retrieve the logs on. */
+    private final ExecutorService mLogExecutorService;
+
+    /** The pending log retrievals. */
+    private final List<Future<Tuple<File, File>>> mLogRetrievals;
+
+    /** The number of logs retrieved. */
+    private final AtomicInteger mLogsRetrieved;
+
+    /** The number of successive polls in which no job changed state. */
+    private int mIdlePolls;
+
+    private int mSucceeded;
+
+    private int mFailed;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param client the client to describe the jobs with
+     * @param cwl the cloud watch log to retrieve the logs of completed jobs from, null if the logs
+     *     are not to be retrieved
+     * @param writer the writer to record the changes in job states to, can be null
+     * @param logger the logger
+     * @param maxPollInterval the maximum interval between polls in milliseconds
+     * @param logThreads the number of threads to retrieve the logs with
+     */
+    public JobStatusTracker(
+            BatchClient client,
+            CloudWatchLog cwl,
+            AWSJobstateWriter writer,
+            Logger logger,
+            long maxPollInterval,
+            int logThreads) {
+        mBatchClient = client;
+        mCloudWatchLog = cwl;
+        mJobstateWriter = writer;
+        mLogger = logger;
+        mMaxPollInterval = maxPollInterval;
+        mOutstanding = new LinkedHashMap<String, AWSJob>();
+        mLogExecutorService = Executors.newFixedThreadPool(Math.max(1, logThreads));
+        mLogRetrievals = new LinkedList<Future<Tuple<File, File>>>();
+        mLogsRetrieved = new AtomicInteger(0);
+        mIdlePolls = 0;
+        mSucceeded = 0;
+        mFailed = 0;
+    }
+
+    /**
+     * Starts tracking a job that has been submitted to AWS Batch.
+     *
+     * @param job the job, with the AWS job id set
+     */
+    public void track(AWSJob job) {
+        if (job.getAWSJobID() == null) {
+            throw new IllegalArgumentException("AWS job id not set for job " + job.getID());
+        }
+        mOutstanding.put(job.getAWSJobID(), job);
+        // poll soon for the newly submitted jobs
+        mIdlePolls = 0;
+    }
+
+    /**
+     * Returns the number of jobs that have not yet succeeded or failed.
+     *
+     * @return the number of outstanding jobs
+     */
+    public int getOutstandingCount() {
+        return mOutstanding.size();
+    }
+
+    /**
+     * Returns the number of jobs that have succeeded.
+     *
+     * @return the number of jobs
+     */
+    public int getSucceededCount() {
+        return mSucceeded;
+    }
+
+    /**
+     * Returns the number of jobs that have failed.
+     *
+     * @return the number of jobs
+     */
+    public int getFailedCount() {
+        return mFailed;
+    }
+
+    /**
+     * Queries AWS Batch for the current state of the outstanding jobs, and updates the jobs with
+     * it. The logs of the jobs that succeeded or failed are retrieved asynchronously.
+     *
+     * @return the jobs that succeeded or failed since the last poll
+     */
+    public List<AWSJob> poll() {
+        List<AWSJob> completed = new LinkedList<AWSJob>();
+        List<String> ids = new ArrayList<String>(mOutstanding.keySet());
+        boolean changed = false;
+        for (int start = 0; start < ids.size(); start += MAX_JOBS_PER_DESCRIBE) {
+            List<String> batch =
+                    ids.subList(start, Math.min(start + MAX_JOBS_PER_DESCRIBE, ids.size()));
+            DescribeJobsRequest request = DescribeJobsRequest.builder().jobs(batch).build();
+            DescribeJobsResponse response = mBatchClient.describeJobs(request);
+            Set<String> described = new HashSet<String>();
+            for (JobDetail detail : response.jobs()) {
+                AWSJob j = mOutstanding.get(detail.jobId());
+                if (j == null) {
+                    continue;
+                }
+                described.add(detail.jobId());
+                AWSJob.JOBSTATE state = this.toJobState(detail.status());
+                if (state == null) {
+                    mLogger.warn(
+                            "Unknown status " + detail.status() + " for job " + detail.jobId());
+                    continue;
+                }
+                if (state != j.getJobState()) {
+                    changed = true;
+                    j.setState(state);
+                    mLogger.debug(
+                            "Current Status of Job "
+                                    + detail.jobId()
+                                    + "->"
+                                    + detail.status()
+                                    + " with reason "
+                                    + detail.statusReason());
+                    if (mJobstateWriter != null) {
+                        mJobstateWriter.log(j.getID(), detail.jobId(), state);
+                    }
+                }
+                if (state == AWSJob.JOBSTATE.succeeded || state == AWSJob.JOBSTATE.failed) {
+                    mOutstanding.remove(detail.jobId());
+                    completed.add(j);
+                    if (state == AWSJob.JOBSTATE.succeeded) {
+                        mLogger.info("Job Succeeded " + detail.jobId());
+                        mSucceeded++;
+                    } else {
+                        mLogger.info("Job Failed " + detail.jobId());
+                        mFailed++;
+                    }
+                    this.retrieveLog(detail, j.getTaskSummary());
+                }
+            }
+            if (described.size() < batch.size()) {
+                // recently submitted jobs may not be visible yet
+                mLogger.debug(
+                        (batch.size() - described.size())
+                                + " jobs not described by AWS Batch in this poll");
+            }
+        }
+        mIdlePolls = changed ? 0 : mIdlePolls + 1;
+        return completed;
+    }
+
+    /**
+     * Returns the interval to wait before the next poll. The interval is proportional to the number
+     * of DescribeJobs requests a poll takes, and is doubled for every successive poll in which no
+     * job changed state.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getPollInterval() {
+        int requests =
+                Math.max(
+                        1,
+                        (mOutstanding.size() + MAX_JOBS_PER_DESCRIBE - 1) / MAX_JOBS_PER_DESCRIBE);
+        long interval = POLL_INTERVAL_PER_REQUEST * requests;
+        if (!mOutstanding.isEmpty()) {
+            interval = interval << Math.min(mIdlePolls, MAX_BACKOFF);
+        }
+        return Math.min(interval, mMaxPollInterval);
+    }
+
+    /**
+     * Waits for the pending log retrievals to complete.
+     *
+     * @return the number of logs retrieved so far
+     */
+    public int awaitLogRetrievals() {
+        for (Future<Tuple<File, File>> future : mLogRetrievals) {
+            try {
+                future.get();
+            } catch (InterruptedException ie) {
+                mLogger.error("Interrupted while waiting for logs to be retrieved", ie);
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                mLogger.error("Error while retrieving cloud watch log", e.getCause());
+            }
+        }
+        mLogRetrievals.clear();
+        return mLogsRetrieved.get();
+    }
+
+    /** Shuts down the thread pool the logs are retrieved on. */
+    public void shutdown() {
+        mLogExecutorService.shutdownNow();
+    }
+
+    /**
+     * Submits the retrieval of the log of a completed job.
+     *
+     * @param detail the job detail
+     * @param summary the task summary record of the job
+     */
+    private void retrieveLog(JobDetail detail, String summary) {
+        if (mCloudWatchLog == null) {
+            return;
+        }
+        // the retrievals log their own errors, so only the pending ones are kept
+        mLogRetrievals.removeIf(Future::isDone);
+        mLogRetrievals.add(
+                mLogExecutorService.submit(
+                        () -> {
+                            Tuple<File, File> log = mCloudWatchLog.retrieve(detail, summary);
+                            mLogger.debug("Logs retreived for " + detail.jobId() + " to " + log);
+                            if (log != null) {
+                                mLogsRetrieved.incrementAndGet();
+                            }
+                            return log;
+                        }));
+    }
+
+    /**
+     * Maps a status returned by AWS Batch to a job state.
+     *
+     * @param status the status
+     * @return the job state, or null if not recognized
+     */
+    private AWSJob.JOBSTATE toJobState(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return AWSJob.JOBSTATE.valueOf(status.toLowerCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -29,13 +29,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -488,8 +486,17 @@ public class Synch {
     }
 
     public void monitor(String basename) {
-        long sleepTime = 5 * 1000;
-        Set<String> awsJobIDs = new HashSet();
+        BatchClient batchClient = BatchClient.builder().region(mAWSRegion).build();
+        CloudWatchLog cwl = new CloudWatchLog();
+        cwl.initialze(mAWSRegion, mLogger.getLevel(), CLOUD_WATCH_BATCH_LOG_GROUP);
+        JobStatusTracker tracker =
+                new JobStatusTracker(
+                        batchClient,
+                        cwl,
+                        mJobstateWriter,
+                        mLogger,
+                        MAX_SLEEP_TIME,
+                        JobStatusTracker.DEFAULT_LOG_RETRIEVAL_THREADS);
 
         // first go through the internal job map to see if there
         // are any previously submitted jobs
@@ -497,159 +504,74 @@ public class Synch {
             for (Map.Entry<String, AWSJob> entry : this.mJobMap.entrySet()) {
                 AWSJob j = entry.getValue();
                 if (j.getJobState() == AWSJob.JOBSTATE.submitted) {
-                    awsJobIDs.add(j.getAWSJobID());
+                    tracker.track(j);
                 }
             }
         }
 
-        int numDone = 0;
-        int total = awsJobIDs.size();
-        int succeeded = 0;
-        int failed = 0;
-        Set<String> doneJobs = new HashSet();
-        BatchClient batchClient = BatchClient.builder().region(mAWSRegion).build();
-        CloudWatchLog cwl = new CloudWatchLog();
-        cwl.initialze(mAWSRegion, mLogger.getLevel(), CLOUD_WATCH_BATCH_LOG_GROUP);
-        while (true) {
-            // go through unprocessed jobs that have been submitted
-            // in another thread
-            List<Tuple> submittedJobs = new LinkedList();
-            mLogger.debug("Going to traverse through submitted futures ");
-            synchronized (this.mSubmitResponses) {
-                for (Iterator<Future<SubmitJobResponse>> it = mSubmitResponses.iterator();
-                        it.hasNext(); ) {
-                    Future<SubmitJobResponse> future = it.next();
-                    if (future.isDone()) {
-                        try {
+        int total = tracker.getOutstandingCount();
+        try {
+            while (true) {
+                // go through unprocessed jobs that have been submitted
+                // in another thread
+                List<Tuple> submittedJobs = new LinkedList();
+                mLogger.debug("Going to traverse through submitted futures ");
+                synchronized (this.mSubmitResponses) {
+                    for (Iterator<Future<SubmitJobResponse>> it = mSubmitResponses.iterator();
+                            it.hasNext(); ) {
+                        Future<SubmitJobResponse> future = it.next();
+                        if (future.isDone()) {
                             SubmitJobResponse response = future.get();
                             String awsJobID = response.jobId();
                             mLogger.debug("Future received " + response);
                             submittedJobs.add(new Tuple(response.jobName(), awsJobID));
                             total++;
                             it.remove();
-                        } catch (Exception ex) {
-                            complainAndShutdown(ex);
-                            return;
                         }
                     }
                 }
-            }
-
-            synchronized (this.mJobMap) {
-                for (Tuple<String, String> tuple : submittedJobs) {
-                    AWSJob j = mJobMap.get(tuple.getKey());
-                    j.setAWSJobID(tuple.getValue());
-                    j.setState(AWSJob.JOBSTATE.submitted);
-                    awsJobIDs.add(j.getAWSJobID());
-                    mLogger.info("Submitted Job " + j.getID() + " with AWS id " + j.getAWSJobID());
-                    mJobstateWriter.log(j.getID(), j.getAWSJobID(), AWSJob.JOBSTATE.submitted);
-                }
-            }
-            // now query AWS Batch for the jobs
-            try {
-
-                ListJobsRequest listSucceededJobsRequest =
-                        createListJobRequest(this.mJobQueueARN, JobStatus.SUCCEEDED);
-                ListJobsRequest listFailedJobsRequest =
-                        createListJobRequest(this.mJobQueueARN, JobStatus.FAILED);
 
-                // first query for succeeded
-                mLogger.debug("Querying for successful jobs " + listSucceededJobsRequest);
-                ListJobsResponse listJobsResponse = batchClient.listJobs(listSucceededJobsRequest);
-                mLogger.debug(
-                        "Retrieved  " + listJobsResponse.jobSummaryList().size() + " responses ");
-                for (JobSummary summary : listJobsResponse.jobSummaryList()) {
-                    String succeededJobID = summary.jobId();
-                    if (awsJobIDs.contains(succeededJobID)) {
-                        if (!doneJobs.contains(succeededJobID)) {
-                            mLogger.info("Job Succeeded " + succeededJobID);
-                            AWSJob j = this.getJob(summary.jobName());
-                            j.setState(AWSJob.JOBSTATE.succeeded);
-                            mJobstateWriter.log(
-                                    summary.jobName(), summary.jobId(), AWSJob.JOBSTATE.succeeded);
-                            doneJobs.add(summary.jobId());
-                            numDone++;
-                            succeeded++;
-                            mLogger.debug("Querying for succeeded job details " + succeededJobID);
-                            Tuple<File, File> log = cwl.retrieve(j);
-                            mLogger.debug("Logs retreived for " + succeededJobID + " to " + log);
-                        }
+                synchronized (this.mJobMap) {
+                    for (Tuple<String, String> tuple : submittedJobs) {
+                        AWSJob j = mJobMap.get(tuple.getKey());
+                        j.setAWSJobID(tuple.getValue());
+                        j.setState(AWSJob.JOBSTATE.submitted);
+                        tracker.track(j);
+                        mLogger.info(
+                                "Submitted Job " + j.getID() + " with AWS id " + j.getAWSJobID());
+                        mJobstateWriter.log(j.getID(), j.getAWSJobID(), AWSJob.JOBSTATE.submitted);
                     }
                 }
 
-                mLogger.debug("Sleeping before querying for failure ");
-                Thread.sleep(sleepTime);
-                if (numDone < total) {
-                    // check for failed jobs
-                    mLogger.debug("Querying for failed jobs " + listFailedJobsRequest);
-                    listJobsResponse = batchClient.listJobs(listFailedJobsRequest);
-                    mLogger.debug(
-                            "Retrieved  "
-                                    + listJobsResponse.jobSummaryList().size()
-                                    + " responses ");
-                    for (JobSummary summary : listJobsResponse.jobSummaryList()) {
-                        String failedJobID = summary.jobId();
-                        if (awsJobIDs.contains(failedJobID)) {
-                            if (!doneJobs.contains(failedJobID)) {
-                                mLogger.info("Job Failed " + failedJobID);
-                                AWSJob j = this.getJob(summary.jobName());
-                                j.setState(AWSJob.JOBSTATE.failed);
-                                mJobstateWriter.log(
-                                        summary.jobName(), summary.jobId(), AWSJob.JOBSTATE.failed);
-                                doneJobs.add(summary.jobId());
-                                // remove the job so that we don't query for detail
-                                awsJobIDs.remove(failedJobID);
-                                numDone++;
-                                failed++;
-                                mLogger.debug("Querying for failed job details " + failedJobID);
-                                Tuple<File, File> log = cwl.retrieve(j);
-                                mLogger.debug("Logs retreived for " + failedJobID + " to " + log);
-                            }
+                // now query AWS Batch for the outstanding jobs only
+                tracker.poll();
+                mLogger.debug(
+                        (total - tracker.getOutstandingCount())
+                                + " jobs done of total of "
+                                + total);
+                if (tracker.getOutstandingCount() == 0 && receivedSignalToExitAfterJobsComplete()) {
+                    synchronized (this.mSubmitResponses) {
+                        if (this.mSubmitResponses.isEmpty()) {
+                            mLogger.info("*** All jobs done *** ");
+                            break;
                         }
-                    }
-                }
-
-                mLogger.debug(numDone + " jobs done of total of " + total);
-                if (numDone < total) {
-                    // still total is not done
-                    mLogger.debug("Sleeping before querying for status of remaining jobs ");
-                    Thread.sleep(sleepTime);
-                    // now we query current state for jobs
-                    DescribeJobsRequest jobsRequest =
-                            DescribeJobsRequest.builder().jobs(awsJobIDs).build();
-                    DescribeJobsResponse jobsResponse = batchClient.describeJobs(jobsRequest);
-                    for (JobDetail jobDetail : jobsResponse.jobs()) {
                         mLogger.debug(
-                                "Current Status of Job "
-                                        + jobDetail.jobId()
-                                        + "->"
-                                        + jobDetail.status()
-                                        + " with reason "
-                                        + jobDetail.statusReason());
-                        mJobstateWriter.log(
-                                jobDetail.jobName(),
-                                jobDetail.jobId(),
-                                AWSJob.JOBSTATE.valueOf(jobDetail.status().toLowerCase()));
-                        mLogger.debug("Detailed Job detail " + jobDetail);
-                    }
-                } else {
-                    if (receivedSignalToExitAfterJobsComplete()) {
-                        synchronized (this.mSubmitResponses) {
-                            if (this.mSubmitResponses.isEmpty()) {
-                                mLogger.info("*** All jobs done *** ");
-                                break;
-                            }
-                            mLogger.debug(
-                                    "Waiting for " + this.mSubmitResponses.size() + " responses ");
-                        }
+                                "Waiting for " + this.mSubmitResponses.size() + " responses ");
                     }
                 }
-
-            } catch (Exception ex) {
-                complainAndShutdown(ex);
-                return;
+                long sleepTime = tracker.getPollInterval();
+                mLogger.debug("Sleeping for " + sleepTime + " before querying for status of jobs");
+                Thread.sleep(sleepTime);
             }
+            mLogger.info(tracker.awaitLogRetrievals() + " job logs retrieved");
+        } catch (Exception ex) {
+            tracker.shutdown();
+            complainAndShutdown(ex);
+            return;
         }
+        tracker.shutdown();
+        int succeeded = tracker.getSucceededCount();
+        int failed = tracker.getFailedCount();
 
         mLogger.info("Shutting down");
         try {
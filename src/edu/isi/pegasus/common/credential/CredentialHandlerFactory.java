@@ -50,11 +50,13 @@ public class CredentialHandlerFactory {
     private static final String SSH_IMPLEMENTING_CLASS = "Ssh";
 
     /**
-     * Returns a table that maps, the credential types to the implementing classes.
+     * Returns a table that maps, the credential types to the implementing classes. It is
+     * synchronized as the credential handlers are loaded from the threads writing out the submit
+     * files.
      *
      * @return a Map indexed by Pegasus styles, and values as names of implementing classes.
      */
-    private static Map<CredentialHandler.TYPE, String> implementingClassNameTable() {
+    private static synchronized Map<CredentialHandler.TYPE, String> implementingClassNameTable() {
         if (mImplementingClassNameTable == null) {
             mImplementingClassNameTable = new HashMap(3);
             mImplementingClassNameTable.put(
@@ -137,11 +139,14 @@ public class CredentialHandlerFactory {
         }
 
         // now just load from the implementing classes
-        Object credentialHandler = this.get(type);
-        if (credentialHandler == null) {
-            // then load the class named type via reflection and register
-            CredentialHandler handler = this.loadInstance(mBag, type.toString());
-            this.put(type, handler);
+        Object credentialHandler = null;
+        synchronized (this) {
+            credentialHandler = this.get(type);
+            if (credentialHandler == null) {
+                // then load the class named type via reflection and register
+                CredentialHandler handler = this.loadInstance(mBag, type.toString());
+                this.put(type, handler);
+            }
         }
 
         return (CredentialHandler) credentialHandler;
@@ -200,7 +205,7 @@ public class CredentialHandlerFactory {
      * @param type the credential handler type
      * @return implementation the class implementing that style, else null
      */
-    private Object get(CredentialHandler.TYPE type) {
+    private synchronized Object get(CredentialHandler.TYPE type) {
         return mImplementingClassTable.get(type);
     }
 
@@ -210,7 +215,7 @@ public class CredentialHandlerFactory {
      * @param type the credential handler type
      * @param implementation the class implementing that style.
      */
-    private void put(CredentialHandler.TYPE type, CredentialHandler implementation) {
+    private synchronized void put(CredentialHandler.TYPE type, CredentialHandler implementation) {
         mImplementingClassTable.put(type, implementation);
     }
 }
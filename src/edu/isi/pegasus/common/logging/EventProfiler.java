@@ -0,0 +1,463 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Records the resources used by each event that is logged via {@link
+ * LogManager#logEventStart(String, String, String)} and {@link LogManager#logEventCompletion()},
+ * while the profiler is set on the LogManager. For every event the wall time, the CPU time of the
+ * process and of the thread logging the event, the bytes allocated by that thread, the heap used at
+ * the end of the event and the peak heap usage during the event are recorded.
+ *
+ * <p>The peak heap usage is determined from the heap usage before each garbage collection that
+ * happens while an event is open, as the heap only grows in between collections. The CPU time of
+ * the process and the allocated bytes rely on the com.sun.management extensions of the MXBeans, and
+ * are recorded as -1 if the JVM does not provide them.
+ *
+ * @author Karan Vahi
+ */
+public class EventProfiler implements NotificationListener {
+
+    /** The version of the format of the file written out. */
+    public static final String VERSION = "1.0";
+
+    /** The value recorded for a metric that is not available in the JVM. */
+    public static final long NOT_AVAILABLE = -1;
+
+    /** The handle to the thread MXBean. */
+    private final ThreadMXBean mThreadBean;
+
+    /** The handle to the memory MXBean. */
+    private final MemoryMXBean mMemoryBean;
+
+    /** The handle to the operating system MXBean. */
+    private final OperatingSystemMXBean mOSBean;
+
+    /** Whether the thread MXBean can report the bytes allocated by a thread. */
+    private final boolean mAllocationSupported;
+
+    /** The names of the memory pools that make up the heap. */
+    private final Set<String> mHeapPools;
+
+    /** The garbage collectors whose notifications we are listening to. */
+    private final List<NotificationEmitter> mEmitters;
+
+    /** The events that are open, with the innermost event at the top. */
+    private final LinkedList<Event> mOpen;
+
+    /** The events that have completed, in the order they were started. */
+    private final List<Event> mCompleted;
+
+    /** The number of events started so far, used to order the completed events. */
+    private int mStarted;
+
+    /** The default constructor. */
+    public EventProfiler() {
+        mThreadBean = ManagementFactory.getThreadMXBean();
+        mMemoryBean = ManagementFactory.getMemoryMXBean();
+        mOSBean = ManagementFactory.getOperatingSystemMXBean();
+        mOpen = new LinkedList<Event>();
+        mCompleted = new ArrayList<Event>();
+        mStarted = 0;
+
+        boolean allocation = false;
+        if (mThreadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) mThreadBean;
+            allocation = bean.isThreadAllocatedMemorySupported();
+            if (allocation && !bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        mAllocationSupported = allocation;
+        if (mThreadBean.isCurrentThreadCpuTimeSupported()
+                && !mThreadBean.isThreadCpuTimeEnabled()) {
+            mThreadBean.setThreadCpuTimeEnabled(true);
+        }
+
+        mHeapPools = new HashSet<String>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                mHeapPools.add(pool.getName());
+            }
+        }
+        mEmitters = new LinkedList<NotificationEmitter>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(this, null, null);
+                mEmitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Records the start of an event.
+     *
+     * @param name the name of the event
+     * @param entityName the primary entity that is associated with the event e.g. workflow
+     * @param entityID the id of that entity.
+     */
+    public synchronized void eventStarted(String name, String entityName, String entityID) {
+        Event e = new Event();
+        e.mName = name;
+        e.mEntityName = entityName;
+        e.mEntityID = entityID;
+        e.mDepth = mOpen.size();
+        e.mIndex = mStarted++;
+        e.mThread = Thread.currentThread().getId();
+        e.mStartWallTime = System.nanoTime();
+        e.mStartCPUTime = this.getProcessCPUTime();
+        e.mStartThreadCPUTime = this.getThreadCPUTime();
+        e.mStartAllocatedBytes = this.getAllocatedBytes(e.mThread);
+        e.mPeakHeap = mMemoryBean.getHeapMemoryUsage().getUsed();
+        mOpen.push(e);
+    }
+
+    /**
+     * Records the completion of the innermost open event. The completion of an event that was never
+     * started is ignored.
+     */
+    public synchronized void eventCompleted() {
+        if (mOpen.isEmpty()) {
+            return;
+        }
+        Event e = mOpen.pop();
+        e.mWallTime = toSeconds(System.nanoTime() - e.mStartWallTime);
+        e.mCPUTime = toSeconds(difference(this.getProcessCPUTime(), e.mStartCPUTime));
+        e.mThreadCPUTime = toSeconds(difference(this.getThreadCPUTime(), e.mStartThreadCPUTime));
+        e.mAllocatedBytes = difference(this.getAllocatedBytes(e.mThread), e.mStartAllocatedBytes);
+        e.mHeapUsed = mMemoryBean.getHeapMemoryUsage().getUsed();
+        e.mPeakHeap = Math.max(e.mPeakHeap, e.mHeapUsed);
+        // the enclosing events saw this peak too
+        for (Event open : mOpen) {
+            open.mPeakHeap = Math.max(open.mPeakHeap, e.mPeakHeap);
+        }
+        mCompleted.add(e);
+    }
+
+    /**
+     * Updates the peak heap usage of the open events on the basis of the heap usage before a
+     * garbage collection.
+     *
+     * @param notification the notification from the garbage collector
+     * @param handback not used
+     */
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+                notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> entry :
+                info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            if (mHeapPools.contains(entry.getKey())) {
+                used += entry.getValue().getUsed();
+            }
+        }
+        synchronized (this) {
+            for (Event open : mOpen) {
+                open.mPeakHeap = Math.max(open.mPeakHeap, used);
+            }
+        }
+    }
+
+    /**
+     * Returns the events that have completed so far, in the order they were started.
+     *
+     * @return the completed events
+     */
+    public synchronized List<Event> getCompletedEvents() {
+        List<Event> result = new ArrayList<Event>(mCompleted);
+        Collections.sort(result, (e1, e2) -> Integer.compare(e1.mIndex, e2.mIndex));
+        return result;
+    }
+
+    /**
+     * Writes out the completed events as JSON to a file.
+     *
+     * @param file the file to write to
+     * @param attributes additional attributes to be written at the top, such as the workflow id
+     * @throws IOException in case of error while writing out the file.
+     */
+    public void writeOut(File file, Map<String, String> attributes) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<String, Object>();
+        report.put("version", VERSION);
+        if (attributes != null) {
+            report.putAll(attributes);
+        }
+        report.put("events", this.getCompletedEvents());
+
+        Gson gson =
+                new GsonBuilder()
+                        .excludeFieldsWithoutExposeAnnotation()
+                        .setPrettyPrinting()
+                        .create();
+        try (Writer writer = new FileWriter(file)) {
+            gson.toJson(report, writer);
+        }
+    }
+
+    /** Stops listening to the garbage collectors. */
+    public void close() {
+        for (NotificationEmitter emitter : mEmitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (Exception e) {
+                // ignore, we are only cleaning up
+            }
+        }
+        mEmitters.clear();
+    }
+
+    /**
+     * Returns the CPU time used by the process in nanoseconds.
+     *
+     * @return the CPU time, else NOT_AVAILABLE
+     */
+    private long getProcessCPUTime() {
+        if (mOSBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) mOSBean).getProcessCpuTime();
+        }
+        return NOT_AVAILABLE;
+    }
+
+    /**
+     * Returns the CPU time used by the current thread in nanoseconds.
+     *
+     * @return the CPU time, else NOT_AVAILABLE
+     */
+    private long getThreadCPUTime() {
+        return mThreadBean.isCurrentThreadCpuTimeSupported()
+                ? mThreadBean.getCurrentThreadCpuTime()
+                : NOT_AVAILABLE;
+    }
+
+    /**
+     * Returns the bytes allocated by a thread.
+     *
+     * @param thread the id of the thread
+     * @return the bytes, else NOT_AVAILABLE
+     */
+    private long getAllocatedBytes(long thread) {
+        return mAllocationSupported
+                ? ((com.sun.management.ThreadMXBean) mThreadBean).getThreadAllocatedBytes(thread)
+                : NOT_AVAILABLE;
+    }
+
+    /**
+     * Returns the difference of two readings of a metric.
+     *
+     * @param end the reading at the end
+     * @param start the reading at the start
+     * @return the difference, or NOT_AVAILABLE if either reading is not available
+     */
+    private static long difference(long end, long start) {
+        return (end < 0 || start < 0) ? NOT_AVAILABLE : end - start;
+    }
+
+    /**
+     * Converts nanoseconds to seconds.
+     *
+     * @param nanos the nanoseconds
+     * @return the seconds, or NOT_AVAILABLE if the nanoseconds are not available
+     */
+    private static double toSeconds(long nanos) {
+        return (nanos < 0) ? NOT_AVAILABLE : nanos / 1e9;
+    }
+
+    /** The metrics recorded for a single event. */
+    public static class Event {
+
+        /** The name of the event. */
+        @Expose
+        @SerializedName("name")
+        private String mName;
+
+        /** The primary entity associated with the event. */
+        @Expose
+        @SerializedName("entity")
+        private String mEntityName;
+
+        /** The id of the primary entity. */
+        @Expose
+        @SerializedName("entity_id")
+        private String mEntityID;
+
+        /** The number of events that enclose this event. */
+        @Expose
+        @SerializedName("depth")
+        private int mDepth;
+
+        /** The wall time in seconds. */
+        @Expose
+        @SerializedName("wall_time")
+        private double mWallTime;
+
+        /** The CPU time in seconds used by all the threads of the process. */
+        @Expose
+        @SerializedName("cpu_time")
+        private double mCPUTime;
+
+        /** The CPU time in seconds used by the thread that logged the event. */
+        @Expose
+        @SerializedName("thread_cpu_time")
+        private double mThreadCPUTime;
+
+        /** The bytes allocated by the thread that logged the event. */
+        @Expose
+        @SerializedName("allocated_bytes")
+        private long mAllocatedBytes;
+
+        /** The heap used in bytes at the end of the event. */
+        @Expose
+        @SerializedName("heap_used_bytes")
+        private long mHeapUsed;
+
+        /** The peak heap used in bytes during the event. */
+        @Expose
+        @SerializedName("peak_heap_bytes")
+        private long mPeakHeap;
+
+        /** The order in which the event was started. */
+        private int mIndex;
+
+        /** The id of the thread that logged the event. */
+        private long mThread;
+
+        /** The value of the wall clock in nanoseconds at the start. */
+        private long mStartWallTime;
+
+        /** The CPU time of the process at the start. */
+        private long mStartCPUTime;
+
+        /** The CPU time of the thread at the start. */
+        private long mStartThreadCPUTime;
+
+        /** The bytes allocated by the thread at the start. */
+        private long mStartAllocatedBytes;
+
+        /**
+         * Returns the name of the event.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the id of the primary entity of the event.
+         *
+         * @return the id
+         */
+        public String getEntityID() {
+            return mEntityID;
+        }
+
+        /**
+         * Returns the number of events that enclose this event.
+         *
+         * @return the depth
+         */
+        public int getDepth() {
+            return mDepth;
+        }
+
+        /**
+         * Returns the wall time in seconds.
+         *
+         * @return the wall time
+         */
+        public double getWallTime() {
+            return mWallTime;
+        }
+
+        /**
+         * Returns the CPU time in seconds used by the process.
+         *
+         * @return the CPU time, else NOT_AVAILABLE
+         */
+        public double getCPUTime() {
+            return mCPUTime;
+        }
+
+        /**
+         * Returns the CPU time in seconds used by the thread that logged the event.
+         *
+         * @return the CPU time, else NOT_AVAILABLE
+         */
+        public double getThreadCPUTime() {
+            return mThreadCPUTime;
+        }
+
+        /**
+         * Returns the bytes allocated by the thread that logged the event.
+         *
+         * @return the bytes, else NOT_AVAILABLE
+         */
+        public long getAllocatedBytes() {
+            return mAllocatedBytes;
+        }
+
+        /**
+         * Returns the heap used in bytes at the end of the event.
+         *
+         * @return the bytes
+         */
+        public long getHeapUsed() {
+            return mHeapUsed;
+        }
+
+        /**
+         * Returns the peak heap used in bytes during the event.
+         *
+         * @return the bytes
+         */
+        public long getPeakHeap() {
+            return mPeakHeap;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.Supplier;
 import org.apache.log4j.Level;
 
 /**
@@ -114,6 +115,9 @@ public abstract class LogManager {
     /** The LogFormatter to use to format the message. */
     protected LogFormatter mLogFormatter;
 
+    /** The profiler recording the resources used by the events logged, if any. */
+    protected EventProfiler mEventProfiler;
+
     /** The constructor. */
     public LogManager() {
         mDebugLevel = 0;
@@ -279,6 +283,26 @@ public abstract class LogManager {
      */
     public abstract int getLevel();
 
+    /**
+     * Returns whether a message logged at a level would be written out. Callers that need to do
+     * work to build a log message, should check this first so that no work is done when the level
+     * is disabled.
+     *
+     * @param level the level of the message.
+     * @return true if messages at the level are logged.
+     */
+    public abstract boolean isLevelEnabled(int level);
+
+    /**
+     * Returns whether debug messages would be written out.
+     *
+     * @return true if messages at the DEBUG level are logged.
+     * @see #isLevelEnabled(int)
+     */
+    public boolean isDebugEnabled() {
+        return this.isLevelEnabled(LogManager.DEBUG_MESSAGE_LEVEL);
+    }
+
     /**
      * Sets both the output writer and the error writer to the same underlying writer.
      *
@@ -337,11 +361,30 @@ public abstract class LogManager {
      * @param level the level on which the message has to be logged.
      * @see #setLevel(int)
      */
-    public void log(String message, int level) {
+    public synchronized void log(String message, int level) {
+        if (!this.isLevelEnabled(level)) {
+            return;
+        }
         mLogFormatter.add(message);
         this.logAlreadyFormattedMessage(mLogFormatter.createLogMessageAndReset(), level);
     }
 
+    /**
+     * Logs a message that is only built if the level of the message is less than or equal to the
+     * level set for the Logger. Nothing is allocated by the logger when the level is disabled,
+     * though a lambda capturing local variables is allocated by the caller. For per job messages in
+     * tight loops, guard the call with {@link #isLevelEnabled(int)} instead.
+     *
+     * @param message supplies the message to be logged.
+     * @param level the level on which the message has to be logged.
+     * @see #log(String,int)
+     */
+    public void log(Supplier<String> message, int level) {
+        if (this.isLevelEnabled(level)) {
+            this.log(message.get(), level);
+        }
+    }
+
     /**
      * Log an event start message to INFO level
      *
@@ -362,6 +405,9 @@ public abstract class LogManager {
      * @param level the level at which event needs to be logged.
      */
     public void logEventStart(String name, String entityName, String entityID, int level) {
+        if (mEventProfiler != null) {
+            mEventProfiler.eventStarted(name, entityName, entityID);
+        }
         mLogFormatter.addEvent(name, entityName, entityID);
         this.logAlreadyFormattedMessage(mLogFormatter.getStartEventMessage(), level);
     }
@@ -384,10 +430,31 @@ public abstract class LogManager {
      * @param level the level to log to
      */
     public void logEventStart(String name, Map<String, String> map, int level) {
+        if (mEventProfiler != null) {
+            mEventProfiler.eventStarted(name, null, map == null ? null : map.toString());
+        }
         mLogFormatter.addEvent(name, map);
         this.logAlreadyFormattedMessage(mLogFormatter.getStartEventMessage(), level);
     }
 
+    /**
+     * Sets the profiler that records the resources used by each event logged from now on.
+     *
+     * @param profiler the profiler, or null to stop profiling
+     */
+    public void setEventProfiler(EventProfiler profiler) {
+        mEventProfiler = profiler;
+    }
+
+    /**
+     * Returns the profiler that records the resources used by each event.
+     *
+     * @return the profiler, else null if none is set
+     */
+    public EventProfiler getEventProfiler() {
+        return mEventProfiler;
+    }
+
     /** Logs the completion message on the basis of the debug level. */
     public void logEventCompletion() {
         // this.log( LogManager.INFO_MESSAGE_LEVEL );
@@ -36,6 +36,15 @@ public class LogManagerFactory {
     /** Holds a singleton instance that is populated via the loadSingletonInstance() method. */
     private static LogManager mSingletonInstance;
 
+    /**
+     * Discards the singleton instance, so that the next call to loadSingletonInstance() loads a new
+     * one. Used by long running processes that plan multiple workflows one after the other, each
+     * with its own logging configuration.
+     */
+    public static void resetSingletonInstance() {
+        mSingletonInstance = null;
+    }
+
     /**
      * Loads the appropriate LogManager class as specified by properties.
      *
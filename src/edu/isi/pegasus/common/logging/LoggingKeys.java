@@ -72,6 +72,7 @@ public class LoggingKeys {
             "event.pegasus.add.data-dependencies";
     public static final String EVENT_PEGASUS_CYCLIC_DEPENDENCY_CHECK =
             "event.pegasus.check.cyclic-dependencies";
+    public static final String EVENT_PEGASUS_REDUCE_EDGES = "event.pegasus.reduce.edges";
 
     public static final String EVENT_WORKFLOW_JOB_STATUS = "event.workflow.job.status";
 
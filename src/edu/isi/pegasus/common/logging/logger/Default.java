@@ -194,6 +194,16 @@ public class Default extends LogManager {
         return mDebugLevel;
     }
 
+    /**
+     * Returns whether a message logged at a level would be written out.
+     *
+     * @param level the level of the message.
+     * @return true if messages at the level are logged.
+     */
+    public boolean isLevelEnabled(int level) {
+        return level >= 0 && level < Integer.SIZE && ((1 << level) & mMask) != 0x0;
+    }
+
     /**
      * Sets both the output writer and the error writer to the same underlying writer.
      *
@@ -382,6 +392,9 @@ public class Default extends LogManager {
      * @param level the debug level of the start message for whose completion you want.
      */
     public void logEventCompletion(int level) {
+        if (mEventProfiler != null) {
+            mEventProfiler.eventCompleted();
+        }
         String message = mLogFormatter.getEndEventMessage();
         mLogFormatter.popEvent();
 
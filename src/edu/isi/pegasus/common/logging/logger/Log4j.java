@@ -187,6 +187,36 @@ public class Log4j extends LogManager {
         return mDebugLevel;
     }
 
+    /**
+     * Returns whether a message logged at a level would be written out.
+     *
+     * @param level the level of the message.
+     * @return true if messages at the level are logged.
+     */
+    public boolean isLevelEnabled(int level) {
+        switch (level) {
+            case LogManager.FATAL_MESSAGE_LEVEL:
+                return mLogger.isEnabledFor(Level.FATAL);
+
+            case LogManager.ERROR_MESSAGE_LEVEL:
+                return mLogger.isEnabledFor(Level.ERROR);
+
+            case LogManager.WARNING_MESSAGE_LEVEL:
+                return mLogger.isEnabledFor(Level.WARN);
+
+            case LogManager.CONFIG_MESSAGE_LEVEL:
+            case LogManager.INFO_MESSAGE_LEVEL:
+                return mLogger.isInfoEnabled();
+
+            case LogManager.DEBUG_MESSAGE_LEVEL:
+                return mLogger.isDebugEnabled();
+
+            default:
+                // messages at other levels are not logged
+                return false;
+        }
+    }
+
     /**
      * Sets both the output writer and the error writer to the same underlying writer.
      *
@@ -280,6 +310,9 @@ public class Log4j extends LogManager {
      * @param level the debug level of the start message for whose completion you want.
      */
     public void logEventCompletion(int level) {
+        if (mEventProfiler != null) {
+            mEventProfiler.eventCompleted();
+        }
         String message = mLogFormatter.getEndEventMessage();
         logAlreadyFormattedMessage(message, level);
         mLogFormatter.popEvent();
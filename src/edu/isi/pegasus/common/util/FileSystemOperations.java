@@ -0,0 +1,191 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filesystem operations that the planner used to do by invoking ln and chmod. They are implemented
+ * in process using java.nio.file, so that no process has to be forked off the planner JVM for them.
+ *
+ * @author Karan Vahi
+ */
+public class FileSystemOperations {
+
+    /** The prefix for the temporary links created while replacing an existing link. */
+    private static final String TEMPORARY_LINK_PREFIX = ".pegasus-link-";
+
+    /** Counter used to generate the names of the temporary links. */
+    private static final AtomicLong TEMPORARY_LINK_COUNTER = new AtomicLong(0);
+
+    /**
+     * Creates a symbolic link, similar to ln -s. The source is stored in the link as is, so a
+     * relative source is resolved against the directory the link resides in. If the destination is
+     * an existing directory, the link is created in it with the basename of the source.
+     *
+     * @param source the file that has to be symlinked
+     * @param destination the path to the symbolic link
+     * @param directory the directory against which a relative destination is resolved. Can be null,
+     *     in which case the current working directory is used.
+     * @param overwrite whether to replace an existing file at the destination, similar to ln -sf.
+     *     The replacement is done by an atomic rename where the filesystem supports it.
+     * @return the path to the symbolic link created
+     * @throws IOException in case of errors
+     */
+    public static Path createSymbolicLink(
+            String source, String destination, File directory, boolean overwrite)
+            throws IOException {
+        Path target = Paths.get(source);
+        Path link =
+                (directory == null)
+                        ? Paths.get(destination)
+                        : directory.toPath().resolve(destination);
+
+        if (Files.isDirectory(link) && target.getFileName() != null) {
+            link = link.resolve(target.getFileName());
+        }
+
+        if (!overwrite || !Files.exists(link, LinkOption.NOFOLLOW_LINKS)) {
+            return Files.createSymbolicLink(link, target);
+        }
+
+        // create the new link next to the existing one and rename it
+        // over the existing one, so that the destination never goes missing
+        Path parent = link.toAbsolutePath().getParent();
+        Path temporary = null;
+        while (temporary == null) {
+            Path candidate =
+                    parent.resolve(
+                            TEMPORARY_LINK_PREFIX
+                                    + link.getFileName()
+                                    + "."
+                                    + TEMPORARY_LINK_COUNTER.incrementAndGet());
+            try {
+                temporary = Files.createSymbolicLink(candidate, target);
+            } catch (FileAlreadyExistsException e) {
+                // try the next name
+            }
+        }
+        try {
+            atomicMove(temporary, link);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        return link;
+    }
+
+    /**
+     * Sets the executable bit on the files, similar to chmod +x. On filesystems that support POSIX
+     * permissions, execute permission is granted to the user, group and others that can read the
+     * file. Every file is attempted, even if an earlier one fails.
+     *
+     * @param files the files on which to set the executable bit
+     * @throws IOException for the first file that failed, with the errors for the remaining failed
+     *     files added as suppressed exceptions
+     */
+    public static void setExecutable(File... files) throws IOException {
+        setExecutable(Arrays.asList(files));
+    }
+
+    /**
+     * Sets the executable bit on a collection of files, similar to chmod +x.
+     *
+     * @param files the files on which to set the executable bit
+     * @throws IOException for the first file that failed, with the errors for the remaining failed
+     *     files added as suppressed exceptions
+     * @see #setExecutable(File...)
+     */
+    public static void setExecutable(Collection<File> files) throws IOException {
+        List<IOException> errors = new ArrayList<IOException>();
+        for (File file : files) {
+            try {
+                setExecutable(file.toPath());
+            } catch (IOException e) {
+                errors.add(e);
+            }
+        }
+        if (!errors.isEmpty()) {
+            IOException first = errors.get(0);
+            for (int i = 1; i < errors.size(); i++) {
+                first.addSuppressed(errors.get(i));
+            }
+            throw first;
+        }
+    }
+
+    /**
+     * Sets the executable bit on a single file.
+     *
+     * @param file the file
+     * @throws IOException in case of errors
+     */
+    private static void setExecutable(Path file) throws IOException {
+        Set<PosixFilePermission> permissions = null;
+        try {
+            permissions = Files.getPosixFilePermissions(file);
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX filesystem
+            if (!file.toFile().setExecutable(true, false)) {
+                throw new IOException("Unable to set the executable bit on " + file);
+            }
+            return;
+        }
+
+        boolean modified = permissions.add(PosixFilePermission.OWNER_EXECUTE);
+        if (permissions.contains(PosixFilePermission.GROUP_READ)) {
+            modified = permissions.add(PosixFilePermission.GROUP_EXECUTE) || modified;
+        }
+        if (permissions.contains(PosixFilePermission.OTHERS_READ)) {
+            modified = permissions.add(PosixFilePermission.OTHERS_EXECUTE) || modified;
+        }
+        if (modified) {
+            Files.setPosixFilePermissions(file, permissions);
+        }
+    }
+
+    /**
+     * Renames a file, replacing the destination if it exists. The rename is atomic where the
+     * filesystem supports it, so that readers of the destination see either the old or the new file
+     * and never a missing one.
+     *
+     * @param source the file to be renamed
+     * @param destination the new path for the file
+     * @throws IOException in case of errors
+     */
+    public static void atomicMove(Path source, Path destination) throws IOException {
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -23,7 +23,14 @@ import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 
 /**
@@ -55,6 +62,17 @@ import java.util.regex.Pattern;
  *     pegasus.catalog.replica.directory.flat.lfn
  * </pre>
  *
+ * The directory is traversed in parallel, with the subdirectories listed concurrently by a pool of
+ * threads shared by all instances. The number of threads defaults to the number of available
+ * processors up to DEFAULT_MAX_CRAWL_THREADS, unless specified by the property
+ *
+ * <pre>
+ *     pegasus.catalog.replica.directory.crawl.threads
+ * </pre>
+ *
+ * If the caller knows the LFNs it will look up, it can restrict the mappings that are created in
+ * memory to those LFNs by setting a filter via {@link #setLFNFilter(Set)} before connecting.
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -87,6 +105,16 @@ public class Directory implements ReplicaCatalog {
      */
     public static final String FLAT_LFN_PROPERTY_KEY = "directory.flat.lfn";
 
+    /** The name of the key that specifies the number of threads to traverse the directory with. */
+    public static final String CRAWL_THREADS_PROPERTY_KEY = "directory.crawl.threads";
+
+    /** The maximum number of threads to traverse the directory with, if none are specified. */
+    public static final int DEFAULT_MAX_CRAWL_THREADS = 8;
+
+    /** The pools shared by all instances to traverse directories, indexed by their parallelism. */
+    private static final Map<Integer, ForkJoinPool> CRAWL_POOLS =
+            new HashMap<Integer, ForkJoinPool>();
+
     /** Records the name of the on-disk representation. */
     protected String mDirectory = null;
 
@@ -105,6 +133,18 @@ public class Directory implements ReplicaCatalog {
     /** The URL prefix to use */
     protected String mURLPrefix;
 
+    /** The number of threads to traverse the directory with. */
+    protected int mCrawlThreads;
+
+    /** The LFNs to create mappings for. null means all files. */
+    protected Set<String> mLFNFilter;
+
+    /**
+     * The LFN prefixes of the directories that can contain a LFN in the filter, when deep LFNs are
+     * constructed.
+     */
+    private Set<String> mDirectoryFilter;
+
     /**
      * Default empty constructor creates an object that is not yet connected to any database. You
      * must use support methods to connect before this instance becomes usable.
@@ -119,6 +159,22 @@ public class Directory implements ReplicaCatalog {
         mConstructFlatLFN = false;
         mSiteHandle = Directory.DEFAULT_SITE_HANDLE;
         mURLPrefix = Directory.DEFAULT_URL_PREFIX;
+        mCrawlThreads =
+                Math.min(
+                        Runtime.getRuntime().availableProcessors(),
+                        Directory.DEFAULT_MAX_CRAWL_THREADS);
+        mLFNFilter = null;
+    }
+
+    /**
+     * Restricts the mappings created on connect to the LFNs passed. Files in the directory that do
+     * not match any of the LFNs are ignored, and with deep LFNs, subdirectories that cannot contain
+     * any of the LFNs are not traversed.
+     *
+     * @param lfns the LFNs to create mappings for, or null to create mappings for all files
+     */
+    public void setLFNFilter(Set<String> lfns) {
+        mLFNFilter = lfns;
     }
 
     /**
@@ -150,6 +206,20 @@ public class Directory implements ReplicaCatalog {
             this.mURLPrefix = value;
         }
 
+        value = props.getProperty(Directory.CRAWL_THREADS_PROPERTY_KEY);
+        if (value != null) {
+            try {
+                this.mCrawlThreads = Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException nfe) {
+                throw new ReplicaCatalogException(
+                        "Invalid value for property "
+                                + Directory.CRAWL_THREADS_PROPERTY_KEY
+                                + " "
+                                + value,
+                        nfe);
+            }
+        }
+
         if (props.containsKey(Directory.DIRECTORY_PROPERTY_KEY)) {
             return connect(props.getProperty("directory"));
         }
@@ -172,9 +242,9 @@ public class Directory implements ReplicaCatalog {
         mLFNMap = new LinkedHashMap();
 
         try {
-            File f = new File(directory);
-            if (f.exists() && f.isDirectory()) {
-                traverse(f, null);
+            Path dir = Paths.get(directory).toAbsolutePath();
+            if (Files.isDirectory(dir)) {
+                traverse(dir);
             } else {
                 return false;
             }
@@ -188,40 +258,137 @@ public class Directory implements ReplicaCatalog {
     }
 
     /**
-     * Traverses a directory and populates the mappings in memory
+     * Traverses a directory in parallel and populates the mappings in memory. The listings are done
+     * concurrently, while the mappings are inserted in the calling thread in the order of the
+     * traversal.
      *
      * @param directory the directory to traverse.
-     * @param prefix the LFN prefix to be applied
      */
-    private void traverse(File directory, String prefix) {
-        // sanity check, if we can read it
-        if (!directory.canRead()) {
-            // warn and return
-            System.err.println("Ignoring. Unable to read directory " + directory);
-            return;
+    private void traverse(Path directory) {
+        mDirectoryFilter = null;
+        if (mLFNFilter != null && !mConstructFlatLFN) {
+            // the LFN prefixes of the directories that need to be traversed
+            mDirectoryFilter = new HashSet<String>();
+            for (String lfn : mLFNFilter) {
+                for (int i = lfn.indexOf(File.separatorChar);
+                        i > 0;
+                        i = lfn.indexOf(File.separatorChar, i + 1)) {
+                    mDirectoryFilter.add(lfn.substring(0, i));
+                }
+            }
         }
 
-        for (File f : directory.listFiles()) {
-            StringBuffer lfn = new StringBuffer();
-            String name = f.getName();
-            if (mConstructFlatLFN || prefix == null || prefix.isEmpty()) {
-                lfn.append(name);
-            } else {
-                lfn.append(prefix).append(File.separator).append(name);
+        Crawler root = new Crawler(directory, "");
+        Directory.getCrawlPool(mCrawlThreads).invoke(root);
+        this.populate(root);
+    }
+
+    /**
+     * Returns the pool to traverse directories with, creating it on first use. The pools are never
+     * shut down, as their worker threads are daemon threads that exit when idle.
+     *
+     * @param threads the parallelism of the pool
+     * @return the pool
+     */
+    private static synchronized ForkJoinPool getCrawlPool(int threads) {
+        ForkJoinPool pool = CRAWL_POOLS.get(threads);
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+            CRAWL_POOLS.put(threads, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Inserts the mappings for the files found by a crawler and its children.
+     *
+     * @param crawler the crawler
+     */
+    private void populate(Crawler crawler) {
+        for (int i = 0; i < crawler.mLFNs.size(); i++) {
+            insert(
+                    crawler.mLFNs.get(i),
+                    new ReplicaCatalogEntry(this.mURLPrefix + crawler.mPaths.get(i), mSiteHandle));
+        }
+        for (Crawler child : crawler.mChildren) {
+            this.populate(child);
+        }
+    }
+
+    /**
+     * Lists a single directory, and forks a crawler for each subdirectory that needs to be
+     * traversed.
+     */
+    private class Crawler extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The directory to list. */
+        private final Path mDir;
+
+        /** The LFN prefix for the entries in the directory. */
+        private final String mPrefix;
+
+        /** The LFNs of the files in the directory. */
+        private final List<String> mLFNs;
+
+        /** The paths of the files in the directory. */
+        private final List<String> mPaths;
+
+        /** The crawlers for the subdirectories. */
+        private final List<Crawler> mChildren;
+
+        Crawler(Path dir, String prefix) {
+            mDir = dir;
+            mPrefix = prefix;
+            mLFNs = new ArrayList<String>();
+            mPaths = new ArrayList<String>();
+            mChildren = new ArrayList<Crawler>();
+        }
+
+        @Override
+        protected void compute() {
+            // sanity check, if we can read it
+            if (!Files.isReadable(mDir)) {
+                // warn and return
+                System.err.println("Ignoring. Unable to read directory " + mDir);
+                return;
             }
 
-            if (f.isDirectory()) {
-                // the lfn is the prefix now
-                traverse(f, lfn.toString());
-            } else {
-                // we have a mapping to populate
-                String pfn = this.mURLPrefix + f.getAbsolutePath();
-                // System.out.println( lfn + " => " + pfn );
-                insert(lfn.toString(), new ReplicaCatalogEntry(pfn, mSiteHandle));
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(mDir)) {
+                for (Path p : stream) {
+                    String name = p.getFileName().toString();
+                    String lfn =
+                            (mConstructFlatLFN || mPrefix.isEmpty())
+                                    ? name
+                                    : mPrefix + File.separator + name;
+
+                    // a single stat per entry, following links as before
+                    boolean isDirectory;
+                    try {
+                        isDirectory =
+                                Files.readAttributes(p, BasicFileAttributes.class).isDirectory();
+                    } catch (IOException e) {
+                        isDirectory = false;
+                    }
+
+                    if (isDirectory) {
+                        // the lfn is the prefix now
+                        if (mDirectoryFilter == null || mDirectoryFilter.contains(lfn)) {
+                            mChildren.add(new Crawler(p, lfn));
+                        }
+                    } else if (mLFNFilter == null || mLFNFilter.contains(lfn)) {
+                        // we have a mapping to populate
+                        mLFNs.add(lfn);
+                        mPaths.add(p.toString());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring. Unable to read directory " + mDir + " " + e);
+                return;
             }
+            invokeAll(mChildren);
         }
-
-        return;
     }
 
     /**
@@ -0,0 +1,851 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * A read only replica catalog for very large catalogs, backed by an immutable file in which the
+ * mappings are sorted by LFN. The file is never loaded into memory as a whole. Instead the mappings
+ * are grouped into blocks of roughly equal size, and an index with the first LFN of each block is
+ * kept at the end of the file. On connect, only the index is memory mapped. A lookup for a set of
+ * LFNs sorts the LFNs, and merge joins them against the blocks, reading only the blocks that may
+ * contain one of the LFNs, each at most once.
+ *
+ * <p>The file is generated from existing File or YAML catalogs by pegasus-rc-converter with the
+ * output format set to IndexedFile. To use it, set pegasus.catalog.replica to IndexedFile and the
+ * pegasus.catalog.replica.file property to the path to the file.
+ *
+ * <p>The layout of the file is
+ *
+ * <pre>
+ * header   magic (int) version (int) lfns (long) entries (long) blocks (int) index offset (long)
+ * blocks   for each LFN: lfn entries (int) [pfn attributes (int) [key value]..]..
+ * index    for each block: block offset (long), then for each block: offset of its first lfn in
+ *          the index (int), then for each block: first lfn
+ * </pre>
+ *
+ * where all strings are written as their length in bytes followed by the UTF-8 bytes. The mappings
+ * for a LFN are never split across blocks.
+ *
+ * @author Karan Vahi
+ */
+@SuppressWarnings("rawtypes") // the ReplicaCatalog interface uses raw collections
+public class IndexedFile implements ReplicaCatalog {
+
+    /** The magic number at the start of the file. */
+    public static final int MAGIC = 0x50524349;
+
+    /** The version of the file layout. */
+    public static final int VERSION = 1;
+
+    /** The size of the header in bytes. */
+    public static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 8;
+
+    /** The path to the file. */
+    private File mFile;
+
+    /** The channel to read the blocks from. */
+    private FileChannel mChannel;
+
+    /** The memory mapped index. */
+    private MappedByteBuffer mIndex;
+
+    /** The first LFN of each block, decoded lazily from the index. */
+    private String[] mFirstLFNs;
+
+    /** The offset of the index in the file, which is also the end of the last block. */
+    private long mIndexOffset;
+
+    /** The number of blocks. */
+    private int mBlocks;
+
+    /** The number of LFNs in the catalog. */
+    private long mLFNCount;
+
+    /** The number of entries in the catalog. */
+    private long mEntryCount;
+
+    /** The default constructor. */
+    public IndexedFile() {
+        mChannel = null;
+    }
+
+    /**
+     * Establishes a connection to the catalog from the properties. The "file" property needs to
+     * point to the indexed file.
+     *
+     * @param props is the property table with sufficient settings to connect to the catalog
+     * @return true if connected, false if failed to connect.
+     */
+    public boolean connect(Properties props) {
+        if (props.containsKey(ReplicaCatalog.FILE_KEY)) {
+            return connect(props.getProperty(ReplicaCatalog.FILE_KEY));
+        }
+        return false;
+    }
+
+    /**
+     * Opens the indexed file and memory maps the index.
+     *
+     * @param filename the path to the indexed file
+     * @return true if connected
+     */
+    public boolean connect(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        mFile = new File(filename);
+        try {
+            mChannel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(mChannel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not an indexed replica catalog file " + mFile);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(
+                        "Unsupported version " + version + " of indexed replica catalog " + mFile);
+            }
+            mLFNCount = header.getLong();
+            mEntryCount = header.getLong();
+            mBlocks = header.getInt();
+            mIndexOffset = header.getLong();
+            mIndex =
+                    mChannel.map(
+                            FileChannel.MapMode.READ_ONLY,
+                            mIndexOffset,
+                            mChannel.size() - mIndexOffset);
+            mFirstLFNs = new String[mBlocks];
+        } catch (IOException ioe) {
+            this.close();
+            throw new RuntimeException("Unable to open indexed replica catalog " + filename, ioe);
+        }
+        return true;
+    }
+
+    /** Closes the file. */
+    public void close() {
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+        }
+        mChannel = null;
+        mIndex = null;
+        mFirstLFNs = null;
+    }
+
+    /**
+     * Predicate to check, if the connection with the catalog's implementation is still active.
+     *
+     * @return true, if the implementation is disassociated, false otherwise.
+     */
+    public boolean isClosed() {
+        return mChannel == null;
+    }
+
+    /**
+     * Returns the number of LFNs in the catalog.
+     *
+     * @return the number of LFNs
+     */
+    public long getLFNCount() {
+        return mLFNCount;
+    }
+
+    /**
+     * Returns the number of entries in the catalog.
+     *
+     * @return the number of entries
+     */
+    public long getEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * Retrieves the entry for a given filename and site handle from the replica catalog.
+     *
+     * @param lfn is the logical filename to obtain information for.
+     * @param handle is the resource handle to obtain entries for.
+     * @return the (first) matching physical filename, or <code>null</code> if no match was found.
+     */
+    public String lookup(String lfn, String handle) {
+        for (ReplicaCatalogEntry rce : this.lookup(lfn)) {
+            if (matchesHandle(rce, handle)) {
+                return rce.getPFN();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves all entries for a given LFN from the replica catalog.
+     *
+     * @param lfn is the logical filename to obtain information for.
+     * @return a collection of replica catalog entries
+     */
+    public Collection<ReplicaCatalogEntry> lookup(String lfn) {
+        Set<String> lfns = new TreeSet<String>();
+        lfns.add(lfn);
+        return this.search(lfns).get(lfn);
+    }
+
+    /**
+     * Retrieves all entries for a given LFN from the replica catalog.
+     *
+     * @param lfn is the logical filename to obtain information for.
+     * @return a set of PFN strings
+     */
+    public Set lookupNoAttributes(String lfn) {
+        Set<String> result = new TreeSet<String>();
+        for (ReplicaCatalogEntry rce : this.lookup(lfn)) {
+            result.add(rce.getPFN());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves multiple entries for a given set of logical filenames, by merge joining the sorted
+     * LFNs against the blocks in the file.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries for
+     *     the LFN.
+     */
+    public Map<String, Collection<ReplicaCatalogEntry>> lookup(Set lfns) {
+        if (lfns == null || lfns.isEmpty()) {
+            return new HashMap<String, Collection<ReplicaCatalogEntry>>();
+        }
+        return this.search(asLFNs(lfns));
+    }
+
+    /**
+     * Retrieves multiple entries for a given set of logical filenames.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @return a map indexed by the LFN. Each value is a set of PFN strings.
+     */
+    public Map lookupNoAttributes(Set lfns) {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        if (lfns == null || lfns.isEmpty()) {
+            return result;
+        }
+        for (Map.Entry<String, Collection<ReplicaCatalogEntry>> entry :
+                this.search(asLFNs(lfns)).entrySet()) {
+            Set<String> pfns = new TreeSet<String>();
+            for (ReplicaCatalogEntry rce : entry.getValue()) {
+                pfns.add(rce.getPFN());
+            }
+            result.put(entry.getKey(), pfns);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves multiple entries for a given set of logical filenames, restricted to a resource
+     * handle. Only the LFNs found are in the result.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @param handle is the resource handle, restricting the LFNs.
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries.
+     */
+    public Map lookup(Set lfns, String handle) {
+        return this.lookupByHandle(lfns, handle);
+    }
+
+    /**
+     * Retrieves multiple entries for a given set of logical filenames, restricted to a resource
+     * handle.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @param handle is the resource handle, restricting the LFNs.
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries.
+     */
+    private Map<String, List<ReplicaCatalogEntry>> lookupByHandle(Set lfns, String handle) {
+        Map<String, List<ReplicaCatalogEntry>> result =
+                new HashMap<String, List<ReplicaCatalogEntry>>();
+        if (lfns == null || lfns.isEmpty()) {
+            return result;
+        }
+        for (Map.Entry<String, Collection<ReplicaCatalogEntry>> entry :
+                this.search(asLFNs(lfns)).entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            List<ReplicaCatalogEntry> value = new ArrayList<ReplicaCatalogEntry>();
+            for (ReplicaCatalogEntry rce : entry.getValue()) {
+                if (matchesHandle(rce, handle)) {
+                    value.add(rce);
+                }
+            }
+            result.put(entry.getKey(), value);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves multiple entries for a given set of logical filenames, restricted to a resource
+     * handle. Only the LFNs found are in the result.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @param handle is the resource handle, restricting the LFNs.
+     * @return a map indexed by the LFN. Each value is a collection of physical filenames.
+     */
+    public Map lookupNoAttributes(Set lfns, String handle) {
+        Map<String, List<String>> result = new HashMap<String, List<String>>();
+        for (Map.Entry<String, List<ReplicaCatalogEntry>> entry :
+                this.lookupByHandle(lfns, handle).entrySet()) {
+            List<String> value = new ArrayList<String>();
+            for (ReplicaCatalogEntry rce : entry.getValue()) {
+                value.add(rce.getPFN());
+            }
+            result.put(entry.getKey(), value);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves entries matching the constraints. This reads the whole file, and is only meant for
+     * listing or converting the catalog.
+     *
+     * @param constraints is mapping of keys 'lfn' to a regular expression. Using an empty map
+     *     requests the complete catalog.
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries.
+     */
+    public Map lookup(Map constraints) {
+        Pattern p = null;
+        if (constraints != null && !constraints.isEmpty()) {
+            if (constraints.size() == 1 && constraints.containsKey("lfn")) {
+                p = Pattern.compile((String) constraints.get("lfn"));
+            } else {
+                // same as the other file based catalogs
+                throw new RuntimeException("method not implemented");
+            }
+        }
+
+        Map<String, List<ReplicaCatalogEntry>> result =
+                new LinkedHashMap<String, List<ReplicaCatalogEntry>>();
+        try {
+            for (int block = 0; block < mBlocks; block++) {
+                DataInputStream in = this.readBlock(block);
+                while (in.available() > 0) {
+                    String lfn = readString(in);
+                    List<ReplicaCatalogEntry> entries = readEntries(in);
+                    if (p == null || p.matcher(lfn).matches()) {
+                        result.put(lfn, entries);
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("Error while reading " + mFile, ioe);
+        }
+        return result;
+    }
+
+    /**
+     * Lists all logical filenames in the catalog.
+     *
+     * @return A set of all logical filenames known to the catalog.
+     */
+    public Set list() {
+        return this.lookup(new HashMap<String, String>()).keySet();
+    }
+
+    /**
+     * Lists a subset of all logical filenames in the catalog.
+     *
+     * @param constraint is a regular expression for the logical filename.
+     * @return A set of logical filenames that match. The set may be empty
+     */
+    public Set list(String constraint) {
+        Map<String, String> constraints = new HashMap<String, String>();
+        constraints.put("lfn", constraint);
+        return this.lookup(constraints).keySet();
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfn the lfn
+     * @param tuple the entry
+     * @return never
+     */
+    public int insert(String lfn, ReplicaCatalogEntry tuple) {
+        throw immutable("insert(String, ReplicaCatalogEntry)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfn the lfn
+     * @param pfn the pfn
+     * @param handle the site handle
+     * @return never
+     */
+    public int insert(String lfn, String pfn, String handle) {
+        throw immutable("insert(String, String, String)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param x the mappings
+     * @return never
+     */
+    public int insert(Map x) {
+        throw immutable("insert(Map)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param x the mappings
+     * @param matchAttributes whether to match attributes
+     * @return never
+     */
+    public int delete(Map<String, Collection<ReplicaCatalogEntry>> x, boolean matchAttributes) {
+        throw immutable("delete(Map, boolean)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfn the lfn
+     * @param pfn the pfn
+     * @return never
+     */
+    public int delete(String lfn, String pfn) {
+        throw immutable("delete(String, String)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfn the lfn
+     * @param tuple the entry
+     * @return never
+     */
+    public int delete(String lfn, ReplicaCatalogEntry tuple) {
+        throw immutable("delete(String, ReplicaCatalogEntry)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfn the lfn
+     * @param name the attribute name
+     * @param value the attribute value
+     * @return never
+     */
+    public int delete(String lfn, String name, Object value) {
+        throw immutable("delete(String, String, Object)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfn the lfn
+     * @param handle the site handle
+     * @return never
+     */
+    public int deleteByResource(String lfn, String handle) {
+        throw immutable("deleteByResource(String, String)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfn the lfn
+     * @return never
+     */
+    public int remove(String lfn) {
+        throw immutable("remove(String)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param lfns the lfns
+     * @return never
+     */
+    public int remove(Set lfns) {
+        throw immutable("remove(Set)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param name the attribute name
+     * @param value the attribute value
+     * @return never
+     */
+    public int removeByAttribute(String name, Object value) {
+        throw immutable("removeByAttribute(String, Object)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @param handle the site handle
+     * @return never
+     */
+    public int removeByAttribute(String handle) {
+        throw immutable("removeByAttribute(String)");
+    }
+
+    /**
+     * Unsupported, as the catalog is immutable.
+     *
+     * @return never
+     */
+    public int clear() {
+        throw immutable("clear()");
+    }
+
+    /**
+     * Returns null, so that the planner does not copy what may be a very large file to the submit
+     * directory. As the file is immutable, it can be referred to in place.
+     *
+     * @return null
+     */
+    public File getFileSource() {
+        return null;
+    }
+
+    /**
+     * The catalog is always read only.
+     *
+     * @param readonly ignored
+     */
+    public void setReadOnly(boolean readonly) {}
+
+    /**
+     * Returns the set of LFNs passed through the untyped ReplicaCatalog interface.
+     *
+     * @param lfns the set of logical filename strings
+     * @return the same set
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<String> asLFNs(Set lfns) {
+        return (Set<String>) lfns;
+    }
+
+    /**
+     * Merge joins the sorted LFNs against the blocks in the file. The index is used to skip the
+     * blocks that cannot contain any of the LFNs, and each block is read at most once.
+     *
+     * @param lfns the LFNs to search for
+     * @return map indexed by LFN, with an empty collection for LFNs not found
+     */
+    private Map<String, Collection<ReplicaCatalogEntry>> search(Set<String> lfns) {
+        Map<String, Collection<ReplicaCatalogEntry>> result =
+                new HashMap<String, Collection<ReplicaCatalogEntry>>();
+        TreeSet<String> sorted = new TreeSet<String>();
+        for (String lfn : lfns) {
+            if (lfn != null) {
+                sorted.add(lfn);
+                result.put(lfn, new ArrayList<ReplicaCatalogEntry>());
+            }
+        }
+        if (mBlocks == 0) {
+            return result;
+        }
+
+        try {
+            int current = -1;
+            DataInputStream in = null;
+            // the LFN at the cursor in the current block, already read
+            String cursor = null;
+            for (String lfn : sorted) {
+                if (current == -1
+                        || (current + 1 < mBlocks && lfn.compareTo(firstLFN(current + 1)) >= 0)) {
+                    int block = this.findBlock(lfn, current + 1);
+                    if (block == -1) {
+                        // smaller than the first LFN in the file
+                        continue;
+                    }
+                    current = block;
+                    in = this.readBlock(block);
+                    cursor = null;
+                }
+
+                // advance the cursor to the first LFN not smaller than the one searched for
+                while (true) {
+                    if (cursor == null) {
+                        if (in.available() == 0) {
+                            break;
+                        }
+                        cursor = readString(in);
+                    }
+                    int compare = cursor.compareTo(lfn);
+                    if (compare < 0) {
+                        skipEntries(in);
+                        cursor = null;
+                    } else {
+                        if (compare == 0) {
+                            result.put(lfn, readEntries(in));
+                            cursor = null;
+                        }
+                        break;
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("Error while reading " + mFile, ioe);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the last block whose first LFN is not greater than the LFN, by binary searching the
+     * index.
+     *
+     * @param lfn the lfn
+     * @param from the block to start searching from
+     * @return the block index, or -1 if the LFN is smaller than the first LFN in the file
+     */
+    private int findBlock(String lfn, int from) {
+        int low = Math.max(0, from - 1);
+        int high = mBlocks - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstLFN(mid).compareTo(lfn) <= 0) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first LFN of a block from the memory mapped index.
+     *
+     * @param block the block
+     * @return the first lfn
+     */
+    private String firstLFN(int block) {
+        String lfn = mFirstLFNs[block];
+        if (lfn == null) {
+            // the offsets of the blocks are followed by the offsets of the first lfns
+            int position = mIndex.getInt(8 * mBlocks + 4 * block);
+            int length = mIndex.getInt(position);
+            byte[] bytes = new byte[length];
+            ByteBuffer b = mIndex.duplicate();
+            b.position(position + 4);
+            b.get(bytes);
+            lfn = new String(bytes, StandardCharsets.UTF_8);
+            mFirstLFNs[block] = lfn;
+        }
+        return lfn;
+    }
+
+    /**
+     * Reads a block from the file.
+     *
+     * @param block the block
+     * @return the stream to read the contents of the block from
+     * @throws IOException in case of error while reading
+     */
+    private DataInputStream readBlock(int block) throws IOException {
+        long start = mIndex.getLong(8 * block);
+        long end = (block + 1 < mBlocks) ? mIndex.getLong(8 * (block + 1)) : mIndexOffset;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        readFully(mChannel, buffer, start);
+        return new DataInputStream(new ByteArrayInputStream(buffer.array()));
+    }
+
+    /**
+     * Returns whether a replica catalog entry is for a resource handle.
+     *
+     * @param rce the entry
+     * @param handle the handle, can be null
+     * @return boolean
+     */
+    private static boolean matchesHandle(ReplicaCatalogEntry rce, String handle) {
+        String pool = rce.getResourceHandle();
+        return (pool == null && handle == null)
+                || (pool != null && handle != null && pool.equals(handle));
+    }
+
+    /**
+     * Returns the exception thrown for operations that modify the catalog.
+     *
+     * @param operation the operation
+     * @return the exception
+     */
+    private UnsupportedOperationException immutable(String operation) {
+        return new UnsupportedOperationException(
+                operation
+                        + " not supported as the indexed replica catalog is immutable. "
+                        + "Use pegasus-rc-converter to generate a new one");
+    }
+
+    /**
+     * Reads from a channel at a position till the buffer is full.
+     *
+     * @param channel the channel
+     * @param buffer the buffer
+     * @param position the position
+     * @throws IOException if the end of the file is reached
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Reads the entries for a LFN.
+     *
+     * @param in the input
+     * @return the entries
+     * @throws IOException in case of error while reading
+     */
+    static List<ReplicaCatalogEntry> readEntries(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<ReplicaCatalogEntry> result = new ArrayList<ReplicaCatalogEntry>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(readEntry(in));
+        }
+        return result;
+    }
+
+    /**
+     * Skips the entries for a LFN.
+     *
+     * @param in the input
+     * @throws IOException in case of error while reading
+     */
+    private static void skipEntries(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            skipString(in);
+            int attributes = in.readInt();
+            for (int j = 0; j < 2 * attributes; j++) {
+                skipString(in);
+            }
+        }
+    }
+
+    /**
+     * Reads a single entry.
+     *
+     * @param in the input
+     * @return the entry
+     * @throws IOException in case of error while reading
+     */
+    static ReplicaCatalogEntry readEntry(DataInput in) throws IOException {
+        String pfn = readString(in);
+        int attributes = in.readInt();
+        Map<String, String> m = new TreeMap<String, String>();
+        for (int i = 0; i < attributes; i++) {
+            String key = readString(in);
+            m.put(key, readString(in));
+        }
+        return new ReplicaCatalogEntry(pfn, m);
+    }
+
+    /**
+     * Writes a single entry.
+     *
+     * @param out the output
+     * @param rce the entry
+     * @throws IOException in case of error while writing
+     */
+    static void writeEntry(DataOutput out, ReplicaCatalogEntry rce) throws IOException {
+        writeString(out, rce.getPFN());
+        out.writeInt(rce.getAttributeCount());
+        for (Iterator<?> it = rce.getAttributeIterator(); it.hasNext(); ) {
+            String key = (String) it.next();
+            Object value = rce.getAttribute(key);
+            writeString(out, key);
+            writeString(out, value == null ? "" : value.toString());
+        }
+    }
+
+    /**
+     * Reads a string written as its length followed by the UTF-8 bytes.
+     *
+     * @param in the input
+     * @return the string
+     * @throws IOException in case of error while reading
+     */
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skips a string written as its length followed by the UTF-8 bytes.
+     *
+     * @param in the input
+     * @throws IOException in case of error while reading
+     */
+    private static void skipString(DataInput in) throws IOException {
+        int length = in.readInt();
+        in.skipBytes(length);
+    }
+
+    /**
+     * Writes a string as its length followed by the UTF-8 bytes.
+     *
+     * @param out the output
+     * @param s the string
+     * @throws IOException in case of error while writing
+     */
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds the sorted file read by the {@link IndexedFile} replica catalog. The mappings can be added
+ * in any order. They are buffered in memory in runs, and each full run is sorted by LFN and spilled
+ * to a temporary file next to the output file. On build, the runs are merge sorted into the output
+ * file, so that catalogs much larger than the heap can be converted.
+ *
+ * <p>Adding a mapping for a LFN with the same PFN and site handle as a mapping added earlier
+ * replaces the earlier one, as with the File replica catalog.
+ *
+ * @author Karan Vahi
+ */
+public class IndexedFileBuilder {
+
+    /** The default number of mappings buffered in memory before they are spilled to disk. */
+    public static final int DEFAULT_RUN_SIZE = 1000000;
+
+    /** The default size of a block in the file in bytes. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /** Orders the mappings in a run by LFN, retaining the order in which they were added. */
+    private static final Comparator<Mapping> LFN_COMPARATOR =
+            new Comparator<Mapping>() {
+                public int compare(Mapping a, Mapping b) {
+                    return a.mLFN.compareTo(b.mLFN);
+                }
+            };
+
+    /** The file to build. */
+    private File mOutput;
+
+    /** The number of mappings buffered before a run is spilled. */
+    private int mRunSize;
+
+    /** The size of a block in bytes. */
+    private int mBlockSize;
+
+    /** The mappings in the current run. */
+    private List<Mapping> mRun;
+
+    /** The runs spilled to disk so far. */
+    private List<File> mRunFiles;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param output the file to build
+     */
+    public IndexedFileBuilder(File output) {
+        mOutput = output;
+        mRunSize = DEFAULT_RUN_SIZE;
+        mBlockSize = DEFAULT_BLOCK_SIZE;
+        mRun = new ArrayList<Mapping>();
+        mRunFiles = new ArrayList<File>();
+    }
+
+    /**
+     * Sets the number of mappings buffered in memory before they are spilled to disk.
+     *
+     * @param size the number of mappings
+     */
+    public void setRunSize(int size) {
+        mRunSize = Math.max(1, size);
+    }
+
+    /**
+     * Sets the size of the blocks in the file.
+     *
+     * @param size the size in bytes
+     */
+    public void setBlockSize(int size) {
+        mBlockSize = Math.max(1, size);
+    }
+
+    /**
+     * Adds a mapping to the catalog being built.
+     *
+     * @param lfn the logical filename
+     * @param rce the replica catalog entry
+     * @throws IOException in case of error while spilling a run to disk
+     */
+    public void add(String lfn, ReplicaCatalogEntry rce) throws IOException {
+        if (lfn == null || rce == null || rce.getPFN() == null) {
+            throw new NullPointerException();
+        }
+        mRun.add(new Mapping(lfn, rce));
+        if (mRun.size() >= mRunSize) {
+            this.spill();
+        }
+    }
+
+    /**
+     * Merges the runs and writes out the file.
+     *
+     * @return the number of LFNs written out
+     * @throws IOException in case of error while writing
+     */
+    public long build() throws IOException {
+        List<RunReader> readers = new ArrayList<RunReader>();
+        try {
+            if (!mRunFiles.isEmpty()) {
+                // spill the last run, so that all runs are merged the same way
+                this.spill();
+            }
+            PriorityQueue<RunReader> queue =
+                    new PriorityQueue<RunReader>(
+                            Math.max(1, mRunFiles.size()),
+                            new Comparator<RunReader>() {
+                                public int compare(RunReader a, RunReader b) {
+                                    int result = a.mCurrent.mLFN.compareTo(b.mCurrent.mLFN);
+                                    // mappings in earlier runs were added first
+                                    return result == 0 ? a.mIndex - b.mIndex : result;
+                                }
+                            });
+            if (mRunFiles.isEmpty()) {
+                Collections.sort(mRun, LFN_COMPARATOR);
+                RunReader reader = new RunReader(0, mRun.iterator());
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            } else {
+                for (int i = 0; i < mRunFiles.size(); i++) {
+                    RunReader reader = new RunReader(i, mRunFiles.get(i));
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+            }
+            return this.write(queue);
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            for (File f : mRunFiles) {
+                f.delete();
+            }
+            mRunFiles.clear();
+            mRun.clear();
+        }
+    }
+
+    /**
+     * Writes out the mappings from the merged runs into the file.
+     *
+     * @param queue the runs ordered by their current mapping
+     * @return the number of LFNs written out
+     * @throws IOException in case of error while writing
+     */
+    private long write(PriorityQueue<RunReader> queue) throws IOException {
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> firstLFNs = new ArrayList<String>();
+        long lfns = 0;
+        long entries = 0;
+        long position = IndexedFile.HEADER_SIZE;
+        long blockStart = -1;
+
+        ByteArrayOutputStream group = new ByteArrayOutputStream();
+        DataOutputStream groupOut = new DataOutputStream(group);
+        try (DataOutputStream out =
+                new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(mOutput), 1 << 16))) {
+            // the header is written out at the end, once the index offset is known
+            out.write(new byte[IndexedFile.HEADER_SIZE]);
+
+            while (!queue.isEmpty()) {
+                String lfn = queue.peek().mCurrent.mLFN;
+                List<ReplicaCatalogEntry> rces = new ArrayList<ReplicaCatalogEntry>();
+                while (!queue.isEmpty() && queue.peek().mCurrent.mLFN.equals(lfn)) {
+                    RunReader reader = queue.poll();
+                    insert(rces, reader.mCurrent.mRCE);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+
+                group.reset();
+                IndexedFile.writeString(groupOut, lfn);
+                groupOut.writeInt(rces.size());
+                for (ReplicaCatalogEntry rce : rces) {
+                    IndexedFile.writeEntry(groupOut, rce);
+                }
+                groupOut.flush();
+
+                // start a new block if the current one is full. a LFN is never split
+                if (blockStart == -1 || position - blockStart >= mBlockSize) {
+                    blockStart = position;
+                    offsets.add(position);
+                    firstLFNs.add(lfn);
+                }
+                group.writeTo(out);
+                position += group.size();
+                lfns++;
+                entries += rces.size();
+            }
+
+            // the index
+            long indexOffset = position;
+            int blocks = offsets.size();
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            int keyOffset = 12 * blocks;
+            List<byte[]> keys = new ArrayList<byte[]>(blocks);
+            for (String key : firstLFNs) {
+                byte[] bytes = key.getBytes("UTF-8");
+                keys.add(bytes);
+                out.writeInt(keyOffset);
+                keyOffset += 4 + bytes.length;
+            }
+            for (byte[] key : keys) {
+                out.writeInt(key.length);
+                out.write(key);
+            }
+            out.flush();
+
+            try (RandomAccessFile raf = new RandomAccessFile(mOutput, "rw")) {
+                raf.writeInt(IndexedFile.MAGIC);
+                raf.writeInt(IndexedFile.VERSION);
+                raf.writeLong(lfns);
+                raf.writeLong(entries);
+                raf.writeInt(blocks);
+                raf.writeLong(indexOffset);
+            }
+        }
+        return lfns;
+    }
+
+    /**
+     * Sorts the current run and spills it to a temporary file.
+     *
+     * @throws IOException in case of error while writing
+     */
+    private void spill() throws IOException {
+        Collections.sort(mRun, LFN_COMPARATOR);
+        File dir = mOutput.getAbsoluteFile().getParentFile();
+        File f = File.createTempFile(mOutput.getName() + ".run", ".tmp", dir);
+        mRunFiles.add(f);
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+            for (Mapping m : mRun) {
+                IndexedFile.writeString(out, m.mLFN);
+                IndexedFile.writeEntry(out, m.mRCE);
+            }
+        }
+        mRun.clear();
+    }
+
+    /**
+     * Adds an entry to the entries for a LFN, replacing an entry with the same PFN and handle.
+     *
+     * @param rces the entries for the LFN
+     * @param rce the entry to add
+     */
+    private static void insert(List<ReplicaCatalogEntry> rces, ReplicaCatalogEntry rce) {
+        String pfn = rce.getPFN();
+        String handle = rce.getResourceHandle();
+        for (Iterator<ReplicaCatalogEntry> it = rces.iterator(); it.hasNext(); ) {
+            ReplicaCatalogEntry existing = it.next();
+            if (pfn.equals(existing.getPFN())
+                    && ((handle == null && existing.getResourceHandle() == null)
+                            || (handle != null && handle.equals(existing.getResourceHandle())))) {
+                it.remove();
+                break;
+            }
+        }
+        rces.add(rce);
+    }
+
+    /** A mapping added to the catalog. */
+    private static class Mapping {
+
+        /** The logical filename. */
+        private final String mLFN;
+
+        /** The entry. */
+        private final ReplicaCatalogEntry mRCE;
+
+        private Mapping(String lfn, ReplicaCatalogEntry rce) {
+            mLFN = lfn;
+            mRCE = rce;
+        }
+    }
+
+    /** Reads the mappings of a sorted run, either from memory or from a spilled file. */
+    private static class RunReader {
+
+        /** The index of the run. */
+        private final int mIndex;
+
+        /** The mappings in memory, if the run was not spilled. */
+        private final Iterator<Mapping> mIterator;
+
+        /** The stream to read a spilled run from. */
+        private final DataInputStream mIn;
+
+        /** The current mapping. */
+        private Mapping mCurrent;
+
+        private RunReader(int index, Iterator<Mapping> iterator) {
+            mIndex = index;
+            mIterator = iterator;
+            mIn = null;
+        }
+
+        private RunReader(int index, File f) throws IOException {
+            mIndex = index;
+            mIterator = null;
+            mIn = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+        }
+
+        /**
+         * Moves to the next mapping in the run.
+         *
+         * @return false if the run is exhausted
+         * @throws IOException in case of error while reading
+         */
+        private boolean advance() throws IOException {
+            if (mIterator != null) {
+                mCurrent = mIterator.hasNext() ? mIterator.next() : null;
+                return mCurrent != null;
+            }
+            String lfn;
+            try {
+                lfn = IndexedFile.readString(mIn);
+            } catch (EOFException e) {
+                mCurrent = null;
+                return false;
+            }
+            mCurrent = new Mapping(lfn, IndexedFile.readEntry(mIn));
+            return true;
+        }
+
+        private void close() {
+            if (mIn != null) {
+                try {
+                    mIn.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
@@ -165,6 +165,21 @@ public class JDBCRC implements ReplicaCatalog {
     /** Remembers if obtaining generated keys will work or not. */
     private boolean m_autoinc = false;
 
+    /**
+     * The default number of LFNs that are looked up or inserted in a single query, the documented
+     * default for pegasus.catalog.replica.chunk.size. It is capped for a SQLite backend.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * The maximum number of LFNs in a single query against a SQLite backend, as SQLite limits the
+     * number of host parameters in a statement to 999 by default.
+     */
+    private static final int MAX_SQLITE_CHUNK_SIZE = 900;
+
+    /** The number of LFNs that are looked up or inserted in a single query. */
+    private int mChunkSize = DEFAULT_CHUNK_SIZE;
+
     /**
      * Convenience c'tor: Establishes the connection to the replica catalog database. The usual
      * suspects for the class name include:
@@ -290,6 +305,27 @@ public class JDBCRC implements ReplicaCatalog {
             temp.delete();
         }
 
+        // determine the number of LFNs to query at a time
+        String chunkSize = (String) props.remove(ReplicaCatalog.BATCH_KEY);
+        if (chunkSize != null) {
+            try {
+                mChunkSize = Integer.parseInt(chunkSize.trim());
+            } catch (NumberFormatException nfe) {
+                mLogger.log(
+                        "Invalid value specified for "
+                                + ReplicaCatalog.BATCH_KEY
+                                + " "
+                                + chunkSize
+                                + ". Defaulting to "
+                                + DEFAULT_CHUNK_SIZE,
+                        LogManager.WARNING_MESSAGE_LEVEL);
+                mChunkSize = DEFAULT_CHUNK_SIZE;
+            }
+            if (mChunkSize < 1) {
+                mChunkSize = DEFAULT_CHUNK_SIZE;
+            }
+        }
+
         // class loader: Will propagate any runtime errors!!!
         String driver = (String) props.remove("db.driver");
 
@@ -337,6 +373,10 @@ public class JDBCRC implements ReplicaCatalog {
             // JDBC sqlite driver returns false, but does support autoincrement of keys
             m_autoinc = mUsingSQLiteBackend || mConnection.getMetaData().supportsGetGeneratedKeys();
 
+            if (mUsingSQLiteBackend && mChunkSize > MAX_SQLITE_CHUNK_SIZE) {
+                mChunkSize = MAX_SQLITE_CHUNK_SIZE;
+            }
+
             // prepared statements are Singletons -- prepared on demand
             mStatements = new PreparedStatement[mCStatements.length];
             for (int i = 0; i < mCStatements.length; ++i) {
@@ -589,35 +629,7 @@ public class JDBCRC implements ReplicaCatalog {
      * @see org.griphyn.common.catalog.ReplicaCatalogEntry
      */
     public Map lookup(Set lfns) {
-        Map result = new HashMap();
-        String query = mCStatements[1];
-
-        // sanity check
-        if (lfns == null || lfns.size() == 0) return result;
-        if (mConnection == null) throw new RuntimeException(c_error);
-
-        try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(1);
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                List value = new ArrayList();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
-                while (rs.next()) {
-                    value.add(
-                            new ReplicaCatalogEntry(
-                                    rs.getString("pfn"),
-                                    attributes(rs.getString("lfn_id"), rs.getString("site"))));
-                }
-                rs.close();
-                result.put(lfn, value);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(
-                    "Unable to query database with " + query + ": " + e.getMessage());
-        }
-        return result;
+        return this.lookup(lfns, null, true);
     }
 
     /**
@@ -629,32 +641,7 @@ public class JDBCRC implements ReplicaCatalog {
      * @return a map indexed by the LFN. Each value is a set of PFN strings.
      */
     public Map lookupNoAttributes(Set lfns) {
-        Map result = new HashMap();
-        String query = mCStatements[1];
-
-        // sanity check
-        if (lfns == null || lfns.size() == 0) return result;
-        if (mConnection == null) throw new RuntimeException(c_error);
-
-        try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(1);
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                Set value = new TreeSet();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
-                while (rs.next()) {
-                    value.add(rs.getString("pfn"));
-                }
-                rs.close();
-                result.put(lfn, value);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(
-                    "Unable to query database with " + query + ": " + e.getMessage());
-        }
-        return result;
+        return this.lookup(lfns, null, false);
     }
 
     /**
@@ -670,38 +657,7 @@ public class JDBCRC implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Map lookup(Set lfns, String handle) {
-        Map result = new HashMap();
-        int which = (handle == null ? 1 : 2);
-        String query = mCStatements[which];
-
-        // sanity check
-        if (lfns == null || lfns.size() == 0) return result;
-        if (mConnection == null) throw new RuntimeException(c_error);
-
-        try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(which);
-            if (handle != null) ps.setString(2, quote(handle));
-
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                List value = new ArrayList();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
-                while (rs.next()) {
-                    value.add(
-                            new ReplicaCatalogEntry(
-                                    rs.getString("pfn"),
-                                    attributes(rs.getString("lfn_id"), rs.getString("site"))));
-                }
-                rs.close();
-                result.put(lfn, value);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(
-                    "Unable to query database with " + query + ": " + e.getMessage());
-        }
-        return result;
+        return this.lookup(lfns, handle, true);
     }
 
     /**
@@ -715,37 +671,178 @@ public class JDBCRC implements ReplicaCatalog {
      * @return a map indexed by the LFN. Each value is a set of physical filenames.
      */
     public Map lookupNoAttributes(Set lfns, String handle) {
-        Map result = new HashMap();
-        int which = (handle == null ? 1 : 2);
-        String query = mCStatements[which];
+        return this.lookup(lfns, handle, false);
+    }
+
+    /**
+     * Retrieves multiple entries for a set of logical filenames. The LFNs are looked up in chunks
+     * of size mChunkSize, with a single query per chunk for the PFNs, and another single query per
+     * chunk for the attributes of the LFNs found.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @param handle is the resource handle, restricting the LFNs. Can be null.
+     * @param withAttributes boolean indicating whether to return replica catalog entries with all
+     *     attributes or just the PFNs.
+     * @return a map indexed by the LFN. Each value is either a list of replica catalog entries, or
+     *     a set of PFN strings depending on withAttributes. Every LFN passed has an entry in the
+     *     map, that may be empty.
+     */
+    private Map<String, Collection<Object>> lookup(
+            Set lfns, String handle, boolean withAttributes) {
+        Map<String, Collection<Object>> result = new HashMap<String, Collection<Object>>();
 
         // sanity check
         if (lfns == null || lfns.size() == 0) return result;
         if (mConnection == null) throw new RuntimeException(c_error);
 
+        // the values are stored quoted in the database
+        List<String> chunk = new ArrayList<String>(Math.min(mChunkSize, lfns.size()));
+        Map<String, String> quoted = new HashMap<String, String>();
+        for (Iterator i = lfns.iterator(); i.hasNext(); ) {
+            String lfn = (String) i.next();
+            result.put(lfn, withAttributes ? new ArrayList<Object>() : new TreeSet<Object>());
+            chunk.add(lfn);
+            if (chunk.size() == mChunkSize || !i.hasNext()) {
+                quoted.clear();
+                for (String c : chunk) {
+                    quoted.put(quote(c), c);
+                }
+                lookupChunk(quoted, handle, withAttributes, result);
+                chunk.clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up a single chunk of LFNs and populates the result map.
+     *
+     * @param quoted map indexed by the quoted LFN, to the LFN as passed by the caller
+     * @param handle is the resource handle, restricting the LFNs. Can be null.
+     * @param withAttributes whether to slurp attributes or not
+     * @param result the result map to populate
+     */
+    private void lookupChunk(
+            Map<String, String> quoted,
+            String handle,
+            boolean withAttributes,
+            Map<String, Collection<Object>> result) {
+        StringBuilder query = new StringBuilder(128 + quoted.size() * 2);
+        query.append("SELECT l.lfn_id,l.lfn,p.pfn,p.site FROM rc_lfn l")
+                .append(" LEFT JOIN rc_pfn p ON l.lfn_id=p.lfn_id WHERE l.lfn IN ")
+                .append(placeholders(quoted.size()));
+        if (handle != null) {
+            query.append(" AND p.site=?");
+        }
+
+        // the rows in the order returned by the database
+        List<String[]> rows = new ArrayList<String[]>();
+        Set<String> ids = new LinkedHashSet<String>();
         try {
-            ResultSet rs = null;
-            PreparedStatement ps = getStatement(which);
-            if (handle != null) ps.setString(2, quote(handle));
+            PreparedStatement ps = mConnection.prepareStatement(query.toString());
+            int index = 1;
+            for (String lfn : quoted.keySet()) {
+                ps.setString(index++, lfn);
+            }
+            if (handle != null) {
+                ps.setString(index, quote(handle));
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String id = rs.getString("lfn_id");
+                rows.add(
+                        new String[] {
+                            id, rs.getString("lfn"), rs.getString("pfn"), rs.getString("site")
+                        });
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            rs.close();
+            ps.close();
 
-            for (Iterator i = lfns.iterator(); i.hasNext(); ) {
-                Set value = new TreeSet();
-                String lfn = (String) i.next();
-                ps.setString(1, quote(lfn));
-                rs = ps.executeQuery();
-                while (rs.next()) {
-                    value.add(rs.getString("pfn"));
+            Map<String, Map<String, Object>> meta = withAttributes ? attributes(ids) : null;
+            for (String[] row : rows) {
+                String lfn = quoted.get(row[1]);
+                if (lfn == null) {
+                    // database returned a row for a LFN in a different case
+                    continue;
+                }
+                if (withAttributes) {
+                    Map<String, Object> attrs = new TreeMap<String, Object>();
+                    if (row[3] != null && !row[3].equals("NULL")) {
+                        attrs.put(ReplicaCatalogEntry.RESOURCE_HANDLE, row[3]);
+                    }
+                    Map<String, Object> m = meta.get(row[0]);
+                    if (m != null) {
+                        attrs.putAll(m);
+                    }
+                    result.get(lfn).add(new ReplicaCatalogEntry(row[2], attrs));
+                } else if (row[2] != null) {
+                    result.get(lfn).add(row[2]);
                 }
-                rs.close();
-                result.put(lfn, value);
             }
         } catch (SQLException e) {
             throw new RuntimeException(
                     "Unable to query database with " + query + ": " + e.getMessage());
         }
+    }
+
+    /**
+     * Slurps all attributes for a set of LFN ids in chunks.
+     *
+     * @param ids the reference ids to slurp from as string.
+     * @return a Map indexed by the id, with the attributes for the id as value.
+     */
+    private Map<String, Map<String, Object>> attributes(Collection<String> ids)
+            throws SQLException {
+        Map<String, Map<String, Object>> result = new HashMap<String, Map<String, Object>>();
+        List<String> all = new ArrayList<String>(ids);
+        for (int start = 0; start < all.size(); start += mChunkSize) {
+            List<String> chunk = all.subList(start, Math.min(all.size(), start + mChunkSize));
+            PreparedStatement ps =
+                    mConnection.prepareStatement(
+                            "SELECT m.lfn_id,m.key,m.value FROM rc_meta m WHERE m.lfn_id IN "
+                                    + placeholders(chunk.size()));
+            int index = 1;
+            for (String id : chunk) {
+                ps.setString(index++, id);
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String id = rs.getString(1);
+                Map<String, Object> attrs = result.get(id);
+                if (attrs == null) {
+                    attrs = new TreeMap<String, Object>();
+                    result.put(id, attrs);
+                }
+                attrs.put(rs.getString(2), rs.getString(3));
+            }
+            rs.close();
+            ps.close();
+        }
         return result;
     }
 
+    /**
+     * Returns a parenthesized list of n comma separated placeholders for a prepared statement.
+     *
+     * @param n the number of placeholders
+     * @return the placeholders string e.g. (?,?,?)
+     */
+    private String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(2 * n + 2);
+        sb.append('(');
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('?');
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+
     /**
      * Retrieves multiple entries for a given logical filename, up to the complete catalog.
      * Retrieving full catalogs should be harmful, but may be helpful in online display or portal.
@@ -1087,6 +1184,12 @@ public class JDBCRC implements ReplicaCatalog {
      * Inserts multiple mappings into the replica catalog. The input is a map indexed by the LFN.
      * The value for each LFN key is a collection of replica catalog entries.
      *
+     * <p>The existing state of the LFNs is retrieved in chunks, and all deletions and insertions
+     * are sent to the database as JDBC batches in a single transaction. As with {@link
+     * #insert(String, ReplicaCatalogEntry)}, an existing LFN is deleted first if it already has a
+     * mapping for the PFN and resource handle of an entry to be inserted, and all it's attributes
+     * match the attributes of that entry.
+     *
      * @param x is a map from logical filename string to list of replica catalog entries.
      * @return the number of insertions.
      * @see org.griphyn.common.catalog.ReplicaCatalogEntry
@@ -1097,197 +1200,276 @@ public class JDBCRC implements ReplicaCatalog {
         // sanity checks
         if (x == null || x.size() == 0) return result;
         if (mConnection == null) throw new RuntimeException(c_error);
-        String query = "";
-
-        try {
-            Statement st = mConnection.createStatement();
-            List<String> lfns = new ArrayList<String>((Set<String>) x.keySet());
 
-            // check if the lfn already exists
-            for (String lfn : lfns) {
-                query +=
-                        query.isEmpty()
-                                ? "SELECT lfn_id, lfn FROM rc_lfn WHERE lfn='" + lfn + "'"
-                                : " OR lfn='" + lfn + "'";
+        // the lfns that have something to insert
+        List<String> lfns = new ArrayList<String>();
+        for (Object o : x.entrySet()) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Collection<?> value = (Collection<?>) entry.getValue();
+            if (entry.getKey() != null && value != null && !value.isEmpty()) {
+                lfns.add((String) entry.getKey());
             }
-            if (!query.isEmpty()) {
-                ResultSet rs = st.executeQuery(query);
-                Map<String, List<ReplicaCatalogEntry>> ids =
-                        new HashMap<String, List<ReplicaCatalogEntry>>();
-                Map<String, String> lfnToID = new HashMap<String, String>();
-                while (rs.next()) {
-                    ids.put(rs.getString(1), (List<ReplicaCatalogEntry>) x.get(rs.getString(2)));
-                    lfnToID.put(rs.getString(2), rs.getString(1));
-                }
-                rs.close();
-
-                // delete previous mappings associated to the lfns
-                st = mConnection.createStatement();
-                query = "";
-
-                for (String lfn : lfns) {
-                    List<ReplicaCatalogEntry> value = (List<ReplicaCatalogEntry>) x.get(lfn);
-
-                    if (value != null) {
-                        for (ReplicaCatalogEntry tuple : value) {
-                            // sanity checks
-                            if (lfn == null || tuple == null) return 0;
-                            if (mConnection == null) throw new RuntimeException(c_error);
-
-                            String rh =
-                                    tuple.getResourceHandle() == null
-                                            ? " IS NULL"
-                                            : "='" + quote(tuple.getResourceHandle());
-                            query += query.isEmpty() ? "SELECT lfn_id FROM rc_pfn WHERE " : " OR ";
-                            query +=
-                                    "(lfn_id="
-                                            + lfnToID.get(lfn)
-                                            + " AND pfn='"
-                                            + quote(tuple.getPFN())
-                                            + "' AND site"
-                                            + rh
-                                            + "')";
-                        }
-                    }
-                }
-                List<String> lfnsToDelete = new ArrayList<String>();
-                if (!query.isEmpty()) {
-                    rs = st.executeQuery(query);
-                    while (rs.next()) {
-                        lfnsToDelete.add(rs.getString(1));
-                    }
-                    rs.close();
-
-                    // check meta table
-                    st = mConnection.createStatement();
-                    query = "";
+        }
+        if (lfns.isEmpty()) {
+            return result;
+        }
 
-                    for (String lfnID : lfnsToDelete) {
-                        query +=
-                                query.isEmpty()
-                                        ? "SELECT lfn_id, `key`, value FROM rc_meta WHERE "
-                                        : " OR ";
-                        query += "lfn_id=" + lfnID;
+        String query = "[no query]";
+        boolean autoCommitWasOn = false;
+        int state = 0;
+        try {
+            // determine the ids of lfns that already exist
+            query = "SELECT lfn_id,lfn FROM rc_lfn WHERE lfn IN (...)";
+            Map<String, String> lfnToID = lookupIDs(lfns);
+
+            // determine existing lfns that need to be deleted first
+            Set<String> idsToDelete = new HashSet<String>();
+            if (!lfnToID.isEmpty()) {
+                query = "SELECT lfn_id,pfn,site FROM rc_pfn WHERE lfn_id IN (...)";
+                Map<String, Set<String>> pfns = pfns(lfnToID.values());
+                query = "SELECT m.lfn_id,m.key,m.value FROM rc_meta m WHERE m.lfn_id IN (...)";
+                Map<String, Map<String, Object>> meta = attributes(lfnToID.values());
+                for (Map.Entry<String, String> entry : lfnToID.entrySet()) {
+                    String id = entry.getValue();
+                    Set<String> existing = pfns.get(id);
+                    if (existing == null) {
+                        continue;
                     }
-                    if (!query.isEmpty()) {
-                        rs = st.executeQuery(query);
-                        while (rs.next()) {
-                            String id = rs.getString(1);
-                            String key = rs.getString(2);
-                            String val = rs.getString(3);
-                            List<ReplicaCatalogEntry> value = (List<ReplicaCatalogEntry>) x.get(id);
-
-                            if (value != null) {
-                                for (ReplicaCatalogEntry tuple : value) {
-                                    if (key != null
-                                            && (!tuple.hasAttribute(key)
-                                                    || (val != null
-                                                            && !tuple.getAttribute(key)
-                                                                    .equals(val)))) {
-                                        lfnsToDelete.remove(id);
-                                    }
-                                }
-                            }
+                    for (Object o : (Collection<?>) x.get(entry.getKey())) {
+                        ReplicaCatalogEntry tuple = (ReplicaCatalogEntry) o;
+                        if (tuple != null
+                                && existing.contains(pfnKey(quote(tuple.getPFN()), tuple))
+                                && attributesMatch(meta.get(id), tuple)) {
+                            idsToDelete.add(id);
+                            break;
                         }
-                        rs.close();
                     }
                 }
+            }
 
-                // delete LFNs
-                query = "";
-                for (String lfnID : lfnsToDelete) {
-                    query += query.isEmpty() ? "DELETE FROM rc_lfn WHERE " : " OR ";
-                    query += "lfn_id=" + lfnID;
-                }
-                if (!query.isEmpty()) {
-                    st.executeUpdate(query);
+            if ((autoCommitWasOn = mConnection.getAutoCommit())) mConnection.setAutoCommit(false);
+            state++; // state == 1
+
+            // delete LFNs
+            if (!idsToDelete.isEmpty()) {
+                query = "DELETE FROM rc_lfn WHERE lfn_id=?";
+                PreparedStatement ps = mConnection.prepareStatement(query);
+                for (String id : idsToDelete) {
+                    ps.setLong(1, Long.parseLong(id));
+                    ps.addBatch();
                 }
+                ps.executeBatch();
+                ps.close();
+                lfnToID.values().removeAll(idsToDelete);
             }
-            mConnection.setAutoCommit(false);
+            state++; // state == 2
 
-            // insert LFNs
-            int countInserts = 0;
-            int totalInserts = 0;
+            // insert LFNs that don't exist
+            List<String> newLFNs = new ArrayList<String>();
             for (String lfn : lfns) {
-                List<ReplicaCatalogEntry> value = (List<ReplicaCatalogEntry>) x.get(lfn);
-                if (value != null) {
-                    st.addBatch("INSERT INTO rc_lfn(lfn) VALUES('" + lfn + "')");
-                    countInserts++;
-                    totalInserts += value.size();
+                if (!lfnToID.containsKey(quote(lfn))) {
+                    newLFNs.add(lfn);
                 }
             }
-            st.executeBatch();
-            ResultSet rs = st.getGeneratedKeys();
-            List<String> generatedKeys = new ArrayList<String>();
-            while (rs.next()) {
-                generatedKeys.add(rs.getString(1));
+            if (!newLFNs.isEmpty()) {
+                query = mCStatements[12];
+                PreparedStatement ps = getStatement(12);
+                for (String lfn : newLFNs) {
+                    ps.setString(1, quote(lfn));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                // generated keys are not returned consistently for batches
+                // across drivers. query for them instead
+                query = "SELECT lfn_id,lfn FROM rc_lfn WHERE lfn IN (...)";
+                lfnToID.putAll(lookupIDs(newLFNs));
             }
-            rs.close();
+            state++; // state == 3
 
-            // Add PFN and site attributes
-            st = mConnection.createStatement();
-            int index = 0;
+            // Add PFN and site attributes, and the metadata
+            query = mCStatements[16];
+            PreparedStatement pfn = getStatement(16);
+            PreparedStatement meta = getStatement(17);
             for (String lfn : lfns) {
-                List<ReplicaCatalogEntry> value = (List<ReplicaCatalogEntry>) x.get(lfn);
-                if (value != null) {
-                    String indexID =
-                            mUsingSQLiteBackend
-                                    ? Integer.toString(
-                                            (Integer.parseInt(generatedKeys.get(0))
-                                                    - (countInserts-- - 1)))
-                                    : generatedKeys.get(index);
-
-                    for (ReplicaCatalogEntry tuple : value) {
-                        String rh =
-                                tuple.getResourceHandle() == null
-                                        ? "NULL"
-                                        : tuple.getResourceHandle();
-                        st.addBatch(
-                                "INSERT INTO rc_pfn(lfn_id, pfn, site) VALUES('"
-                                        + indexID
-                                        + "','"
-                                        + quote(tuple.getPFN())
-                                        + "','"
-                                        + rh
-                                        + "')");
-
-                        // Add metadata
-                        for (Iterator i = tuple.getAttributeIterator(); i.hasNext(); ) {
-                            String name = (String) i.next();
-                            if (name.equals(ReplicaCatalogEntry.RESOURCE_HANDLE)) {
-                                continue;
-                            }
-                            String val =
-                                    tuple.getAttribute(name) == null
-                                            ? "NULL"
-                                            : tuple.getAttribute(name) instanceof String
-                                                    ? (String) tuple.getAttribute(name)
-                                                    : tuple.getAttribute(name).toString();
-                            st.addBatch(
-                                    "INSERT INTO rc_meta(lfn_id,`key`,value) VALUES('"
-                                            + indexID
-                                            + "','"
-                                            + name
-                                            + "','"
-                                            + val
-                                            + "')");
+                String id = lfnToID.get(quote(lfn));
+                if (id == null) {
+                    throw new SQLException("Unable to determine the id for lfn " + lfn);
+                }
+                Set<String> keys = new HashSet<String>();
+                for (Object o : (Collection<?>) x.get(lfn)) {
+                    ReplicaCatalogEntry tuple = (ReplicaCatalogEntry) o;
+                    if (tuple == null) {
+                        continue;
+                    }
+                    String resourceHandle = tuple.getResourceHandle();
+                    pfn.setString(1, id);
+                    pfn.setString(2, quote(tuple.getPFN()));
+                    pfn.setString(3, resourceHandle == null ? "NULL" : resourceHandle);
+                    pfn.addBatch();
+                    result++;
+
+                    for (Iterator i = tuple.getAttributeIterator(); i.hasNext(); ) {
+                        String name = (String) i.next();
+                        if (name.equals(ReplicaCatalogEntry.RESOURCE_HANDLE) || !keys.add(name)) {
+                            // attributes are associated with the lfn
+                            continue;
                         }
+                        Object value = tuple.getAttribute(name);
+                        meta.setLong(1, Long.parseLong(id));
+                        meta.setString(2, name);
+                        meta.setString(
+                                3,
+                                value == null
+                                        ? "NULL"
+                                        : value instanceof String
+                                                ? (String) value
+                                                : value.toString());
+                        meta.addBatch();
                     }
                 }
-                index++;
             }
-            st.executeBatch();
-            result = totalInserts;
-            mConnection.setAutoCommit(true);
+            pfn.executeBatch();
+            state++; // state == 4
+            query = mCStatements[17];
+            meta.executeBatch();
+            state++; // state == 5
+            mConnection.commit();
 
         } catch (SQLException e) {
-            throw new RuntimeException("Unable to tell database: " + e.getMessage());
+            try {
+                if (state > 0 && state < 5) {
+                    mConnection.rollback();
+                }
+            } catch (SQLException e2) {
+                // ignore rollback problems
+            }
+            throw new RuntimeException(
+                    "Unable to tell database "
+                            + query
+                            + " (state="
+                            + state
+                            + "): "
+                            + e.getMessage());
+        } finally {
+            // restore original auto-commit state
+            try {
+                if (autoCommitWasOn) mConnection.setAutoCommit(true);
+            } catch (SQLException e) {
+                // ignore
+            }
         }
 
         // done
         return result;
     }
 
+    /**
+     * Looks up the ids of the LFNs in chunks.
+     *
+     * @param lfns the lfns to look up
+     * @return map indexed by the quoted lfn as stored in the database, to the lfn id
+     */
+    private Map<String, String> lookupIDs(Collection<String> lfns) throws SQLException {
+        Map<String, String> result = new HashMap<String, String>();
+        List<String> all = new ArrayList<String>(lfns);
+        for (int start = 0; start < all.size(); start += mChunkSize) {
+            List<String> chunk = all.subList(start, Math.min(all.size(), start + mChunkSize));
+            PreparedStatement ps =
+                    mConnection.prepareStatement(
+                            "SELECT lfn_id,lfn FROM rc_lfn WHERE lfn IN "
+                                    + placeholders(chunk.size()));
+            int index = 1;
+            for (String lfn : chunk) {
+                ps.setString(index++, quote(lfn));
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                result.put(rs.getString(2), rs.getString(1));
+            }
+            rs.close();
+            ps.close();
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the PFN and site mappings for a set of LFN ids in chunks.
+     *
+     * @param ids the LFN ids
+     * @return map indexed by the id, with a set of keys constructed via pfnKey as values.
+     */
+    private Map<String, Set<String>> pfns(Collection<String> ids) throws SQLException {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        List<String> all = new ArrayList<String>(ids);
+        for (int start = 0; start < all.size(); start += mChunkSize) {
+            List<String> chunk = all.subList(start, Math.min(all.size(), start + mChunkSize));
+            PreparedStatement ps =
+                    mConnection.prepareStatement(
+                            "SELECT lfn_id,pfn,site FROM rc_pfn WHERE lfn_id IN "
+                                    + placeholders(chunk.size()));
+            int index = 1;
+            for (String id : chunk) {
+                ps.setString(index++, id);
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String id = rs.getString(1);
+                Set<String> pfns = result.get(id);
+                if (pfns == null) {
+                    pfns = new HashSet<String>();
+                    result.put(id, pfns);
+                }
+                // null handles are stored either as NULL or as the string NULL
+                String site = rs.getString(3);
+                pfns.add(rs.getString(2) + "\0" + (site == null ? "NULL" : site));
+            }
+            rs.close();
+            ps.close();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key to match a PFN and resource handle against the ones returned by pfns. The
+     * resource handle is matched as stored by insert, i.e. unquoted and NULL for a missing handle.
+     *
+     * @param pfn the quoted pfn
+     * @param tuple the replica catalog entry containing the resource handle
+     * @return the key
+     */
+    private String pfnKey(String pfn, ReplicaCatalogEntry tuple) {
+        String handle = tuple.getResourceHandle();
+        return pfn + "\0" + (handle == null ? "NULL" : handle);
+    }
+
+    /**
+     * Returns whether all existing attributes of an LFN are present in an entry with the same
+     * values.
+     *
+     * @param existing the existing attributes for the LFN. Can be null.
+     * @param tuple the replica catalog entry to match against
+     * @return boolean
+     */
+    private boolean attributesMatch(Map<String, Object> existing, ReplicaCatalogEntry tuple) {
+        if (existing == null) {
+            return true;
+        }
+        for (Map.Entry<String, Object> entry : existing.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            Object other = tuple.getAttribute(key);
+            if (key != null
+                    && (!tuple.hasAttribute(key)
+                            || (value != null
+                                    && !value.equals(other)
+                                    && !(other == null && value.equals("NULL"))))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Deletes multiple mappings into the replica catalog. The input is a map indexed by the LFN.
      * The value for each LFN key is a collection of replica catalog entries. On setting
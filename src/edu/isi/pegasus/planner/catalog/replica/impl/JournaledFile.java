@@ -0,0 +1,556 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A file based replica catalog that can be safely updated by multiple concurrent clients, such as
+ * the registration jobs of a workflow.
+ *
+ * <p>The catalog consists of a base file in the same format as the {@link SimpleFile} catalog, and
+ * a journal file alongside it with the suffix .journal. The changes made by a client are not
+ * written to the base file on close. Instead they are appended as insert and delete records to the
+ * journal, while holding an exclusive lock on the journal. On connect, the base file is read and
+ * the journal is replayed on top of it while holding a shared lock. This makes the cost of
+ * registering a few mappings proportional to the number of mappings registered rather than the size
+ * of the catalog.
+ *
+ * <p>Once the journal grows larger than the base file, the client that appended last compacts the
+ * journal into the base file, while still holding the exclusive lock. The minimum journal size at
+ * which compaction happens can be set by the journal.compact.size property in bytes.
+ *
+ * <p>To use this catalog, set pegasus.catalog.replica (or pegasus.catalog.replica.output for
+ * registration) to JournaledFile, and specify the path to the base file with the file property.
+ *
+ * @author Karan Vahi
+ */
+public class JournaledFile extends SimpleFile {
+
+    /** The suffix for the journal file. */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    /** The key for the minimum size of the journal in bytes at which it is compacted. */
+    public static final String COMPACT_SIZE_KEY = "journal.compact.size";
+
+    /** The default minimum size of the journal at which it is compacted. */
+    public static final long DEFAULT_COMPACT_SIZE = 1024 * 1024;
+
+    /** The op for an insert record. */
+    private static final String INSERT_OP = "insert";
+
+    /** The op for a delete record that matches a PFN and its attributes. */
+    private static final String DELETE_OP = "delete";
+
+    /** The op for a delete record that matches an attribute value. */
+    private static final String DELETE_BY_ATTRIBUTE_OP = "delete-by-attribute";
+
+    /** The op for a record that removes all mappings of a LFN. */
+    private static final String REMOVE_OP = "remove";
+
+    /** The op for a record that removes all mappings with an attribute value. */
+    private static final String REMOVE_BY_ATTRIBUTE_OP = "remove-by-attribute";
+
+    /** The op for a record that removes everything. */
+    private static final String CLEAR_OP = "clear";
+
+    /** The journal file. */
+    private File mJournal;
+
+    /** The records for the changes made since connect, that are yet to be appended. */
+    private List<Record> mPending;
+
+    /** The minimum size of the journal at which it is compacted. */
+    private long mCompactSize;
+
+    /** Whether the base file is being read, in which case the inserts are not journaled. */
+    private boolean mLoading;
+
+    /** The gson instance to serialize the records. */
+    private final Gson mGson;
+
+    /** The default constructor. */
+    public JournaledFile() {
+        super();
+        mCompactSize = DEFAULT_COMPACT_SIZE;
+        mLoading = false;
+        mGson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+    }
+
+    /**
+     * Establishes a connection to the catalog from the properties. In addition to the properties of
+     * the {@link SimpleFile} catalog, the property journal.compact.size can be set.
+     *
+     * @param props is the property table with sufficient settings to connect to the catalog
+     * @return true if connected, false if failed to connect.
+     */
+    @Override
+    public boolean connect(Properties props) {
+        String size = props.getProperty(JournaledFile.COMPACT_SIZE_KEY);
+        if (size != null) {
+            try {
+                mCompactSize = Long.parseLong(size.trim());
+            } catch (NumberFormatException nfe) {
+                throw new RuntimeException(
+                        "Invalid value for property " + JournaledFile.COMPACT_SIZE_KEY + " " + size,
+                        nfe);
+            }
+        }
+        return super.connect(props);
+    }
+
+    /**
+     * Reads the base file into memory and replays the journal on top of it, while holding a shared
+     * lock on the journal.
+     *
+     * @param filename is the name of the base file to read.
+     * @return true, if the in-memory data structures appear sound.
+     */
+    @Override
+    public boolean connect(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        mJournal = new File(filename + JournaledFile.JOURNAL_SUFFIX);
+        mPending = new LinkedList<Record>();
+
+        if (!mJournal.exists()) {
+            // nothing to replay
+            return this.load(filename);
+        }
+
+        synchronized (JournaledFile.class) {
+            try (RandomAccessFile raf = new RandomAccessFile(mJournal, "r")) {
+                // the lock is released when the journal is closed
+                raf.getChannel().lock(0L, Long.MAX_VALUE, true);
+                boolean result = this.load(filename);
+                this.replay();
+                return result;
+            } catch (IOException ioe) {
+                m_lfn = null;
+                m_filename = null;
+                throw new RuntimeException("Unable to read the journal " + mJournal, ioe);
+            }
+        }
+    }
+
+    /**
+     * Appends the changes made since connect to the journal, and compacts the journal if it has
+     * grown larger than the base file. The base file is never rewritten otherwise.
+     */
+    @Override
+    public void close() {
+        // sanity check
+        if (m_lfn == null) return;
+
+        try {
+            if (!m_readonly && !mPending.isEmpty()) {
+                this.append();
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("Unable to append to the journal " + mJournal, ioe);
+        } finally {
+            m_lfn.clear();
+            m_lfn = null;
+            m_filename = null;
+            mPending = null;
+        }
+    }
+
+    /**
+     * Inserts a new mapping into the replica catalog, and records it for the journal.
+     *
+     * @param lfn is the logical filename under which to book the entry.
+     * @param tuple is the physical filename and associated PFN attributes.
+     * @return number of insertions, should always be 1.
+     */
+    @Override
+    public int insert(String lfn, ReplicaCatalogEntry tuple) {
+        int result = super.insert(lfn, tuple);
+        if (!mLoading) {
+            Record r = new Record(INSERT_OP, lfn);
+            r.setEntry(tuple);
+            mPending.add(r);
+        }
+        return result;
+    }
+
+    /**
+     * Deletes a specific mapping from the replica catalog, and records it for the journal.
+     *
+     * @param lfn is the logical filename in the tuple.
+     * @param pfn is the physical filename in the tuple.
+     * @return the number of removed entries.
+     */
+    @Override
+    public int delete(String lfn, String pfn) {
+        if (lfn == null || pfn == null) return 0;
+        // a delete with no attributes to match is the same
+        return this.delete(lfn, new ReplicaCatalogEntry(pfn));
+    }
+
+    /**
+     * Deletes a very specific mapping from the replica catalog, and records it for the journal.
+     *
+     * @param lfn is the logical filename in the tuple.
+     * @param tuple is a description of the PFN and its attributes.
+     * @return the number of removed entries.
+     */
+    @Override
+    public int delete(String lfn, ReplicaCatalogEntry tuple) {
+        if (lfn == null || tuple == null) return 0;
+        int result = super.delete(lfn, tuple);
+        // the mapping may have been inserted by another client since connect,
+        // so a delete is always recorded
+        Record r = new Record(DELETE_OP, lfn);
+        r.setEntry(tuple);
+        mPending.add(r);
+        return result;
+    }
+
+    /**
+     * Deletes all PFN entries for a given LFN where the attribute matches, and records it for the
+     * journal.
+     *
+     * @param lfn is the logical filename to look for.
+     * @param name is the PFN attribute name to look for.
+     * @param value is an exact match of the attribute value to match.
+     * @return the number of removed entries.
+     */
+    @Override
+    public int delete(String lfn, String name, Object value) {
+        if (lfn == null || name == null) return 0;
+        int result = super.delete(lfn, name, value);
+        Record r = new Record(DELETE_BY_ATTRIBUTE_OP, lfn);
+        r.setAttribute(name, value);
+        mPending.add(r);
+        return result;
+    }
+
+    /**
+     * Removes all mappings for an LFN, and records it for the journal.
+     *
+     * @param lfn is the logical filename to remove all mappings for.
+     * @return the number of removed entries.
+     */
+    @Override
+    public int remove(String lfn) {
+        int result = super.remove(lfn);
+        mPending.add(new Record(REMOVE_OP, lfn));
+        return result;
+    }
+
+    /**
+     * Removes all entries where the attribute matches, and records it for the journal.
+     *
+     * @param name is the PFN attribute key to look for.
+     * @param value is an exact match of the attribute value to match.
+     * @return the number of removed entries.
+     */
+    @Override
+    public int removeByAttribute(String name, Object value) {
+        int result = super.removeByAttribute(name, value);
+        Record r = new Record(REMOVE_BY_ATTRIBUTE_OP, null);
+        r.setAttribute(name, value);
+        mPending.add(r);
+        return result;
+    }
+
+    /**
+     * Removes everything, and records it for the journal.
+     *
+     * @return the number of removed entries.
+     */
+    @Override
+    public int clear() {
+        int result = super.clear();
+        mPending.add(new Record(CLEAR_OP, null));
+        return result;
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the journal
+     */
+    public File getJournal() {
+        return mJournal;
+    }
+
+    /**
+     * Reads the base file into memory, without journaling the inserts.
+     *
+     * @param filename the base file
+     * @return true, if the in-memory data structures appear sound.
+     */
+    private boolean load(String filename) {
+        mLoading = true;
+        try {
+            return super.connect(filename);
+        } finally {
+            mLoading = false;
+        }
+    }
+
+    /**
+     * Replays the records in the journal on the in-memory representation. A record that cannot be
+     * parsed, such as one partially written by a client that died, is ignored.
+     *
+     * @throws IOException in case of error while reading the journal
+     */
+    private void replay() throws IOException {
+        try (BufferedReader reader =
+                new BufferedReader(
+                        new InputStreamReader(
+                                new FileInputStream(mJournal), StandardCharsets.UTF_8))) {
+            String line;
+            int lineno = 0;
+            while ((line = reader.readLine()) != null) {
+                lineno++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Record r;
+                try {
+                    r = mGson.fromJson(line, Record.class);
+                } catch (JsonParseException jpe) {
+                    r = null;
+                }
+                if (r == null || r.mOp == null) {
+                    // FIXME: log it somewhere
+                    System.err.println(
+                            "While replaying line "
+                                    + lineno
+                                    + " of journal "
+                                    + mJournal
+                                    + ": invalid record, ignoring line");
+                    continue;
+                }
+                this.apply(r);
+            }
+        }
+    }
+
+    /**
+     * Applies a record to the in-memory representation, without journaling it again.
+     *
+     * @param r the record
+     */
+    private void apply(Record r) {
+        switch (r.mOp) {
+            case INSERT_OP:
+                super.insert(r.mLFN, r.getEntry());
+                break;
+
+            case DELETE_OP:
+                super.delete(r.mLFN, r.getEntry());
+                break;
+
+            case DELETE_BY_ATTRIBUTE_OP:
+                super.delete(r.mLFN, r.mName, r.mValue);
+                break;
+
+            case REMOVE_OP:
+                super.remove(r.mLFN);
+                break;
+
+            case REMOVE_BY_ATTRIBUTE_OP:
+                super.removeByAttribute(r.mName, r.mValue);
+                break;
+
+            case CLEAR_OP:
+                super.clear();
+                break;
+
+            default:
+                System.err.println(
+                        "Ignoring record with unknown op " + r.mOp + " in journal " + mJournal);
+        }
+    }
+
+    /**
+     * Appends the pending records to the journal while holding an exclusive lock on it, and
+     * compacts the journal if required.
+     *
+     * @throws IOException in case of error while writing
+     */
+    private void append() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Record r : mPending) {
+            sb.append(mGson.toJson(r)).append('\n');
+        }
+        byte[] records = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        synchronized (JournaledFile.class) {
+            try (RandomAccessFile raf = new RandomAccessFile(mJournal, "rw")) {
+                // the lock is released when the journal is closed
+                raf.getChannel().lock(0L, Long.MAX_VALUE, false);
+                long length = raf.length();
+                if (length > 0) {
+                    // terminate any record partially written by a client that died
+                    raf.seek(length - 1);
+                    if (raf.read() != '\n') {
+                        raf.write('\n');
+                    }
+                }
+                raf.seek(raf.length());
+                raf.write(records);
+                raf.getChannel().force(false);
+
+                File base = new File(m_filename);
+                if (raf.length() >= Math.max(mCompactSize, base.length())) {
+                    this.compact();
+                    raf.setLength(0);
+                    raf.getChannel().force(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compacts the journal into the base file. The base file is read afresh and the journal is
+     * replayed on top of it, as other clients may have appended to the journal since connect. The
+     * result is written to a temporary file that is then moved over the base file. Has to be called
+     * with the exclusive lock on the journal held.
+     *
+     * @throws IOException in case of error while writing
+     */
+    private void compact() throws IOException {
+        String filename = m_filename;
+        this.load(filename);
+        this.replay();
+
+        File base = new File(filename);
+        File dir = base.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(base.getName() + ".", ".tmp", dir);
+        try {
+            try (Writer out =
+                    new BufferedWriter(
+                            new OutputStreamWriter(
+                                    new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+                this.write(out);
+            }
+            Files.move(
+                    temp.toPath(),
+                    base.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** A single insert or delete record in the journal. */
+    private static class Record {
+
+        @Expose
+        @SerializedName("op")
+        private String mOp;
+
+        @Expose
+        @SerializedName("lfn")
+        private String mLFN;
+
+        @Expose
+        @SerializedName("pfn")
+        private String mPFN;
+
+        @Expose
+        @SerializedName("attributes")
+        private Map<String, String> mAttributes;
+
+        @Expose
+        @SerializedName("name")
+        private String mName;
+
+        @Expose
+        @SerializedName("value")
+        private String mValue;
+
+        /** The default constructor used by gson. */
+        private Record() {}
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param op the op
+         * @param lfn the lfn, can be null
+         */
+        public Record(String op, String lfn) {
+            mOp = op;
+            mLFN = lfn;
+        }
+
+        /**
+         * Sets the PFN and the attributes from an entry.
+         *
+         * @param rce the replica catalog entry
+         */
+        public void setEntry(ReplicaCatalogEntry rce) {
+            mPFN = rce.getPFN();
+            mAttributes = new LinkedHashMap<String, String>();
+            for (Iterator<?> it = rce.getAttributeIterator(); it.hasNext(); ) {
+                String key = (String) it.next();
+                Object value = rce.getAttribute(key);
+                mAttributes.put(key, value == null ? null : value.toString());
+            }
+        }
+
+        /**
+         * Returns the entry with the PFN and the attributes of the record.
+         *
+         * @return the replica catalog entry
+         */
+        public ReplicaCatalogEntry getEntry() {
+            return mAttributes == null
+                    ? new ReplicaCatalogEntry(mPFN)
+                    : new ReplicaCatalogEntry(mPFN, new LinkedHashMap<String, String>(mAttributes));
+        }
+
+        /**
+         * Sets the attribute to match.
+         *
+         * @param name the attribute name
+         * @param value the attribute value, can be null
+         */
+        public void setAttribute(String name, Object value) {
+            mName = name;
+            mValue = value == null ? null : value.toString();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An index over the regular expressions of the Regex replica catalog, that narrows down the
+ * expressions a LFN needs to be matched against. For each expression, the literal prefix and suffix
+ * that every matching LFN has to start and end with are determined. The expressions are then kept
+ * in a trie on their prefix, or if they have none, in a trie on their reversed suffix. Expressions
+ * with neither are candidates for every LFN.
+ *
+ * <p>The candidates for a LFN are returned in the order the expressions were added, so that
+ * matching the LFN against the candidates in turn gives the same first match as matching it against
+ * all the expressions. The analysis of an expression is conservative. Any construct it does not
+ * understand results in the expression having no literal prefix or suffix.
+ *
+ * @author Karan Vahi
+ */
+public class LFNPatternIndex {
+
+    /** Designates an atom in an expression that is not a literal character. */
+    private static final int NON_LITERAL = -1;
+
+    /** The escaped characters that match a single, non literal character. */
+    private static final String CHARACTER_CLASS_ESCAPES = "dDwWsSbB";
+
+    /** Orders the indexed expressions by the order in which they were added. */
+    private static final Comparator<Entry> ORDINAL_COMPARATOR =
+            new Comparator<Entry>() {
+                public int compare(Entry a, Entry b) {
+                    return a.mOrdinal - b.mOrdinal;
+                }
+            };
+
+    /** The trie on the literal prefixes. */
+    private Node mPrefixes;
+
+    /** The trie on the reversed literal suffixes, of expressions without a literal prefix. */
+    private Node mSuffixes;
+
+    /** The expressions without a literal prefix or suffix. */
+    private List<Entry> mUnindexed;
+
+    /** The number of expressions added. */
+    private int mSize;
+
+    /** The default constructor. */
+    public LFNPatternIndex() {
+        this.clear();
+    }
+
+    /**
+     * Adds an expression to the index. Adding an expression that has already been added is not
+     * supported.
+     *
+     * @param key the key to return for the expression
+     * @param pattern the compiled expression
+     */
+    public void add(String key, Pattern pattern) {
+        String[] literals = literals(pattern);
+        Entry entry = new Entry(key, mSize++, literals[1]);
+        if (literals[0].length() > 0) {
+            mPrefixes.find(literals[0], false).add(entry);
+        } else if (literals[1].length() > 0) {
+            mSuffixes.find(literals[1], true).add(entry);
+        } else {
+            mUnindexed.add(entry);
+        }
+    }
+
+    /** Removes all the expressions. */
+    public void clear() {
+        mPrefixes = new Node();
+        mSuffixes = new Node();
+        mUnindexed = new ArrayList<Entry>();
+        mSize = 0;
+    }
+
+    /**
+     * Returns the number of expressions in the index.
+     *
+     * @return the number of expressions
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the keys of the expressions that the LFN may match, in the order the expressions were
+     * added. The LFN does not match any expression not returned.
+     *
+     * @param lfn the lfn
+     * @return the keys of the candidate expressions
+     */
+    public List<String> candidates(String lfn) {
+        List<Entry> entries = new ArrayList<Entry>();
+        // expressions with a prefix, that also need to have the suffix
+        Node node = mPrefixes;
+        for (int i = 0; i < lfn.length() && node != null; i++) {
+            node = node.mChildren == null ? null : node.mChildren.get(lfn.charAt(i));
+            if (node != null && node.mEntries != null) {
+                for (Entry entry : node.mEntries) {
+                    if (lfn.endsWith(entry.mSuffix)) {
+                        entries.add(entry);
+                    }
+                }
+            }
+        }
+        // expressions with only a suffix
+        node = mSuffixes;
+        for (int i = lfn.length() - 1; i >= 0 && node != null; i--) {
+            node = node.mChildren == null ? null : node.mChildren.get(lfn.charAt(i));
+            if (node != null && node.mEntries != null) {
+                entries.addAll(node.mEntries);
+            }
+        }
+        entries.addAll(mUnindexed);
+
+        if (entries.size() > 1) {
+            Collections.sort(entries, ORDINAL_COMPARATOR);
+        }
+        List<String> result = new ArrayList<String>(entries.size());
+        for (Entry entry : entries) {
+            result.add(entry.mKey);
+        }
+        return result;
+    }
+
+    /**
+     * Determines the literal prefix and suffix of an expression, that every string matching the
+     * whole expression starts and ends with.
+     *
+     * @param pattern the compiled expression
+     * @return an array with the prefix and the suffix, either of which may be empty
+     */
+    public static String[] literals(Pattern pattern) {
+        String[] none = new String[] {"", ""};
+        if (pattern.flags() != 0) {
+            return none;
+        }
+        List<Integer> atoms = atoms(pattern.pattern());
+        if (atoms == null) {
+            return none;
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < atoms.size() && atoms.get(i) != NON_LITERAL; i++) {
+            prefix.appendCodePoint(atoms.get(i));
+        }
+        int start = atoms.size();
+        while (start > 0 && atoms.get(start - 1) != NON_LITERAL) {
+            start--;
+        }
+        StringBuilder suffix = new StringBuilder();
+        for (int i = start; i < atoms.size(); i++) {
+            suffix.appendCodePoint(atoms.get(i));
+        }
+        return new String[] {prefix.toString(), suffix.toString()};
+    }
+
+    /**
+     * Splits an expression into its top level atoms, each of which is either a literal code point
+     * or a non literal.
+     *
+     * @param regex the expression
+     * @return the atoms, or null if the expression has a construct that is not understood or an
+     *     alternation at the top level
+     */
+    private static List<Integer> atoms(String regex) {
+        List<Integer> atoms = new ArrayList<Integer>();
+        int n = regex.length();
+        int i = 0;
+        while (i < n) {
+            int c = regex.codePointAt(i);
+            int next = i + Character.charCount(c);
+            switch (c) {
+                case '\\':
+                    if (next >= n) {
+                        return null;
+                    }
+                    int d = regex.codePointAt(next);
+                    if (Character.isLetterOrDigit(d)) {
+                        // escapes with arguments, back references and quoting are not handled
+                        if (CHARACTER_CLASS_ESCAPES.indexOf(d) == -1) {
+                            return null;
+                        }
+                        atoms.add(NON_LITERAL);
+                    } else {
+                        atoms.add(d);
+                    }
+                    next += Character.charCount(d);
+                    break;
+
+                case '[':
+                    next = skipClass(regex, i);
+                    if (next == -1) {
+                        return null;
+                    }
+                    atoms.add(NON_LITERAL);
+                    break;
+
+                case '(':
+                    if (next + 1 < n
+                            && regex.charAt(next) == '?'
+                            && (Character.isLetter(regex.charAt(next + 1))
+                                    || regex.charAt(next + 1) == '-')) {
+                        // embedded flags change how the literals match
+                        return null;
+                    }
+                    next = skipGroup(regex, i);
+                    if (next == -1) {
+                        return null;
+                    }
+                    atoms.add(NON_LITERAL);
+                    break;
+
+                case '^':
+                    // the anchors are no-ops at the ends, as the whole lfn has to match
+                    if (i != 0) {
+                        atoms.add(NON_LITERAL);
+                    }
+                    break;
+
+                case '$':
+                    if (next != n) {
+                        atoms.add(NON_LITERAL);
+                    }
+                    break;
+
+                case '.':
+                    atoms.add(NON_LITERAL);
+                    break;
+
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    // a quantified atom may repeat or be absent
+                    if (atoms.isEmpty()) {
+                        return null;
+                    }
+                    atoms.set(atoms.size() - 1, NON_LITERAL);
+                    if (c == '{') {
+                        int end = regex.indexOf('}', next);
+                        if (end == -1) {
+                            return null;
+                        }
+                        next = end + 1;
+                    }
+                    if (next < n && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+                        next++;
+                    }
+                    break;
+
+                case '|':
+                case ')':
+                case ']':
+                case '}':
+                    return null;
+
+                default:
+                    atoms.add(c);
+            }
+            i = next;
+        }
+        return atoms;
+    }
+
+    /**
+     * Skips a character class.
+     *
+     * @param regex the expression
+     * @param start the index of the opening bracket
+     * @return the index after the closing bracket, or -1 if the class is not understood
+     */
+    private static int skipClass(String regex, int start) {
+        int depth = 0;
+        int n = regex.length();
+        int i = start;
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < n && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+            } else if (c == '[') {
+                depth++;
+                i++;
+                if (i < n && regex.charAt(i) == '^') {
+                    i++;
+                }
+                if (i < n && regex.charAt(i) == ']') {
+                    // a leading bracket
+                    return -1;
+                }
+            } else if (c == ']') {
+                depth--;
+                i++;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips a group.
+     *
+     * @param regex the expression
+     * @param start the index of the opening parenthesis
+     * @return the index after the closing parenthesis, or -1 if the group is not understood
+     */
+    private static int skipGroup(String regex, int start) {
+        int depth = 0;
+        int n = regex.length();
+        int i = start;
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < n && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+                if (i == -1) {
+                    return -1;
+                }
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /** An expression in the index. */
+    private static class Entry {
+
+        /** The key of the expression. */
+        private final String mKey;
+
+        /** The order in which the expression was added. */
+        private final int mOrdinal;
+
+        /** The literal suffix of the expression. */
+        private final String mSuffix;
+
+        private Entry(String key, int ordinal, String suffix) {
+            mKey = key;
+            mOrdinal = ordinal;
+            mSuffix = suffix;
+        }
+    }
+
+    /** A node in a trie. */
+    private static class Node {
+
+        /** The children by character, created lazily. */
+        private Map<Character, Node> mChildren;
+
+        /** The expressions whose literal ends at this node, created lazily. */
+        private List<Entry> mEntries;
+
+        /**
+         * Returns the node for a string, creating the nodes along the way.
+         *
+         * @param s the string
+         * @param reverse whether to walk the string from the end
+         * @return the node
+         */
+        private Node find(String s, boolean reverse) {
+            Node node = this;
+            for (int i = 0; i < s.length(); i++) {
+                char c = reverse ? s.charAt(s.length() - 1 - i) : s.charAt(i);
+                if (node.mChildren == null) {
+                    node.mChildren = new HashMap<Character, Node>();
+                }
+                Node child = node.mChildren.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.mChildren.put(c, child);
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        /**
+         * Adds an expression to the node.
+         *
+         * @param entry the expression
+         */
+        private void add(Entry entry) {
+            if (mEntries == null) {
+                mEntries = new ArrayList<Entry>();
+            }
+            mEntries.add(entry);
+        }
+    }
+}
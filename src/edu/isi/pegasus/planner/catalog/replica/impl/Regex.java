@@ -96,6 +96,9 @@ public class Regex implements ReplicaCatalog {
 
     protected Map<String, Pattern> m_lfn_pattern = null;
 
+    /** The index to narrow down the regular expressions a LFN is matched against. */
+    protected LFNPatternIndex m_lfn_index = null;
+
     /** A boolean indicating whether the catalog is read only or not. */
     boolean m_readonly;
 
@@ -116,6 +119,7 @@ public class Regex implements ReplicaCatalog {
         m_lfn = null;
         m_lfn_regex = null;
         m_lfn_pattern = null;
+        m_lfn_index = null;
         m_filename = null;
         m_readonly = false;
         mVariableExpander = new VariableExpander();
@@ -331,6 +335,7 @@ public class Regex implements ReplicaCatalog {
         m_lfn = new LinkedHashMap<String, Collection<ReplicaCatalogEntry>>();
         m_lfn_regex = new LinkedHashMap<String, Collection<ReplicaCatalogEntry>>();
         m_lfn_pattern = new LinkedHashMap<String, Pattern>();
+        m_lfn_index = new LFNPatternIndex();
         try {
             File f = new File(filename);
             if (f.exists()) {
@@ -358,6 +363,7 @@ public class Regex implements ReplicaCatalog {
             m_lfn = null;
             m_lfn_regex = null;
             m_lfn_pattern = null;
+            m_lfn_index = null;
             m_filename = null;
             throw new RuntimeException(ioe); // re-throw
         }
@@ -437,10 +443,12 @@ public class Regex implements ReplicaCatalog {
             if (m_lfn_regex != null) {
                 m_lfn_regex.clear();
                 m_lfn_pattern.clear();
+                m_lfn_index.clear();
             }
 
             m_lfn_regex = null;
             m_lfn_pattern = null;
+            m_lfn_index = null;
             m_filename = null;
             return;
         }
@@ -466,9 +474,11 @@ public class Regex implements ReplicaCatalog {
             if (m_lfn_regex != null) {
                 m_lfn_regex.clear();
                 m_lfn_pattern.clear();
+                m_lfn_index.clear();
             }
             m_lfn_regex = null;
             m_lfn_pattern = null;
+            m_lfn_index = null;
             m_filename = null;
         }
     }
@@ -549,7 +559,7 @@ public class Regex implements ReplicaCatalog {
         Matcher m = null;
         String pool = null;
         ReplicaCatalogEntry rce = null;
-        for (String l : m_lfn_regex.keySet()) {
+        for (String l : m_lfn_index.candidates(lfn)) {
             p = m_lfn_pattern.get(l);
             m = p.matcher(lfn);
             if (m.matches()) {
@@ -596,7 +606,7 @@ public class Regex implements ReplicaCatalog {
         ReplicaCatalogEntry rce = null;
         Pattern p = null;
         Matcher m = null;
-        for (String l : m_lfn_regex.keySet()) {
+        for (String l : m_lfn_index.candidates(lfn)) {
             p = m_lfn_pattern.get(l);
             m = p.matcher(lfn);
             if (m.matches()) {
@@ -733,7 +743,7 @@ public class Regex implements ReplicaCatalog {
                 }
             }
             // Lookup regex LFN's
-            for (String l : m_lfn_regex.keySet()) {
+            for (String l : m_lfn_index.candidates(lfn)) {
                 p = m_lfn_pattern.get(l); // Get one pattern
                 m = p.matcher(lfn); // See if f.a matches pattern
                 if (m.matches()) // Pattern matches?
@@ -942,7 +952,9 @@ public class Regex implements ReplicaCatalog {
 
             if (isRegex) {
                 m_lfn_regex.put(lfn, c);
-                m_lfn_pattern.put(lfn, Pattern.compile(lfn));
+                Pattern p = Pattern.compile(lfn);
+                m_lfn_pattern.put(lfn, p);
+                m_lfn_index.add(lfn, p);
             } else {
                 m_lfn.put(lfn, c);
             }
@@ -1174,6 +1186,7 @@ public class Regex implements ReplicaCatalog {
         m_lfn.clear();
         m_lfn_regex.clear();
         m_lfn_pattern.clear();
+        m_lfn_index.clear();
         return result;
     }
 
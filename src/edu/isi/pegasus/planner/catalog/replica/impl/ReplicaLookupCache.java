@@ -0,0 +1,396 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A persistent cache of the lookups against a replica catalog, that is shared by the planner
+ * invocations that use the same base directory, such as the plans of the sub workflows of a
+ * hierarchical workflow. The results for each LFN looked up, including the LFNs the catalog has no
+ * mappings for, are stored in a file per catalog in the cache directory.
+ *
+ * <p>A catalog is identified by its connection properties. The cached results are discarded when
+ * the change token of the catalog, such as the modification time and length of a file based
+ * catalog, differs from the one they were cached with. Results older than the time to live are
+ * discarded irrespective of the change token. A catalog without a change token, such as a database
+ * catalog, may have mappings registered at any time, so the LFNs it has no mappings for are not
+ * cached for it. The cache is bounded in the number of LFNs, and the least recently looked up LFNs
+ * are evicted first.
+ *
+ * <p>The file for a catalog is replaced atomically on save, so that concurrent planner invocations
+ * always read a complete cache. An invocation that saves later overwrites the results added by
+ * another one in the meantime, that is then looked up from the catalog again.
+ *
+ * @author Karan Vahi
+ */
+public class ReplicaLookupCache {
+
+    /** The name of the directory in the planner base directory, where the caches are kept. */
+    public static final String CACHE_DIRECTORY_NAME = "rc-lookup-cache";
+
+    /** The suffix of the cache file for a catalog. */
+    public static final String CACHE_FILE_SUFFIX = ".cache";
+
+    /** The magic number at the start of the cache file. */
+    static final int MAGIC = 0x50524c43;
+
+    /** The version of the cache file format. */
+    static final int VERSION = 1;
+
+    /** The directory the cache file is kept in. */
+    private File mDirectory;
+
+    /** The digest of the identity of the catalog. */
+    private String mKey;
+
+    /** The change token of the catalog. */
+    private String mToken;
+
+    /** The time to live of a cached result in milliseconds. */
+    private long mTTL;
+
+    /** The maximum number of LFNs cached. */
+    private int mMaxEntries;
+
+    /** The cached results by LFN, in the order they were last looked up. */
+    private LinkedHashMap<String, Result> mResults;
+
+    /** The file source of the catalog, as recorded when the catalog was last connected to. */
+    private String mFileSource;
+
+    /** Whether the LFNs the catalog has no mappings for are cached. */
+    private boolean mCacheMisses;
+
+    /** Whether the cache was modified since it was loaded. */
+    private boolean mDirty;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param directory the directory to keep the cache file in
+     * @param identity the identity of the catalog
+     * @param token the change token of the catalog, an empty string if the catalog has none
+     * @param ttl the time to live of a cached result in milliseconds
+     * @param maxEntries the maximum number of LFNs to cache
+     */
+    public ReplicaLookupCache(
+            File directory, String identity, String token, long ttl, int maxEntries) {
+        mDirectory = directory;
+        mKey = digest(identity);
+        mToken = (token == null) ? "" : token;
+        mCacheMisses = !mToken.isEmpty();
+        mTTL = ttl;
+        mMaxEntries = Math.max(0, maxEntries);
+        mResults = new LinkedHashMap<String, Result>(16, 0.75f, true);
+        mFileSource = "";
+        mDirty = false;
+    }
+
+    /**
+     * Returns a change token for a file, that changes whenever the file is modified. The token also
+     * covers the journal a {@link JournaledFile} catalog appends its changes to, until they are
+     * compacted into the file.
+     *
+     * @param f the file
+     * @return the token, or null if the file does not exist
+     */
+    public static String getChangeToken(File f) {
+        if (f == null || !f.isFile()) {
+            return null;
+        }
+        StringBuilder token = new StringBuilder();
+        token.append(f.getAbsolutePath()).append(':').append(f.lastModified());
+        token.append(':').append(f.length());
+        File journal = new File(f.getPath() + JournaledFile.JOURNAL_SUFFIX);
+        if (journal.isFile()) {
+            token.append(':').append(journal.lastModified()).append(':').append(journal.length());
+        }
+        return token.toString();
+    }
+
+    /**
+     * Returns the file the cache is stored in.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return new File(mDirectory, mKey + CACHE_FILE_SUFFIX);
+    }
+
+    /**
+     * Loads the cache from its file. A missing, unreadable or stale file results in an empty cache.
+     *
+     * @return the number of LFNs loaded
+     */
+    public int load() {
+        mResults.clear();
+        mFileSource = "";
+        mDirty = false;
+
+        File f = this.getFile();
+        if (!f.isFile()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return 0;
+            }
+            if (!mKey.equals(IndexedFile.readString(in))
+                    || !mToken.equals(IndexedFile.readString(in))) {
+                // the catalog changed since the results were cached
+                mDirty = true;
+                return 0;
+            }
+            String fileSource = IndexedFile.readString(in);
+            int count = in.readInt();
+            // the results are written out from the least to the most recently looked up
+            for (int i = 0; i < count; i++) {
+                String lfn = IndexedFile.readString(in);
+                long created = in.readLong();
+                int size = in.readInt();
+                List<ReplicaCatalogEntry> rces = null;
+                if (size >= 0) {
+                    rces = new ArrayList<ReplicaCatalogEntry>(size);
+                    for (int j = 0; j < size; j++) {
+                        rces.add(IndexedFile.readEntry(in));
+                    }
+                }
+                if (now - created <= mTTL) {
+                    mResults.put(lfn, new Result(created, rces));
+                } else {
+                    mDirty = true;
+                }
+            }
+            mFileSource = fileSource;
+        } catch (IOException e) {
+            // a cache that cannot be read is treated as empty
+            mResults.clear();
+            mDirty = true;
+        }
+        return mResults.size();
+    }
+
+    /**
+     * Looks up the cached results for a set of LFNs.
+     *
+     * @param lfns the LFNs to look up
+     * @param misses the set to which the LFNs that are not cached are added
+     * @return the mappings for the cached LFNs, that the catalog had mappings for
+     */
+    public Map<String, Collection<ReplicaCatalogEntry>> lookup(
+            Set<String> lfns, Set<String> misses) {
+        Map<String, Collection<ReplicaCatalogEntry>> found =
+                new HashMap<String, Collection<ReplicaCatalogEntry>>();
+        long now = System.currentTimeMillis();
+        for (String lfn : lfns) {
+            Result result = mResults.get(lfn);
+            if (result == null || now - result.mCreated > mTTL) {
+                misses.add(lfn);
+                continue;
+            }
+            mDirty = true;
+            if (result.mEntries != null) {
+                // callers may modify the entries, so hand out copies
+                List<ReplicaCatalogEntry> rces =
+                        new ArrayList<ReplicaCatalogEntry>(result.mEntries.size());
+                for (ReplicaCatalogEntry rce : result.mEntries) {
+                    rces.add((ReplicaCatalogEntry) rce.clone());
+                }
+                found.put(lfn, rces);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds the results of looking up a set of LFNs in the catalog. An LFN the results have no
+     * mappings for is cached as such, unless the catalog has no change token.
+     *
+     * @param lfns the LFNs looked up
+     * @param results the mappings returned by the catalog
+     */
+    public void put(Set<String> lfns, Map<String, Collection<ReplicaCatalogEntry>> results) {
+        long now = System.currentTimeMillis();
+        for (String lfn : lfns) {
+            Collection<ReplicaCatalogEntry> rces = results.get(lfn);
+            if ((rces == null || rces.isEmpty()) && !mCacheMisses) {
+                // the LFN may be registered before the next lookup
+                mResults.remove(lfn);
+                continue;
+            }
+            List<ReplicaCatalogEntry> copy = null;
+            if (rces != null) {
+                copy = new ArrayList<ReplicaCatalogEntry>(rces.size());
+                for (ReplicaCatalogEntry rce : rces) {
+                    copy.add((ReplicaCatalogEntry) rce.clone());
+                }
+            }
+            mResults.put(lfn, new Result(now, copy));
+        }
+        mDirty = true;
+    }
+
+    /**
+     * Returns the file source of the catalog, as recorded when the catalog was connected to.
+     *
+     * @return the file, or null if the catalog is not file based
+     */
+    public File getFileSource() {
+        return mFileSource.isEmpty() ? null : new File(mFileSource);
+    }
+
+    /**
+     * Records the file source of the catalog.
+     *
+     * @param f the file, or null if the catalog is not file based
+     */
+    public void setFileSource(File f) {
+        String source = (f == null) ? "" : f.getAbsolutePath();
+        if (!source.equals(mFileSource)) {
+            mFileSource = source;
+            mDirty = true;
+        }
+    }
+
+    /**
+     * Returns the number of LFNs cached.
+     *
+     * @return the number of LFNs
+     */
+    public int size() {
+        return mResults.size();
+    }
+
+    /**
+     * Saves the cache to its file if it was modified, evicting the least recently looked up LFNs in
+     * excess of the maximum.
+     *
+     * @throws IOException in case of error while writing
+     */
+    public void save() throws IOException {
+        if (!mDirty) {
+            return;
+        }
+        for (Iterator<String> it = mResults.keySet().iterator();
+                it.hasNext() && mResults.size() > mMaxEntries; ) {
+            it.next();
+            it.remove();
+        }
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs() && !mDirectory.isDirectory()) {
+            throw new IOException("Unable to create the cache directory " + mDirectory);
+        }
+        File temp = File.createTempFile(mKey, ".tmp", mDirectory);
+        try {
+            try (DataOutputStream out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                IndexedFile.writeString(out, mKey);
+                IndexedFile.writeString(out, mToken);
+                IndexedFile.writeString(out, mFileSource);
+                out.writeInt(mResults.size());
+                for (Map.Entry<String, Result> entry : mResults.entrySet()) {
+                    Result result = entry.getValue();
+                    IndexedFile.writeString(out, entry.getKey());
+                    out.writeLong(result.mCreated);
+                    if (result.mEntries == null) {
+                        out.writeInt(-1);
+                    } else {
+                        out.writeInt(result.mEntries.size());
+                        for (ReplicaCatalogEntry rce : result.mEntries) {
+                            IndexedFile.writeEntry(out, rce);
+                        }
+                    }
+                }
+            }
+            try {
+                Files.move(
+                        temp.toPath(),
+                        this.getFile().toPath(),
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(
+                        temp.toPath(),
+                        this.getFile().toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temp.delete();
+        }
+        mDirty = false;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of a string, so that credentials in the identity of a
+     * catalog are not written out.
+     *
+     * @param s the string
+     * @return the digest
+     */
+    private static String digest(String s) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest(s.getBytes(StandardCharsets.UTF_8))) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not supported", e);
+        }
+    }
+
+    /** The cached result for a LFN. */
+    private static class Result {
+
+        /** The time the result was cached. */
+        private final long mCreated;
+
+        /** The mappings, or null if the catalog had none for the LFN. */
+        private final List<ReplicaCatalogEntry> mEntries;
+
+        private Result(long created, List<ReplicaCatalogEntry> entries) {
+            mCreated = created;
+            mEntries = entries;
+        }
+    }
+}
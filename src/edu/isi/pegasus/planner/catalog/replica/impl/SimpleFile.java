@@ -428,9 +428,6 @@ public class SimpleFile implements ReplicaCatalog {
      * quote-escaped.
      */
     public void close() {
-        String newline = System.getProperty("line.separator", "\r\n");
-        Escape e = new Escape("\"\\", '\\');
-
         // sanity check
         if (m_lfn == null) return;
 
@@ -446,38 +443,7 @@ public class SimpleFile implements ReplicaCatalog {
 
             // open
             Writer out = new BufferedWriter(new FileWriter(m_filename));
-
-            // write header
-            out.write(
-                    "# file-based replica catalog: "
-                            + Currently.iso8601(false, true, true, new Date()));
-            out.write(newline);
-
-            // write data
-            for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
-                String lfn = (String) i.next();
-                Collection c = (Collection) m_lfn.get(lfn);
-                if (c != null) {
-                    for (Iterator j = c.iterator(); j.hasNext(); ) {
-                        ReplicaCatalogEntry rce = (ReplicaCatalogEntry) j.next();
-                        out.write(quote(e, lfn));
-                        out.write(' ');
-                        out.write(quote(e, rce.getPFN()));
-                        for (Iterator k = rce.getAttributeIterator(); k.hasNext(); ) {
-                            String key = (String) k.next();
-                            String value = (String) rce.getAttribute(key);
-                            out.write(' ');
-                            out.write(key);
-                            out.write("=\"");
-                            out.write(e.escape(value));
-                            out.write('"');
-                        }
-
-                        // finalize record/line
-                        out.write(newline);
-                    }
-                }
-            }
+            this.write(out);
 
             // close
             out.close();
@@ -491,6 +457,49 @@ public class SimpleFile implements ReplicaCatalog {
         }
     }
 
+    /**
+     * Writes out the in-memory representation in the file format, preceded by a header line.
+     *
+     * @param out the writer to write to
+     * @throws IOException in case of error while writing
+     */
+    protected void write(Writer out) throws IOException {
+        String newline = System.getProperty("line.separator", "\r\n");
+        Escape e = new Escape("\"\\", '\\');
+
+        // write header
+        out.write(
+                "# file-based replica catalog: "
+                        + Currently.iso8601(false, true, true, new Date()));
+        out.write(newline);
+
+        // write data
+        for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
+            String lfn = (String) i.next();
+            Collection c = (Collection) m_lfn.get(lfn);
+            if (c != null) {
+                for (Iterator j = c.iterator(); j.hasNext(); ) {
+                    ReplicaCatalogEntry rce = (ReplicaCatalogEntry) j.next();
+                    out.write(quote(e, lfn));
+                    out.write(' ');
+                    out.write(quote(e, rce.getPFN()));
+                    for (Iterator k = rce.getAttributeIterator(); k.hasNext(); ) {
+                        String key = (String) k.next();
+                        String value = (String) rce.getAttribute(key);
+                        out.write(' ');
+                        out.write(key);
+                        out.write("=\"");
+                        out.write(e.escape(value));
+                        out.write('"');
+                    }
+
+                    // finalize record/line
+                    out.write(newline);
+                }
+            }
+        }
+    }
+
     /**
      * Predicate to check, if the connection with the catalog's implementation is still active. This
      * helps determining, if it makes sense to call <code>close()</code>.
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.site;
+
+import edu.isi.pegasus.planner.catalog.SiteCatalog;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * An in memory cache of the entries loaded from file based site catalogs, that is shared by the
+ * planning runs in a long running planner process. The entries are keyed by the implementation of
+ * the catalog and the path, modification time and length of the catalog file, so that a catalog
+ * file that is modified is loaded again.
+ *
+ * <p>The entries are cloned on the way in and out of the cache, as the planner modifies the entries
+ * it loads. The cache is bounded in the number of catalog files, and the least recently used file
+ * is evicted first. The cache can be used from multiple threads.
+ *
+ * @author Karan Vahi
+ */
+public class SiteCatalogCache {
+
+    /** The default maximum number of catalog files cached. */
+    public static final int DEFAULT_MAX_CATALOGS = 16;
+
+    /** The maximum number of catalog files cached. */
+    private final int mMaxCatalogs;
+
+    /** The cached entries by key, in the order they were last used. */
+    private final LinkedHashMap<String, List<SiteCatalogEntry>> mEntries;
+
+    /** The default constructor. */
+    public SiteCatalogCache() {
+        this(DEFAULT_MAX_CATALOGS);
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param maxCatalogs the maximum number of catalog files to cache
+     */
+    public SiteCatalogCache(int maxCatalogs) {
+        mMaxCatalogs = Math.max(1, maxCatalogs);
+        mEntries = new LinkedHashMap<String, List<SiteCatalogEntry>>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the key for the entries of a catalog.
+     *
+     * @param catalog the connected catalog
+     * @return the key, or null if the catalog is not backed by a file
+     */
+    public static String getKey(SiteCatalog catalog) {
+        File f = catalog.getFileSource();
+        if (f == null || !f.isFile()) {
+            return null;
+        }
+        return catalog.getClass().getName()
+                + ":"
+                + f.getAbsolutePath()
+                + ":"
+                + f.lastModified()
+                + ":"
+                + f.length();
+    }
+
+    /**
+     * Returns clones of the entries cached for a key.
+     *
+     * @param key the key
+     * @return the entries, or null if none are cached
+     */
+    public List<SiteCatalogEntry> get(String key) {
+        List<SiteCatalogEntry> entries = null;
+        synchronized (mEntries) {
+            entries = mEntries.get(key);
+        }
+        return (entries == null) ? null : clone(entries);
+    }
+
+    /**
+     * Caches clones of the entries loaded for a key.
+     *
+     * @param key the key
+     * @param entries the entries loaded from the catalog
+     */
+    public void put(String key, Collection<SiteCatalogEntry> entries) {
+        List<SiteCatalogEntry> copy = clone(entries);
+        synchronized (mEntries) {
+            mEntries.put(key, copy);
+            for (Iterator<String> it = mEntries.keySet().iterator();
+                    it.hasNext() && mEntries.size() > mMaxCatalogs; ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of catalog files cached.
+     *
+     * @return the number of catalog files
+     */
+    public int size() {
+        synchronized (mEntries) {
+            return mEntries.size();
+        }
+    }
+
+    /**
+     * Clones a collection of entries.
+     *
+     * @param entries the entries
+     * @return the cloned entries
+     */
+    private static List<SiteCatalogEntry> clone(Collection<SiteCatalogEntry> entries) {
+        List<SiteCatalogEntry> result = new ArrayList<SiteCatalogEntry>(entries.size());
+        for (SiteCatalogEntry entry : entries) {
+            result.add((SiteCatalogEntry) entry.clone());
+        }
+        return result;
+    }
+}
@@ -26,12 +26,16 @@ import edu.isi.pegasus.planner.common.PegasusProperties;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is an interface for generating valid TC maps which will be used for executable staging. The
  * interface sort of access as an accessor for Pegasus to the transformation catalog. The map ends
  * up being built as and when the query for a particular lfn is made to it.
  *
+ * <p>The lookups through getTCList, getSiteList and isSiteValid can be made from multiple threads.
+ * The map for a transformation is built by one thread at a time.
+ *
  * @author Gaurang Mehta
  * @version $Revision$
  */
@@ -57,6 +61,9 @@ public abstract class Mapper {
     /** Handle to the logger. */
     protected LogManager mLogger;
 
+    /** The locks by fully qualified lfn, held while the map for a transformation is built. */
+    private final ConcurrentHashMap<String, Object> mLocks;
+
     /**
      * Loads the implementing class corresponding to the mode specified by the user at runtime in
      * the properties file.
@@ -79,8 +86,8 @@ public abstract class Mapper {
             argList[0] = bag;
             ss = (Mapper) dl.instantiate(argList);
         } catch (Exception e) {
-            System.err.println(dl.convertException(e));
-            System.exit(1);
+            // thrown instead of exiting, as the planner may run in a planner daemon
+            throw new RuntimeException(dl.convertException(e), e);
         }
 
         return ss;
@@ -97,6 +104,7 @@ public abstract class Mapper {
         mProps = bag.getPegasusProperties();
         mSiteStore = bag.getHandleToSiteStore();
         mTCMap = new TCMap();
+        mLocks = new ConcurrentHashMap<String, Object>();
     }
 
     /**
@@ -138,14 +146,22 @@ public abstract class Mapper {
      * @param siteid the compute site for which you want the List.
      * @return List Returns null if no entries are found.
      */
+    @SuppressWarnings("unchecked")
     public List getTCList(String namespace, String name, String version, String siteid) {
         List siteids = new ArrayList(1);
         List tcentries = null;
         String lfn = Separator.combine(namespace, name, version);
         siteids.add(siteid);
 
-        if (getSiteMap(namespace, name, version, siteids) != null) {
-            tcentries = mTCMap.getSiteTCEntries(lfn, siteid);
+        synchronized (this.getLock(lfn)) {
+            if (getSiteMap(namespace, name, version, siteids) != null) {
+                tcentries = mTCMap.getSiteTCEntries(lfn, siteid);
+                // hand out a copy, as the map is updated in place
+                tcentries =
+                        (tcentries == null)
+                                ? null
+                                : new ArrayList<TransformationCatalogEntry>(tcentries);
+            }
         }
         return tcentries;
     }
@@ -162,8 +178,10 @@ public abstract class Mapper {
     public List getSiteList(String namespace, String name, String version, List siteids) {
         List sites = null;
         String lfn = Separator.combine(namespace, name, version);
-        if (getSiteMap(namespace, name, version, siteids) != null) {
-            sites = mTCMap.getSiteList(lfn, siteids);
+        synchronized (this.getLock(lfn)) {
+            if (getSiteMap(namespace, name, version, siteids) != null) {
+                sites = mTCMap.getSiteList(lfn, siteids);
+            }
         }
         return sites;
     }
@@ -180,7 +198,20 @@ public abstract class Mapper {
     public boolean isSiteValid(String namespace, String name, String version, String siteid) {
         List siteids = new ArrayList(1);
         siteids.add(siteid);
-        Map m = getSiteMap(namespace, name, version, siteids);
+        Map<?, ?> m;
+        synchronized (this.getLock(Separator.combine(namespace, name, version))) {
+            m = getSiteMap(namespace, name, version, siteids);
+        }
         return (m == null || m.isEmpty()) ? false : true;
     }
+
+    /**
+     * Returns the lock to hold while the map for a transformation is built.
+     *
+     * @param lfn the fully qualified lfn of the transformation
+     * @return the lock
+     */
+    protected Object getLock(String lfn) {
+        return mLocks.computeIfAbsent(lfn, k -> new Object());
+    }
 }
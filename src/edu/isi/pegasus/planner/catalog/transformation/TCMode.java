@@ -39,8 +39,6 @@ public class TCMode {
     /** Default PACKAGE PATH for the TC implementing classes */
     public static final String PACKAGE_NAME = "org.griphyn.common.catalog.transformation.";
 
-    private static LogManager mLogger = LogManagerFactory.loadSingletonInstance();
-
     // add your constants here.
 
     /**
@@ -80,7 +78,10 @@ public class TCMode {
         String[] args = new String[0];
         tc = loadInstance(tcClass, args);
         if (tc == null) {
-            mLogger.log("Unable to load TC", LogManager.FATAL_MESSAGE_LEVEL);
+            // the singleton logger is looked up when needed, as it
+            // may be reset between planning runs in the same JVM
+            LogManagerFactory.loadSingletonInstance()
+                    .log("Unable to load TC", LogManager.FATAL_MESSAGE_LEVEL);
             System.exit(1);
         }
         return tc;
@@ -114,7 +115,8 @@ public class TCMode {
             // the method
 
         } catch (Exception e) {
-            mLogger.log(d.convertException(e), LogManager.FATAL_MESSAGE_LEVEL);
+            LogManagerFactory.loadSingletonInstance()
+                    .log(d.convertException(e), LogManager.FATAL_MESSAGE_LEVEL);
             System.exit(1);
         }
         return tc;
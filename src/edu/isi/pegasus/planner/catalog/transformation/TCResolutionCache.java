@@ -0,0 +1,285 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.transformation;
+
+import edu.isi.pegasus.common.util.Separator;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.common.PegRandom;
+import edu.isi.pegasus.planner.selector.TransformationSelector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache that sits in front of the transformation mapper, and memoizes the resolution of a
+ * transformation on a site. A resolution is keyed by the transformation, the site and the
+ * transformation selector used, and holds the entries returned by the mapper. For each entry, the
+ * profiles are extracted once per namespace, so that incorporating them into a job does not require
+ * going through the profiles of the entry again.
+ *
+ * <p>If the selector is deterministic, the entries it selects are determined once per resolution.
+ * Otherwise, such as for the Random selector, the selector is called for each job as before. Where
+ * more than one entry is selected, a random entry is picked for each job. The resolutions and the
+ * entries in them are shared between all the jobs that refer to the same transformation on the same
+ * site, and should not be modified. The cache can be used from multiple threads.
+ *
+ * @author Karan Vahi
+ */
+public class TCResolutionCache {
+
+    /** The separator between the components of the key of a resolution. */
+    private static final String KEY_SEPARATOR = "\t";
+
+    /** The handle to the transformation mapper. */
+    private final Mapper mTCMapper;
+
+    /** The resolutions indexed by transformation, site and selector. */
+    private final ConcurrentHashMap<String, Resolution> mResolutions;
+
+    /** The transformation selectors loaded, indexed by their mode. */
+    private final ConcurrentHashMap<String, TransformationSelector> mSelectors;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param mapper the transformation mapper to resolve the transformations against.
+     */
+    public TCResolutionCache(Mapper mapper) {
+        mTCMapper = mapper;
+        mResolutions = new ConcurrentHashMap<String, Resolution>();
+        mSelectors = new ConcurrentHashMap<String, TransformationSelector>();
+    }
+
+    /**
+     * Returns the resolution of a transformation on a site, resolving it if not already cached.
+     *
+     * @param namespace the namespace of the transformation
+     * @param name the name of the transformation
+     * @param version the version of the transformation
+     * @param site the site on which the transformation is to be resolved
+     * @param selector the transformation selector to select the entries with
+     * @return the resolution
+     */
+    public Resolution resolve(
+            String namespace, String name, String version, String site, String selector) {
+        String key =
+                Separator.combine(namespace, name, version)
+                        + KEY_SEPARATOR
+                        + site
+                        + KEY_SEPARATOR
+                        + selector;
+        Resolution resolution = mResolutions.get(key);
+        if (resolution == null) {
+            // resolutions for the same key computed concurrently are the same
+            resolution = this.computeResolution(namespace, name, version, site, selector);
+            Resolution existing = mResolutions.putIfAbsent(key, resolution);
+            resolution = (existing == null) ? resolution : existing;
+        }
+        return resolution;
+    }
+
+    /**
+     * Returns the number of resolutions cached.
+     *
+     * @return the number of resolutions
+     */
+    public int size() {
+        return mResolutions.size();
+    }
+
+    /**
+     * Resolves a transformation on a site against the mapper and the selector.
+     *
+     * @param namespace the namespace of the transformation
+     * @param name the name of the transformation
+     * @param version the version of the transformation
+     * @param site the site on which the transformation is to be resolved
+     * @param selector the transformation selector to select the entries with
+     * @return the resolution
+     */
+    private Resolution computeResolution(
+            String namespace, String name, String version, String site, String selector) {
+        List<?> entries = mTCMapper.getTCList(namespace, name, version, site);
+        if (entries == null || entries.isEmpty()) {
+            return new Resolution(null, null, site);
+        }
+        List<ResolvedEntry> resolved = new ArrayList<ResolvedEntry>(entries.size());
+        for (Object entry : entries) {
+            resolved.add(new ResolvedEntry((TransformationCatalogEntry) entry));
+        }
+        TransformationSelector txSelector = this.getSelector(selector);
+        if (!txSelector.isDeterministic()) {
+            return new Resolution(resolved, txSelector, site);
+        }
+        return new Resolution(Resolution.select(resolved, txSelector, site), null, site);
+    }
+
+    /**
+     * Returns the transformation selector for a mode, loading it the first time.
+     *
+     * @param mode the mode of the selector
+     * @return the selector
+     */
+    private TransformationSelector getSelector(String mode) {
+        TransformationSelector selector = mSelectors.get(mode);
+        if (selector == null) {
+            selector = TransformationSelector.loadTXSelector(mode);
+            mSelectors.putIfAbsent(mode, selector);
+        }
+        return selector;
+    }
+
+    /** The resolution of a transformation on a site. */
+    public static class Resolution {
+
+        /** Whether the mapper returned any entries for the transformation on the site. */
+        private final boolean mMapped;
+
+        /**
+         * The entries to select from, that are the ones returned by the mapper if the selector is
+         * to be called for each job, else the ones selected by the selector.
+         */
+        private final List<ResolvedEntry> mEntries;
+
+        /** The selector to call for each job, null if the entries are already selected. */
+        private final TransformationSelector mSelector;
+
+        /** The site on which the transformation is resolved. */
+        private final String mSite;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param entries the entries to select from, null if the mapper returned none
+         * @param selector the selector to call for each job, null if the entries are selected
+         * @param site the site on which the transformation is resolved
+         */
+        private Resolution(
+                List<ResolvedEntry> entries, TransformationSelector selector, String site) {
+            mMapped = (entries != null);
+            mEntries =
+                    (entries == null)
+                            ? Collections.<ResolvedEntry>emptyList()
+                            : Collections.unmodifiableList(entries);
+            mSelector = selector;
+            mSite = site;
+        }
+
+        /**
+         * Returns whether the mapper returned any entries for the transformation on the site.
+         *
+         * @return boolean
+         */
+        public boolean isMapped() {
+            return mMapped;
+        }
+
+        /**
+         * Selects an entry for a job. If more than one entry is selected, a random one is picked.
+         *
+         * @return the entry, or null if the selector selected none
+         */
+        public ResolvedEntry select() {
+            List<ResolvedEntry> entries =
+                    (mSelector == null) ? mEntries : select(mEntries, mSelector, mSite);
+            return entries.isEmpty()
+                    ? null
+                    : entries.size() > 1
+                            ? entries.get(PegRandom.getInteger(entries.size() - 1))
+                            : entries.get(0);
+        }
+
+        /**
+         * Calls out to a selector to select amongst resolved entries.
+         *
+         * @param entries the resolved entries
+         * @param selector the selector
+         * @param site the preferred site
+         * @return the resolved entries selected, in the order returned by the selector
+         */
+        private static List<ResolvedEntry> select(
+                List<ResolvedEntry> entries, TransformationSelector selector, String site) {
+            List<TransformationCatalogEntry> tcEntries =
+                    new ArrayList<TransformationCatalogEntry>(entries.size());
+            Map<TransformationCatalogEntry, ResolvedEntry> index =
+                    new IdentityHashMap<TransformationCatalogEntry, ResolvedEntry>();
+            for (ResolvedEntry entry : entries) {
+                tcEntries.add(entry.getEntry());
+                index.put(entry.getEntry(), entry);
+            }
+            List<?> selected = selector.getTCEntry(tcEntries, site);
+            List<ResolvedEntry> result = new ArrayList<ResolvedEntry>();
+            if (selected != null) {
+                for (Object entry : selected) {
+                    result.add(index.get(entry));
+                }
+            }
+            return result;
+        }
+    }
+
+    /** A selected transformation catalog entry, with its profiles extracted per namespace. */
+    public static class ResolvedEntry {
+
+        /** The transformation catalog entry. */
+        private final TransformationCatalogEntry mEntry;
+
+        /** The profiles of the entry indexed by namespace. */
+        private final Map<Profiles.NAMESPACES, List<Profile>> mProfiles;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param entry the transformation catalog entry
+         */
+        public ResolvedEntry(TransformationCatalogEntry entry) {
+            mEntry = entry;
+            mProfiles = new EnumMap<Profiles.NAMESPACES, List<Profile>>(Profiles.NAMESPACES.class);
+            for (Profiles.NAMESPACES n : Profiles.NAMESPACES.values()) {
+                List<?> profiles = entry.getProfiles(n.toString());
+                if (profiles != null && !profiles.isEmpty()) {
+                    List<Profile> copy = new ArrayList<Profile>(profiles.size());
+                    for (Object profile : profiles) {
+                        copy.add((Profile) profile);
+                    }
+                    mProfiles.put(n, Collections.unmodifiableList(copy));
+                }
+            }
+        }
+
+        /**
+         * Returns the transformation catalog entry, that is shared and should not be modified.
+         *
+         * @return the entry
+         */
+        public TransformationCatalogEntry getEntry() {
+            return mEntry;
+        }
+
+        /**
+         * Returns the profiles of the entry for a namespace.
+         *
+         * @param namespace the namespace
+         * @return unmodifiable list of <code>Profile</code> objects, null if there are none
+         */
+        public List<Profile> getProfiles(Profiles.NAMESPACES namespace) {
+            return mProfiles.get(namespace);
+        }
+    }
+}
@@ -117,10 +117,8 @@ public class All extends Mapper {
                 } // outside inner for loop
             } // outside outer for loop
         } else {
-            mLogger.log(
-                    "There are no entries in the site catalog for site" + siteids.toString(),
-                    LogManager.FATAL_MESSAGE_LEVEL);
-            System.exit(1);
+            throw new RuntimeException(
+                    "There are no entries in the site catalog for site" + siteids.toString());
         }
 
         return mTCMap.getSitesTCEntries(lfn, siteids);
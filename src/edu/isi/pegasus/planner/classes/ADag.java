@@ -21,6 +21,7 @@ import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStore;
 import edu.isi.pegasus.planner.dax.Invoke;
 import edu.isi.pegasus.planner.namespace.Metadata;
+import edu.isi.pegasus.planner.partitioner.graph.CompactGraph;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
@@ -49,6 +50,12 @@ import java.util.UUID;
  */
 public class ADag extends Data implements Graph {
 
+    /** The graph implementation backed by hash maps and hash sets. */
+    public static final String MAP_GRAPH_IMPLEMENTATION = "Map";
+
+    /** The graph implementation backed by primitive int arrays. */
+    public static final String COMPACT_GRAPH_IMPLEMENTATION = "Compact";
+
     /** The DagInfo object which contains the information got from parsing the dax file. */
     private DagInfo mDAGInfo;
 
@@ -101,17 +108,46 @@ public class ADag extends Data implements Graph {
 
     /** Initialises the class member variables. */
     public ADag() {
+        this(new MapGraph());
+    }
+
+    /**
+     * Initialises the class member variables, with the graph implementation to use for storing the
+     * jobs and their dependencies.
+     *
+     * @param graph the empty graph to use.
+     * @see #createGraph(String)
+     */
+    public ADag(Graph graph) {
         mDAGInfo = new DagInfo();
         mSubmitDirectory = ".";
         mWorkflowUUID = generateWorkflowUUID();
         mRootWorkflowUUID = null;
         mWorkflowRefinementStarted = false;
         mNotifications = new Notifications();
-        mGraphImplementor = new MapGraph();
+        mGraphImplementor = graph;
         mProfiles = new Profiles();
         resetStores();
     }
 
+    /**
+     * Creates an empty graph for a graph implementation.
+     *
+     * @param implementation the graph implementation, either Map or Compact. Null defaults to Map.
+     * @return the graph
+     * @throws IllegalArgumentException if the implementation is not known
+     */
+    public static Graph createGraph(String implementation) {
+        if (implementation == null || implementation.equalsIgnoreCase(MAP_GRAPH_IMPLEMENTATION)) {
+            return new MapGraph();
+        }
+        if (implementation.equalsIgnoreCase(COMPACT_GRAPH_IMPLEMENTATION)) {
+            return new CompactGraph();
+        }
+        throw new IllegalArgumentException(
+                "Unknown graph implementation specified " + implementation);
+    }
+
     /**
      * Adds a Invoke object corresponding to a notification.
      *
@@ -191,7 +227,11 @@ public class ADag extends Data implements Graph {
      * @return the clone of the object.
      */
     public Object clone() {
-        ADag newAdag = new ADag();
+        ADag newAdag =
+                new ADag(
+                        (this.mGraphImplementor instanceof CompactGraph)
+                                ? new CompactGraph()
+                                : new MapGraph());
 
         newAdag.setBaseSubmitDirectory(this.mSubmitDirectory);
         newAdag.setRequestID(this.mRequestID);
@@ -945,6 +985,16 @@ public class ADag extends Data implements Graph {
         this.mDAGInfo.getWorkflowMetrics().increment((Job) node.getContent());
     }
 
+    /**
+     * Releases the space held by the graph for edges that were added or removed after the graph was
+     * built, if the underlying graph implementation supports it.
+     */
+    public void compactGraph() {
+        if (this.mGraphImplementor instanceof CompactGraph) {
+            ((CompactGraph) this.mGraphImplementor).compact();
+        }
+    }
+
     /**
      * Adds an edge between two already existing nodes in the graph.
      *
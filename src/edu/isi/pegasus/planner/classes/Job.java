@@ -27,6 +27,7 @@ import edu.isi.pegasus.common.util.Separator;
 import edu.isi.pegasus.planner.catalog.classes.Profiles;
 import edu.isi.pegasus.planner.catalog.classes.Profiles.NAMESPACES;
 import edu.isi.pegasus.planner.catalog.site.classes.GridGateway;
+import edu.isi.pegasus.planner.catalog.transformation.TCResolutionCache;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
 import edu.isi.pegasus.planner.catalog.transformation.classes.Container;
 import edu.isi.pegasus.planner.common.PegasusJsonDeserializer;
@@ -199,6 +200,15 @@ public class Job extends Data implements GraphNodeContent {
     /** The delimiter that has to be used to combine the name for the staged executable. */
     private static String DELIMITER = PegasusProperties.getInstance().getStagingDelimiter();
 
+    /**
+     * Reloads the delimiter used to combine the name for the staged executable from the properties,
+     * as is done when the class is loaded. A planner that plans more than one workflow in the same
+     * JVM calls it before each planning run.
+     */
+    public static void resetStagingDelimiter() {
+        DELIMITER = PegasusProperties.getInstance().getStagingDelimiter();
+    }
+
     /**
      * The type of the job. Pegasus tags the jobs according to the function of the job. The jobs are
      * tagged according to the functionality they serve in the Pegasus super node. The job class can
@@ -1651,6 +1661,25 @@ public class Job extends Data implements GraphNodeContent {
         mSelectorProfiles.checkKeyInNS(entry);
     }
 
+    /**
+     * Updates all the profile namespaces with the profiles of a resolved transformation catalog
+     * entry for this job. The effect is the same as calling {@link
+     * #updateProfiles(TransformationCatalogEntry)} with the underlying entry, only that the
+     * profiles are already extracted per namespace.
+     *
+     * @param entry the resolved entry for the job.
+     */
+    public void updateProfiles(TCResolutionCache.ResolvedEntry entry) {
+        condorVariables.checkKeyInNS(entry.getProfiles(NAMESPACES.condor));
+        dagmanVariables.checkKeyInNS(entry.getProfiles(NAMESPACES.dagman));
+        globusRSL.checkKeyInNS(entry.getProfiles(NAMESPACES.globus));
+        envVariables.checkKeyInNS(entry.getProfiles(NAMESPACES.env));
+        vdsNS.checkKeyInNS(entry.getProfiles(NAMESPACES.pegasus));
+        hints.checkKeyInNS(entry.getProfiles(NAMESPACES.hints));
+        mMetadataAttributes.checkKeyInNS(entry.getProfiles(NAMESPACES.metadata));
+        mSelectorProfiles.checkKeyInNS(entry.getProfiles(NAMESPACES.selector));
+    }
+
     /**
      * Updates all the profile namespaces with the information specified by the user in the
      * properties file, that apply to this job. It ends up updating already existing information,
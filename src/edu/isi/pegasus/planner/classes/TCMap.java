@@ -37,6 +37,9 @@ import java.util.Set;
  *
  * <p>List1 = TCE1 TCE2 TCEn
  *
+ * <p>The methods are synchronized, so that the map can be shared by the threads that map jobs
+ * concurrently.
+ *
  * @author Gaurang Mehta
  * @version $Revision$
  */
@@ -61,7 +64,7 @@ public class TCMap {
      * @return Map Returns <B>NULL</B> if the transformation does not exist in the map.
      * @see org.griphyn.common.catalog.TransformationCatalogEntry
      */
-    public Map getSiteMap(String fqlfn) {
+    public synchronized Map getSiteMap(String fqlfn) {
         return mTCMap.containsKey(fqlfn) ? (Map) mTCMap.get(fqlfn) : null;
     }
 
@@ -74,7 +77,7 @@ public class TCMap {
      * @return boolean
      * @see org.griphyn.common.catalog.TransformationCatalogEntry
      */
-    public boolean setSiteMap(String fqlfn, Map sitemap) {
+    public synchronized boolean setSiteMap(String fqlfn, Map sitemap) {
         mTCMap.put(fqlfn, sitemap);
         return true;
     }
@@ -85,7 +88,7 @@ public class TCMap {
      * @param fqlfn String
      * @return List
      */
-    public List getSiteList(String fqlfn) {
+    public synchronized List getSiteList(String fqlfn) {
         List results = null;
         if (mTCMap.containsKey(fqlfn)) {
             return new ArrayList(((Map) mTCMap.get(fqlfn)).keySet());
@@ -101,7 +104,7 @@ public class TCMap {
      * @param sites The list of siteids
      * @return the list of siteids which are valid.
      */
-    public List getSiteList(String fqlfn, List sites) {
+    public synchronized List getSiteList(String fqlfn, List sites) {
         List results = new ArrayList();
         if (mTCMap.containsKey(fqlfn)) {
             for (Iterator i = ((Map) mTCMap.get(fqlfn)).keySet().iterator(); i.hasNext(); ) {
@@ -122,7 +125,7 @@ public class TCMap {
      * @param siteid String The siteid for which the Entries are required
      * @return List returns NULL if no entries exist.
      */
-    public List getSiteTCEntries(String fqlfn, String siteid) {
+    public synchronized List getSiteTCEntries(String fqlfn, String siteid) {
         Map sitemap = null;
         List tcentries = null;
         if (mTCMap.containsKey(fqlfn)) {
@@ -154,7 +157,7 @@ public class TCMap {
      * @return a map indexed by site names. Each value is a collection of <code>
      *     TransformationCatalogEntry</code> objects. Returns null in case of no entry being found.
      */
-    public Map getSitesTCEntries(String fqlfn, List sites) {
+    public synchronized Map getSitesTCEntries(String fqlfn, List sites) {
         Map m = this.getSiteMap(fqlfn);
         Set siteIDS = new HashSet(sites);
         String site = null;
@@ -185,7 +188,8 @@ public class TCMap {
      * @param entry TransformationCatalogEntry The Transformation CatalogEntry object to be added.
      * @return boolean
      */
-    public boolean setSiteTCEntries(String fqlfn, String siteid, TransformationCatalogEntry entry) {
+    public synchronized boolean setSiteTCEntries(
+            String fqlfn, String siteid, TransformationCatalogEntry entry) {
         Map sitemap = null;
         List tcentries = null;
         if (mTCMap.containsKey(fqlfn)) {
@@ -209,7 +213,7 @@ public class TCMap {
      *
      * @return String
      */
-    public String toString() {
+    public synchronized String toString() {
         StringBuffer sb = new StringBuffer();
         for (Iterator i = mTCMap.keySet().iterator(); i.hasNext(); ) {
             sb.append(toString((String) i.next()));
@@ -223,7 +227,7 @@ public class TCMap {
      * @param lfn String
      * @return the textual description.
      */
-    public String toString(String lfn) {
+    public synchronized String toString(String lfn) {
         StringBuffer sb = new StringBuffer();
         sb.append("LFN = " + lfn + "\n");
         sb.append("\tSite map\n");
@@ -13,15 +13,18 @@
  */
 package edu.isi.pegasus.planner.client;
 
+import edu.isi.pegasus.common.logging.EventProfiler;
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.logging.LoggingKeys;
 import edu.isi.pegasus.common.util.Boolean;
 import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
 import edu.isi.pegasus.common.util.FactoryException;
+import edu.isi.pegasus.common.util.FileSystemOperations;
 import edu.isi.pegasus.common.util.StreamGobbler;
 import edu.isi.pegasus.common.util.Version;
 import edu.isi.pegasus.planner.catalog.SiteCatalog;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
+import edu.isi.pegasus.planner.catalog.site.SiteCatalogCache;
 import edu.isi.pegasus.planner.catalog.site.SiteCatalogException;
 import edu.isi.pegasus.planner.catalog.site.SiteFactory;
 import edu.isi.pegasus.planner.catalog.site.SiteFactoryException;
@@ -54,14 +57,11 @@ import edu.isi.pegasus.planner.refiner.MainEngine;
 import edu.isi.pegasus.planner.refiner.ReplicaCatalogBridge;
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.management.ManagementFactory;
@@ -74,8 +74,10 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -102,6 +104,12 @@ public class CPlanner extends Executable {
     /** The name of the property key that determines whether pegasus-run should monitord or not. */
     public static final String PEGASUS_MONITORD_LAUNCH_PROPERTY_KEY = "pegasus.monitord";
 
+    /**
+     * The basename of the file in the submit directory, to which the resources used by each stage
+     * of the planner are written out.
+     */
+    public static final String STAGE_METRICS_FILE = "planner.stages.json";
+
     /** default dax file to parse if user does not specify one * */
     public static final String DEFAULT_WORKFLOW_DAX_FILE = "workflow.yml";
 
@@ -146,6 +154,12 @@ public class CPlanner extends Executable {
     /** A boolean indicating whether metrics should be sent to metrics server or not */
     private boolean mSendMetrics;
 
+    /**
+     * The cache of the site catalog entries shared by the planning runs in this JVM. Only set for a
+     * long running planner, as a planner that plans a single workflow loads the catalog once.
+     */
+    private static SiteCatalogCache mSiteCatalogCache = null;
+
     /** Default constructor. */
     public CPlanner() {
         this(null);
@@ -188,8 +202,19 @@ public class CPlanner extends Executable {
      * @param args the main arguments passed to the planner.
      */
     public static void main(String[] args) {
+        System.exit(CPlanner.plan(new CPlanner(), args));
+    }
 
-        CPlanner cPlanner = new CPlanner();
+    /**
+     * Plans a workflow with the arguments passed, logging the metrics for the planning run, and
+     * returns the exitcode with which the planner should exit. This is what the main program does,
+     * except for exiting.
+     *
+     * @param cPlanner the planner instance to plan with, that is not yet initialized.
+     * @param args the arguments passed to the planner.
+     * @return the exitcode
+     */
+    public static int plan(CPlanner cPlanner, String[] args) {
         int result = 0;
         Date startDate = new Date();
         Date endDate = null;
@@ -301,7 +326,17 @@ public class CPlanner extends Executable {
         }
 
         cPlanner.mLogger.logEventCompletion();
-        System.exit(result);
+        return result;
+    }
+
+    /**
+     * Sets the cache of site catalog entries to be shared by the subsequent planning runs in this
+     * JVM.
+     *
+     * @param cache the cache, null to load the site catalog afresh for each run
+     */
+    public static void setSiteCatalogCache(SiteCatalogCache cache) {
+        mSiteCatalogCache = cache;
     }
 
     /** Loads all the properties that are needed by this class. */
@@ -323,7 +358,6 @@ public class CPlanner extends Executable {
      * @return the Collection of <code>File</code> objects for the files written out.
      */
     public Collection<File> executeCommand(PlannerOptions options) {
-        String message = "";
         mPOptions = options;
 
         mBag.add(PegasusBag.PEGASUS_PROPERTIES, mProps);
@@ -390,6 +424,32 @@ public class CPlanner extends Executable {
             mLogger.log(nv.toString(), LogManager.CONFIG_MESSAGE_LEVEL);
         }
 
+        // record the resources used by each stage of the planner
+        if (mProps.logStageMetrics()) {
+            mLogger.setEventProfiler(new EventProfiler());
+        }
+        try {
+            return this.planWorkflow(dax, baseDir, configurator);
+        } finally {
+            // stop listening to the garbage collectors also for rescue dags and failed runs
+            this.closeEventProfiler();
+        }
+    }
+
+    /**
+     * Plans the workflow in the DAX file, and writes out the executable workflow to the submit
+     * directory.
+     *
+     * @param dax the path to the DAX file
+     * @param baseDir the base submit directory
+     * @param configurator the configurator used to load the properties and options
+     * @return the Collection of <code>File</code> objects for the files written out.
+     */
+    private Collection<File> planWorkflow(
+            String dax, String baseDir, PegasusConfiguration configurator) {
+        String message = "";
+        Collection<File> result = null;
+
         // load the parser and parse the dax
         ADag orgDag = this.parseDAX(dax, mPOptions, mProps);
         mLogger.log(
@@ -485,7 +545,7 @@ public class CPlanner extends Executable {
 
             mPOptions.setSubmitDirectory(baseDir, relativeSubmitDir);
 
-            if (options.partOfDeferredRun()) {
+            if (mPOptions.partOfDeferredRun()) {
                 // PM-667 log what directory the planner is launched in
                 // what the base submit directory is
                 String launchDir = System.getProperty("user.dir");
@@ -498,7 +558,7 @@ public class CPlanner extends Executable {
                     // rescue dags
                     boolean rescue = handleRescueDAG(orgDag, mPOptions);
                     if (rescue) {
-                        result = new LinkedList();
+                        result = new LinkedList<File>();
                         result.add(
                                 new File(
                                         mPOptions.getSubmitDirectory(),
@@ -632,6 +692,9 @@ public class CPlanner extends Executable {
             mLogger.logEventCompletion();
         }
 
+        // write out the resources used by the stages next to the braindump
+        writeOutStageMetrics(finalDag);
+
         // PM-1003 update metrics with whether pmc was used or not.
         mPMetrics.setUsesPMC(Braindump.plannerUsedPMC(mBag));
 
@@ -1470,45 +1533,10 @@ public class CPlanner extends Executable {
     protected boolean createSymbolicLink(
             String source, String destination, File directory, boolean logErrorToDebug) {
         try {
-            Runtime rt = Runtime.getRuntime();
-            String command = "ln -sf " + source + " " + destination;
             mLogger.log(
                     "Creating symlink between " + source + " " + destination,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-
-            Process p =
-                    (directory == null)
-                            ? rt.exec(command, null)
-                            : // dont specify the directory to execute in
-                            rt.exec(command, null, directory);
-
-            // set up to read subprogram output
-            InputStream is = p.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-
-            // set up to read subprogram error
-            InputStream er = p.getErrorStream();
-            InputStreamReader err = new InputStreamReader(er);
-            BufferedReader ebr = new BufferedReader(err);
-
-            // read output from subprogram
-            // and display it
-
-            String s, se = null;
-            while (((s = br.readLine()) != null) || ((se = ebr.readLine()) != null)) {
-                if (s != null) {
-                    mLogger.log(s, LogManager.DEBUG_MESSAGE_LEVEL);
-                } else {
-                    if (logErrorToDebug) {
-                        mLogger.log(se, LogManager.DEBUG_MESSAGE_LEVEL);
-                    } else {
-                        mLogger.log(se, LogManager.ERROR_MESSAGE_LEVEL);
-                    }
-                }
-            }
-
-            br.close();
+            FileSystemOperations.createSymbolicLink(source, destination, directory, true);
             return true;
         } catch (Exception ex) {
             if (logErrorToDebug) {
@@ -1594,7 +1622,26 @@ public class CPlanner extends Executable {
                     LogManager.DEBUG_MESSAGE_LEVEL);
         }
 
-        if (catalog != null) {
+        String cacheKey =
+                (catalog == null || mSiteCatalogCache == null)
+                        ? null
+                        : SiteCatalogCache.getKey(catalog);
+        List<SiteCatalogEntry> cached = (cacheKey == null) ? null : mSiteCatalogCache.get(cacheKey);
+        if (cached != null) {
+            mLogger.log(
+                    "Sites loaded from the site catalog cache for " + catalog.getFileSource(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            for (SiteCatalogEntry s : cached) {
+                if (result.lookup(s.getSiteHandle()) == null) {
+                    // PM-1515 prefer entries from DAX SiteStore.
+                    result.addEntry(s);
+                }
+            }
+            try {
+                catalog.close();
+            } catch (Exception e) {
+            }
+        } else if (catalog != null) {
             // PM-1515 make sure catalog was instantiated
             Set<String> toLoad = new HashSet<String>();
             mLogger.log(
@@ -1614,14 +1661,21 @@ public class CPlanner extends Executable {
                     // we need to load all sites into the site store
                     toLoad.addAll(catalog.list());
                 }
+                List<SiteCatalogEntry> loaded = new LinkedList<SiteCatalogEntry>();
                 for (Iterator<String> it = toLoad.iterator(); it.hasNext(); ) {
                     SiteCatalogEntry s = catalog.lookup(it.next());
+                    if (s != null) {
+                        loaded.add(s);
+                    }
                     if (s != null && result.lookup(s.getSiteHandle()) == null) {
                         // PM-1515 prefer entries from DAX SiteStore.
                         // Only load from catalog if not in DAX SiteStore
                         result.addEntry(s);
                     }
                 }
+                if (cacheKey != null) {
+                    mSiteCatalogCache.put(cacheKey, loaded);
+                }
             } catch (SiteCatalogException e) {
                 throw new RuntimeException("Unable to load from site catalog ", e);
             } finally {
@@ -1740,6 +1794,49 @@ public class CPlanner extends Executable {
         return relativeSubmitDirXXX;
     }
 
+    /**
+     * Writes out the resources used by each stage of the planner, as recorded by the event profiler
+     * set on the logger, to the submit directory. The profiler is removed from the logger
+     * afterwards.
+     *
+     * @param dag the executable workflow
+     */
+    private void writeOutStageMetrics(ADag dag) {
+        EventProfiler profiler = mLogger.getEventProfiler();
+        if (profiler == null) {
+            return;
+        }
+        mLogger.setEventProfiler(null);
+        profiler.close();
+
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        attributes.put("pegasus_version", mVersion);
+        attributes.put("wf_uuid", dag.getWorkflowUUID());
+        attributes.put("dax_label", dag.getLabel());
+        File file = new File(mPOptions.getSubmitDirectory(), CPlanner.STAGE_METRICS_FILE);
+        try {
+            profiler.writeOut(file, attributes);
+            mLogger.log(
+                    "Written out the planner stage metrics to " + file,
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+        } catch (IOException ioe) {
+            // the stage metrics are only informational
+            mLogger.log(
+                    "Unable to write out the planner stage metrics to " + file,
+                    ioe,
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+    }
+
+    /** Removes the event profiler set on the logger, if any, and closes it. */
+    private void closeEventProfiler() {
+        EventProfiler profiler = mLogger.getEventProfiler();
+        if (profiler != null) {
+            mLogger.setEventProfiler(null);
+            profiler.close();
+        }
+    }
+
     /** Logs memory usage of the JVM */
     private void logMemoryUsage() {
         try {
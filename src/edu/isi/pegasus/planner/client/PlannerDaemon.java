@@ -0,0 +1,562 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.site.SiteCatalogCache;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import gnu.getopt.Getopt;
+import gnu.getopt.LongOpt;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A long running planner, that plans the sub workflows of a hierarchical workflow in the same JVM,
+ * instead of a new pegasus-plan invocation for each sub workflow. This saves the JVM startup, and
+ * the classes loaded, the code compiled by the JIT and the site catalog entries loaded stay warm
+ * across the planning runs.
+ *
+ * <p>The daemon serves the requests for the directory it is started in, as that is the working
+ * directory of the planning runs. It listens on an ephemeral port on the loopback interface, and
+ * writes the port and a random token to the state file {@link #STATE_FILENAME} in the directory,
+ * that is readable only by the user. The {@link #CLIENT_BASENAME} client reads the state file, and
+ * sends a request with the token, its working directory and the pegasus-plan arguments. The
+ * arguments are passed one per line after their count. The daemon responds with the exitcode of the
+ * planning run, or rejects the request, in which case the client falls back to invoking
+ * pegasus-plan. The client falls back as well if the connection is closed without a response. The
+ * daemon exits if no request arrives within the idle timeout.
+ *
+ * <p>The requests are planned one at a time. For each request, the -D options in the arguments are
+ * set as system properties for the duration of the request, and a new planner instance, with its
+ * own PegasusBag and logger is used, so that one planning run does not see the configuration of
+ * another. The static state that the planner classes derive from the configuration, such as the
+ * delimiter for the names of staged executables, is reloaded before each request. As the system
+ * properties and the static state are shared by the JVM, the planning runs cannot overlap. A
+ * request that arrives while another is being planned is rejected, so that the sub workflows
+ * planned concurrently by DAGMan fall back to pegasus-plan instead of waiting for each other.
+ *
+ * @author Karan Vahi
+ */
+public class PlannerDaemon {
+
+    /** The basename of the client script for the daemon. */
+    public static final String CLIENT_BASENAME = "pegasus-plan-client";
+
+    /** The basename of the state file in the directory the daemon serves. */
+    public static final String STATE_FILENAME = ".pegasus-plan-daemon";
+
+    /** The suffix of the lock the client holds while starting the daemon. */
+    public static final String LOCK_SUFFIX = ".lock";
+
+    /** The first line of a request. */
+    public static final String PROTOCOL_VERSION = "PEGASUS-PLAN-1";
+
+    /** The response that carries the exitcode of the planning run. */
+    public static final String EXIT_RESPONSE = "EXIT";
+
+    /** The response to a request that the daemon does not plan. */
+    public static final String REJECT_RESPONSE = "REJECT";
+
+    /** The default idle timeout in seconds. */
+    public static final long DEFAULT_IDLE_TIMEOUT = 300;
+
+    /** The timeout in milliseconds for the client to send the request. */
+    private static final int REQUEST_READ_TIMEOUT = 60 * 1000;
+
+    /** The timeout in milliseconds for the client to close a rejected connection. */
+    private static final int REJECT_DRAIN_TIMEOUT = 1000;
+
+    /** The maximum number of arguments in a request. */
+    private static final int MAX_ARGUMENTS = 4096;
+
+    /** The exitcode for a planning run that failed with an unaccounted for error. */
+    private static final int UNKNOWN_FAILURE_EXITCODE = 3;
+
+    /** The directory the daemon serves. */
+    private final File mDirectory;
+
+    /** The idle timeout in milliseconds. */
+    private final long mIdleTimeout;
+
+    /** The state file. */
+    private final File mStateFile;
+
+    /** The logger for the daemon itself, separate from the loggers of the planning runs. */
+    private final LogManager mLogger;
+
+    /** The token the requests must carry. */
+    private String mToken;
+
+    /** The socket the daemon listens on. */
+    private ServerSocket mServerSocket;
+
+    /** The number of requests planned. */
+    private volatile int mRequests;
+
+    /** Whether a request is being planned. */
+    private final AtomicBoolean mPlanning;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param directory the directory to serve
+     * @param idleTimeout the idle timeout in seconds
+     * @param logger the logger for the daemon
+     */
+    public PlannerDaemon(File directory, long idleTimeout, LogManager logger) {
+        mDirectory = directory.getAbsoluteFile();
+        mIdleTimeout = idleTimeout * 1000;
+        mStateFile = new File(mDirectory, STATE_FILENAME);
+        mLogger = logger;
+        mRequests = 0;
+        mPlanning = new AtomicBoolean(false);
+    }
+
+    /**
+     * Starts listening, and writes out the state file for the clients.
+     *
+     * @throws IOException in case of error while listening or writing the state file
+     */
+    public void start() throws IOException {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        mToken = token.toString();
+
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        mServerSocket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(1, mIdleTimeout)));
+
+        // temporary files are created readable by the user only
+        Path temp = Files.createTempFile(mDirectory.toPath(), STATE_FILENAME, ".tmp");
+        Files.write(
+                temp,
+                (mServerSocket.getLocalPort() + " " + mToken + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(
+                    temp,
+                    mStateFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, mStateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        // the client that started us no longer needs to hold the lock
+        new File(mDirectory, STATE_FILENAME + LOCK_SUFFIX).delete();
+        mLogger.log(
+                "Planner daemon for "
+                        + mDirectory
+                        + " listening on port "
+                        + mServerSocket.getLocalPort(),
+                LogManager.INFO_MESSAGE_LEVEL);
+    }
+
+    /**
+     * Serves the requests one at a time on a planning thread, till no request arrives within the
+     * idle timeout. The requests that arrive while another is being planned are rejected.
+     *
+     * @throws IOException in case of error while accepting a connection
+     */
+    public void serve() throws IOException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = mServerSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    if (mPlanning.get()) {
+                        continue;
+                    }
+                    mLogger.log(
+                            "No request received in " + (mIdleTimeout / 1000) + " seconds",
+                            LogManager.INFO_MESSAGE_LEVEL);
+                    return;
+                }
+                if (mPlanning.compareAndSet(false, true)) {
+                    executor.execute(
+                            new Runnable() {
+                                public void run() {
+                                    serve(socket);
+                                }
+                            });
+                } else {
+                    this.reject(socket, "busy planning another request");
+                }
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Stops listening, and removes the state file if it is still ours. */
+    public void stop() {
+        try {
+            if (mStateFile.isFile()) {
+                String state =
+                        new String(Files.readAllBytes(mStateFile.toPath()), StandardCharsets.UTF_8);
+                if (state.contains(mToken)) {
+                    mStateFile.delete();
+                }
+            }
+        } catch (IOException e) {
+            mLogger.log(
+                    "Unable to remove the state file " + mStateFile,
+                    e,
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+        try {
+            if (mServerSocket != null) {
+                mServerSocket.close();
+            }
+        } catch (IOException e) {
+        }
+        mLogger.log(
+                "Planner daemon exiting after planning " + mRequests + " workflows",
+                LogManager.INFO_MESSAGE_LEVEL);
+    }
+
+    /**
+     * Serves a request on the planning thread, and closes the connection.
+     *
+     * @param socket the connection
+     */
+    private void serve(Socket socket) {
+        try {
+            this.handle(socket);
+        } catch (IOException e) {
+            mLogger.log("Error while serving request", e, LogManager.ERROR_MESSAGE_LEVEL);
+        } finally {
+            mPlanning.set(false);
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Rejects a request without planning it, and closes the connection. The client falls back to
+     * invoking pegasus-plan whether it reads the response or not.
+     *
+     * @param socket the connection
+     * @param reason the reason to reject the request
+     */
+    private void reject(Socket socket, String reason) {
+        // not logged at a higher level, as the streams may be redirected by a planning run
+        mLogger.log("Rejecting request: " + reason, LogManager.DEBUG_MESSAGE_LEVEL);
+        try {
+            OutputStreamWriter out =
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(REJECT_RESPONSE + " " + reason + "\n");
+            out.flush();
+            socket.shutdownOutput();
+            // the request is drained till the client closes the connection, as closing it with
+            // the request unread would reset the connection before the response is read
+            socket.setSoTimeout(REJECT_DRAIN_TIMEOUT);
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {}
+        } catch (IOException e) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Reads a request from a connection, plans it, and writes out the response.
+     *
+     * @param socket the connection
+     * @throws IOException in case of error while reading or writing
+     */
+    private void handle(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_READ_TIMEOUT);
+        BufferedReader in =
+                new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out =
+                new PrintWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+        List<String> arguments = new LinkedList<String>();
+        String reason = this.readRequest(in, arguments);
+        Map<String, String> properties = new HashMap<String, String>();
+        List<String> plannerArgs = new LinkedList<String>();
+        if (reason == null) {
+            reason = splitArguments(arguments, properties, plannerArgs);
+        }
+        if (reason != null) {
+            mLogger.log("Rejecting request: " + reason, LogManager.WARNING_MESSAGE_LEVEL);
+            out.print(REJECT_RESPONSE + " " + reason + "\n");
+            out.flush();
+            return;
+        }
+
+        // the planning run can take long
+        socket.setSoTimeout(0);
+        long start = System.currentTimeMillis();
+        int exitcode = this.plan(properties, plannerArgs.toArray(new String[0]));
+        mRequests++;
+        mLogger.log(
+                "Planned request "
+                        + mRequests
+                        + " with exitcode "
+                        + exitcode
+                        + " in "
+                        + ((System.currentTimeMillis() - start) / 1000.0)
+                        + " seconds",
+                LogManager.INFO_MESSAGE_LEVEL);
+        // the next request of the client may arrive as soon as it reads the response
+        mPlanning.set(false);
+        out.print(EXIT_RESPONSE + " " + exitcode + "\n");
+        out.flush();
+    }
+
+    /**
+     * Reads a request.
+     *
+     * @param in the reader for the connection
+     * @param arguments the list to which the arguments in the request are added
+     * @return the reason to reject the request, or null if it is to be planned
+     * @throws IOException in case of error while reading
+     */
+    private String readRequest(BufferedReader in, List<String> arguments) throws IOException {
+        if (!PROTOCOL_VERSION.equals(in.readLine())) {
+            return "unsupported protocol";
+        }
+        if (!mToken.equals(in.readLine())) {
+            return "invalid token";
+        }
+        String directory = in.readLine();
+        if (directory == null || !new File(directory).getAbsoluteFile().equals(mDirectory)) {
+            return "serves directory " + mDirectory + " only";
+        }
+        int count = 0;
+        try {
+            String value = in.readLine();
+            count = (value == null) ? -1 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        if (count < 0 || count > MAX_ARGUMENTS) {
+            return "invalid number of arguments";
+        }
+        for (int i = 0; i < count; i++) {
+            String argument = in.readLine();
+            if (argument == null) {
+                return "truncated request";
+            }
+            arguments.add(argument);
+        }
+        return null;
+    }
+
+    /**
+     * Splits the arguments to pegasus-plan into the properties specified as -D options, and the
+     * arguments to the planner, the same way the pegasus-plan wrapper script passes the -D options
+     * to the JVM. The -X options to the JVM are ignored.
+     *
+     * @param arguments the arguments to pegasus-plan
+     * @param properties the map to which the properties are added
+     * @param plannerArgs the list to which the arguments to the planner are added
+     * @return the reason to reject the request, or null if it is to be planned
+     */
+    static String splitArguments(
+            List<String> arguments, Map<String, String> properties, List<String> plannerArgs) {
+        for (int i = 0; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            String property = null;
+            if (argument.matches("-[XD][_a-zA-Z].*")) {
+                if (argument.startsWith("-X")) {
+                    continue;
+                }
+                property = argument.substring(2);
+            } else if (argument.equals("-D")
+                    && i + 1 < arguments.size()
+                    && arguments.get(i + 1).contains("=")) {
+                property = arguments.get(++i);
+            } else if (argument.equals("-V") || argument.equals("--version")) {
+                // the planner exits the JVM on printing the version
+                return "version requested";
+            } else {
+                plannerArgs.add(argument);
+                continue;
+            }
+            int index = property.indexOf('=');
+            if (index > 0) {
+                properties.put(property.substring(0, index), property.substring(index + 1));
+            } else {
+                properties.put(property, "");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Plans a workflow with a new planner instance. The properties are set as system properties,
+     * and the streams and the singleton logger are restored, for the duration of the planning run.
+     *
+     * @param properties the properties specified as -D options
+     * @param args the arguments to the planner
+     * @return the exitcode of the planning run
+     */
+    int plan(Map<String, String> properties, String[] args) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        Properties previous = new Properties();
+        List<String> unset = new LinkedList<String>();
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            String value = System.getProperty(entry.getKey());
+            if (value == null) {
+                unset.add(entry.getKey());
+            } else {
+                previous.setProperty(entry.getKey(), value);
+            }
+            System.setProperty(entry.getKey(), entry.getValue());
+        }
+        LogManagerFactory.resetSingletonInstance();
+        // reloaded as a new JVM would for the properties of this request
+        Job.resetStagingDelimiter();
+
+        int result = 0;
+        try {
+            result = this.runPlanner(args);
+        } catch (Throwable t) {
+            // logged to the streams of the planning run
+            t.printStackTrace();
+            result = UNKNOWN_FAILURE_EXITCODE;
+        } finally {
+            PrintStream planOut = System.out;
+            PrintStream planErr = System.err;
+            System.setOut(out);
+            System.setErr(err);
+            if (planOut != out && planOut != err) {
+                planOut.close();
+            }
+            if (planErr != out && planErr != err && planErr != planOut) {
+                planErr.close();
+            }
+            for (String key : unset) {
+                System.clearProperty(key);
+            }
+            for (String key : previous.stringPropertyNames()) {
+                System.setProperty(key, previous.getProperty(key));
+            }
+            LogManagerFactory.resetSingletonInstance();
+        }
+        return result;
+    }
+
+    /**
+     * Runs a new planner instance.
+     *
+     * @param args the arguments to the planner
+     * @return the exitcode of the planning run
+     */
+    protected int runPlanner(String[] args) {
+        return CPlanner.plan(new CPlanner(), args);
+    }
+
+    /**
+     * The main program for the planner daemon.
+     *
+     * @param args the arguments passed
+     */
+    public static void main(String[] args) {
+        LongOpt[] longOptions = new LongOpt[2];
+        longOptions[0] = new LongOpt("timeout", LongOpt.REQUIRED_ARGUMENT, null, 't');
+        longOptions[1] = new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h');
+        Getopt g = new Getopt("pegasus-plan-daemon", args, "t:h", longOptions, false);
+        long timeout = DEFAULT_IDLE_TIMEOUT;
+        int option = 0;
+        while ((option = g.getopt()) != -1) {
+            switch (option) {
+                case 't':
+                    try {
+                        timeout = Long.parseLong(g.getOptarg());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException(
+                                "Invalid value specified for timeout " + g.getOptarg(), e);
+                    }
+                    break;
+
+                default:
+                    System.out.println(
+                            "Usage: pegasus-plan-daemon [-t|--timeout <seconds>] [-h|--help]");
+                    System.exit(option == 'h' ? 0 : 1);
+            }
+        }
+
+        LogManager logger =
+                LogManagerFactory.loadInstance(PegasusProperties.nonSingletonInstance());
+        logger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        logger.logEventStart("event.pegasus.planner.daemon", "directory", ".");
+
+        // the site catalog entries are shared by all the planning runs
+        CPlanner.setSiteCatalogCache(new SiteCatalogCache());
+
+        PlannerDaemon daemon =
+                new PlannerDaemon(new File(System.getProperty("user.dir")), timeout, logger);
+        int result = 0;
+        try {
+            daemon.start();
+            daemon.serve();
+        } catch (IOException e) {
+            logger.log("Planner daemon failed", e, LogManager.FATAL_MESSAGE_LEVEL);
+            result = 1;
+        } finally {
+            daemon.stop();
+            logger.logEventCompletion();
+        }
+        System.exit(result);
+    }
+}
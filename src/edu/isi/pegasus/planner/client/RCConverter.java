@@ -21,6 +21,8 @@ import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogException;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
 import edu.isi.pegasus.planner.catalog.replica.classes.ReplicaStore;
+import edu.isi.pegasus.planner.catalog.replica.impl.IndexedFileBuilder;
+import edu.isi.pegasus.planner.catalog.replica.impl.SimpleFile;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.ReplicaLocation;
 import edu.isi.pegasus.planner.common.PegasusProperties;
@@ -36,6 +38,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.StringTokenizer;
 
 /**
@@ -55,9 +58,12 @@ public class RCConverter extends Executable {
     /** REGEX Format */
     private static String REGEX_FORMAT = "Regex";
 
+    /** The sorted and indexed format for very large catalogs */
+    private static String INDEXED_FILE_FORMAT = "IndexedFile";
+
     /** The supported replica formats. */
     private static final String[] SUPPORTED_REPLICA_FORMATS = {
-        FILE_FORMAT, REGEX_FORMAT, YAML_FORMAT
+        FILE_FORMAT, REGEX_FORMAT, YAML_FORMAT, INDEXED_FILE_FORMAT
     };
 
     /** The input files. */
@@ -269,6 +275,11 @@ public class RCConverter extends Executable {
             throw new IOException(
                     "The output file specified already exists. Please delete file " + mOutputFile);
         }
+        if (mOutputFormat.equals(INDEXED_FILE_FORMAT)) {
+            // the indexed file is built without loading all the entries in memory
+            this.buildIndexedFile(mInputFiles, mInputFormat, mOutputFile);
+            return;
+        }
         ReplicaStore result = this.loadFrom(mInputFiles, mInputFormat);
         // write out the result to the output file
         this.convert(result, mOutputFormat, mOutputFile);
@@ -316,6 +327,88 @@ public class RCConverter extends Executable {
         return result;
     }
 
+    /**
+     * Builds the sorted and indexed file for the IndexedFile replica catalog. File based input
+     * catalogs are streamed into the builder as they are parsed, so that catalogs larger than the
+     * heap can be converted. Catalogs in other formats are loaded first, as for the other output
+     * formats.
+     *
+     * @param inputFiles list of input files that need to be converted
+     * @param inputFormat input format of the input files
+     * @param filename the file to write to
+     * @throws IOException
+     */
+    private void buildIndexedFile(List<String> inputFiles, String inputFormat, String filename)
+            throws IOException {
+        if (filename == null) {
+            throw new IOException(
+                    "Please specify a file to write the output to using --output option ");
+        }
+        final IndexedFileBuilder builder = new IndexedFileBuilder(new File(filename));
+        if (inputFormat.equals(FILE_FORMAT)) {
+            if (inputFiles == null || inputFiles.isEmpty()) {
+                throw new IOException("Input files not specified. Specify the --input option");
+            }
+            for (String inputFile : inputFiles) {
+                File input = new File(inputFile);
+                if (!input.canRead()) {
+                    throw new IOException(
+                            "File not found or cannot be read. " + input.getAbsolutePath());
+                }
+            }
+            for (String inputFile : inputFiles) {
+                SimpleFile catalog =
+                        new SimpleFile() {
+                            public int insert(String lfn, ReplicaCatalogEntry tuple) {
+                                try {
+                                    builder.add(lfn, tuple);
+                                } catch (IOException ioe) {
+                                    throw new RuntimeException(
+                                            "Unable to write out entry for " + lfn, ioe);
+                                }
+                                return 1;
+                            }
+                        };
+                Properties props = new Properties();
+                props.setProperty("file", inputFile);
+                props.setProperty(ReplicaCatalog.READ_ONLY_KEY, "true");
+                props.setProperty(
+                        ReplicaCatalog.VARIABLE_EXPANSION_KEY,
+                        Boolean.toString(mDoVariableExpansion));
+                catalog.connect(props);
+                catalog.close();
+            }
+        } else {
+            ReplicaStore store = this.loadFrom(inputFiles, inputFormat);
+            for (Iterator<?> it = store.replicaLocationIterator(); it.hasNext(); ) {
+                ReplicaLocation rl = (ReplicaLocation) it.next();
+                Metadata m = rl.getAllMetadata();
+                for (ReplicaCatalogEntry rce : rl.getPFNList()) {
+                    // add metadata at LFN level to individual RCE's as in convert
+                    for (Iterator<?> attribIT = m.getProfileKeyIterator(); attribIT.hasNext(); ) {
+                        String key = (String) attribIT.next();
+                        rce.addAttribute(key, m.get(key));
+                    }
+                    builder.add(rl.getLFN(), rce);
+                }
+            }
+        }
+
+        long lfns = builder.build();
+        mLogger.log(
+                "Inserted " + lfns + " lfns into output replica catalog ",
+                LogManager.INFO_MESSAGE_LEVEL);
+        mLogger.log(
+                "Successfully converted Replica Catalog from "
+                        + mInputFormat
+                        + " to "
+                        + mOutputFormat,
+                LogManager.CONSOLE_MESSAGE_LEVEL);
+        mLogger.log(
+                "The output replica catalog is in file  " + new File(filename).getAbsolutePath(),
+                LogManager.CONSOLE_MESSAGE_LEVEL);
+    }
+
     /**
      * Parses the input format specified in the properties file and returns list of
      * ReplicaCatalogEntry
@@ -408,8 +501,9 @@ public class RCConverter extends Executable {
         text.append("\n Mandatory Options ");
         text.append("\n");
         text.append(
-                "\n -I |--iformat        the input format for the files . Can be [File, YAML] ");
-        text.append("\n -O |--oformat        the output format of the file. Can be [File, YAML] ");
+                "\n -I |--iformat        the input format for the files . Can be [File, YAML, IndexedFile] ");
+        text.append(
+                "\n -O |--oformat        the output format of the file. Can be [File, YAML, IndexedFile] ");
         text.append(
                 "\n -i |--input          comma separated list of input files to convert.This option is mandatory when input format is File or file ");
         text.append(
@@ -434,6 +528,8 @@ public class RCConverter extends Executable {
         text.append("\n Example Usage ");
         text.append("\n File to file format conversion :- ");
         text.append("  pegasus-rc-converter  -i cc.txt -I File -o rc.yml -v");
+        text.append("\n File to indexed file format conversion :- ");
+        text.append("  pegasus-rc-converter  -i cc.txt -I File -O IndexedFile -o rc.idx -v");
 
         System.out.println(text.toString());
     }
@@ -449,7 +545,9 @@ public class RCConverter extends Executable {
     private void convert(ReplicaStore output, String format, String filename) throws IOException {
         ReplicaCatalog catalog = null;
         PegasusProperties props = (PegasusProperties) mProps.clone();
-        if (format.equals(FILE_FORMAT) || format.equals(YAML_FORMAT)) {
+        if (format.equals(FILE_FORMAT)
+                || format.equals(YAML_FORMAT)
+                || format.equals(INDEXED_FILE_FORMAT)) {
 
             if (filename == null) {
                 throw new IOException(
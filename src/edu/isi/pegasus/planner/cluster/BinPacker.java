@@ -0,0 +1,284 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.cluster;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Packs jobs into bins on the basis of their runtimes, for runtime based horizontal clustering.
+ *
+ * <p>The runtime of every job is parsed exactly once, and the jobs are packed in decreasing order
+ * of their runtimes. When the clustered jobs are bounded by a maximum runtime, the open bins are
+ * kept in a balanced tree ordered by their runtime, so that the fullest bin that can still fit a
+ * job is found in logarithmic time (best fit decreasing). When the number of bins is fixed, the
+ * bins are kept in a priority queue and every job goes to the bin with the least runtime. Either
+ * way the packing of n jobs takes O(n log n) time.
+ *
+ * @author Rajiv Mayani
+ */
+public class BinPacker {
+
+    /** The handle to the logger. */
+    private final LogManager mLogger;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param logger the logger to use
+     */
+    public BinPacker(LogManager logger) {
+        mLogger = logger;
+    }
+
+    /**
+     * Packs the jobs into bins, such that the runtime of each bin does not exceed maxTime. Jobs
+     * whose runtime by itself exceeds maxTime are not put into any bin, and are hence not
+     * clustered.
+     *
+     * @param jobs the jobs to be packed, in any order.
+     * @param maxTime the maximum time for which a clustered job should run.
+     * @return List of List of Jobs where each List is the set of jobs to be clustered together, in
+     *     the order the bins were opened.
+     */
+    public List<List<Job>> pack(List<Job> jobs, double maxTime) {
+        Entry[] entries = sortedEntries(jobs);
+        List<Bin> all = new ArrayList<Bin>();
+        if (entries.length == 0) {
+            return new ArrayList<List<Job>>();
+        }
+        double minJobRunTime = entries[entries.length - 1].runtime;
+
+        // open bins ordered by their runtime, and for equal runtimes
+        // such that the bin opened first is the largest element
+        TreeSet<Bin> open =
+                new TreeSet<Bin>(
+                        new Comparator<Bin>() {
+                            @Override
+                            public int compare(Bin b1, Bin b2) {
+                                int result = Double.compare(b1.time, b2.time);
+                                return (result == 0) ? Integer.compare(b2.index, b1.index) : result;
+                            }
+                        });
+        Bin probe = new Bin(-1);
+        boolean debug = mLogger.isDebugEnabled();
+
+        for (Entry e : entries) {
+            if (debug) {
+                mLogger.log(
+                        "Job " + e.job.getID() + " runtime " + e.runtime,
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+
+            // Is the job runtime greater than the max allowed runtime? Then
+            // do not cluster this job.
+            if (maxTime < e.runtime) {
+                if (debug) {
+                    mLogger.log(
+                            "Job "
+                                    + e.job.getID()
+                                    + " runtime "
+                                    + e.runtime
+                                    + " is greater than clusters max run time "
+                                    + maxTime
+                                    + " specified by the Pegasus profile "
+                                    + Pegasus.MAX_RUN_TIME,
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                }
+                continue;
+            }
+
+            // the fullest bin that can still fit the job
+            probe.time = maxTime - e.runtime;
+            Bin bin = open.floor(probe);
+            while (bin != null && bin.time + e.runtime > maxTime) {
+                // guard against rounding in the subtraction above
+                bin = open.lower(bin);
+            }
+            if (bin == null) {
+                bin = new Bin(all.size());
+                all.add(bin);
+            } else {
+                open.remove(bin);
+            }
+            bin.add(e);
+
+            // keep the bin open only if it has space to fit the
+            // job with the smallest run time
+            if (bin.time + minJobRunTime <= maxTime) {
+                open.add(bin);
+            }
+        }
+
+        return toLists(all);
+    }
+
+    /**
+     * Packs the jobs into a fixed number of bins, adding each job to the bin with the least runtime
+     * so far.
+     *
+     * @param jobs the jobs to be packed, in any order.
+     * @param maxBins the fixed number of bins that should be created. If there are fewer jobs, then
+     *     one bin per job is created.
+     * @return List of List of Jobs where each List is the set of jobs to be clustered together.
+     */
+    public List<List<Job>> pack(List<Job> jobs, int maxBins) {
+        Entry[] entries = sortedEntries(jobs);
+
+        // Initialize the bins, to the specified number of bins.
+        // If the number of jobs n is less than maxBins then create n bins
+        maxBins = Math.min(maxBins, entries.length);
+        List<Bin> all = new ArrayList<Bin>(maxBins);
+        PriorityQueue<Bin> bins =
+                new PriorityQueue<Bin>(
+                        Math.max(1, maxBins),
+                        new Comparator<Bin>() {
+                            @Override
+                            public int compare(Bin b1, Bin b2) {
+                                int result = Double.compare(b1.time, b2.time);
+                                return (result == 0) ? Integer.compare(b1.index, b2.index) : result;
+                            }
+                        });
+        for (int i = 0; i < maxBins; ++i) {
+            Bin bin = new Bin(i);
+            all.add(bin);
+            bins.add(bin);
+        }
+
+        boolean debug = mLogger.isDebugEnabled();
+        for (Entry e : entries) {
+            if (debug) {
+                mLogger.log(
+                        "Job " + e.job.getID() + " runtime " + e.runtime,
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+
+            // Add the job to the bin with the shortest combined runtime
+            Bin bin = bins.poll();
+            bin.add(e);
+            bins.offer(bin);
+        }
+
+        if (debug) {
+            for (Bin b : all) {
+                mLogger.log("Bin Size: " + b.time, LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+        }
+        return toLists(all);
+    }
+
+    /**
+     * Returns the runtime of a job as specified by the runtime profile in the Pegasus namespace.
+     *
+     * @param job the job
+     * @return the runtime
+     * @throws RuntimeException if the profile is not set or is not a number.
+     */
+    public double getRunTime(Job job) {
+        String sTmp = (String) job.vdsNS.get(Pegasus.RUNTIME_KEY);
+        if (sTmp == null || sTmp.length() == 0) {
+            sTmp = (String) job.vdsNS.get(Pegasus.DEPRECATED_RUNTIME_KEY);
+            if (sTmp == null || sTmp.length() == 0) {
+                throw new RuntimeException(
+                        "Profile Key: "
+                                + Pegasus.RUNTIME_KEY
+                                + " is not set for the job "
+                                + job.getID());
+            }
+            mLogger.log(
+                    "The profile "
+                            + Pegasus.DEPRECATED_RUNTIME_KEY
+                            + " will be deprecated. It will be replaced with "
+                            + Pegasus.RUNTIME_KEY,
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+        return Double.parseDouble(sTmp);
+    }
+
+    /**
+     * Parses the runtimes of the jobs and sorts them in decreasing order of the runtimes. Jobs with
+     * the same runtime retain their relative order.
+     *
+     * @param jobs the jobs
+     * @return the sorted entries
+     */
+    private Entry[] sortedEntries(List<Job> jobs) {
+        Entry[] entries = new Entry[jobs.size()];
+        int i = 0;
+        for (Job job : jobs) {
+            entries[i++] = new Entry(job, getRunTime(job));
+        }
+        Arrays.sort(
+                entries,
+                new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry e1, Entry e2) {
+                        return Double.compare(e2.runtime, e1.runtime);
+                    }
+                });
+        return entries;
+    }
+
+    /**
+     * Converts the bins to lists of jobs, dropping empty bins.
+     *
+     * @param bins the bins
+     * @return the lists of jobs
+     */
+    private List<List<Job>> toLists(List<Bin> bins) {
+        List<List<Job>> result = new ArrayList<List<Job>>(bins.size());
+        for (Bin bin : bins) {
+            if (!bin.jobs.isEmpty()) {
+                result.add(bin.jobs);
+            }
+        }
+        return result;
+    }
+
+    /** A job with its parsed runtime. */
+    private static class Entry {
+        final Job job;
+        final double runtime;
+
+        Entry(Job job, double runtime) {
+            this.job = job;
+            this.runtime = runtime;
+        }
+    }
+
+    /** A bin of jobs with the sum of their runtimes. */
+    private static class Bin {
+        final int index;
+        final List<Job> jobs;
+        double time;
+
+        Bin(int index) {
+            this.index = index;
+            this.jobs = new ArrayList<Job>();
+            this.time = 0;
+        }
+
+        void add(Entry e) {
+            jobs.add(e.job);
+            time += e.runtime;
+        }
+    }
+}
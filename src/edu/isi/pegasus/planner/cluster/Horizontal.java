@@ -162,7 +162,7 @@ public class Horizontal
         Set s = partition.getNodeIDs();
         List l = new ArrayList(s.size());
         mLogger.log(
-                "Clustering jobs in partition " + partition.getID() + " " + s,
+                () -> "Clustering jobs in partition " + partition.getID() + " " + s,
                 LogManager.DEBUG_MESSAGE_LEVEL);
 
         for (Iterator it = s.iterator(); it.hasNext(); ) {
@@ -323,8 +323,6 @@ public class Horizontal
                                     + cFactor[2],
                             LogManager.DEBUG_MESSAGE_LEVEL);
 
-                    Collections.sort(l, getBinPackingComparator());
-
                     mLogger.log(
                             "Job Type: "
                                     + ((Job) l.get(0)).getCompleteTCName()
@@ -357,7 +355,6 @@ public class Horizontal
                             "Clustering into fixed number of bins " + clusterNum,
                             LogManager.DEBUG_MESSAGE_LEVEL);
 
-                    Collections.sort(l, getBinPackingComparator());
                     bins = bestFitBinPack(l, clusterNum);
                 }
 
@@ -458,220 +455,25 @@ public class Horizontal
     /**
      * Perform best fit bin packing.
      *
-     * @param jobs List of jobs sorted in decreasing order of the job runtime.
+     * @param jobs List of jobs to be packed.
      * @param maxTime The maximum time for which the clustered job should run.
      * @return List of List of Jobs where each List <Job> is the set of jobs which should be
      *     clustered together so as to run in under maxTime.
      */
     private List<List<Job>> bestFitBinPack(List<Job> jobs, double maxTime) {
-
-        List<List<Job>> bins = new LinkedList<List<Job>>();
-        List<List<Job>> returnBins = new LinkedList<List<Job>>();
-        List<Double> binTime = new LinkedList<Double>();
-        double minJobRunTime = Double.MAX_VALUE;
-
-        if (jobs != null && jobs.size() > 0) {
-            minJobRunTime = Double.parseDouble(getRunTime(jobs.get(jobs.size() - 1)));
-        }
-
-        for (Job j : jobs) {
-            List<Job> bin;
-            double currentBinTime;
-            boolean isBreak = false;
-            double jobRunTime = Double.parseDouble(getRunTime(j));
-
-            mLogger.log(
-                    "Job " + j.getID() + " runtime " + jobRunTime, LogManager.DEBUG_MESSAGE_LEVEL);
-
-            // Create first bin.
-            if (bins.size() == 0) {
-                bins.add(new LinkedList<Job>());
-                binTime.add(0, 0d);
-            }
-
-            // Loop through each job.
-            for (int i = 0, k = bins.size(); i < k; ++i) {
-                currentBinTime = binTime.get(i);
-
-                // Is the job runtime greater than the max allowed runtime? Then
-                // do not cluster this job.
-                if (maxTime < jobRunTime) {
-                    mLogger.log(
-                            "Job "
-                                    + j.getID()
-                                    + " runtime "
-                                    + jobRunTime
-                                    + " is greater than clusters max run time "
-                                    + maxTime
-                                    + " specified by the Pegasus profile "
-                                    + Pegasus.MAX_RUN_TIME,
-                            LogManager.DEBUG_MESSAGE_LEVEL);
-                    break;
-                }
-
-                // Can we fit the job in an existing bin?
-                if (maxTime >= currentBinTime + jobRunTime) {
-                    bin = bins.get(i);
-                    bin.add(j);
-                    binTime.set(i, currentBinTime + jobRunTime);
-                    isBreak = true;
-                } else if (i == k - 1) {
-                    // We cannot fit the job in any of the open bins, so create
-                    // a new one.
-                    bin = new LinkedList<Job>();
-                    bin.add(j);
-                    bins.add(bin);
-                    binTime.add(binTime.size(), jobRunTime);
-                }
-
-                // Either this bin is full, or it does not even have space to
-                // fit the job with the smallest run time. So lets avoid trying
-                // to fit jobs in this bin.
-                if (binTime.get(i) + minJobRunTime > maxTime) {
-                    returnBins.add(bins.remove(i));
-                    binTime.remove(i);
-                }
-
-                // Job has been assigned a bin, no need to check other bins for
-                // space.
-                if (isBreak) break;
-            }
-        }
-
-        returnBins.addAll(bins);
-        return returnBins;
+        return new BinPacker(mLogger).pack(jobs, maxTime);
     }
 
     /**
      * Perform best fit bin packing.
      *
-     * @param jobs List of jobs sorted in decreasing order of the job runtime.
+     * @param jobs List of jobs to be packed.
      * @param maxBins The fixed-number of bins taht should be created
      * @return List of List of Jobs where each List <Job> is the set of jobs which should be
      *     clustered together so as to run in under maxTime.
      */
     private List<List<Job>> bestFitBinPack(List<Job> jobs, int maxBins) {
-
-        class Bin {
-            private List<Job> bin = new LinkedList<Job>();
-            private double time = 0;
-
-            public void addJob(Job j) {
-                bin.add(j);
-                double jobRunTime = Double.parseDouble(getRunTime(j));
-                time += jobRunTime;
-            }
-
-            public List<Job> getJobs() {
-                return bin;
-            }
-
-            public double getTime() {
-                return time;
-            }
-        }
-
-        PriorityQueue<Bin> bins =
-                new PriorityQueue<Bin>(
-                        maxBins,
-                        new Comparator<Bin>() {
-                            @Override
-                            public int compare(Bin bin1, Bin bin2) {
-                                return (int) (bin1.getTime() - bin2.getTime());
-                            }
-                        });
-
-        // Initialize the bins, to the specified number of bins.
-        // If the number of jobs n is less than @maxBins then create n bins
-        maxBins = Math.min(maxBins, jobs.size());
-
-        for (int i = 0; i < maxBins; ++i) {
-            bins.add(new Bin());
-        }
-
-        for (Job j : jobs) {
-            Bin bin;
-            mLogger.log(
-                    "Job " + j.getID() + " runtime " + getRunTime(j),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
-
-            // Add the job to the bin with the shortest combined runtime
-            bin = bins.poll();
-            bin.addJob(j);
-            bins.offer(bin);
-        }
-
-        List<List<Job>> returnBins = new LinkedList<List<Job>>();
-
-        for (Bin b : bins) {
-            mLogger.log("Bin Size: " + b.getTime(), LogManager.DEBUG_MESSAGE_LEVEL);
-            returnBins.add(b.getJobs());
-        }
-
-        return returnBins;
-    }
-
-    private String getRunTime(Job job) {
-
-        String sTmp = (String) job.vdsNS.get(Pegasus.RUNTIME_KEY);
-        if (sTmp != null && sTmp.length() > 0) {
-            return sTmp;
-        }
-
-        sTmp = (String) job.vdsNS.get(Pegasus.DEPRECATED_RUNTIME_KEY);
-        if (sTmp != null && sTmp.length() > 0) {
-            mLogger.log(
-                    "The profile "
-                            + Pegasus.DEPRECATED_RUNTIME_KEY
-                            + " will be deprecated. It will be replaced with "
-                            + Pegasus.RUNTIME_KEY,
-                    LogManager.WARNING_MESSAGE_LEVEL);
-            return sTmp;
-        }
-
-        throw new RuntimeException(
-                "Profile Key: " + Pegasus.RUNTIME_KEY + " is not set for the job " + job.getID());
-    }
-
-    /**
-     * The comparator is used to sort a collection of jobs in decreasing order of their run times as
-     * specified by the Pegasus.DEPRECATED_RUNTIME_KEY property.
-     *
-     * @return
-     */
-    private Comparator<Job> getBinPackingComparator() {
-        return new Comparator<Job>() {
-
-            @Override
-            public int compare(Job job1, Job job2) {
-                String s1 = getRunTime(job1);
-                String s2 = getRunTime(job2);
-
-                double jobTime1 = Double.parseDouble(s1);
-                double jobTime2 = Double.parseDouble(s2);
-
-                return (int) (jobTime2 - jobTime1);
-            }
-
-            private String getRunTime(Job job) {
-
-                String sTmp = (String) job.vdsNS.get(Pegasus.RUNTIME_KEY);
-                if (sTmp != null && sTmp.length() > 0) {
-                    return sTmp;
-                }
-
-                sTmp = (String) job.vdsNS.get(Pegasus.DEPRECATED_RUNTIME_KEY);
-                if (sTmp != null && sTmp.length() > 0) {
-                    return sTmp;
-                }
-
-                throw new RuntimeException(
-                        "Profile Key: "
-                                + Pegasus.RUNTIME_KEY
-                                + " is not set for the job "
-                                + job.getID());
-            }
-        };
+        return new BinPacker(mLogger).pack(jobs, maxBins);
     }
 
     /**
@@ -904,7 +706,8 @@ public class Horizontal
         List l = null;
         List nl = null;
         Job sub = new Job();
-        String msg;
+        String msg = null;
+        boolean debug = mLogger.isDebugEnabled();
 
         // Set mergedEdges = new java.util.HashSet();
         // this is temp thing till the hast thing sorted out correctly
@@ -919,7 +722,9 @@ public class Horizontal
                 PCRelation rel = new PCRelation(parentJob.getID(), childJob.getID());
                 String parent = rel.getParent();
                 String child = rel.getChild();
-                msg = ("\n Replacing " + rel);
+                if (debug) {
+                    msg = ("\n Replacing " + rel);
+                }
 
                 String value = (String) mReplacementTable.get(parent);
                 if (value != null) {
@@ -929,16 +734,16 @@ public class Horizontal
                 if (value != null) {
                     rel.child = value;
                 }
-                msg += (" with " + rel);
-
                 // put in the merged edges set
-                if (!mergedEdges.contains(rel)) {
+                boolean duplicate = mergedEdges.contains(rel);
+                if (!duplicate) {
                     val = mergedEdges.add(rel);
-                    msg += "Add to set : " + val;
-                } else {
-                    msg += "\t Duplicate Entry for " + rel;
                 }
-                mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
+                if (debug) {
+                    msg += (" with " + rel);
+                    msg += duplicate ? "\t Duplicate Entry for " + rel : "Add to set : " + val;
+                    mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
+                }
             }
         }
 
@@ -953,9 +758,11 @@ public class Horizontal
         for (Iterator it = mReplacementTable.entrySet().iterator(); it.hasNext(); ) {
             Map.Entry entry = (Map.Entry) it.next();
             String key = (String) entry.getKey();
-            mLogger.log(
-                    "Replacing job " + key + " with " + entry.getValue(),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
+            if (debug) {
+                mLogger.log(
+                        "Replacing job " + key + " with " + entry.getValue(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
             // remove the old job
             // remove by just creating a subinfo object with the same key
             sub.jobName = key;
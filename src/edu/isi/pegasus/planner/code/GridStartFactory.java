@@ -193,7 +193,8 @@ public class GridStartFactory {
      * @throws GridStartFactoryException that nests any error that might occur during the
      *     instantiation of the implementation.
      */
-    public GridStart loadGridStart(Job job, String gridStartPath) throws GridStartFactoryException {
+    public synchronized GridStart loadGridStart(Job job, String gridStartPath)
+            throws GridStartFactoryException {
 
         // sanity checks first
         if (!mInitialized) {
@@ -247,7 +248,7 @@ public class GridStartFactory {
      * @throws GridStartFactoryException that nests any error that might occur during the
      *     instantiation of the implementation.
      */
-    public POSTScript loadPOSTScript(Job job, GridStart gridStart)
+    public synchronized POSTScript loadPOSTScript(Job job, GridStart gridStart)
             throws GridStartFactoryException {
 
         // sanity checks first
@@ -16,9 +16,7 @@ package edu.isi.pegasus.planner.code.generator;
 import edu.isi.pegasus.common.credential.CredentialHandler;
 import edu.isi.pegasus.common.credential.CredentialHandlerFactory;
 import edu.isi.pegasus.common.logging.LogManager;
-import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
-import edu.isi.pegasus.common.util.StreamGobbler;
-import edu.isi.pegasus.common.util.StreamGobblerCallback;
+import edu.isi.pegasus.common.util.FileSystemOperations;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.classes.ADag;
@@ -585,42 +583,14 @@ public class Shell extends Abstract {
         }
 
         try {
-            // set the callback and run the grep command
-            Runtime r = Runtime.getRuntime();
-            String command = "chmod +x " + file;
-            mLogger.log("Setting xbit " + command, LogManager.DEBUG_MESSAGE_LEVEL);
-            Process p = r.exec(command);
-
-            // the default gobbler callback always log to debug level
-            StreamGobblerCallback callback =
-                    new DefaultStreamGobblerCallback(LogManager.DEBUG_MESSAGE_LEVEL);
-            // spawn off the gobblers with the already initialized default callback
-            StreamGobbler ips = new StreamGobbler(p.getInputStream(), callback);
-            StreamGobbler eps = new StreamGobbler(p.getErrorStream(), callback);
-
-            ips.start();
-            eps.start();
-
-            // wait for the threads to finish off
-            ips.join();
-            eps.join();
-
-            // get the status
-            int status = p.waitFor();
-            if (status != 0) {
-                mLogger.log(
-                        "Command " + command + " exited with status " + status,
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-                return result;
-            }
+            mLogger.log("Setting xbit on " + file, LogManager.DEBUG_MESSAGE_LEVEL);
+            FileSystemOperations.setExecutable(f);
             result = true;
         } catch (IOException ioe) {
             mLogger.log(
-                    "IOException while creating symbolic links ",
+                    "IOException while setting xbit on " + file,
                     ioe,
                     LogManager.ERROR_MESSAGE_LEVEL);
-        } catch (InterruptedException ie) {
-            // ignore
         }
         return result;
     }
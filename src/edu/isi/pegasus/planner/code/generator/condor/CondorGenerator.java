@@ -22,6 +22,7 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.logging.LoggingKeys;
 import edu.isi.pegasus.common.util.Boolean;
 import edu.isi.pegasus.common.util.CondorVersion;
+import edu.isi.pegasus.common.util.FileSystemOperations;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.classes.Profiles;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
@@ -52,24 +53,28 @@ import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.refiner.cleanup.Cleanup;
 import edu.isi.pegasus.planner.transfer.implementation.Transfer;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.griphyn.vdl.euryale.VTorInUseException;
 
 /**
@@ -141,6 +146,12 @@ public class CondorGenerator extends Abstract {
     /** default value for CONDOR_JOBID env variable */
     public static final String DEFAULT_CONDOR_JOB_ID_ENV_VALUE = "$(cluster).$(process)";
 
+    /**
+     * The maximum number of jobs per worker thread that are collected in a batch, when the submit
+     * files are written out in parallel.
+     */
+    private static final int MAX_JOBS_PER_THREAD_IN_BATCH = 256;
+
     /** Map that maps job type to corresponding Condor Concurrency limit */
     private static Map<Integer, String> mJobTypeToCondorConcurrencyLimits = null;
 
@@ -148,7 +159,7 @@ public class CondorGenerator extends Abstract {
     private static Map<String, String> mDefaultMaxJobsCategoryValues = null;
 
     /** Map that maps job type to corresponding condor concurrency limits */
-    private static Map<Integer, String> jobTypeToCondorConcurrencyLimits() {
+    private static synchronized Map<Integer, String> jobTypeToCondorConcurrencyLimits() {
         if (mJobTypeToCondorConcurrencyLimits == null) {
             // PM-933
             mJobTypeToCondorConcurrencyLimits = new HashMap();
@@ -175,7 +186,7 @@ public class CondorGenerator extends Abstract {
     }
 
     /** Map that maps job type to corresponding condor concurrency limits */
-    private static Map<String, String> defaultMaxJobsCategoryValues() {
+    private static synchronized Map<String, String> defaultMaxJobsCategoryValues() {
         if (mDefaultMaxJobsCategoryValues == null) {
             // PM-1212
             mDefaultMaxJobsCategoryValues = new HashMap();
@@ -383,106 +394,11 @@ public class CondorGenerator extends Abstract {
         // write out any category based dagman knobs to the dagman file
         printDagString(this.getCategoryDAGManKnobs(mProps));
 
-        for (Iterator it = dag.iterator(); it.hasNext(); ) {
-            GraphNode node = (GraphNode) it.next();
-            Job job = (Job) node.getContent();
-
-            if (this.mAssignDefaultJobPriorities) {
-                int priority = 0;
-                if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)
-                        && job.getJobType() == Job.STAGE_IN_JOB) {
-                    // PM-1385 we add the precomputed priority to default priority
-                    int existing = job.condorVariables.getIntValue(Condor.PRIORITY_KEY, 0);
-                    priority = getJobPriority(job, node.getDepth()) + existing;
-                } else {
-                    // only apply priority if job is not associated with a priority
-                    // beforehand and assign priorities by default is true
-                    priority = getJobPriority(job, node.getDepth());
-                }
-                // apply a priority to the job overwriting any preexisting priority
-                job.condorVariables.construct(
-                        Condor.PRIORITY_KEY, new Integer(priority).toString());
-
-                // log to debug
-                StringBuffer sb = new StringBuffer();
-                sb.append("Applying priority of ")
-                        .append(priority)
-                        .append(" to ")
-                        .append(job.getID());
-                mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-            }
-
-            // HTCondor ticket 5749 . We can assign DAG priorities only if
-            // detected condor version is greater than 8.5.6
-            if (mCondorVersion >= CondorVersion.v_8_5_6) {
-                // PM-1105 assign a DAGMAN priority that mirrors the condor
-                // job priority if set, only if DAGMAN priority is not already set
-                if (!job.dagmanVariables.containsKey(Dagman.PRIORITY_KEY)) {
-                    // check again if condor priority is set and mirror it
-                    if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
-                        job.dagmanVariables.construct(
-                                Dagman.PRIORITY_KEY,
-                                (String) job.condorVariables.get(Condor.PRIORITY_KEY));
-                    }
-                }
-            }
-
-            if (job instanceof DAGJob) {
-                // SUBDAG EXTERNAL  B  inner.dag
-                DAGJob djob = (DAGJob) job;
-
-                // djob.dagmanVariables.checkKeyInNS( Dagman.SUBDAG_EXTERNAL_KEY,
-                //                                  djob.getDAGFile() );
-                StringBuffer sb = new StringBuffer();
-                sb.append(Dagman.SUBDAG_EXTERNAL_KEY)
-                        .append(" ")
-                        .append(job.getName())
-                        .append(" ")
-                        .append(djob.getDAGFile());
-
-                // check if dag needs to run in a specific directory
-                String dagDir = djob.getDirectory();
-                if (dagDir != null) {
-                    sb.append(" ").append(Dagman.DIRECTORY_EXTERNAL_KEY).append(" ").append(dagDir);
-                }
-
-                // if no category is associated with the job, add a default
-                // category
-                if (!job.dagmanVariables.containsKey(Dagman.CATEGORY_KEY)) {
-                    job.dagmanVariables.construct(Dagman.CATEGORY_KEY, DEFAULT_SUBDAG_CATEGORY_KEY);
-                }
-
-                printDagString(sb.toString());
-
-                printDagString(job.dagmanVariables.toString(job.getName()));
-            } else { // normal jobs and subdax jobs
-
-                if (job.typeRecursive()) {
-                    Job daxJob = job;
-                    job = subdaxGen.generateCode(job);
-
-                    // set the arguments to the DAX job to the ones
-                    // in the generated DAGJob to ensure stampede event
-                    // is generated correctly
-                    daxJob.setRemoteExecutable(job.getRemoteExecutable());
-                    daxJob.setArguments(job.getArguments());
-                }
-
-                if (job != null) {
-                    // the submit file for the job needs to be written out
-                    // write out a condor submit file
-                    generateCode(dag, job);
-                }
-
-                // write out all the dagman profile variables associated
-                // with the job to the .dag file.
-                printDagString(job.dagmanVariables.toString(job.getName()));
-            }
-
-            mLogger.log(
-                    "Written Submit file : "
-                            + job.getFileFullPath(this.mSubmitFileDir, SUBMIT_FILE_SUFFIX),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
+        int threads = mProps.getCodeGeneratorThreads();
+        if (threads > 1) {
+            this.generateSubmitFiles(dag, subdaxGen, threads);
+        } else {
+            this.generateSubmitFiles(dag, subdaxGen);
         }
         mLogger.logEventCompletion(LogManager.DEBUG_MESSAGE_LEVEL);
 
@@ -528,7 +444,12 @@ public class CondorGenerator extends Abstract {
         // PM-966 rename the tmp dag file back to the original key
         // before we write out the dag.condor.sub file
 
-        dagFile.renameTo(orgDAGFile);
+        try {
+            FileSystemOperations.atomicMove(dagFile.toPath(), orgDAGFile.toPath());
+        } catch (IOException ioe) {
+            throw new CodeGeneratorException(
+                    "Unable to rename temporary dag file " + dagFile + " to " + orgDAGFile, ioe);
+        }
         mLogger.log(
                 "Renamed temporary dag file to : " + orgDAGFile, LogManager.DEBUG_MESSAGE_LEVEL);
 
@@ -541,6 +462,269 @@ public class CondorGenerator extends Abstract {
         return result;
     }
 
+    /**
+     * Walks the workflow top down, writing out the submit file for each job and the corresponding
+     * entries in the .dag file one job at a time.
+     *
+     * @param dag the concrete workflow.
+     * @param subdaxGen the generator for the sub workflow jobs
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    protected void generateSubmitFiles(ADag dag, SUBDAXGenerator subdaxGen)
+            throws CodeGeneratorException {
+        for (Iterator<GraphNode> it = dag.iterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Job job = (Job) node.getContent();
+
+            this.assignPriorities(node, job);
+
+            if (job instanceof DAGJob) {
+                this.printDAGJob((DAGJob) job);
+            } else { // normal jobs and subdax jobs
+                job = this.toSubmittableJob(job, subdaxGen);
+
+                if (job != null) {
+                    // the submit file for the job needs to be written out
+                    // write out a condor submit file
+                    generateCode(dag, job);
+                }
+
+                // write out all the dagman profile variables associated
+                // with the job to the .dag file.
+                printDagString(job.dagmanVariables.toString(job.getName()));
+            }
+
+            if (mLogger.isDebugEnabled()) {
+                mLogger.log(
+                        "Written Submit file : "
+                                + job.getFileFullPath(this.mSubmitFileDir, SUBMIT_FILE_SUFFIX),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+        }
+    }
+
+    /**
+     * Walks the workflow top down, and writes out the submit files for the jobs on a pool of worker
+     * threads. Consecutive jobs in the traversal are collected into a batch, as long as no job in
+     * the batch is a parent of another, since enabling a job with a gridstart can update the input
+     * files of its children. A batch is rendered in parallel, and once all its submit files are
+     * written out, the .dag file entries for the jobs are written in the traversal order. Hence the
+     * submit files and the .dag file are identical to the ones written out sequentially.
+     *
+     * @param dag the concrete workflow.
+     * @param subdaxGen the generator for the sub workflow jobs
+     * @param threads the number of worker threads to use
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    protected void generateSubmitFiles(ADag dag, SUBDAXGenerator subdaxGen, int threads)
+            throws CodeGeneratorException {
+        mLogger.log(
+                "Writing out submit files using " + threads + " threads",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int maxBatchSize = threads * MAX_JOBS_PER_THREAD_IN_BATCH;
+        List<Job> batch = new ArrayList<Job>(maxBatchSize);
+        Set<GraphNode> batchNodes = new HashSet<GraphNode>();
+        try {
+            for (Iterator<GraphNode> it = dag.iterator(); it.hasNext(); ) {
+                GraphNode node = it.next();
+                Job job = (Job) node.getContent();
+
+                boolean flush = batch.size() >= maxBatchSize;
+                for (Iterator<GraphNode> pit = node.getParents().iterator();
+                        !flush && pit.hasNext(); ) {
+                    flush = batchNodes.contains(pit.next());
+                }
+                if (flush || job instanceof DAGJob || job.typeRecursive()) {
+                    // sub workflow jobs are rare and handled in
+                    // order after everything before them is written
+                    this.generateSubmitFiles(dag, batch, executor);
+                    batch.clear();
+                    batchNodes.clear();
+                }
+
+                this.assignPriorities(node, job);
+
+                if (job instanceof DAGJob) {
+                    this.printDAGJob((DAGJob) job);
+                    continue;
+                }
+                job = this.toSubmittableJob(job, subdaxGen);
+                batch.add(job);
+                batchNodes.add(node);
+            }
+            this.generateSubmitFiles(dag, batch, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes out the submit files for a batch of independent jobs in parallel, and then the entries
+     * in the .dag file for them in order.
+     *
+     * @param dag the concrete workflow.
+     * @param batch the jobs to write out
+     * @param executor the executor to render the submit files
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    private void generateSubmitFiles(ADag dag, List<Job> batch, ExecutorService executor)
+            throws CodeGeneratorException {
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(batch.size());
+        for (final Job job : batch) {
+            futures.add(
+                    executor.submit(
+                            new Callable<Object>() {
+                                public Object call() throws CodeGeneratorException {
+                                    generateCode(dag, job);
+                                    return null;
+                                }
+                            }));
+        }
+
+        // wait for all the submit files to be written out before
+        // writing the .dag file entries
+        for (int i = 0; i < batch.size(); i++) {
+            Job job = batch.get(i);
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CodeGeneratorException(
+                        "Interrupted while writing submit file for job " + job.getName(), e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CodeGeneratorException) {
+                    throw (CodeGeneratorException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new CodeGeneratorException(
+                        "Error while writing submit file for job " + job.getName(), cause);
+            }
+        }
+        for (Job job : batch) {
+            // write out all the dagman profile variables associated
+            // with the job to the .dag file.
+            printDagString(job.dagmanVariables.toString(job.getName()));
+
+            if (mLogger.isDebugEnabled()) {
+                mLogger.log(
+                        "Written Submit file : "
+                                + job.getFileFullPath(this.mSubmitFileDir, SUBMIT_FILE_SUFFIX),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+        }
+    }
+
+    /**
+     * Assigns the condor and the DAGMan priorities to a job.
+     *
+     * @param node the node for the job in the workflow
+     * @param job the job
+     */
+    private void assignPriorities(GraphNode node, Job job) {
+        if (this.mAssignDefaultJobPriorities) {
+            int priority = 0;
+            if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)
+                    && job.getJobType() == Job.STAGE_IN_JOB) {
+                // PM-1385 we add the precomputed priority to default priority
+                int existing = job.condorVariables.getIntValue(Condor.PRIORITY_KEY, 0);
+                priority = getJobPriority(job, node.getDepth()) + existing;
+            } else {
+                // only apply priority if job is not associated with a priority
+                // beforehand and assign priorities by default is true
+                priority = getJobPriority(job, node.getDepth());
+            }
+            // apply a priority to the job overwriting any preexisting priority
+            job.condorVariables.construct(Condor.PRIORITY_KEY, Integer.toString(priority));
+
+            // log to debug
+            if (mLogger.isDebugEnabled()) {
+                StringBuffer sb = new StringBuffer();
+                sb.append("Applying priority of ")
+                        .append(priority)
+                        .append(" to ")
+                        .append(job.getID());
+                mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+        }
+
+        // HTCondor ticket 5749 . We can assign DAG priorities only if
+        // detected condor version is greater than 8.5.6
+        if (mCondorVersion >= CondorVersion.v_8_5_6) {
+            // PM-1105 assign a DAGMAN priority that mirrors the condor
+            // job priority if set, only if DAGMAN priority is not already set
+            if (!job.dagmanVariables.containsKey(Dagman.PRIORITY_KEY)) {
+                // check again if condor priority is set and mirror it
+                if (job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
+                    job.dagmanVariables.construct(
+                            Dagman.PRIORITY_KEY,
+                            (String) job.condorVariables.get(Condor.PRIORITY_KEY));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out the SUBDAG EXTERNAL entry for a DAG job to the .dag file.
+     *
+     * @param djob the DAG job
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    private void printDAGJob(DAGJob djob) throws CodeGeneratorException {
+        Job job = djob;
+
+        // SUBDAG EXTERNAL  B  inner.dag
+        // djob.dagmanVariables.checkKeyInNS( Dagman.SUBDAG_EXTERNAL_KEY,
+        //                                  djob.getDAGFile() );
+        StringBuffer sb = new StringBuffer();
+        sb.append(Dagman.SUBDAG_EXTERNAL_KEY)
+                .append(" ")
+                .append(job.getName())
+                .append(" ")
+                .append(djob.getDAGFile());
+
+        // check if dag needs to run in a specific directory
+        String dagDir = djob.getDirectory();
+        if (dagDir != null) {
+            sb.append(" ").append(Dagman.DIRECTORY_EXTERNAL_KEY).append(" ").append(dagDir);
+        }
+
+        // if no category is associated with the job, add a default
+        // category
+        if (!job.dagmanVariables.containsKey(Dagman.CATEGORY_KEY)) {
+            job.dagmanVariables.construct(Dagman.CATEGORY_KEY, DEFAULT_SUBDAG_CATEGORY_KEY);
+        }
+
+        printDagString(sb.toString());
+
+        printDagString(job.dagmanVariables.toString(job.getName()));
+    }
+
+    /**
+     * Returns the job for which a submit file is written out. For sub workflow jobs, the DAGMan job
+     * that plans and runs the sub workflow is generated.
+     *
+     * @param job the job
+     * @param subdaxGen the generator for the sub workflow jobs
+     * @return the job to be written out
+     */
+    private Job toSubmittableJob(Job job, SUBDAXGenerator subdaxGen) {
+        if (job.typeRecursive()) {
+            Job daxJob = job;
+            job = subdaxGen.generateCode(job);
+
+            // set the arguments to the DAX job to the ones
+            // in the generated DAGJob to ensure stampede event
+            // is generated correctly
+            daxJob.setRemoteExecutable(job.getRemoteExecutable());
+            daxJob.setArguments(job.getArguments());
+        }
+        return job;
+    }
+
     /**
      * Generates the code (condor submit file) for a single job.
      *
@@ -1263,36 +1447,13 @@ public class CondorGenerator extends Abstract {
      */
     protected boolean generateLogFileSymlink(String logFile, String symlink) {
         try {
-            Runtime rt = Runtime.getRuntime();
-            String command = "ln -s " + logFile + " " + symlink;
             mLogger.log(
-                    "Creating symlink to the log file in the local temp directory\n" + command,
+                    "Creating symlink to the log file in the local temp directory\n"
+                            + logFile
+                            + " -> "
+                            + symlink,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-            Process p = rt.exec(command, null);
-
-            // set up to read subprogram output
-            InputStream is = p.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-
-            // set up to read subprogram error
-            InputStream er = p.getErrorStream();
-            InputStreamReader err = new InputStreamReader(er);
-            BufferedReader ebr = new BufferedReader(err);
-
-            // read output from subprogram
-            // and display it
-
-            String s, se = null;
-            while (((s = br.readLine()) != null) || ((se = ebr.readLine()) != null)) {
-                if (s != null) {
-                    mLogger.log(s, LogManager.DEBUG_MESSAGE_LEVEL);
-                } else {
-                    mLogger.log(se, LogManager.ERROR_MESSAGE_LEVEL);
-                }
-            }
-
-            br.close();
+            FileSystemOperations.createSymbolicLink(logFile, symlink, null, false);
             return true;
         } catch (Exception ex) {
             mLogger.log(
@@ -1422,13 +1583,19 @@ public class CondorGenerator extends Abstract {
 
             if (quote && args != null) {
                 try {
-                    mLogger.log("Unquoted arguments are " + args, LogManager.DEBUG_MESSAGE_LEVEL);
+                    boolean debug = mLogger.isDebugEnabled();
+                    if (debug) {
+                        mLogger.log(
+                                "Unquoted arguments are " + args, LogManager.DEBUG_MESSAGE_LEVEL);
+                    }
 
                     // insert a comment for the old args
                     // job.condorVariables.construct("#arguments",args);
                     args = CondorQuoteParser.quote(args, true);
                     job.condorVariables.construct(Condor.ARGUMENTS_KEY, args);
-                    mLogger.log("Quoted arguments are " + args, LogManager.DEBUG_MESSAGE_LEVEL);
+                    if (debug) {
+                        mLogger.log("Quoted arguments are " + args, LogManager.DEBUG_MESSAGE_LEVEL);
+                    }
                 } catch (CondorQuoteParserException e) {
                     throw new RuntimeException("CondorQuoting Problem " + e.getMessage());
                 }
@@ -1472,12 +1639,14 @@ public class CondorGenerator extends Abstract {
         } else {
             // check if an integer value is specified PM-462
             if (isInteger(releaseval)) {
-                mLogger.log(
-                        "Removing integer value "
-                                + releaseval
-                                + " for periodic_release for job "
-                                + job.getID(),
-                        LogManager.DEBUG_MESSAGE_LEVEL);
+                if (mLogger.isDebugEnabled()) {
+                    mLogger.log(
+                            "Removing integer value "
+                                    + releaseval
+                                    + " for periodic_release for job "
+                                    + job.getID(),
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                }
                 job.condorVariables.construct(
                         Condor.PERIODIC_RELEASE_KEY,
                         CondorGenerator.DEFAULT_PERIODIC_RELEASE_VALUE);
@@ -1492,12 +1661,14 @@ public class CondorGenerator extends Abstract {
         } else {
             // check if an integer value is specified PM-462
             if (isInteger(removeval)) {
-                mLogger.log(
-                        "Removing integer value "
-                                + removeval
-                                + " for periodic_remove for job "
-                                + job.getID(),
-                        LogManager.DEBUG_MESSAGE_LEVEL);
+                if (mLogger.isDebugEnabled()) {
+                    mLogger.log(
+                            "Removing integer value "
+                                    + removeval
+                                    + " for periodic_remove for job "
+                                    + job.getID(),
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                }
                 job.condorVariables.construct(
                         Condor.PERIODIC_REMOVE_KEY, CondorGenerator.DEFAULT_PERIODIC_REMOVE_VALUE);
             }
@@ -65,11 +65,12 @@ public class CondorStyleFactory {
     private static final String SSH_STYLE_IMPLEMENTING_CLASS = "SSH";
 
     /**
-     * Returns a table that maps, the Pegasus style keys to the names of implementing classes.
+     * Returns a table that maps, the Pegasus style keys to the names of implementing classes. It is
+     * synchronized as the styles are loaded from the threads writing out the submit files.
      *
      * @return a Map indexed by Pegasus styles, and values as names of implementing classes.
      */
-    private static Map<String, String> implementingClassNameTable() {
+    private static synchronized Map<String, String> implementingClassNameTable() {
         if (mImplementingClassNameTable == null) {
             mImplementingClassNameTable = new HashMap<String, String>(8);
             mImplementingClassNameTable.put(Pegasus.CONDOR_STYLE, CONDOR_STYLE_IMPLEMENTING_CLASS);
@@ -261,12 +262,12 @@ public class CondorStyleFactory {
     }
 
     /**
-     * Returns the implementation from the implementing class table.
+     * Returns the implementation from the implementing class table, loading it on demand.
      *
      * @param style the Pegasus style
      * @return implementation the class implementing that style, else null
      */
-    private Object get(String style) {
+    private synchronized Object get(String style) {
         // return mImplementingClassTable.get( style);
 
         // discover the implementing class
@@ -289,7 +290,7 @@ public class CondorStyleFactory {
      * @param style the Pegasus style
      * @param implementation the class implementing that style.
      */
-    private void put(String style, CondorStyle implementation) {
+    private synchronized void put(String style, CondorStyle implementation) {
         mImplementingClassTable.put(style, implementation);
     }
 }
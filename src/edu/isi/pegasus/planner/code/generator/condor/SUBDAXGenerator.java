@@ -18,6 +18,7 @@ import static edu.isi.pegasus.planner.code.generator.Abstract.POSTSCRIPT_LOG_SUF
 import edu.isi.pegasus.common.credential.CredentialHandler;
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.util.CondorVersion;
+import edu.isi.pegasus.common.util.FileSystemOperations;
 import edu.isi.pegasus.common.util.FindExecutable;
 import edu.isi.pegasus.common.util.Separator;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
@@ -32,6 +33,7 @@ import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.client.CPlanner;
+import edu.isi.pegasus.planner.client.PlannerDaemon;
 import edu.isi.pegasus.planner.code.GridStart;
 import edu.isi.pegasus.planner.code.GridStartFactory;
 import edu.isi.pegasus.planner.code.generator.DAXReplicaStore;
@@ -46,12 +48,9 @@ import edu.isi.pegasus.planner.namespace.ENV;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.parser.DAXParserFactory;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
@@ -1337,7 +1336,13 @@ public class SUBDAXGenerator {
                     LogManager.DEBUG_MESSAGE_LEVEL);
 
             // construct the default path to the executable
-            script.append(mProps.getBinDir()).append(File.separator).append("pegasus-plan");
+            // or the client to the planner daemon if enabled
+            script.append(mProps.getBinDir())
+                    .append(File.separator)
+                    .append(
+                            mProps.usePlannerDaemon()
+                                    ? PlannerDaemon.CLIENT_BASENAME
+                                    : "pegasus-plan");
         } else {
             script.append(entry.getPhysicalTransformation());
         }
@@ -1615,40 +1620,10 @@ public class SUBDAXGenerator {
     protected boolean createSymbolicLink(
             String source, String destination, boolean logErrorToDebug) {
         try {
-            Runtime rt = Runtime.getRuntime();
-            String command = "ln -sf " + source + " " + destination;
             mLogger.log(
                     "Creating symlink between " + source + " " + destination,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-            Process p = rt.exec(command, null);
-
-            // set up to read subprogram output
-            InputStream is = p.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-
-            // set up to read subprogram error
-            InputStream er = p.getErrorStream();
-            InputStreamReader err = new InputStreamReader(er);
-            BufferedReader ebr = new BufferedReader(err);
-
-            // read output from subprogram
-            // and display it
-
-            String s, se = null;
-            while (((s = br.readLine()) != null) || ((se = ebr.readLine()) != null)) {
-                if (s != null) {
-                    mLogger.log(s, LogManager.DEBUG_MESSAGE_LEVEL);
-                } else {
-                    if (logErrorToDebug) {
-                        mLogger.log(se, LogManager.DEBUG_MESSAGE_LEVEL);
-                    } else {
-                        mLogger.log(se, LogManager.ERROR_MESSAGE_LEVEL);
-                    }
-                }
-            }
-
-            br.close();
+            FileSystemOperations.createSymbolicLink(source, destination, null, true);
             return true;
         } catch (Exception ex) {
             if (logErrorToDebug) {
@@ -14,9 +14,7 @@
 package edu.isi.pegasus.planner.code.gridstart;
 
 import edu.isi.pegasus.common.logging.LogManager;
-import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
-import edu.isi.pegasus.common.util.StreamGobbler;
-import edu.isi.pegasus.common.util.StreamGobblerCallback;
+import edu.isi.pegasus.common.util.FileSystemOperations;
 import edu.isi.pegasus.common.util.Version;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
@@ -58,6 +56,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -92,6 +93,14 @@ import java.util.Set;
  * pegasus.gridstart PegasusLite
  * </pre>
  *
+ * The settings and set up steps that are the same for all the jobs on a site, can be written out
+ * once to a shared prelude file in the submit directory, that the wrapper of each job sources, by
+ * setting the following property
+ *
+ * <pre>
+ * pegasus.gridstart.pegasuslite.prelude     true
+ * </pre>
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -115,6 +124,9 @@ public class PegasusLite implements GridStart {
     /** The basename of the pegasus lite common shell functions file. */
     public static final String PEGASUS_LITE_COMMON_FILE_BASENAME = "pegasus-lite-common.sh";
 
+    /** The prefix for the basename of the prelude files shared by the jobs. */
+    public static final String PEGASUS_LITE_PRELUDE_FILE_PREFIX = "pegasus-lite-prelude-";
+
     /**
      * The logical name of the transformation that creates directories on the remote execution
      * pools.
@@ -252,6 +264,15 @@ public class PegasusLite implements GridStart {
     /** Whether to do any integrity checking or not. */
     protected boolean mDoIntegrityChecking;
 
+    /** Whether the wrappers source a prelude shared by the jobs instead of inlining it. */
+    protected boolean mSharePrelude;
+
+    /**
+     * The prelude files written out, indexed by the contents of the prelude. Guarded by itself, as
+     * PegasusLite may enable jobs from multiple threads.
+     */
+    private Map<String, File> mPreludeFiles;
+
     /**
      * Initializes the GridStart implementation.
      *
@@ -311,6 +332,9 @@ public class PegasusLite implements GridStart {
         mContainerWrapperFactory.initialize(bag, dag);
 
         mDoIntegrityChecking = mProps.doIntegrityChecking();
+
+        mSharePrelude = mProps.sharePegasusLitePrelude();
+        mPreludeFiles = new HashMap<String, File>();
     }
 
     /**
@@ -448,12 +472,17 @@ public class PegasusLite implements GridStart {
                     if (mSiteStore.getEnvironmentVariable(job.getSiteHandle(), "PEGASUS_HOME")
                             == null) {
                         // yes we need to add from the location in the worker package map
-                        String location = this.mWorkerPackageMap.get(job.getSiteHandle());
-
-                        if (!mWorkerPackageMap.containsKey(job.getSiteHandle())) {
-                            location = retrieveLocationForWorkerPackageFromTC(job.getSiteHandle());
-                            // null can be populated as value
-                            this.mWorkerPackageMap.put(job.getSiteHandle(), location);
+                        String location = null;
+                        // PegasusLite may enable jobs from multiple threads
+                        synchronized (mWorkerPackageMap) {
+                            location = this.mWorkerPackageMap.get(job.getSiteHandle());
+
+                            if (!mWorkerPackageMap.containsKey(job.getSiteHandle())) {
+                                location =
+                                        retrieveLocationForWorkerPackageFromTC(job.getSiteHandle());
+                                // null can be populated as value
+                                this.mWorkerPackageMap.put(job.getSiteHandle(), location);
+                            }
                         }
                         // add only if location is not null
                         if (location != null) {
@@ -735,26 +764,6 @@ public class PegasusLite implements GridStart {
             StringBuffer sb = new StringBuffer();
             sb.append("#!/bin/bash").append('\n');
             sb.append("set -e").append('\n');
-            sb.append("pegasus_lite_version_major=\"")
-                    .append(this.mMajorVersionLevel)
-                    .append("\"")
-                    .append('\n');
-            sb.append("pegasus_lite_version_minor=\"")
-                    .append(this.mMinorVersionLevel)
-                    .append("\"")
-                    .append('\n');
-            sb.append("pegasus_lite_version_patch=\"")
-                    .append(this.mPatchVersionLevel)
-                    .append("\"")
-                    .append('\n');
-            sb.append("pegasus_lite_enforce_strict_wp_check=\"")
-                    .append(this.mEnforceStrictChecksOnWPVersion)
-                    .append("\"")
-                    .append('\n');
-            sb.append("pegasus_lite_version_allow_wp_auto_download=\"")
-                    .append(this.mAllowWPDownloadFromWebsite)
-                    .append("\"")
-                    .append('\n');
 
             // PM-1132 set the variable to point to a log file for pegasus lite output
             if (job.envVariables.containsKey(PegasusLite.PEGASUS_LITE_LOG_ENV_KEY)) {
@@ -792,69 +801,27 @@ public class PegasusLite implements GridStart {
             }
             sb.append('\n');
 
-            sb.append(". ").append(PegasusLite.PEGASUS_LITE_COMMON_FILE_BASENAME).append('\n');
-            sb.append('\n');
-
-            sb.append("pegasus_lite_init\n");
-            sb.append('\n');
-
-            sb.append("# cleanup in case of failures").append('\n');
-            sb.append("trap pegasus_lite_signal_int INT").append('\n');
-            sb.append("trap pegasus_lite_signal_term TERM").append('\n');
-            sb.append("trap pegasus_lite_unexpected_exit EXIT").append('\n');
-            sb.append('\n');
-
-            appendStderrFragment(sb, "Setting up workdir");
-            sb.append("# work dir").append('\n');
-
-            if (sls.doesCondorModifications()) {
-                // when using condor IO with pegasus lite we dont want
-                // pegasus lite to change the directory where condor
-                // launches the jobs
-                sb.append("export pegasus_lite_work_dir=$PWD").append('\n');
-            } else {
-                // PM-822 check if the user has specified a local directory
-                // for the execution site then set that as PEGASUS_WN_TMP
-                // and let pegasus lite at runtime launch the job in that
-                // directory
-                SiteCatalogEntry execSiteEntry = mSiteStore.lookup(job.getSiteHandle());
-                String dir = null;
-
-                if (job.envVariables.containsKey(PegasusLite.WORKER_NODE_DIRECTORY_KEY)) {
-                    // user metioned it as a profile that got assocaited with the job
-                    dir = (String) job.envVariables.get(PegasusLite.WORKER_NODE_DIRECTORY_KEY);
-                } else if (execSiteEntry != null) {
-                    Directory directory = execSiteEntry.getDirectory(Directory.TYPE.local_scratch);
-                    if (directory != null) {
-                        dir = directory.getInternalMountPoint().getMountPoint();
-                    }
-                }
-
-                if (dir != null) {
-                    StringBuilder message = new StringBuilder();
-                    message.append("Job ")
-                            .append(job.getID())
-                            .append(" will execute in directory ")
-                            .append(dir)
-                            .append(" on the local filesystem at site ")
-                            .append(job.getSiteHandle());
-                    mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-                    sb.append("export ")
-                            .append(PegasusLite.WORKER_NODE_DIRECTORY_KEY)
-                            .append("=")
-                            .append(dir)
-                            .append('\n');
-                }
-            }
-
-            sb.append("pegasus_lite_setup_work_dir").append('\n');
-            sb.append('\n');
-
-            if (relyOnPegasusLiteToSetupWorkerPackage) {
-                appendStderrFragment(sb, "Figuring out the worker package to use");
-                sb.append("# figure out the worker package to use").append('\n');
-                sb.append("pegasus_lite_worker_package").append('\n');
+            // when using condor IO with pegasus lite we dont want
+            // pegasus lite to change the directory where condor
+            // launches the jobs
+            String workerNodeTmpDir =
+                    sls.doesCondorModifications() ? null : getWorkerNodeTmpDirectory(job);
+
+            StringBuffer prelude = new StringBuffer();
+            appendPrelude(
+                    prelude,
+                    sls.doesCondorModifications(),
+                    workerNodeTmpDir,
+                    relyOnPegasusLiteToSetupWorkerPackage);
+            if (mSharePrelude) {
+                File preludeFile = getPreludeFile(prelude.toString());
+                sb.append("# settings and set up shared by the jobs").append('\n');
+                sb.append(". ").append(preludeFile.getName()).append('\n');
                 sb.append('\n');
+                // the job wrapper requires the prelude from the submit directory
+                job.condorVariables.addIPFileForTransfer(preludeFile.getAbsolutePath());
+            } else {
+                sb.append(prelude);
             }
 
             if (isCompute
@@ -1161,42 +1128,14 @@ public class PegasusLite implements GridStart {
         }
 
         try {
-            // set the callback and run the grep command
-            Runtime r = Runtime.getRuntime();
-            String command = "chmod +x " + file;
-            mLogger.log("Setting xbit " + command, LogManager.DEBUG_MESSAGE_LEVEL);
-            Process p = r.exec(command);
-
-            // the default gobbler callback always log to debug level
-            StreamGobblerCallback callback =
-                    new DefaultStreamGobblerCallback(LogManager.DEBUG_MESSAGE_LEVEL);
-            // spawn off the gobblers with the already initialized default callback
-            StreamGobbler ips = new StreamGobbler(p.getInputStream(), callback);
-            StreamGobbler eps = new StreamGobbler(p.getErrorStream(), callback);
-
-            ips.start();
-            eps.start();
-
-            // wait for the threads to finish off
-            ips.join();
-            eps.join();
-
-            // get the status
-            int status = p.waitFor();
-            if (status != 0) {
-                mLogger.log(
-                        "Command " + command + " exited with status " + status,
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-                return result;
-            }
+            mLogger.log("Setting xbit on " + file, LogManager.DEBUG_MESSAGE_LEVEL);
+            FileSystemOperations.setExecutable(f);
             result = true;
         } catch (IOException ioe) {
             mLogger.log(
-                    "IOException while creating symbolic links ",
+                    "IOException while setting xbit on " + file,
                     ioe,
                     LogManager.ERROR_MESSAGE_LEVEL);
-        } catch (InterruptedException ie) {
-            // ignore
         }
         return result;
     }
@@ -1307,6 +1246,170 @@ public class PegasusLite implements GridStart {
         throw new RuntimeException(error.toString());
     }
 
+    /**
+     * Appends the part of the pegasus lite script that is the same for all the jobs that run on a
+     * site with the same data configuration. It sets the version variables, sources the common
+     * functions, sets up the work directory and figures out the worker package to use.
+     *
+     * @param sb string buffer
+     * @param condorIO whether condor file transfers are used, in which case the job runs in the
+     *     directory where condor launches it
+     * @param workerNodeTmpDir the directory on the worker node to run the job in, can be null
+     * @param setupWorkerPackage whether pegasus lite figures out the worker package to use
+     */
+    private void appendPrelude(
+            StringBuffer sb,
+            boolean condorIO,
+            String workerNodeTmpDir,
+            boolean setupWorkerPackage) {
+        sb.append("pegasus_lite_version_major=\"")
+                .append(this.mMajorVersionLevel)
+                .append("\"")
+                .append('\n');
+        sb.append("pegasus_lite_version_minor=\"")
+                .append(this.mMinorVersionLevel)
+                .append("\"")
+                .append('\n');
+        sb.append("pegasus_lite_version_patch=\"")
+                .append(this.mPatchVersionLevel)
+                .append("\"")
+                .append('\n');
+        sb.append("pegasus_lite_enforce_strict_wp_check=\"")
+                .append(this.mEnforceStrictChecksOnWPVersion)
+                .append("\"")
+                .append('\n');
+        sb.append("pegasus_lite_version_allow_wp_auto_download=\"")
+                .append(this.mAllowWPDownloadFromWebsite)
+                .append("\"")
+                .append('\n');
+        sb.append('\n');
+
+        sb.append(". ").append(PegasusLite.PEGASUS_LITE_COMMON_FILE_BASENAME).append('\n');
+        sb.append('\n');
+
+        sb.append("pegasus_lite_init\n");
+        sb.append('\n');
+
+        sb.append("# cleanup in case of failures").append('\n');
+        sb.append("trap pegasus_lite_signal_int INT").append('\n');
+        sb.append("trap pegasus_lite_signal_term TERM").append('\n');
+        sb.append("trap pegasus_lite_unexpected_exit EXIT").append('\n');
+        sb.append('\n');
+
+        appendStderrFragment(sb, "Setting up workdir");
+        sb.append("# work dir").append('\n');
+        if (condorIO) {
+            sb.append("export pegasus_lite_work_dir=$PWD").append('\n');
+        } else if (workerNodeTmpDir != null) {
+            sb.append("export ")
+                    .append(PegasusLite.WORKER_NODE_DIRECTORY_KEY)
+                    .append("=")
+                    .append(workerNodeTmpDir)
+                    .append('\n');
+        }
+        sb.append("pegasus_lite_setup_work_dir").append('\n');
+        sb.append('\n');
+
+        if (setupWorkerPackage) {
+            appendStderrFragment(sb, "Figuring out the worker package to use");
+            sb.append("# figure out the worker package to use").append('\n');
+            sb.append("pegasus_lite_worker_package").append('\n');
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * Returns the directory on the local filesystem of the worker node that a job should run in.
+     * PM-822 the directory is either specified for the job as an environment profile, or is the
+     * local scratch directory of the execution site.
+     *
+     * @param job the job
+     * @return the directory, or null if none is specified
+     */
+    private String getWorkerNodeTmpDirectory(Job job) {
+        SiteCatalogEntry execSiteEntry = mSiteStore.lookup(job.getSiteHandle());
+        String dir = null;
+
+        if (job.envVariables.containsKey(PegasusLite.WORKER_NODE_DIRECTORY_KEY)) {
+            // user metioned it as a profile that got assocaited with the job
+            dir = (String) job.envVariables.get(PegasusLite.WORKER_NODE_DIRECTORY_KEY);
+        } else if (execSiteEntry != null) {
+            Directory directory = execSiteEntry.getDirectory(Directory.TYPE.local_scratch);
+            if (directory != null) {
+                dir = directory.getInternalMountPoint().getMountPoint();
+            }
+        }
+
+        if (dir != null) {
+            StringBuilder message = new StringBuilder();
+            message.append("Job ")
+                    .append(job.getID())
+                    .append(" will execute in directory ")
+                    .append(dir)
+                    .append(" on the local filesystem at site ")
+                    .append(job.getSiteHandle());
+            mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+        }
+        return dir;
+    }
+
+    /**
+     * Returns the prelude file in the submit directory with the contents passed, writing it out the
+     * first time the contents are seen. The preludes differ only in the site specific settings, so
+     * only a few of them are written out for a workflow. The file is named by a digest of its
+     * contents, as other instances may write preludes with different settings to the same submit
+     * directory, such as the one SUBDAXGenerator uses for the sub workflow jobs.
+     *
+     * @param contents the contents of the prelude
+     * @return the prelude file
+     * @throws IOException in case of error while writing out the file
+     */
+    private File getPreludeFile(String contents) throws IOException {
+        synchronized (mPreludeFiles) {
+            File prelude = mPreludeFiles.get(contents);
+            if (prelude == null) {
+                prelude =
+                        new File(
+                                mSubmitDir,
+                                PegasusLite.PEGASUS_LITE_PRELUDE_FILE_PREFIX
+                                        + digest(contents)
+                                        + ".sh");
+                PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(prelude)));
+                writer.print("# sourced by the PegasusLite wrappers of the jobs\n");
+                writer.print(contents);
+                writer.close();
+                if (writer.checkError()) {
+                    throw new IOException("Unable to write out pegasus lite prelude " + prelude);
+                }
+                mLogger.log(
+                        "Written out pegasus lite prelude " + prelude,
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                mPreludeFiles.put(contents, prelude);
+            }
+            return prelude;
+        }
+    }
+
+    /**
+     * Returns the leading hex digits of the SHA-256 digest of a string.
+     *
+     * @param s the string
+     * @return the digest
+     */
+    private static String digest(String s) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            StringBuilder sb = new StringBuilder();
+            byte[] bytes = md.digest(s.getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", bytes[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not supported", e);
+        }
+    }
+
     /**
      * Appends a fragment to the pegasus lite script that logs a message to stderr
      *
@@ -75,6 +75,15 @@ public class PegasusProperties implements Cloneable {
     public static final String PEGASUS_REPLICA_CATALOG_FILE_PROPERTY =
             "pegasus.catalog.replica.file";
 
+    public static final String PEGASUS_REPLICA_LOOKUP_CACHE_PROPERTY =
+            "pegasus.catalog.replica.lookup.cache";
+
+    public static final String PEGASUS_REPLICA_LOOKUP_CACHE_TTL_PROPERTY =
+            "pegasus.catalog.replica.lookup.cache.ttl";
+
+    public static final String PEGASUS_REPLICA_LOOKUP_CACHE_MAX_ENTRIES_PROPERTY =
+            "pegasus.catalog.replica.lookup.cache.max.entries";
+
     public static final String PEGASUS_SITE_CATALOG_PROPERTY = "pegasus.catalog.site";
 
     public static final String PEGASUS_SITE_CATALOG_FILE_PROPERTY = "pegasus.catalog.site.file";
@@ -94,6 +103,10 @@ public class PegasusProperties implements Cloneable {
 
     public static final String DEFAULT_RLS_EXIT_MODE = "error";
 
+    public static final long DEFAULT_REPLICA_LOOKUP_CACHE_TTL = 3600;
+
+    public static final int DEFAULT_REPLICA_LOOKUP_CACHE_MAX_ENTRIES = 100000;
+
     // public static final String DEFAULT_REPLICA_MODE = "rls";
 
     public static final String DEFAULT_RLS_QUERY_ATTRIB = "false";
@@ -130,6 +143,8 @@ public class PegasusProperties implements Cloneable {
 
     public static final String DEFAULT_SITE_SELECTOR_KEEP = "onerror";
 
+    public static final String DEFAULT_SITE_SELECTOR_CALLOUT = "perjob";
+
     /// some simulator constants that are used
     public static final String DEFAULT_DATA_MULTIPLICATION_FACTOR = "1";
 
@@ -172,6 +187,13 @@ public class PegasusProperties implements Cloneable {
         full
     };
 
+    /** An enum defining the dial for pruning redundant edges from the executable workflow */
+    public enum EDGE_REDUCTION {
+        none,
+        transitive,
+        legacy
+    };
+
     /** The default DAXCallback that is loaded, if none is specified by the user. */
     private static final String DEFAULT_DAX_CALLBACK = "DAX2Graph";
 
@@ -407,11 +429,9 @@ public class PegasusProperties implements Cloneable {
             // Karan April 27, 2011
             mProps = CommonProperties.nonSingletonInstance(confProperties);
         } catch (IOException e) {
-            System.err.println("unable to read property file: " + e.getMessage());
-            System.exit(1);
+            throw new RuntimeException("unable to read property file: " + e.getMessage(), e);
         } catch (MissingResourceException e) {
-            System.err.println("A required property is missing: " + e.getMessage());
-            System.exit(1);
+            throw new RuntimeException("A required property is missing: " + e.getMessage(), e);
         }
     }
 
@@ -666,6 +686,18 @@ public class PegasusProperties implements Cloneable {
         return Boolean.parse(mProps.getProperty("pegasus.dir.submit.subwf.labelbased"), false);
     }
 
+    /**
+     * Returns a boolean indicating whether the sub workflows should be planned by a long running
+     * planner daemon, instead of a new pegasus-plan invocation for each sub workflow.
+     *
+     * <p>Referred to by the "pegasus.planner.daemon" property
+     *
+     * @return the value in the properties file, else false
+     */
+    public boolean usePlannerDaemon() {
+        return Boolean.parse(mProps.getProperty("pegasus.planner.daemon"), false);
+    }
+
     /**
      * Returns the storage directory suffix or absolute specified that is appended/replaced to the
      * storage-mount-point specified in the pool catalog for the various pools.
@@ -813,6 +845,29 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.catalog.transformation.mapper", DEFAULT_TC_MAPPER_MODE);
     }
 
+    /**
+     * Returns the number of threads used to incorporate the site mappings of the jobs, that
+     * involves the transformation lookups and selection for each job. A value of 1 or less results
+     * in the jobs being handled sequentially.
+     *
+     * <p>Referred to by the "pegasus.site.mapping.threads" property.
+     *
+     * @return the value specified in the properties file, else 1
+     */
+    public int getSiteMappingThreads() {
+        String value = mProps.getProperty("pegasus.site.mapping.threads");
+        int threads = 1;
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid value specified for pegasus.site.mapping.threads " + value, e);
+            }
+        }
+        return threads;
+    }
+
     // REPLICA CATALOG PROPERTIES
     /**
      * Returns the replica mode. It identifies the ReplicaMechanism being used by Pegasus to
@@ -1436,6 +1491,20 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.selector.site.keep.tmp", DEFAULT_SITE_SELECTOR_KEEP);
     }
 
+    /**
+     * Returns how the external site selectors are called out to. The value perjob designates that
+     * the site selector is invoked for each job, while persistent designates one long lived site
+     * selector process to which all the jobs are streamed.
+     *
+     * <p>Referred to by the "pegasus.selector.site.callout" property.
+     *
+     * @return the value of the property if specified, else DEFAULT_SITE_SELECTOR_CALLOUT
+     * @see #DEFAULT_SITE_SELECTOR_CALLOUT
+     */
+    public String getSiteSelectorCallout() {
+        return mProps.getProperty("pegasus.selector.site.callout", DEFAULT_SITE_SELECTOR_CALLOUT);
+    }
+
     // PROPERTIES RELATED TO KICKSTART AND EXITCODE
 
     /**
@@ -1486,6 +1555,19 @@ public class PegasusProperties implements Cloneable {
         return Boolean.parse(mProps.getProperty("pegasus.gridstart.generate.lof"), false);
     }
 
+    /**
+     * Returns a boolean indicating whether the PegasusLite wrappers of the jobs source a prelude
+     * file shared by the jobs on a site, instead of each including the common settings and set up.
+     *
+     * <p>Referred to by the "pegasus.gridstart.pegasuslite.prelude" property.
+     *
+     * @return the boolean value specified in the property file, else false if not specified or non
+     *     boolean specified.
+     */
+    public boolean sharePegasusLitePrelude() {
+        return Boolean.parse(mProps.getProperty("pegasus.gridstart.pegasuslite.prelude"), false);
+    }
+
     /**
      * Returns a boolean indicating whether to use invoke in kickstart always or not.
      *
@@ -1889,6 +1971,18 @@ public class PegasusProperties implements Cloneable {
         return Boolean.parse(mProps.getProperty("pegasus.log.memory.usage"), false);
     }
 
+    /**
+     * Returns a boolean indicating whether to write out the wall time, CPU time and memory used by
+     * each stage of the planner to the submit directory.
+     *
+     * <p>Referred to by the "pegasus.log.stage.metrics" property.
+     *
+     * @return boolean value specified in properties else true.
+     */
+    public boolean logStageMetrics() {
+        return Boolean.parse(mProps.getProperty("pegasus.log.stage.metrics"), true);
+    }
+
     // SOME MISCELLANEOUS PROPERTIES
 
     /**
@@ -1961,6 +2055,58 @@ public class PegasusProperties implements Cloneable {
         return Boolean.parse(mProps.getProperty("pegasus.catalog.replica.dax.asrc"), false);
     }
 
+    /**
+     * Returns a boolean indicating whether the lookups against the replica catalog are cached in
+     * the base submit directory across planner invocations.
+     *
+     * <p>Referred to by the "pegasus.catalog.replica.lookup.cache" property.
+     *
+     * @return boolean value in the properties file, else false if not specified or an invalid value
+     *     specified.
+     */
+    public boolean cacheReplicaLookups() {
+        return Boolean.parse(mProps.getProperty(PEGASUS_REPLICA_LOOKUP_CACHE_PROPERTY), false);
+    }
+
+    /**
+     * Returns the time in seconds for which a cached replica catalog lookup is valid.
+     *
+     * <p>Referred to by the "pegasus.catalog.replica.lookup.cache.ttl" property.
+     *
+     * @return the value specified in the properties file, else DEFAULT_REPLICA_LOOKUP_CACHE_TTL
+     */
+    public long getReplicaLookupCacheTTL() {
+        long value = DEFAULT_REPLICA_LOOKUP_CACHE_TTL;
+        try {
+            value = Long.parseLong(mProps.getProperty(PEGASUS_REPLICA_LOOKUP_CACHE_TTL_PROPERTY));
+        } catch (Exception e) {
+            // ignore malformed values from
+            // the property file
+        }
+        return value;
+    }
+
+    /**
+     * Returns the maximum number of LFNs for which replica catalog lookups are cached.
+     *
+     * <p>Referred to by the "pegasus.catalog.replica.lookup.cache.max.entries" property.
+     *
+     * @return the value specified in the properties file, else
+     *     DEFAULT_REPLICA_LOOKUP_CACHE_MAX_ENTRIES
+     */
+    public int getReplicaLookupCacheMaxEntries() {
+        int value = DEFAULT_REPLICA_LOOKUP_CACHE_MAX_ENTRIES;
+        try {
+            value =
+                    Integer.parseInt(
+                            mProps.getProperty(PEGASUS_REPLICA_LOOKUP_CACHE_MAX_ENTRIES_PROPERTY));
+        } catch (Exception e) {
+            // ignore malformed values from
+            // the property file
+        }
+        return value;
+    }
+
     /**
      * Returns a boolean indicating whether to preserver line breaks.
      *
@@ -2032,6 +2178,41 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.code.generator", "condor");
     }
 
+    /**
+     * Returns the number of threads the code generator uses to write out the submit files for the
+     * jobs. A value of 1 or less results in the submit files being written out sequentially.
+     *
+     * <p>Referred to by the "pegasus.code.generator.threads" property.
+     *
+     * @return the value specified in the properties file, else 1
+     */
+    public int getCodeGeneratorThreads() {
+        String value = mProps.getProperty("pegasus.code.generator.threads");
+        int threads = 1;
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid value specified for pegasus.code.generator.threads " + value, e);
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * Returns the graph implementation to use for storing the jobs of the workflow and their
+     * dependencies. Map stores the edges of each job in hash sets, while Compact stores them in
+     * primitive int arrays, trading some speed of edge updates for a much smaller heap.
+     *
+     * <p>Referred to by the "pegasus.graph.implementation" property.
+     *
+     * @return the value specified in the properties file, else the default value i.e Map.
+     */
+    public String getGraphImplementation() {
+        return mProps.getProperty("pegasus.graph.implementation", "Map");
+    }
+
     /**
      * Returns the mode for parsing the dax while writing out the partitioned daxes.
      *
@@ -2179,6 +2360,33 @@ public class PegasusProperties implements Cloneable {
         return dial;
     }
 
+    /**
+     * Returns the edge reduction enum, that determines how redundant edges are pruned from the
+     * executable workflow before it is written out.
+     *
+     * <p>Referred to by the "pegasus.graph.edges.reduce" property.
+     *
+     * @return the value specified in the properties file, else EDGE_REDUCTION.transitive
+     * @see EDGE_REDUCTION
+     */
+    public EDGE_REDUCTION getEdgeReduction() {
+        EDGE_REDUCTION reduction = EDGE_REDUCTION.transitive;
+        String value = mProps.getProperty("pegasus.graph.edges.reduce");
+        if (value == null) {
+            return reduction;
+        }
+
+        // try to assign a reduction value
+        try {
+            reduction = EDGE_REDUCTION.valueOf(value);
+        } catch (IllegalArgumentException iae) {
+            throw new IllegalArgumentException(
+                    "Invalid value specified for edge reduction " + value, iae);
+        }
+
+        return reduction;
+    }
+
     // DEFERRED PLANNING PROPERTIES
 
     /**
@@ -2245,6 +2453,55 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty(key.toString());
     }
 
+    /**
+     * Returns the number of partitions the multilevel partitioner splits a workflow into.
+     *
+     * <p>Referred to by the "pegasus.partitioner.multilevel.partitions" property.
+     *
+     * @param defaultValue the value to return if the property is not specified
+     * @return the value specified in the properties file, else the default value
+     */
+    public int getMultilevelPartitionerPartitions(int defaultValue) {
+        String value = mProps.getProperty("pegasus.partitioner.multilevel.partitions");
+        int partitions = defaultValue;
+        if (value != null) {
+            try {
+                partitions = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid value specified for pegasus.partitioner.multilevel.partitions "
+                                + value,
+                        e);
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Returns the fraction by which the weight of a partition can exceed the average partition
+     * weight, when partitioning with the multilevel partitioner.
+     *
+     * <p>Referred to by the "pegasus.partitioner.multilevel.imbalance" property.
+     *
+     * @param defaultValue the value to return if the property is not specified
+     * @return the value specified in the properties file, else the default value
+     */
+    public double getMultilevelPartitionerImbalance(double defaultValue) {
+        String value = mProps.getProperty("pegasus.partitioner.multilevel.imbalance");
+        double imbalance = defaultValue;
+        if (value != null) {
+            try {
+                imbalance = Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid value specified for pegasus.partitioner.multilevel.imbalance "
+                                + value,
+                        e);
+            }
+        }
+        return imbalance;
+    }
+
     /**
      * Returns the key that is to be used as a label key, for labelled clustering.
      *
@@ -23,12 +23,26 @@ import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.namespace.Metadata;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Interface with Aspen to estimate job runtimes.
@@ -54,6 +68,14 @@ public class Aspen implements Estimator {
      */
     public static final String ASPEN_MODELS_PATH_ENV_VARIABLE = "ASPENPATH";
 
+    /**
+     * The argument that puts the estimate client in batch mode. In batch mode the client reads one
+     * set of whitespace separated key=value arguments per line on stdin, and writes each estimate
+     * as a line of the form index key=value on stdout, where index is the zero based line number of
+     * the argument set the estimate is for.
+     */
+    public static final String ASPEN_BATCH_ARGUMENT = "--batch";
+
     private PegasusProperties mProps;
 
     private File mAspenEstimateClient;
@@ -62,6 +84,12 @@ public class Aspen implements Estimator {
 
     private String[] mEnvVariables;
 
+    /** The estimates computed so far, indexed by the normalized arguments to the client. */
+    private Map<Map<String, String>, Map<String, String>> mEstimatesCache;
+
+    /** Whether the estimate client can be invoked in batch mode. */
+    private boolean mBatchSupported;
+
     /**
      * Initialization method
      *
@@ -71,6 +99,8 @@ public class Aspen implements Estimator {
     public void initialize(ADag dag, PegasusBag bag) {
         mProps = bag.getPegasusProperties();
         mLogger = bag.getLogger();
+        mEstimatesCache = new ConcurrentHashMap<Map<String, String>, Map<String, String>>();
+        mBatchSupported = true;
 
         String binDir = mProps.getProperty(ASPEN_BIN_PROPERTY_KEY);
         mAspenEstimateClient = FindExecutable.findExec(binDir, PEGASUS_ASPEN_CLIENT_NAME);
@@ -136,31 +166,102 @@ public class Aspen implements Estimator {
     }
 
     /**
-     * Returns all estimates for a job
+     * Returns all estimates for a job. Jobs with the same metadata share the estimates, and the
+     * estimate client is only invoked for metadata not seen before.
      *
      * @param job
      * @return
      */
     public Map<String, String> getAllEstimates(Job job) {
-        return this.executeAspenCommand(assembleArgsFromMetadata(job));
+        Map<String, String> args = this.getNormalizedArguments(job);
+        Map<String, String> estimates = mEstimatesCache.get(args);
+        if (estimates == null) {
+            estimates = this.executeAspenCommand(this.assembleArgs(args));
+            mEstimatesCache.put(args, estimates);
+        }
+        return new HashMap<String, String>(estimates);
     }
 
     /**
-     * Assembles arguments for aspen client from metadata attributes
+     * Returns all estimates for a collection of jobs. The distinct argument sets for which no
+     * estimates have been computed yet are sent to a single invocation of the estimate client in
+     * batch mode. If the client does not support batch mode, it is invoked once per distinct
+     * argument set.
+     *
+     * @param jobs the jobs for which estimation is required
+     * @return map indexed by job id, with the estimates for each job as value
+     */
+    public Map<String, Map<String, String>> getAllEstimates(Collection<Job> jobs) {
+        Map<String, Map<String, String>> jobArgs = new LinkedHashMap<String, Map<String, String>>();
+        Set<Map<String, String>> pending = new LinkedHashSet<Map<String, String>>();
+        for (Job job : jobs) {
+            Map<String, String> args = this.getNormalizedArguments(job);
+            jobArgs.put(job.getID(), args);
+            if (!mEstimatesCache.containsKey(args)) {
+                pending.add(args);
+            }
+        }
+        mLogger.log(
+                "Estimating "
+                        + jobs.size()
+                        + " jobs requires "
+                        + pending.size()
+                        + " invocations of "
+                        + mAspenEstimateClient,
+                LogManager.DEBUG_MESSAGE_LEVEL);
+
+        if (!pending.isEmpty()) {
+            List<Map<String, String>> sets = new ArrayList<Map<String, String>>(pending);
+            List<Map<String, String>> estimates =
+                    mBatchSupported ? this.executeAspenBatchCommand(sets) : null;
+            for (int i = 0; i < sets.size(); i++) {
+                Map<String, String> args = sets.get(i);
+                mEstimatesCache.put(
+                        args,
+                        (estimates == null)
+                                ? this.executeAspenCommand(this.assembleArgs(args))
+                                : estimates.get(i));
+            }
+        }
+
+        Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+        for (Map.Entry<String, Map<String, String>> entry : jobArgs.entrySet()) {
+            Map<String, String> estimates = mEstimatesCache.get(entry.getValue());
+            result.put(entry.getKey(), new HashMap<String, String>(estimates));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the metadata attributes of a job that are passed as arguments to the aspen client,
+     * sorted by key so that jobs with the same metadata map to the same arguments.
      *
      * @param job
-     * @return
+     * @return the arguments
      */
-    private String assembleArgsFromMetadata(Job job) {
-        StringBuilder args = new StringBuilder();
+    private Map<String, String> getNormalizedArguments(Job job) {
+        Map<String, String> args = new TreeMap<String, String>();
         Metadata m = (Metadata) job.getMetadata();
         for (Iterator it = m.getProfileKeyIterator(); it.hasNext(); ) {
             String key = (String) it.next();
-            String value = (String) m.get(key);
+            args.put(key, (String) m.get(key));
+        }
+        return args;
+    }
+
+    /**
+     * Assembles arguments for aspen client
+     *
+     * @param args the normalized arguments
+     * @return
+     */
+    private String assembleArgs(Map<String, String> args) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : args.entrySet()) {
             // build key=value pairs separated by whitespace
-            args.append(key).append("=").append(value).append(" ");
+            sb.append(entry.getKey()).append("=").append(entry.getValue()).append(" ");
         }
-        return args.toString();
+        return sb.toString();
     }
 
     /**
@@ -217,11 +318,138 @@ public class Aspen implements Estimator {
                     LogManager.ERROR_MESSAGE_LEVEL);
             throw new RuntimeException("IOException while executing " + command, ioe);
         } catch (InterruptedException ie) {
-            // ignore
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing " + command, ie);
+        }
+        return result;
+    }
+
+    /**
+     * Executes the aspen command in batch mode for a list of argument sets.
+     *
+     * @param sets the normalized argument sets
+     * @return the estimates for each argument set in the same order, or null if the estimate client
+     *     does not support batch mode
+     */
+    private List<Map<String, String>> executeAspenBatchCommand(List<Map<String, String>> sets) {
+        String command = this.mAspenEstimateClient.getAbsolutePath() + " " + ASPEN_BATCH_ARGUMENT;
+        mLogger.log(
+                "Executing  " + command + " for " + sets.size() + " argument sets",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+
+        final List<String> lines = new ArrayList<String>(sets.size());
+        List<Map<String, String>> result = new ArrayList<Map<String, String>>(sets.size());
+        for (Map<String, String> args : sets) {
+            lines.add(this.assembleArgs(args).trim());
+            result.add(new HashMap<String, String>());
+        }
+
+        boolean parsed = true;
+        int status = 0;
+        try {
+            Runtime r = Runtime.getRuntime();
+            Process p =
+                    r.exec(
+                            new String[] {
+                                mAspenEstimateClient.getAbsolutePath(), ASPEN_BATCH_ARGUMENT
+                            },
+                            mEnvVariables);
+
+            // an older client that does not know the batch mode complains
+            // on stderr, so it is logged at debug level only
+            StreamGobbler eps =
+                    new StreamGobbler(
+                            p.getErrorStream(),
+                            new DefaultStreamGobblerCallback(LogManager.DEBUG_MESSAGE_LEVEL));
+            eps.start();
+
+            // the argument sets are written on a separate thread, so that
+            // the client does not block on a full stdout pipe
+            final OutputStream stdin = p.getOutputStream();
+            Thread writer =
+                    new Thread() {
+                        public void run() {
+                            PrintWriter pw =
+                                    new PrintWriter(
+                                            new BufferedWriter(new OutputStreamWriter(stdin)));
+                            for (String line : lines) {
+                                pw.println(line);
+                            }
+                            pw.close();
+                        }
+                    };
+            writer.start();
+
+            BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
+            String line = null;
+            while ((line = br.readLine()) != null) {
+                mLogger.log(line, LogManager.DEBUG_MESSAGE_LEVEL);
+                line = line.trim();
+                if (line.length() > 0 && !this.parseBatchEstimate(line, result)) {
+                    parsed = false;
+                }
+            }
+            br.close();
+
+            writer.join();
+            eps.join();
+            status = p.waitFor();
+        } catch (IOException ioe) {
+            mLogger.log(
+                    "IOException while executing " + mAspenEstimateClient,
+                    ioe,
+                    LogManager.ERROR_MESSAGE_LEVEL);
+            throw new RuntimeException("IOException while executing " + command, ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing " + command, ie);
+        }
+
+        mLogger.log(
+                mAspenEstimateClient + " exited with status " + status,
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        if (status != 0 || !parsed) {
+            mLogger.log(
+                    mAspenEstimateClient
+                            + " does not support "
+                            + ASPEN_BATCH_ARGUMENT
+                            + ". Invoking it once per distinct set of arguments instead",
+                    LogManager.WARNING_MESSAGE_LEVEL);
+            mBatchSupported = false;
+            return null;
         }
         return result;
     }
 
+    /**
+     * Parses a line of the form index key=value written by the aspen client in batch mode.
+     *
+     * @param line the line
+     * @param estimates the estimates for each argument set, into which the estimate is put
+     * @return boolean indicating whether the line could be parsed
+     */
+    private boolean parseBatchEstimate(String line, List<Map<String, String>> estimates) {
+        String[] tokens = line.split("\\s+", 2);
+        if (tokens.length != 2) {
+            return false;
+        }
+        String[] kvs = tokens[1].split("=");
+        if (kvs.length != 2) {
+            return false;
+        }
+        int index = -1;
+        try {
+            index = Integer.parseInt(tokens[0]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (index < 0 || index >= estimates.size()) {
+            return false;
+        }
+        estimates.get(index).put(kvs[0], kvs[1]);
+        return true;
+    }
+
     private static class AspenStreamGobblerCallback implements StreamGobblerCallback {
 
         /** The instance to the logger to log messages. */
@@ -253,6 +481,7 @@ public class Aspen implements Estimator {
             String[] kvs = line.split("=");
             if (kvs.length != 2) {
                 mLogger.log("Unable to parse aspen output " + line, LogManager.ERROR_MESSAGE_LEVEL);
+                return;
             }
             mEstimates.put(kvs[0], kvs[1]);
         }
@@ -16,6 +16,7 @@ package edu.isi.pegasus.planner.estimate;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,6 +45,20 @@ public class Default implements Estimator {
         return new HashMap<String, String>();
     }
 
+    /**
+     * Returns all estimates for a collection of jobs
+     *
+     * @param jobs the jobs for which estimation is required
+     * @return map indexed by job id, with empty estimates for each job
+     */
+    public Map<String, Map<String, String>> getAllEstimates(Collection<Job> jobs) {
+        Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+        for (Job job : jobs) {
+            result.put(job.getID(), this.getAllEstimates(job));
+        }
+        return result;
+    }
+
     /**
      * Return the estimated Runtime of a job
      *
@@ -16,6 +16,7 @@ package edu.isi.pegasus.planner.estimate;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -41,6 +42,15 @@ public interface Estimator {
      */
     public Map<String, String> getAllEstimates(Job job);
 
+    /**
+     * Returns all estimates for a collection of jobs in one go. Allows implementations to estimate
+     * a whole workflow with a single call to the underlying estimation service.
+     *
+     * @param jobs the jobs for which estimation is required
+     * @return map indexed by job id, with the estimates for each job as value
+     */
+    public Map<String, Map<String, String>> getAllEstimates(Collection<Job> jobs);
+
     /**
      * Return the estimated Runtime of a job
      *
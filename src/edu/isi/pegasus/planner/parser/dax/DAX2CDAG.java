@@ -106,9 +106,9 @@ public class DAX2CDAG implements Callback {
      * @param dax the path to the DAX file.
      */
     public void initialize(PegasusBag bag, String dax) {
-        mDag = new ADag();
-        mJobMap = new HashMap<String, String>();
         mProps = bag.getPegasusProperties();
+        mDag = new ADag(ADag.createGraph(mProps.getGraphImplementation()));
+        mJobMap = new HashMap<String, String>();
         mLogger = bag.getLogger();
         mDone = false;
         this.mJobPrefix =
@@ -346,6 +346,9 @@ public class DAX2CDAG implements Callback {
         if (this.mAddDataDependencies) {
             this.addDataDependencies();
         }
+
+        // lay out the edges compactly now that the workflow is built
+        this.mDag.compactGraph();
     }
 
     /**
@@ -25,6 +25,7 @@ import edu.isi.pegasus.planner.classes.Profile;
 import edu.isi.pegasus.planner.classes.ReplicaLocation;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.dax.Invoke;
+import edu.isi.pegasus.planner.partitioner.JobWeight;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -132,12 +133,15 @@ public class DAX2Graph implements Callback {
     }
 
     /**
-     * This constructs a graph node for the job and ends up storing it in the internal map.
+     * This constructs a graph node for the job and ends up storing it in the internal map. The
+     * runtime and files of the job are associated with the graph node, so that the partitioners can
+     * weigh the nodes without the parsed jobs being retained.
      *
      * @param job the job that was parsed.
      */
     public void cbJob(Job job) {
         GraphNode gn = new GraphNode(job.getLogicalID(), job.getTXName());
+        gn.setContent(new JobWeight(job));
         mLogger.log("Adding job to graph " + job.getName(), LogManager.DEBUG_MESSAGE_LEVEL);
         put(job.logicalId, gn);
     }
@@ -15,6 +15,7 @@ package edu.isi.pegasus.planner.parser.dax;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.InjectableValues;
@@ -24,6 +25,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LoggingKeys;
 import edu.isi.pegasus.planner.catalog.replica.classes.ReplicaStore;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStore;
@@ -39,7 +41,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -97,10 +98,18 @@ public class DAXParser5 implements DAXParser {
         ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
         mapper.configure(MapperFeature.ALLOW_COERCION_OF_SCALARS, false);
         mapper.setInjectableValues(injectCallback());
+        LogManager logger = mBag.getLogger();
+        if (logger != null) {
+            logger.logEventStart(LoggingKeys.EVENT_PEGASUS_PARSE_DAX, LoggingKeys.DAX_ID, file);
+        }
         try {
             mapper.readValue(reader, DAXParser5.class);
         } catch (IOException ex) {
             throw new RuntimeException("Exception while parsing yaml file " + file, ex);
+        } finally {
+            if (logger != null) {
+                logger.logEventCompletion();
+            }
         }
     }
 
@@ -117,6 +126,13 @@ public class DAXParser5 implements DAXParser {
      * Deserializer class that preserves the callback interface used for parsing the XML parsers.
      * Invokes callback functions during deserialization of the document.
      *
+     * <p>The document is not materialized as a whole. Instead the top level keys are iterated over
+     * at the token level, and the elements of the jobs and jobDependencies arrays are deserialized
+     * one at a time, with the corresponding callback being invoked as soon as an element is read.
+     * This ensures that at any point only a single job or dependency is held in memory in addition
+     * to the workflow being constructed by the callback. The embedded catalogs and hooks are still
+     * read whole, as they are typically small.
+     *
      * @author Karan Vahi
      */
     static class YAMLStreamingDeserializer extends PegasusJsonDeserializer<DAXParser5> {
@@ -129,62 +145,65 @@ public class DAXParser5 implements DAXParser {
                 throw new RuntimeException("Callback not initialized when parsing inititated");
             }
             ObjectCodec oc = parser.getCodec();
-            JsonNode node = oc.readTree(parser);
+
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = parser.nextToken();
+            }
 
             Map attrs = new HashMap();
             attrs.put("index", "0");
-            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
-                Map.Entry<String, JsonNode> e = it.next();
-                String key = e.getKey();
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                String key = parser.getCurrentName();
+                // move to the value for the key
+                token = parser.nextToken();
                 WorkflowKeywords reservedKey = WorkflowKeywords.getReservedKey(key);
 
                 if (reservedKey == null) {
                     this.complainForIllegalKey(
-                            WorkflowKeywords.WORKFLOW.getReservedName(), key, node);
+                            WorkflowKeywords.WORKFLOW.getReservedName(), key, oc.readTree(parser));
                 }
                 switch (reservedKey) {
                     case PEGASUS:
-                        attrs.put("version", node.get(key).asText());
+                        attrs.put("version", ((JsonNode) oc.readTree(parser)).asText());
                         break;
 
                     case NAME:
-                        attrs.put("name", node.get(key).asText());
+                        attrs.put("name", ((JsonNode) oc.readTree(parser)).asText());
                         c.cbDocument(attrs);
                         break;
 
                     case REPLICA_CATALOG:
-                        JsonNode rcNode = node.get(key);
+                        JsonNode rcNode = oc.readTree(parser);
                         if (rcNode != null) {
-                            parser = rcNode.traverse(oc);
-                            ReplicaStore store = parser.readValueAs(ReplicaStore.class);
+                            ReplicaStore store =
+                                    rcNode.traverse(oc).readValueAs(ReplicaStore.class);
                             c.cbReplicaStore(store);
                         }
                         break;
 
                     case SITE_CATALOG:
-                        JsonNode scNode = node.get(key);
+                        JsonNode scNode = oc.readTree(parser);
                         if (scNode != null) {
-                            parser = scNode.traverse(oc);
-                            SiteStore store = parser.readValueAs(SiteStore.class);
+                            SiteStore store = scNode.traverse(oc).readValueAs(SiteStore.class);
                             c.cbSiteStore(store);
                         }
                         break;
 
                     case TRANSFORMATION_CATALOG:
-                        JsonNode tcNode = node.get(key);
+                        JsonNode tcNode = oc.readTree(parser);
                         if (tcNode != null) {
-                            parser = tcNode.traverse(oc);
                             TransformationStore store =
-                                    parser.readValueAs(TransformationStore.class);
+                                    tcNode.traverse(oc).readValueAs(TransformationStore.class);
                             c.cbTransformationStore(store);
                         }
                         break;
 
                     case HOOKS:
-                        JsonNode hooksNode = node.get(key);
+                        JsonNode hooksNode = oc.readTree(parser);
                         if (hooksNode != null) {
-                            parser = hooksNode.traverse(oc);
-                            Notifications notifications = parser.readValueAs(Notifications.class);
+                            Notifications notifications =
+                                    hooksNode.traverse(oc).readValueAs(Notifications.class);
                             for (Invoke.WHEN when : Invoke.WHEN.values()) {
                                 for (Invoke i : notifications.getNotifications(when)) {
                                     c.cbWfInvoke(i);
@@ -194,43 +213,41 @@ public class DAXParser5 implements DAXParser {
                         break;
 
                     case JOBS:
-                        JsonNode jobsNode = node.get(key);
-                        if (jobsNode.isArray()) {
-                            for (JsonNode jobNode : jobsNode) {
-                                parser = jobNode.traverse(oc);
-                                Job job = parser.readValueAs(Job.class);
-                                c.cbJob(job);
-                            }
-                        } else {
+                        if (token != JsonToken.START_ARRAY) {
                             throw new RuntimeException("jobs: value should be of type array ");
                         }
+                        // each job is deserialized directly from the underlying stream
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            Job job = parser.readValueAs(Job.class);
+                            c.cbJob(job);
+                        }
                         break;
 
                     case JOB_DEPENDENCIES:
-                        JsonNode dependenciesNode = node.get(key);
-                        if (dependenciesNode.isArray()) {
-                            for (JsonNode dependencyNode : dependenciesNode) {
-                                String jobID =
-                                        dependencyNode
-                                                .get(WorkflowKeywords.JOB_ID.getReservedName())
-                                                .asText();
-                                List<String> children =
-                                        this.createChildren(
-                                                dependencyNode.get(
-                                                        WorkflowKeywords.CHILDREN
-                                                                .getReservedName()));
-                                c.cbChildren(jobID, children);
-                            }
-                        } else {
+                        if (token != JsonToken.START_ARRAY) {
                             throw new RuntimeException(
                                     WorkflowKeywords.JOB_DEPENDENCIES
                                             + ": value should be of type array ");
                         }
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            JsonNode dependencyNode = oc.readTree(parser);
+                            String jobID =
+                                    dependencyNode
+                                            .get(WorkflowKeywords.JOB_ID.getReservedName())
+                                            .asText();
+                            List<String> children =
+                                    this.createChildren(
+                                            dependencyNode.get(
+                                                    WorkflowKeywords.CHILDREN.getReservedName()));
+                            c.cbChildren(jobID, children);
+                        }
                         break;
 
                     default:
                         this.complainForUnsupportedKey(
-                                WorkflowKeywords.WORKFLOW.getReservedName(), key, node);
+                                WorkflowKeywords.WORKFLOW.getReservedName(),
+                                key,
+                                oc.readTree(parser));
                 }
             }
             c.cbDone();
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner;
+
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNodeContent;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The parts of a job that the {@link Multilevel} partitioner weighs the graph by, namely the
+ * runtime of the job and the files it passes to other jobs. It is associated with a graph node
+ * instead of the job, so that the parsed jobs do not have to be retained.
+ *
+ * @author Karan Vahi
+ */
+public class JobWeight implements GraphNodeContent {
+
+    /** The value of the runtime profile of the job, or null if not specified. */
+    private final String mRuntime;
+
+    /** The logical names of the files generated by the job. */
+    private final Set<String> mOutputs;
+
+    /** The sizes in bytes of the files used by the job, that have a known size. */
+    private final Map<String, Double> mInputs;
+
+    /**
+     * Returns the weight for the content of a graph node.
+     *
+     * @param content the content, either a job or its weight
+     * @return the weight, or null if the content is neither
+     */
+    public static JobWeight of(Object content) {
+        if (content instanceof JobWeight) {
+            return (JobWeight) content;
+        }
+        return (content instanceof Job) ? new JobWeight((Job) content) : null;
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param job the job to be weighed
+     */
+    public JobWeight(Job job) {
+        mRuntime = job.vdsNS.getStringValue(Pegasus.RUNTIME_KEY);
+        mOutputs = new HashSet<String>();
+        for (PegasusFile output : job.getOutputFiles()) {
+            mOutputs.add(output.getLFN());
+        }
+        mInputs = new HashMap<String, Double>();
+        for (PegasusFile input : job.getInputFiles()) {
+            if (input.getSize() > 0) {
+                mInputs.put(input.getLFN(), input.getSize());
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the runtime profile of the job.
+     *
+     * @return the runtime, or null if not specified
+     */
+    public String getRuntime() {
+        return mRuntime;
+    }
+
+    /**
+     * Returns the size of the files generated by this job that are used by a child job.
+     *
+     * @param child the weight of the child job
+     * @return the size in bytes of the files with a known size
+     */
+    public long getTransferSize(JobWeight child) {
+        double size = 0;
+        for (Map.Entry<String, Double> input : child.mInputs.entrySet()) {
+            if (mOutputs.contains(input.getKey())) {
+                size += input.getValue();
+            }
+        }
+        return (long) size;
+    }
+
+    /**
+     * Set a reference back to the containing graph node. The weight does not keep it.
+     *
+     * @param node the graph node
+     */
+    public void setGraphNodeReference(GraphNode node) {
+        // noop
+    }
+}
@@ -0,0 +1,788 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A multilevel partitioner in the style of METIS, that splits a workflow into a configurable number
+ * of partitions with balanced weights, while minimizing the weight of the dependencies between the
+ * partitions. The graph is first coarsened by repeatedly contracting heavy edges, the coarsest
+ * graph is partitioned, and the partitioning is then projected back and refined at each level.
+ *
+ * <p>As the partitions are planned as sub workflows, the partitioning ensures that the relations
+ * between the partitions are acyclic. Only those edges are contracted whose contraction cannot
+ * introduce a cycle, the coarsest graph is split along a topological order, and the refinement only
+ * moves a node to a neighbouring partition if every parent of the node remains in the same or an
+ * earlier partition, and every child in the same or a later partition.
+ *
+ * <p>The nodes are weighted by the runtime profile of the jobs, and the edges by the size of the
+ * files passed from the parent to the child job, when the graph nodes have the jobs associated with
+ * them. The following properties configure the partitioner
+ *
+ * <pre>
+ *       pegasus.partitioner.multilevel.partitions
+ *       pegasus.partitioner.multilevel.imbalance
+ * </pre>
+ *
+ * @author Karan Vahi
+ */
+public class Multilevel extends Partitioner {
+
+    /** A short description about the partitioner. */
+    public static final String DESCRIPTION = "Multilevel Balanced Partitioning";
+
+    /** The default number of partitions. */
+    public static final int DEFAULT_PARTITIONS = 2;
+
+    /** The default fraction by which a partition can exceed the average partition weight. */
+    public static final double DEFAULT_IMBALANCE = 0.05;
+
+    /** The number of nodes per partition below which the graph is no longer coarsened. */
+    private static final int COARSEN_NODES_PER_PARTITION = 30;
+
+    /** The minimum number of nodes below which the graph is no longer coarsened. */
+    private static final int MIN_COARSEN_NODES = 100;
+
+    /** The maximum number of coarsening levels. */
+    private static final int MAX_LEVELS = 64;
+
+    /** The maximum number of refinement passes at each level. */
+    private static final int REFINEMENT_PASSES = 8;
+
+    /** The seed for the order in which the nodes are visited while matching. */
+    private static final long SEED = 4561L;
+
+    /** The number of partitions to create. */
+    private final int mPartitions;
+
+    /** The fraction by which a partition can exceed the average partition weight. */
+    private final double mImbalance;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param root the dummy root node of the graph.
+     * @param graph the map containing all the nodes of the graph keyed by the logical id of the
+     *     nodes.
+     * @param properties the properties passed to the planner.
+     */
+    public Multilevel(GraphNode root, Map<String, GraphNode> graph, PegasusProperties properties) {
+        super(root, graph, properties);
+        mPartitions = properties.getMultilevelPartitionerPartitions(DEFAULT_PARTITIONS);
+        mImbalance = properties.getMultilevelPartitionerImbalance(DEFAULT_IMBALANCE);
+        if (mPartitions < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid number of partitions specified " + mPartitions);
+        }
+        if (mImbalance < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid partition imbalance specified " + mImbalance);
+        }
+    }
+
+    /**
+     * Returns a textual description of the partitioner implementation.
+     *
+     * @return a short textual description
+     */
+    public String description() {
+        return DESCRIPTION;
+    }
+
+    /**
+     * Determines the partitions, and calls out to the callback for each of the partitions, and then
+     * for the relations between them.
+     *
+     * @param c the callback for the partitioner.
+     */
+    public void determinePartitions(Callback c) {
+        List<GraphNode> nodes = new ArrayList<GraphNode>(mGraph.size());
+        for (Object value : mGraph.values()) {
+            GraphNode node = (GraphNode) value;
+            if (mRoot == null || !node.getID().equals(mRoot.getID())) {
+                nodes.add(node);
+            }
+        }
+        if (nodes.isEmpty()) {
+            c.cbDone();
+            return;
+        }
+
+        WeightedGraph g = this.toWeightedGraph(nodes);
+        int[] part = this.partition(g);
+
+        int partitions = 0;
+        for (int i = 0; i < part.length; i++) {
+            partitions = Math.max(partitions, part[i] + 1);
+        }
+
+        // the nodes in each partition
+        List<List<GraphNode>> members = new ArrayList<List<GraphNode>>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            members.add(new LinkedList<GraphNode>());
+        }
+        for (int i = 0; i < g.n; i++) {
+            members.get(part[i]).add(nodes.get(i));
+        }
+        for (int p = 0; p < partitions; p++) {
+            Partition partition = new Partition(members.get(p), getPartitionID(p + 1));
+            partition.setIndex(p + 1);
+            partition.constructPartition();
+            mLogger.log(
+                    "Partition " + partition.getID() + " is :" + partition.getNodeIDs(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            c.cbPartition(partition);
+        }
+
+        // the relations between the partitions. all edges between
+        // partitions go from a partition with a lower index
+        List<Set<Integer>> parents = new ArrayList<Set<Integer>>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            parents.add(new TreeSet<Integer>());
+        }
+        for (int u = 0; u < g.n; u++) {
+            for (int e = g.outStart[u]; e < g.outStart[u + 1]; e++) {
+                int v = g.out[e];
+                if (part[u] != part[v]) {
+                    parents.get(part[v]).add(part[u]);
+                }
+            }
+        }
+        for (int p = 0; p < partitions; p++) {
+            if (parents.get(p).isEmpty()) {
+                continue;
+            }
+            List<String> ids = new ArrayList<String>(parents.get(p).size());
+            for (Integer parent : parents.get(p)) {
+                ids.add(getPartitionID(parent + 1));
+            }
+            c.cbParents(getPartitionID(p + 1), ids);
+        }
+
+        c.cbDone();
+    }
+
+    /**
+     * Partitions a weighted graph.
+     *
+     * @param g the graph
+     * @return the partition of each node, numbered from 0, such that the partition of a parent is
+     *     never greater than the partition of its child
+     */
+    protected int[] partition(WeightedGraph g) {
+        int k = Math.min(mPartitions, g.n);
+        int coarsenTo = Math.max(MIN_COARSEN_NODES, k * COARSEN_NODES_PER_PARTITION);
+        long maxNodeWeight = Math.max(1, (long) (1.5 * g.totalWeight() / coarsenTo));
+
+        // coarsen the graph
+        List<WeightedGraph> levels = new ArrayList<WeightedGraph>();
+        levels.add(g);
+        Random random = new Random(SEED);
+        WeightedGraph current = g;
+        while (current.n > coarsenTo && levels.size() < MAX_LEVELS) {
+            WeightedGraph coarse = this.coarsen(current, maxNodeWeight, random);
+            if (coarse == null) {
+                break;
+            }
+            levels.add(coarse);
+            current = coarse;
+        }
+
+        // partition the coarsest graph along a depth first and a
+        // breadth first topological order and keep the better one
+        long maxPartWeight = (long) Math.ceil((1 + mImbalance) * g.totalWeight() / k);
+        int[] part = null;
+        long cut = Long.MAX_VALUE;
+        for (boolean depthFirst : new boolean[] {true, false}) {
+            int[] candidate = this.initialPartition(current, k, depthFirst);
+            this.refine(current, candidate, k, maxPartWeight);
+            long candidateCut = current.cut(candidate);
+            if (part == null || candidateCut < cut) {
+                part = candidate;
+                cut = candidateCut;
+            }
+        }
+
+        // project the partitioning back to the original graph, and
+        // refine it at each level
+        for (int level = levels.size() - 2; level >= 0; level--) {
+            WeightedGraph fine = levels.get(level);
+            int[] projected = new int[fine.n];
+            for (int i = 0; i < fine.n; i++) {
+                projected[i] = part[fine.cmap[i]];
+            }
+            part = projected;
+            this.refine(fine, part, k, maxPartWeight);
+        }
+
+        mLogger.log(
+                "Partitioned "
+                        + g.n
+                        + " nodes into "
+                        + k
+                        + " partitions using "
+                        + levels.size()
+                        + " levels with an edge cut of "
+                        + g.cut(part),
+                LogManager.INFO_MESSAGE_LEVEL);
+        return part;
+    }
+
+    /**
+     * Coarsens a graph by contracting the edges in a heavy edge matching. An edge from u to v is
+     * contracted only if v has no parent other than u, or u has no child other than v. Every path
+     * into such a pair then enters at a node that reaches the node where the path leaves the pair,
+     * so a cycle between the coarse nodes would imply a cycle in the graph.
+     *
+     * @param g the graph to coarsen
+     * @param maxNodeWeight the maximum weight of a coarse node
+     * @param random the source of the order in which the nodes are visited
+     * @return the coarse graph, or null if the graph could not be coarsened any further
+     */
+    private WeightedGraph coarsen(WeightedGraph g, long maxNodeWeight, Random random) {
+        int[] match = new int[g.n];
+        Arrays.fill(match, -1);
+        int[] order = new int[g.n];
+        for (int i = 0; i < g.n; i++) {
+            order[i] = i;
+        }
+        for (int i = g.n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        int cn = 0;
+        int[] cmap = new int[g.n];
+        for (int i = 0; i < g.n; i++) {
+            int u = order[i];
+            if (match[u] != -1) {
+                continue;
+            }
+            int best = -1;
+            long bestWeight = -1;
+            // children of u that can be merged with u
+            for (int e = g.outStart[u]; e < g.outStart[u + 1]; e++) {
+                int v = g.out[e];
+                if (match[v] == -1
+                        && g.outWeight[e] > bestWeight
+                        && g.weight[u] + g.weight[v] <= maxNodeWeight
+                        && (g.inDegree(v) == 1 || g.outDegree(u) == 1)) {
+                    best = v;
+                    bestWeight = g.outWeight[e];
+                }
+            }
+            // parents of u that can be merged with u
+            for (int e = g.inStart[u]; e < g.inStart[u + 1]; e++) {
+                int v = g.in[e];
+                if (match[v] == -1
+                        && g.inWeight[e] > bestWeight
+                        && g.weight[u] + g.weight[v] <= maxNodeWeight
+                        && (g.inDegree(u) == 1 || g.outDegree(v) == 1)) {
+                    best = v;
+                    bestWeight = g.inWeight[e];
+                }
+            }
+            match[u] = (best == -1) ? u : best;
+            cmap[u] = cn;
+            if (best != -1) {
+                match[best] = u;
+                cmap[best] = cn;
+            }
+            cn++;
+        }
+
+        // stop once the matching no longer shrinks the graph noticeably
+        if (cn > 0.95 * g.n) {
+            return null;
+        }
+        g.cmap = cmap;
+        return g.contract(cmap, cn);
+    }
+
+    /**
+     * Partitions a graph by cutting a topological order of the nodes into consecutive pieces of
+     * about equal weight.
+     *
+     * @param g the graph
+     * @param k the number of partitions
+     * @param depthFirst whether to traverse the graph depth first, keeping chains of jobs together,
+     *     or breadth first
+     * @return the partition of each node
+     */
+    private int[] initialPartition(WeightedGraph g, int k, boolean depthFirst) {
+        int[] order = g.topologicalOrder(depthFirst);
+        int[] part = new int[g.n];
+        long remaining = g.totalWeight();
+        int p = 0;
+        long weight = 0;
+        int count = 0;
+        for (int i = 0; i < order.length; i++) {
+            int u = order[i];
+            long target = remaining / (k - p);
+            int nodesLeft = order.length - i;
+            if (p < k - 1
+                    && count > 0
+                    && (nodesLeft == k - 1 - p
+                            || weight + g.weight[u] - target > target - weight)) {
+                // close the current partition
+                remaining -= weight;
+                p++;
+                weight = 0;
+                count = 0;
+            }
+            part[u] = p;
+            weight += g.weight[u];
+            count++;
+        }
+        return part;
+    }
+
+    /**
+     * Refines a partitioning by greedily moving nodes to a neighbouring partition, if the move
+     * reduces the edge cut without exceeding the maximum partition weight, or improves the balance
+     * without increasing the edge cut. A move is only made if the partition of every parent of the
+     * node remains at most, and that of every child at least the partition of the node.
+     *
+     * @param g the graph
+     * @param part the partition of each node, updated in place
+     * @param k the number of partitions
+     * @param maxPartWeight the maximum weight of a partition
+     */
+    private void refine(WeightedGraph g, int[] part, int k, long maxPartWeight) {
+        long[] partWeight = new long[k];
+        int[] partSize = new int[k];
+        for (int u = 0; u < g.n; u++) {
+            partWeight[part[u]] += g.weight[u];
+            partSize[part[u]]++;
+        }
+
+        for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+            int moves = 0;
+            for (int u = 0; u < g.n; u++) {
+                int p = part[u];
+                if (partSize[p] == 1) {
+                    continue;
+                }
+                int maxParentPart = -1;
+                long own = 0;
+                long previous = 0;
+                for (int e = g.inStart[u]; e < g.inStart[u + 1]; e++) {
+                    int q = part[g.in[e]];
+                    maxParentPart = Math.max(maxParentPart, q);
+                    if (q == p) {
+                        own += g.inWeight[e];
+                    } else if (q == p - 1) {
+                        previous += g.inWeight[e];
+                    }
+                }
+                int minChildPart = k;
+                long next = 0;
+                for (int e = g.outStart[u]; e < g.outStart[u + 1]; e++) {
+                    int q = part[g.out[e]];
+                    minChildPart = Math.min(minChildPart, q);
+                    if (q == p) {
+                        own += g.outWeight[e];
+                    } else if (q == p + 1) {
+                        next += g.outWeight[e];
+                    }
+                }
+
+                int target = -1;
+                long bestGain = Long.MIN_VALUE;
+                if (p > 0 && maxParentPart < p) {
+                    target = p - 1;
+                    bestGain = previous - own;
+                }
+                if (p < k - 1 && minChildPart > p) {
+                    long gain = next - own;
+                    if (target == -1
+                            || gain > bestGain
+                            || (gain == bestGain && partWeight[p + 1] < partWeight[p - 1])) {
+                        target = p + 1;
+                        bestGain = gain;
+                    }
+                }
+                if (target == -1) {
+                    continue;
+                }
+
+                long w = g.weight[u];
+                boolean move =
+                        (bestGain > 0 && partWeight[target] + w <= maxPartWeight)
+                                || (bestGain == 0 && partWeight[target] + w < partWeight[p])
+                                || (partWeight[p] > maxPartWeight
+                                        && partWeight[target] + w <= maxPartWeight);
+                if (move) {
+                    part[u] = target;
+                    partWeight[p] -= w;
+                    partWeight[target] += w;
+                    partSize[p]--;
+                    partSize[target]++;
+                    moves++;
+                }
+            }
+            if (moves == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Converts the graph nodes to a weighted graph. The weight of a node is the runtime of the
+     * associated job, the jobs with no runtime being assigned the average runtime of the jobs that
+     * have one. The weight of an edge is one plus the size in kilobytes of the files passed along
+     * it. All weights are 1 for nodes with no associated jobs.
+     *
+     * @param nodes the graph nodes, the dummy root excluded
+     * @return the weighted graph
+     */
+    private WeightedGraph toWeightedGraph(List<GraphNode> nodes) {
+        int n = nodes.size();
+        Map<GraphNode, Integer> index = new HashMap<GraphNode, Integer>(n * 2);
+        for (int i = 0; i < n; i++) {
+            index.put(nodes.get(i), i);
+        }
+
+        // the node weights
+        JobWeight[] jobs = new JobWeight[n];
+        long[] weight = new long[n];
+        long known = 0;
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            jobs[i] = JobWeight.of(nodes.get(i).getContent());
+            weight[i] = this.getRuntime(nodes.get(i), jobs[i]);
+            if (weight[i] > 0) {
+                known++;
+                sum += weight[i];
+            }
+        }
+        long average = (known == 0) ? 1 : Math.max(1, sum / known);
+        for (int i = 0; i < n; i++) {
+            if (weight[i] <= 0) {
+                weight[i] = average;
+            }
+        }
+
+        // the edges
+        int edges = 0;
+        for (GraphNode node : nodes) {
+            edges += node.getChildren().size();
+        }
+        int[] outStart = new int[n + 1];
+        int[] out = new int[edges];
+        long[] outWeight = new long[edges];
+        int e = 0;
+        for (int u = 0; u < n; u++) {
+            outStart[u] = e;
+            GraphNode node = nodes.get(u);
+            for (GraphNode child : node.getChildren()) {
+                Integer v = index.get(child);
+                if (v == null || v == u) {
+                    continue;
+                }
+                out[e] = v;
+                outWeight[e] = 1 + this.getTransferSize(jobs[u], jobs[v]) / 1024;
+                e++;
+            }
+        }
+        outStart[n] = e;
+        return new WeightedGraph(weight, outStart, out, outWeight).dedupe();
+    }
+
+    /**
+     * Returns the runtime of the job associated with a node.
+     *
+     * @param node the graph node
+     * @param job the weight of the associated job, or null if there is none
+     * @return the runtime in seconds, or 0 if not known
+     */
+    private long getRuntime(GraphNode node, JobWeight job) {
+        String value = (job == null) ? null : job.getRuntime();
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return (long) Math.ceil(Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            mLogger.log(
+                    "Ignoring invalid runtime " + value + " for job " + node.getID(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the size of the files generated by a parent job that are used by a child job.
+     *
+     * @param parent the weight of the parent job, or null if there is none
+     * @param child the weight of the child job, or null if there is none
+     * @return the size in bytes of the files with a known size
+     */
+    private long getTransferSize(JobWeight parent, JobWeight child) {
+        return (parent == null || child == null) ? 0 : parent.getTransferSize(child);
+    }
+
+    /**
+     * Constructs the id for the partition.
+     *
+     * @param id an integer ID.
+     * @return the ID for the Partition.
+     */
+    private String getPartitionID(int id) {
+        StringBuffer sb = new StringBuffer(5);
+        sb.append("ID").append(id);
+        return sb.toString();
+    }
+
+    /**
+     * A directed graph with weighted nodes and edges, stored as arrays of the children and parents
+     * of each node, that is used at each level of the partitioning.
+     */
+    protected static class WeightedGraph {
+
+        /** The number of nodes. */
+        final int n;
+
+        /** The weight of each node. */
+        final long[] weight;
+
+        /** The offset of the children of each node in the out array. */
+        final int[] outStart;
+
+        /** The children of the nodes. */
+        final int[] out;
+
+        /** The weight of the edges to the children. */
+        final long[] outWeight;
+
+        /** The offset of the parents of each node in the in array. */
+        final int[] inStart;
+
+        /** The parents of the nodes. */
+        final int[] in;
+
+        /** The weight of the edges from the parents. */
+        final long[] inWeight;
+
+        /** The coarse node for each node, set once the graph is coarsened. */
+        int[] cmap;
+
+        /**
+         * The overloaded constructor. The parents are derived from the children.
+         *
+         * @param weight the weight of each node
+         * @param outStart the offset of the children of each node, with an additional last entry
+         * @param out the children of the nodes
+         * @param outWeight the weight of the edges to the children
+         */
+        WeightedGraph(long[] weight, int[] outStart, int[] out, long[] outWeight) {
+            this.n = weight.length;
+            this.weight = weight;
+            this.outStart = outStart;
+            this.out = out;
+            this.outWeight = outWeight;
+
+            int edges = outStart[n];
+            inStart = new int[n + 1];
+            in = new int[edges];
+            inWeight = new long[edges];
+            for (int e = 0; e < edges; e++) {
+                inStart[out[e] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                inStart[v + 1] += inStart[v];
+            }
+            int[] fill = Arrays.copyOf(inStart, n);
+            for (int u = 0; u < n; u++) {
+                for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                    int v = out[e];
+                    in[fill[v]] = u;
+                    inWeight[fill[v]] = outWeight[e];
+                    fill[v]++;
+                }
+            }
+        }
+
+        /**
+         * Returns the number of parents of a node.
+         *
+         * @param u the node
+         * @return the number of parents
+         */
+        int inDegree(int u) {
+            return inStart[u + 1] - inStart[u];
+        }
+
+        /**
+         * Returns the number of children of a node.
+         *
+         * @param u the node
+         * @return the number of children
+         */
+        int outDegree(int u) {
+            return outStart[u + 1] - outStart[u];
+        }
+
+        /**
+         * Returns the total weight of the nodes.
+         *
+         * @return the total weight
+         */
+        long totalWeight() {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += weight[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Returns the total weight of the edges between different partitions.
+         *
+         * @param part the partition of each node
+         * @return the edge cut
+         */
+        long cut(int[] part) {
+            long cut = 0;
+            for (int u = 0; u < n; u++) {
+                for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                    if (part[u] != part[out[e]]) {
+                        cut += outWeight[e];
+                    }
+                }
+            }
+            return cut;
+        }
+
+        /**
+         * Returns a copy of the graph with the parallel edges between two nodes merged into one.
+         *
+         * @return the graph with no parallel edges
+         */
+        WeightedGraph dedupe() {
+            int[] identity = new int[n];
+            for (int i = 0; i < n; i++) {
+                identity[i] = i;
+            }
+            return contract(identity, n);
+        }
+
+        /**
+         * Contracts the graph by merging the nodes mapped to the same coarse node. The weights of
+         * the merged nodes and of the merged edges are added up, and the edges between the merged
+         * nodes dropped.
+         *
+         * @param cmap the coarse node for each node
+         * @param cn the number of coarse nodes
+         * @return the coarse graph
+         */
+        WeightedGraph contract(int[] cmap, int cn) {
+            long[] cweight = new long[cn];
+            int[] members = new int[n];
+            int[] memberStart = new int[cn + 1];
+            for (int u = 0; u < n; u++) {
+                cweight[cmap[u]] += weight[u];
+                memberStart[cmap[u] + 1]++;
+            }
+            for (int c = 0; c < cn; c++) {
+                memberStart[c + 1] += memberStart[c];
+            }
+            int[] fill = Arrays.copyOf(memberStart, cn);
+            for (int u = 0; u < n; u++) {
+                members[fill[cmap[u]]++] = u;
+            }
+
+            int[] coutStart = new int[cn + 1];
+            int[] cout = new int[outStart[n]];
+            long[] coutWeight = new long[outStart[n]];
+            // the position of the edge to a coarse node from the current coarse node
+            int[] position = new int[cn];
+            Arrays.fill(position, -1);
+            int e = 0;
+            for (int c = 0; c < cn; c++) {
+                coutStart[c] = e;
+                for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                    int u = members[m];
+                    for (int f = outStart[u]; f < outStart[u + 1]; f++) {
+                        int d = cmap[out[f]];
+                        if (d == c) {
+                            continue;
+                        }
+                        if (position[d] >= coutStart[c]) {
+                            coutWeight[position[d]] += outWeight[f];
+                        } else {
+                            position[d] = e;
+                            cout[e] = d;
+                            coutWeight[e] = outWeight[f];
+                            e++;
+                        }
+                    }
+                }
+            }
+            coutStart[cn] = e;
+            return new WeightedGraph(
+                    cweight, coutStart, Arrays.copyOf(cout, e), Arrays.copyOf(coutWeight, e));
+        }
+
+        /**
+         * Returns the nodes in a topological order.
+         *
+         * @param depthFirst whether a node whose parents have all been visited is visited next, or
+         *     after the nodes that became ready before it
+         * @return the nodes in topological order
+         */
+        int[] topologicalOrder(boolean depthFirst) {
+            int[] pending = new int[n];
+            int[] ready = new int[n];
+            int head = 0;
+            int tail = 0;
+            for (int u = 0; u < n; u++) {
+                pending[u] = inDegree(u);
+                if (pending[u] == 0) {
+                    ready[tail++] = u;
+                }
+            }
+            int[] order = new int[n];
+            int count = 0;
+            while (head < tail) {
+                int u = depthFirst ? ready[--tail] : ready[head++];
+                order[count++] = u;
+                for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                    int v = out[e];
+                    if (--pending[v] == 0) {
+                        ready[tail++] = v;
+                    }
+                }
+            }
+            if (count != n) {
+                throw new RuntimeException("Cycle detected in the graph being partitioned");
+            }
+            return order;
+        }
+    }
+}
@@ -39,6 +39,9 @@ public class PartitionerFactory {
     /** The name of the class that does horizontal based partitioning. */
     public static final String HORIZONTAL_PARTITIONING_CLASS = "Horizontal";
 
+    /** The name of the class that does multilevel balanced partitioning. */
+    public static final String MULTILEVEL_PARTITIONING_CLASS = "Multilevel";
+
     /** The name of the class that does level based partitioning. */
     public static final String DEFAULT_PARTITIONING_CLASS = LEVEL_BASED_PARTITIONING_CLASS;
 
@@ -46,7 +49,8 @@ public class PartitionerFactory {
     private static final String[] PARTITIONING_CLASSES = {
         LEVEL_BASED_PARTITIONING_CLASS,
         LABEL_BASED_PARTITIONING_CLASS,
-        HORIZONTAL_PARTITIONING_CLASS
+        HORIZONTAL_PARTITIONING_CLASS,
+        MULTILEVEL_PARTITIONING_CLASS
     };
 
     /**
@@ -0,0 +1,1060 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner.graph;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import edu.isi.pegasus.planner.classes.NameValue;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An implementation of the Graph that keeps the edges of the nodes in primitive int arrays, instead
+ * of the per node hash sets used by {@link MapGraph}.
+ *
+ * <p>Every node added to the graph is interned to an int slot. The parents and the children of all
+ * the nodes are stored in two pools of slots, where each node owns a contiguous segment of a pool.
+ * After {@link #compact()} the segments are laid out in slot order without any slack, i.e. a
+ * compressed sparse row (CSR) representation of the graph. Edges added afterwards, by the refiners
+ * that add nodes and edges, go into the slack of a segment or relocate the segment to the end of
+ * the pool, which acts as a mutable overlay until the pool is compacted again.
+ *
+ * <p>The nodes keep working through the usual {@link GraphNode} API. A node added to this graph
+ * returns views backed by the pools from {@link GraphNode#getParents()} and {@link
+ * GraphNode#getChildren()}, and all the edge mutators of the node write through to the pools. The
+ * node lookup by ID and the node iteration order are the same as for {@link MapGraph}.
+ *
+ * <p>Like {@link MapGraph}, the graph is not thread safe for concurrent modification. Concurrent
+ * reads are safe once the modifications are done, as the first read after a modification removes
+ * the duplicates from all the segments, and later reads leave the graph untouched.
+ *
+ * @author Karan Vahi
+ * @version $Revision$
+ */
+public class CompactGraph implements Graph {
+
+    /**
+     * Segments upto this size are checked for duplicates when an edge is added. Larger ones are
+     * checked lazily the next time the segment is read, so that building up large fan ins and fan
+     * outs stays linear.
+     */
+    private static final int LINEAR_CHECK_LIMIT = 16;
+
+    /** The initial number of slots. */
+    private static final int INITIAL_SLOTS = 64;
+
+    /**
+     * The map indexed by the id of the <code>GraphNode</code>, used for storing the nodes of the
+     * Graph. The value for each key is the corresponding <code>GraphNode</code> of the class.
+     */
+    @Expose
+    @SerializedName("jobs")
+    protected Map<String, GraphNode> mStore;
+
+    /** The nodes indexed by their slot. */
+    private GraphNode[] mNodes;
+
+    /** The number of slots handed out. */
+    private int mSlots;
+
+    /**
+     * Slots for nodes that are endpoints of edges in this graph, but whose edges are not stored in
+     * this graph, for e.g. nodes that are not part of the graph.
+     */
+    private final Map<GraphNode, Integer> mForeign;
+
+    /** The parents of every slot. */
+    private final Adjacency mParents;
+
+    /** The children of every slot. */
+    private final Adjacency mChildren;
+
+    /** Scratch array used to detect duplicate slots in a segment. */
+    private int[] mMark;
+
+    /** The current stamp for the scratch array. */
+    private int mStamp;
+
+    /**
+     * Whether any segment may contain duplicates. Set when an edge is added without a duplicate
+     * check, and cleared once all the segments are normalized on the next read.
+     */
+    private volatile boolean mUnnormalized;
+
+    /** Handle to the cycle checker */
+    private CycleChecker mCycleChecker;
+
+    /** The default constructor. */
+    public CompactGraph() {
+        mStore = new HashMap<String, GraphNode>();
+        mNodes = new GraphNode[INITIAL_SLOTS];
+        mSlots = 0;
+        mForeign = new IdentityHashMap<GraphNode, Integer>();
+        mParents = new Adjacency(INITIAL_SLOTS);
+        mChildren = new Adjacency(INITIAL_SLOTS);
+        mMark = new int[INITIAL_SLOTS];
+        mStamp = 0;
+        mUnnormalized = false;
+        mCycleChecker = new CycleChecker(this);
+    }
+
+    /**
+     * Adds a node to the Graph. It overwrites an already existing node with the same ID. The edges
+     * of the node, if any, are moved into the graph.
+     *
+     * @param node the node to be added to the Graph.
+     */
+    public void addNode(GraphNode node) {
+        GraphNode existing = mStore.put(node.getID(), node);
+        if (existing != null && existing != node && existing.getCompactGraph() == this) {
+            // the node being overwritten keeps its edges like it would
+            // in a MapGraph
+            release(existing);
+        }
+        if (node.getCompactGraph() == this) {
+            return;
+        }
+
+        // copy out the edges first, as they may be views on another graph
+        List<GraphNode> parents = new ArrayList<GraphNode>(node.getParents());
+        List<GraphNode> children = new ArrayList<GraphNode>(node.getChildren());
+
+        CompactGraph previous = node.getCompactGraph();
+        Integer slot = mForeign.remove(node);
+        int s = (slot == null) ? allocate(node) : slot;
+        if (previous != null) {
+            previous.disown(node);
+        }
+        node.attach(this, s);
+        for (GraphNode parent : parents) {
+            addHalfEdge(mParents, s, slotOf(parent));
+        }
+        for (GraphNode child : children) {
+            addHalfEdge(mChildren, s, slotOf(child));
+        }
+    }
+
+    /**
+     * Returns the node matching the id passed.
+     *
+     * @param identifier the id of the node.
+     * @return the node matching the ID else null.
+     */
+    public GraphNode getNode(String identifier) {
+        return mStore.get(identifier);
+    }
+
+    /**
+     * Adds a single root node to the Graph. All the exisitng roots of the Graph become children of
+     * the root.
+     *
+     * @param root the <code>GraphNode</code> to be added as a root.
+     * @throws RuntimeException if a node with the same id already exists.
+     */
+    public void addRoot(GraphNode root) {
+        // sanity check
+        if (mStore.containsKey(root.getID())) {
+            throw new RuntimeException("Node with ID already exists:" + root.getID());
+        }
+
+        List<GraphNode> existingRoots = getRoots();
+        root.setChildren(existingRoots);
+
+        // for existing root nodes, add a parent as the new Root
+        for (GraphNode existing : existingRoots) {
+            existing.addParent(root);
+        }
+
+        // add the new root into the graph
+        addNode(root);
+    }
+
+    /**
+     * Resets all the dependencies in the Graph, while preserving the nodes. The resulting Graph is
+     * a graph of independent nodes.
+     */
+    public void resetEdges() {
+        for (Iterator<GraphNode> it = this.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            node.resetEdges();
+        }
+    }
+
+    /**
+     * Removes a node from the Graph.
+     *
+     * @param identifier the id of the node to be removed.
+     * @return boolean indicating whether the node was removed or not.
+     */
+    public boolean remove(String identifier) {
+        GraphNode removalNode = mStore.get(identifier);
+        if (removalNode == null) {
+            // node does not exist only.
+            return false;
+        }
+
+        // the parents of the node now become parents of the children
+        List<GraphNode> parents = new ArrayList<GraphNode>(removalNode.getParents());
+        List<GraphNode> children = new ArrayList<GraphNode>(removalNode.getChildren());
+
+        for (GraphNode child : children) {
+            child.removeParent(removalNode);
+        }
+
+        for (GraphNode parent : parents) {
+            // for the parent the removal node is no longer a parent
+            parent.removeChild(removalNode);
+
+            // for each parent make the parent it's parent instead of removed node
+            for (GraphNode child : children) {
+                child.addParent(parent);
+                parent.addChild(child);
+            }
+        }
+
+        // we have the correct linkages now
+        // remove the node from the store.
+        mStore.remove(identifier);
+        if (removalNode.getCompactGraph() == this) {
+            release(removalNode);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the root nodes of the Graph.
+     *
+     * @return a list containing <code>GraphNode</code> corressponding to the root nodes.
+     */
+    public List<GraphNode> getRoots() {
+        List<GraphNode> rootNodes = new LinkedList<GraphNode>();
+        for (GraphNode gn : mStore.values()) {
+            if (gn.getParents().isEmpty()) {
+                rootNodes.add(gn);
+            }
+        }
+        return rootNodes;
+    }
+
+    /**
+     * Returns the leaf nodes of the Graph.
+     *
+     * @return a list containing <code>GraphNode</code> corressponding to the leaf nodes.
+     */
+    public List<GraphNode> getLeaves() {
+        List<GraphNode> leaves = new LinkedList<GraphNode>();
+        for (GraphNode gn : mStore.values()) {
+            if (gn.getChildren().isEmpty()) {
+                leaves.add(gn);
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * Adds an edge between two already existing nodes in the graph.
+     *
+     * @param parent the parent node ID.
+     * @param child the child node ID.
+     */
+    public void addEdge(String parent, String child) {
+        // sanity check
+        if (parent.equals(child)) {
+            throw new IllegalArgumentException(
+                    "Invalid Edge Specification. An Edge specified from a node to itself  for "
+                            + parent);
+        }
+
+        GraphNode childNode = getNode(child);
+        GraphNode parentNode = getNode(parent);
+
+        String notExist = (childNode == null) ? child : (parentNode == null) ? parent : null;
+
+        if (notExist != null) {
+            /* should be replaced by Graph Exception */
+            throw new RuntimeException("The node with identifier doesnt exist " + notExist);
+        }
+
+        this.addEdge(parentNode, childNode);
+    }
+
+    /**
+     * Adds an edge between two already existing nodes in the graph.
+     *
+     * @param parent the parent node .
+     * @param child the child node .
+     */
+    public void addEdge(GraphNode parent, GraphNode child) {
+        child.addParent(parent);
+        parent.addChild(child);
+    }
+
+    /**
+     * A convenience method that allows for bulk addition of edges between already existing nodes in
+     * the graph.
+     *
+     * @param child the child node ID
+     * @param parents list of parent identifiers as <code>String</code>.
+     */
+    public void addEdges(String child, List<String> parents) {
+        // sanity check
+        if (parents.contains(child)) {
+            throw new IllegalArgumentException(
+                    "Invalid Edge Specification. Parents "
+                            + parents
+                            + " include the child "
+                            + child);
+        }
+
+        GraphNode childNode = getNode(child);
+
+        if (childNode == null) {
+            /* should be replaced by Graph Exception */
+            throw new RuntimeException("The node with identifier doesnt exist " + child);
+        }
+
+        List<GraphNode> parentList = new LinkedList<GraphNode>();
+
+        // construct the references to the parent nodes
+        for (String parentId : parents) {
+            GraphNode parentNode = getNode(parentId);
+
+            if (parentNode == null) {
+                /* should be replaced by Graph Exception */
+                throw new RuntimeException("The node with identifier doesnt exist " + parentId);
+            }
+
+            parentList.add(parentNode);
+
+            // add the parent to the parent's parent list
+            parentNode.addChild(childNode);
+        }
+        childNode.setParents(parentList);
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return mStore.size();
+    }
+
+    /**
+     * Returns an iterator for the nodes in the Graph.
+     *
+     * @return Iterator
+     */
+    public Iterator<GraphNode> nodeIterator() {
+        return mStore.values().iterator();
+    }
+
+    /**
+     * Returns an iterator that traverses through the graph using a graph traversal algorithm. At
+     * any one time, only one iterator can iterate through the graph.
+     *
+     * @return Iterator through the nodes of the graph.
+     */
+    public Iterator<GraphNode> iterator() {
+        return new LevelIterator(false);
+    }
+
+    /**
+     * Returns an iterator that traverses the graph bottom up from the leaves. At any one time, only
+     * one iterator can iterate through the graph.
+     *
+     * @return Iterator through the nodes of the graph.
+     */
+    public Iterator<GraphNode> bottomUpIterator() {
+        return new LevelIterator(true);
+    }
+
+    /**
+     * Returns an iterator for the graph that traverses in topological sort order.
+     *
+     * @return Iterator through the nodes of the graph.
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<GraphNode> topologicalSortIterator() {
+        return new TopologicalSortIterator(this);
+    }
+
+    /**
+     * Returns a boolean indicating whether a graph has cyclic edges or not.
+     *
+     * @return boolean
+     */
+    public boolean hasCycles() {
+        return this.mCycleChecker.hasCycles();
+    }
+
+    /**
+     * Returns the detected cyclic edge if , hasCycles returns true
+     *
+     * @return
+     */
+    public NameValue getCyclicEdge() {
+        return this.mCycleChecker.getCyclicEdge();
+    }
+
+    /**
+     * Returns a boolean if there are no nodes in the graph.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return this.mStore.isEmpty();
+    }
+
+    /**
+     * Lays out the edges of all the nodes in slot order without any slack, releasing the space held
+     * by segments that were relocated as edges were added.
+     */
+    public void compact() {
+        normalize();
+        mParents.compact(mSlots, -1);
+        mChildren.compact(mSlots, -1);
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the number of edges
+     */
+    public long getEdgeCount() {
+        long count = 0;
+        for (GraphNode node : mStore.values()) {
+            count += node.getChildren().size();
+        }
+        return count;
+    }
+
+    /**
+     * The textual representation of the graph node.
+     *
+     * @return textual description.
+     */
+    public String toString() {
+        String newLine = System.getProperty("line.separator", "\r\n");
+        String indent = "\t";
+        StringBuffer sb = new StringBuffer(32);
+
+        for (Iterator<GraphNode> it = nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            sb.append(newLine).append(indent).append("Job ->").append(node.getID());
+
+            // write out the node children
+            sb.append(" Children's {");
+            for (GraphNode child : node.getChildren()) {
+                sb.append(child.getID()).append(',');
+            }
+            sb.append("}");
+
+            // write out the node's parents
+            sb.append(" Parents {");
+            for (GraphNode parent : node.getParents()) {
+                sb.append(parent.getID()).append(',');
+            }
+            sb.append("}");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns a copy of the object.
+     *
+     * @return clone of the object.
+     */
+    public Object clone() {
+        return new java.lang.CloneNotSupportedException("Clone() not implemented in CompactGraph");
+    }
+
+    public void setGraphNodeReference(GraphNode node) {
+        // noop
+    }
+
+    /**
+     * Returns a live view of the parents of a node attached to this graph.
+     *
+     * @param slot the slot of the node
+     * @return the parents
+     */
+    Set<GraphNode> getParents(int slot) {
+        return new NodeSet(mParents, slot);
+    }
+
+    /**
+     * Returns a live view of the children of a node attached to this graph.
+     *
+     * @param slot the slot of the node
+     * @return the children
+     */
+    Set<GraphNode> getChildren(int slot) {
+        return new NodeSet(mChildren, slot);
+    }
+
+    /**
+     * Overwrites the parents of a node attached to this graph.
+     *
+     * @param slot the slot of the node
+     * @param parents the new parents
+     */
+    void setParents(int slot, Collection<GraphNode> parents) {
+        setEdges(mParents, slot, parents);
+    }
+
+    /**
+     * Overwrites the children of a node attached to this graph.
+     *
+     * @param slot the slot of the node
+     * @param children the new children
+     */
+    void setChildren(int slot, Collection<GraphNode> children) {
+        setEdges(mChildren, slot, children);
+    }
+
+    /**
+     * Removes all the parents and children of a node attached to this graph.
+     *
+     * @param slot the slot of the node
+     */
+    void resetEdges(int slot) {
+        mParents.clear(slot);
+        mChildren.clear(slot);
+    }
+
+    /**
+     * Detaches a node from the graph, moving its edges back into the node.
+     *
+     * @param node the node
+     */
+    private void release(GraphNode node) {
+        int s = node.getCompactIndex();
+        Set<GraphNode> parents = new HashSet<GraphNode>(getParents(s));
+        Set<GraphNode> children = new HashSet<GraphNode>(getChildren(s));
+        resetEdges(s);
+        node.detach(parents, children);
+    }
+
+    /**
+     * Called when a node attached to this graph has been added to another compact graph, and its
+     * edges are now stored there.
+     *
+     * @param node the node
+     */
+    private void disown(GraphNode node) {
+        resetEdges(node.getCompactIndex());
+    }
+
+    /**
+     * Returns the slot for a node, assigning one if required.
+     *
+     * @param node the node
+     * @return the slot
+     */
+    private int slotOf(GraphNode node) {
+        if (node.getCompactGraph() == this) {
+            return node.getCompactIndex();
+        }
+        Integer slot = mForeign.get(node);
+        if (slot == null) {
+            slot = allocate(node);
+            mForeign.put(node, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot for a node without assigning one.
+     *
+     * @param node the node
+     * @return the slot, or -1 if the node has none
+     */
+    private int findSlot(GraphNode node) {
+        if (node.getCompactGraph() == this) {
+            return node.getCompactIndex();
+        }
+        Integer slot = mForeign.get(node);
+        return (slot == null) ? -1 : slot;
+    }
+
+    /**
+     * Assigns a new slot to a node.
+     *
+     * @param node the node
+     * @return the slot
+     */
+    private int allocate(GraphNode node) {
+        if (mSlots == mNodes.length) {
+            int capacity = mNodes.length + (mNodes.length >> 1);
+            mNodes = Arrays.copyOf(mNodes, capacity);
+            mMark = Arrays.copyOf(mMark, capacity);
+            mParents.ensureSlots(capacity);
+            mChildren.ensureSlots(capacity);
+        }
+        // a slot past the ones in use may carry a stale segment from a compaction
+        mParents.reset(mSlots);
+        mChildren.reset(mSlots);
+        mNodes[mSlots] = node;
+        return mSlots++;
+    }
+
+    /**
+     * Adds a slot to the segment of another slot, checking for duplicates if the segment is small.
+     *
+     * @param adjacency the pool
+     * @param slot the slot owning the segment
+     * @param target the slot to be added
+     * @return true if the slot was added
+     */
+    private boolean addHalfEdge(Adjacency adjacency, int slot, int target) {
+        if (!adjacency.mUnchecked.get(slot)) {
+            if (adjacency.mSize[slot] <= LINEAR_CHECK_LIMIT) {
+                if (adjacency.indexOf(slot, target) >= 0) {
+                    return false;
+                }
+            } else {
+                adjacency.mUnchecked.set(slot);
+                mUnnormalized = true;
+            }
+        }
+        adjacency.add(slot, target);
+        return true;
+    }
+
+    /**
+     * Overwrites the segment of a slot.
+     *
+     * @param adjacency the pool
+     * @param slot the slot
+     * @param nodes the nodes to be put in the segment
+     */
+    private void setEdges(Adjacency adjacency, int slot, Collection<GraphNode> nodes) {
+        // the collection may well be a view on the same segment
+        GraphNode[] copy = nodes.toArray(new GraphNode[nodes.size()]);
+        adjacency.clear(slot);
+        for (GraphNode node : copy) {
+            addHalfEdge(adjacency, slot, slotOf(node));
+        }
+    }
+
+    /**
+     * Removes the duplicates from all the segments that were not checked when edges were added.
+     * Called before every read of a segment. It only writes to the graph on the first read after
+     * edges were added, under a lock, so that concurrent readers of a graph that is no longer
+     * modified neither write to it nor see a segment being normalized.
+     */
+    private void normalize() {
+        if (mUnnormalized) {
+            synchronized (this) {
+                if (mUnnormalized) {
+                    for (int s = mParents.mUnchecked.nextSetBit(0);
+                            s >= 0;
+                            s = mParents.mUnchecked.nextSetBit(s + 1)) {
+                        normalize(mParents, s);
+                    }
+                    for (int s = mChildren.mUnchecked.nextSetBit(0);
+                            s >= 0;
+                            s = mChildren.mUnchecked.nextSetBit(s + 1)) {
+                        normalize(mChildren, s);
+                    }
+                    mUnnormalized = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes duplicate slots from a segment that was not checked when edges were added, retaining
+     * the first occurence of each slot.
+     *
+     * @param adjacency the pool
+     * @param slot the slot owning the segment
+     */
+    private void normalize(Adjacency adjacency, int slot) {
+        if (!adjacency.mUnchecked.get(slot)) {
+            return;
+        }
+        if (++mStamp == 0) {
+            Arrays.fill(mMark, 0);
+            mStamp = 1;
+        }
+        int[] pool = adjacency.mPool;
+        int start = adjacency.mStart[slot];
+        int size = adjacency.mSize[slot];
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            int target = pool[start + i];
+            if (mMark[target] != mStamp) {
+                mMark[target] = mStamp;
+                pool[start + unique++] = target;
+            }
+        }
+        adjacency.mSize[slot] = unique;
+        adjacency.mGarbage += size - unique;
+        adjacency.mUnchecked.clear(slot);
+    }
+
+    /**
+     * The segments of all the slots in one direction, i.e. either the parents or the children. Each
+     * slot owns the range starting at mStart of length mCapacity in the pool, of which the first
+     * mSize entries are in use.
+     */
+    private static class Adjacency {
+
+        /** The pool of slots. */
+        int[] mPool;
+
+        /** The first unused position at the end of the pool. */
+        int mTop;
+
+        /** The number of positions in the pool that are not owned by any segment. */
+        long mGarbage;
+
+        /** The start of the segment for each slot. */
+        int[] mStart;
+
+        /** The number of entries in use for each slot. */
+        int[] mSize;
+
+        /** The capacity of the segment for each slot. */
+        int[] mCapacity;
+
+        /** The slots whose segments may contain duplicates. */
+        final BitSet mUnchecked;
+
+        Adjacency(int slots) {
+            mPool = new int[slots * 2];
+            mTop = 0;
+            mGarbage = 0;
+            mStart = new int[slots];
+            mSize = new int[slots];
+            mCapacity = new int[slots];
+            mUnchecked = new BitSet();
+        }
+
+        void ensureSlots(int slots) {
+            mStart = Arrays.copyOf(mStart, slots);
+            mSize = Arrays.copyOf(mSize, slots);
+            mCapacity = Arrays.copyOf(mCapacity, slots);
+        }
+
+        int indexOf(int slot, int target) {
+            int start = mStart[slot];
+            for (int i = 0, size = mSize[slot]; i < size; i++) {
+                if (mPool[start + i] == target) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void add(int slot, int target) {
+            int size = mSize[slot];
+            if (size == mCapacity[slot]) {
+                relocate(slot, Math.max(2, size * 2));
+            }
+            mPool[mStart[slot] + size] = target;
+            mSize[slot] = size + 1;
+        }
+
+        void removeAt(int slot, int index) {
+            int start = mStart[slot];
+            int size = mSize[slot];
+            // shift to retain the order for any iterators
+            System.arraycopy(mPool, start + index + 1, mPool, start + index, size - index - 1);
+            mSize[slot] = size - 1;
+        }
+
+        void clear(int slot) {
+            mGarbage += mCapacity[slot];
+            reset(slot);
+        }
+
+        /** Gives a slot an empty segment, without accounting for the space it held. */
+        void reset(int slot) {
+            mStart[slot] = 0;
+            mSize[slot] = 0;
+            mCapacity[slot] = 0;
+            mUnchecked.clear(slot);
+        }
+
+        /** Moves the segment of a slot to the end of the pool with a larger capacity. */
+        private void relocate(int slot, int capacity) {
+            if (mTop + capacity > mPool.length) {
+                if (mGarbage > mTop / 2) {
+                    // this leaves the segment being relocated with room
+                    compact(mStart.length, slot);
+                    if (mSize[slot] < mCapacity[slot]) {
+                        return;
+                    }
+                }
+                if (mTop + capacity > mPool.length) {
+                    long length =
+                            Math.max(
+                                    mTop + (long) capacity,
+                                    mPool.length + (long) (mPool.length >> 1));
+                    if (length > Integer.MAX_VALUE - 8) {
+                        throw new IllegalStateException("Too many edges in the graph " + length);
+                    }
+                    mPool = Arrays.copyOf(mPool, (int) length);
+                }
+            }
+            if (mSize[slot] > 0) {
+                System.arraycopy(mPool, mStart[slot], mPool, mTop, mSize[slot]);
+            }
+            mGarbage += mCapacity[slot];
+            mStart[slot] = mTop;
+            mCapacity[slot] = capacity;
+            mTop += capacity;
+        }
+
+        /**
+         * Lays out the segments in slot order, without slack.
+         *
+         * @param slots the number of slots in use
+         * @param grow a slot whose segment should be given double the space, or -1
+         */
+        void compact(int slots, int grow) {
+            long live = 0;
+            for (int s = 0; s < slots; s++) {
+                live += mSize[s];
+            }
+            if (grow >= 0) {
+                live += Math.max(2, mSize[grow]);
+            }
+            if (live > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many edges in the graph " + live);
+            }
+            int[] pool = new int[(int) Math.max(live, 16)];
+            int top = 0;
+            for (int s = 0; s < slots; s++) {
+                int size = mSize[s];
+                if (size > 0) {
+                    System.arraycopy(mPool, mStart[s], pool, top, size);
+                }
+                mStart[s] = top;
+                mCapacity[s] = (s == grow) ? size + Math.max(2, size) : size;
+                top += mCapacity[s];
+            }
+            mPool = pool;
+            mTop = top;
+            mGarbage = 0;
+        }
+    }
+
+    /** A live view of a segment as a set of nodes. */
+    private class NodeSet extends AbstractSet<GraphNode> {
+
+        private final Adjacency mAdjacency;
+
+        private final int mSlot;
+
+        NodeSet(Adjacency adjacency, int slot) {
+            mAdjacency = adjacency;
+            mSlot = slot;
+        }
+
+        @Override
+        public int size() {
+            normalize();
+            return mAdjacency.mSize[mSlot];
+        }
+
+        @Override
+        public boolean isEmpty() {
+            // duplicates do not matter
+            return mAdjacency.mSize[mSlot] == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public boolean add(GraphNode node) {
+            return addHalfEdge(mAdjacency, mSlot, slotOf(node));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int index = indexOf(o);
+            if (index < 0) {
+                return false;
+            }
+            mAdjacency.removeAt(mSlot, index);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            mAdjacency.clear(mSlot);
+        }
+
+        @Override
+        public Iterator<GraphNode> iterator() {
+            normalize();
+            return new Iterator<GraphNode>() {
+                private int mNext = 0;
+
+                private boolean mRemovable = false;
+
+                public boolean hasNext() {
+                    return mNext < mAdjacency.mSize[mSlot];
+                }
+
+                public GraphNode next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    mRemovable = true;
+                    return mNodes[mAdjacency.mPool[mAdjacency.mStart[mSlot] + mNext++]];
+                }
+
+                public void remove() {
+                    if (!mRemovable) {
+                        throw new IllegalStateException();
+                    }
+                    mAdjacency.removeAt(mSlot, --mNext);
+                    mRemovable = false;
+                }
+            };
+        }
+
+        /** Returns the position of a node in the segment, matching by ID as a fallback. */
+        private int indexOf(Object o) {
+            if (!(o instanceof GraphNode)) {
+                return -1;
+            }
+            normalize();
+            GraphNode node = (GraphNode) o;
+            int slot = findSlot(node);
+            int index = (slot < 0) ? -1 : mAdjacency.indexOf(mSlot, slot);
+            if (index < 0) {
+                // GraphNodes are equal if their ids match, so also look
+                // for the node with the same id in the graph
+                GraphNode member = mStore.get(node.getID());
+                if (member != null
+                        && member != node
+                        && member.getCompactGraph() == CompactGraph.this) {
+                    index = mAdjacency.indexOf(mSlot, member.getCompactIndex());
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * An iterator that traverses through the Graph level by level, either top down starting from
+     * the roots or bottom up starting from the leaves. It is the same modified BFS as the iterators
+     * of {@link MapGraph}, and likewise sets the depth and color of the nodes. A node is added to
+     * the queue only when all its parents (children when going bottom up) have been traversed. As
+     * nodes never lose the black color during a traversal, the check resumes from the position at
+     * which it last stopped instead of rescanning all the parents.
+     */
+    private class LevelIterator implements Iterator<GraphNode> {
+
+        /** Whether to traverse bottom up. */
+        private final boolean mBottomUp;
+
+        /** The queue of gray nodes. */
+        private final ArrayDeque<GraphNode> mQueue;
+
+        /** Per slot, the number of leading parents (children) known to be black. */
+        private int[] mScanned;
+
+        LevelIterator(boolean bottomUp) {
+            mBottomUp = bottomUp;
+            mQueue = new ArrayDeque<GraphNode>();
+            mScanned = new int[mSlots];
+
+            // sanity intialization of all nodes depth
+            for (GraphNode node : mStore.values()) {
+                node.setDepth(-1);
+                node.setColor(GraphNode.WHITE_COLOR);
+            }
+
+            // intialize all the root nodes depth to 0
+            // and put them in the queue
+            for (GraphNode node : (bottomUp ? getLeaves() : getRoots())) {
+                node.setDepth(0);
+                mQueue.add(node);
+            }
+        }
+
+        public boolean hasNext() {
+            return !mQueue.isEmpty();
+        }
+
+        public GraphNode next() {
+            GraphNode node = mQueue.removeFirst();
+            int depth = node.getDepth();
+            node.setColor(GraphNode.BLACK_COLOR);
+
+            // add the children to the list only if all the parents
+            // of the parent nodes have been traversed.
+            for (GraphNode child : (mBottomUp ? node.getParents() : node.getChildren())) {
+                if (!child.isColor(GraphNode.GRAY_COLOR) && traversed(child)) {
+                    child.setDepth(depth + 1);
+                    child.setColor(GraphNode.GRAY_COLOR);
+                    mQueue.addLast(child);
+                }
+            }
+            return node;
+        }
+
+        public void remove() {
+            throw new java.lang.UnsupportedOperationException("Method remove() not supported");
+        }
+
+        /** Returns whether all the parents (children when bottom up) of a node are black. */
+        private boolean traversed(GraphNode node) {
+            if (node.getCompactGraph() != CompactGraph.this) {
+                return mBottomUp
+                        ? node.childrenColored(GraphNode.BLACK_COLOR)
+                        : node.parentsColored(GraphNode.BLACK_COLOR);
+            }
+            int slot = node.getCompactIndex();
+            Adjacency adjacency = mBottomUp ? mChildren : mParents;
+            normalize();
+            if (slot >= mScanned.length) {
+                mScanned = Arrays.copyOf(mScanned, mSlots);
+            }
+            int start = adjacency.mStart[slot];
+            int size = adjacency.mSize[slot];
+            int i = Math.min(mScanned[slot], size);
+            while (i < size && mNodes[adjacency.mPool[start + i]].isColor(GraphNode.BLACK_COLOR)) {
+                i++;
+            }
+            mScanned[slot] = i;
+            return i == size;
+        }
+    }
+}
@@ -72,6 +72,15 @@ public class GraphNode extends Data {
      */
     private Bag mBag;
 
+    /**
+     * The compact graph that stores the edges of the node, in which case mParents and mChildren are
+     * not used. Null if the node stores its own edges.
+     */
+    private CompactGraph mCompactGraph;
+
+    /** The slot of the node in the compact graph. */
+    private int mCompactIndex;
+
     /** The default constructor. */
     public GraphNode() {
         mLogicalID = "";
@@ -146,6 +155,10 @@ public class GraphNode extends Data {
      * @param parents
      */
     public void setParents(Collection<GraphNode> parents) {
+        if (mCompactGraph != null) {
+            mCompactGraph.setParents(mCompactIndex, parents);
+            return;
+        }
         mParents = (parents instanceof Set) ? (Set) parents : new HashSet(parents);
     }
 
@@ -156,6 +169,10 @@ public class GraphNode extends Data {
      * @param children
      */
     public void setChildren(Collection<GraphNode> children) {
+        if (mCompactGraph != null) {
+            mCompactGraph.setChildren(mCompactIndex, children);
+            return;
+        }
         mChildren = (children instanceof Set) ? (Set) children : new HashSet(children);
     }
 
@@ -192,7 +209,7 @@ public class GraphNode extends Data {
      * @return list of <code>GraphNode</code> objects.
      */
     public Collection<GraphNode> getParents() {
-        return mParents;
+        return (mCompactGraph == null) ? mParents : mCompactGraph.getParents(mCompactIndex);
     }
 
     /**
@@ -201,7 +218,7 @@ public class GraphNode extends Data {
      * @return list of <code>GraphNode</code> objects.
      */
     public Collection<GraphNode> getChildren() {
-        return mChildren;
+        return (mCompactGraph == null) ? mChildren : mCompactGraph.getChildren(mCompactIndex);
     }
 
     /**
@@ -210,7 +227,7 @@ public class GraphNode extends Data {
      * @param child adds a child to the node.
      */
     public void addChild(GraphNode child) {
-        mChildren.add(child);
+        getChildren().add(child);
     }
 
     /**
@@ -219,7 +236,7 @@ public class GraphNode extends Data {
      * @param parent adds a parent to the node.
      */
     public void addParent(GraphNode parent) {
-        mParents.add(parent);
+        getParents().add(parent);
     }
 
     /**
@@ -228,7 +245,7 @@ public class GraphNode extends Data {
      * @param child child to be removed.
      */
     public void removeChild(GraphNode child) {
-        mChildren.remove(child);
+        getChildren().remove(child);
     }
 
     /**
@@ -237,15 +254,64 @@ public class GraphNode extends Data {
      * @param parent parent to be removed.
      */
     public void removeParent(GraphNode parent) {
-        mParents.remove(parent);
+        getParents().remove(parent);
     }
 
     /** Reset all the edges associated with this node. */
     public final void resetEdges() {
+        if (mCompactGraph != null) {
+            mCompactGraph.resetEdges(mCompactIndex);
+            return;
+        }
         mParents = new HashSet();
         mChildren = new HashSet();
     }
 
+    /**
+     * Hands over the edges of the node to a compact graph. The compact graph is responsible for
+     * moving the existing edges of the node.
+     *
+     * @param graph the compact graph
+     * @param index the slot of the node in the graph
+     */
+    void attach(CompactGraph graph, int index) {
+        mCompactGraph = graph;
+        mCompactIndex = index;
+        mParents = null;
+        mChildren = null;
+    }
+
+    /**
+     * Takes back the edges of the node from the compact graph it was attached to.
+     *
+     * @param parents the parents of the node
+     * @param children the children of the node
+     */
+    void detach(Set<GraphNode> parents, Set<GraphNode> children) {
+        mCompactGraph = null;
+        mCompactIndex = -1;
+        mParents = parents;
+        mChildren = children;
+    }
+
+    /**
+     * Returns the compact graph storing the edges of the node.
+     *
+     * @return the graph, or null if the node stores its own edges
+     */
+    CompactGraph getCompactGraph() {
+        return mCompactGraph;
+    }
+
+    /**
+     * Returns the slot of the node in the compact graph storing its edges.
+     *
+     * @return the slot
+     */
+    int getCompactIndex() {
+        return mCompactIndex;
+    }
+
     /** Returns the logical id of the graph node. */
     public String getID() {
         return mLogicalID;
@@ -298,11 +364,12 @@ public class GraphNode extends Data {
     public boolean parentsColored(int color) {
         boolean colored = true;
         GraphNode par;
-        if (mParents == null) {
+        Collection<GraphNode> parents = getParents();
+        if (parents == null) {
             return colored;
         }
 
-        Iterator it = mParents.iterator();
+        Iterator it = parents.iterator();
         while (it.hasNext() && colored) {
             par = (GraphNode) it.next();
             colored = par.isColor(color);
@@ -321,11 +388,12 @@ public class GraphNode extends Data {
     public boolean childrenColored(int color) {
         boolean colored = true;
         GraphNode child;
-        if (mChildren == null) {
+        Collection<GraphNode> children = getChildren();
+        if (children == null) {
             return colored;
         }
 
-        Iterator<GraphNode> it = mChildren.iterator();
+        Iterator<GraphNode> it = children.iterator();
         while (it.hasNext() && colored) {
             child = (GraphNode) it.next();
             colored = child.isColor(color);
@@ -18,6 +18,9 @@ import edu.isi.pegasus.common.logging.LoggingKeys;
 import edu.isi.pegasus.common.util.Separator;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
 import edu.isi.pegasus.planner.catalog.transformation.Mapper;
+import edu.isi.pegasus.planner.catalog.transformation.TCResolutionCache;
+import edu.isi.pegasus.planner.catalog.transformation.TCResolutionCache.Resolution;
+import edu.isi.pegasus.planner.catalog.transformation.TCResolutionCache.ResolvedEntry;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
 import edu.isi.pegasus.planner.catalog.transformation.classes.Container;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TCType;
@@ -32,7 +35,6 @@ import edu.isi.pegasus.planner.cluster.JobAggregator;
 import edu.isi.pegasus.planner.cluster.aggregator.Decaf;
 import edu.isi.pegasus.planner.code.CodeGeneratorFactory;
 import edu.isi.pegasus.planner.code.generator.Stampede;
-import edu.isi.pegasus.planner.common.PegRandom;
 import edu.isi.pegasus.planner.common.PegasusConfiguration;
 import edu.isi.pegasus.planner.estimate.Estimator;
 import edu.isi.pegasus.planner.estimate.EstimatorFactory;
@@ -41,7 +43,6 @@ import edu.isi.pegasus.planner.namespace.Hints;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.selector.SiteSelector;
-import edu.isi.pegasus.planner.selector.TransformationSelector;
 import edu.isi.pegasus.planner.selector.site.SiteSelectorFactory;
 import java.io.File;
 import java.util.ArrayList;
@@ -51,6 +52,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This engine calls out to the Site Selector selected by the user and maps the jobs in the workflow
@@ -74,12 +80,6 @@ public class InterPoolEngine extends Engine implements Refiner {
     /** Handle to the site selector. */
     private SiteSelector mSiteSelector;
 
-    /**
-     * The handle to the transformation selector, that ends up selecting what transformations to
-     * pick up.
-     */
-    private TransformationSelector mTXSelector;
-
     /**
      * The handle to the transformation catalog mapper object that caches the queries to the
      * transformation catalog, and indexes them according to lfn's. There is no purge policy in the
@@ -87,6 +87,12 @@ public class InterPoolEngine extends Engine implements Refiner {
      */
     private Mapper mTCMapper;
 
+    /**
+     * The cache of the resolutions of the transformations on the sites, that sits in front of the
+     * TC Mapper.
+     */
+    private TCResolutionCache mTCResolutionCache;
+
     /** handle to PegasusConfiguration */
     private PegasusConfiguration mPegasusConfiguration;
 
@@ -112,7 +118,7 @@ public class InterPoolEngine extends Engine implements Refiner {
         // initialize the transformation mapper
         mTCMapper = Mapper.loadTCMapper(mProps.getTCMapperMode(), mBag);
         mBag.add(PegasusBag.TRANSFORMATION_MAPPER, mTCMapper);
-        mTXSelector = null;
+        mTCResolutionCache = new TCResolutionCache(mTCMapper);
         mPegasusConfiguration = new PegasusConfiguration(bag.getLogger());
     }
 
@@ -198,11 +204,38 @@ public class InterPoolEngine extends Engine implements Refiner {
         mSiteSelector = SiteSelectorFactory.loadInstance(mBag);
         mSiteSelector.mapWorkflow(dag, sites);
 
-        int i = 0;
+        @SuppressWarnings("unchecked")
+        List<String> siteHandles = sites;
+        List<Job> jobs = this.getJobsToMap(dag);
+        int threads = mProps.getSiteMappingThreads();
+        if (threads > 1) {
+            incorporateSiteMappings(jobs, siteHandles, threads);
+        } else {
+            // hand the jobs to the site selector if required
+            for (Job job : jobs) {
+                incorporateSiteMapping(job, siteHandles);
+            }
+        }
+
+        // PM-882 incorporate estimates on runtimes of the jobs
+        // after the site selection has been done for all of them
+        incorporateEstimates(jobs);
 
-        // Iterate through the jobs and hand them to
-        // the site selector if required
-        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); i++) {
+        // PM-916 write out all the metadata related events for the
+        // mapped workflow
+        generateStampedeMetadataEvents(dag);
+    }
+
+    /**
+     * Returns the jobs in the workflow that are to be mapped, with the constituent jobs of a data
+     * flow job before the data flow job itself.
+     *
+     * @param dag the abstract workflow.
+     * @return the jobs to be mapped
+     */
+    protected List<Job> getJobsToMap(ADag dag) {
+        List<Job> jobs = new ArrayList<Job>();
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
             GraphNode node = it.next();
             Job job = (Job) node.getContent();
 
@@ -218,16 +251,68 @@ public class InterPoolEngine extends Engine implements Refiner {
                 // we map the constitutent jobs not the datalfow job itself.
                 for (Iterator consIT = dflow.nodeIterator(); consIT.hasNext(); ) {
                     GraphNode n = (GraphNode) consIT.next();
-                    Job j = (Job) n.getContent();
-                    incorporateSiteMapping(j, sites);
+                    jobs.add((Job) n.getContent());
                 }
             }
-            incorporateSiteMapping(job, sites);
-        } // end of mapping all jobs
+            jobs.add(job);
+        }
+        return jobs;
+    }
 
-        // PM-916 write out all the metadata related events for the
-        // mapped workflow
-        generateStampedeMetadataEvents(dag);
+    /**
+     * Incorporates the site mappings of the jobs in the workflow on a pool of worker threads. Each
+     * job is handled independently. If the mapping of more than one job fails, the error for the
+     * job that comes first in the list is thrown.
+     *
+     * @param jobs the jobs to be mapped, as returned by getJobsToMap
+     * @param sites the list of execution sites, specified by the user.
+     * @param threads the number of worker threads to use
+     */
+    protected void incorporateSiteMappings(List<Job> jobs, final List<String> sites, int threads) {
+        // the profiles from the properties are retrieved lazily.
+        // retrieve them upfront so that the worker threads only read them
+        mProps.retrieveProfilesFromProperties();
+        mLogger.log(
+                "Incorporating site mappings for "
+                        + jobs.size()
+                        + " jobs using "
+                        + threads
+                        + " threads",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(jobs.size());
+            for (final Job job : jobs) {
+                futures.add(
+                        executor.submit(
+                                new Callable<Object>() {
+                                    public Object call() {
+                                        incorporateSiteMapping(job, sites);
+                                        return null;
+                                    }
+                                }));
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                try {
+                    futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(
+                            "Interrupted while incorporating site mapping for job " + job.getID(),
+                            e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new RuntimeException(
+                            "Error while incorporating site mapping for job " + job.getID(), cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -271,7 +356,7 @@ public class InterPoolEngine extends Engine implements Refiner {
         // incorporate the profiles and
         // do transformation selection
         // set the staging site for the job
-        TransformationCatalogEntry entry = lookupTC(job);
+        ResolvedEntry entry = lookupTC(job);
         incorporateProfiles(job, entry);
 
         // PM-810 assign data configuration for the job if
@@ -280,11 +365,7 @@ public class InterPoolEngine extends Engine implements Refiner {
             job.setDataConfiguration(PegasusConfiguration.DEFAULT_DATA_CONFIGURATION_VALUE);
         }
         job.setStagingSiteHandle(determineStagingSite(job));
-        handleExecutableFileTransfers(job, entry);
-
-        // PM-882 incorporate estimates on runtimes of the jobs
-        // after the site selection has been done
-        incorporateEstimates(job);
+        handleExecutableFileTransfers(job, entry.getEntry());
     }
 
     /**
@@ -308,10 +389,10 @@ public class InterPoolEngine extends Engine implements Refiner {
      * the TC Mapper.
      *
      * @param job the job into which the profiles have been incorporated.
-     * @param tcEntry the transformation catalog entry to be associated with the job
+     * @param tcEntry the resolved transformation catalog entry to be associated with the job
      * @return true profiles were successfully incorporated. false otherwise
      */
-    private boolean incorporateProfiles(Job job, TransformationCatalogEntry tcEntry) {
+    private boolean incorporateProfiles(Job job, ResolvedEntry tcEntry) {
         String siteHandle = job.getSiteHandle();
 
         mLogger.log(
@@ -330,7 +411,7 @@ public class InterPoolEngine extends Engine implements Refiner {
 
         // add any notifications specified in the transformation
         // catalog for the job. JIRA PM-391
-        job.addNotifications(tcEntry);
+        job.addNotifications(tcEntry.getEntry());
 
         // the profile information from the transformation
         // catalog needs to be assimilated into the job
@@ -355,15 +436,16 @@ public class InterPoolEngine extends Engine implements Refiner {
     }
 
     /**
-     * Returns the main executable to be associated with the job.
+     * Returns the main executable to be associated with the job. The resolution of the
+     * transformation on the site of the job is shared by all the jobs referring to the same
+     * transformation on that site.
      *
      * @param job the job
-     * @return
+     * @return the resolved transformation catalog entry
      */
-    private TransformationCatalogEntry lookupTC(Job job) {
+    private ResolvedEntry lookupTC(Job job) {
 
-        TransformationCatalogEntry tcEntry = null;
-        List tcEntries = null;
+        ResolvedEntry tcEntry = null;
         String siteHandle = job.getSiteHandle();
 
         // we now query the TCMapper only if there is no hint available
@@ -372,14 +454,19 @@ public class InterPoolEngine extends Engine implements Refiner {
 
             // query the TCMapper and get hold of all the valid TC
             // entries for that site
-            tcEntries =
-                    mTCMapper.getTCList(job.namespace, job.logicalName, job.version, siteHandle);
+            Resolution resolution =
+                    mTCResolutionCache.resolve(
+                            job.namespace,
+                            job.logicalName,
+                            job.version,
+                            siteHandle,
+                            mProps.getTXSelectorMode());
 
             StringBuffer error;
-            if (tcEntries != null && tcEntries.size() > 0) {
-                // select a tc entry calling out to
-                // the transformation selector
-                tcEntry = selectTCEntry(tcEntries, job, mProps.getTXSelectorMode());
+            if (resolution.isMapped()) {
+                // select a tc entry from the ones selected
+                // by the transformation selector
+                tcEntry = resolution.select();
                 if (tcEntry == null) {
                     error = new StringBuffer();
                     error.append("Transformation selection operation for job  ")
@@ -405,14 +492,15 @@ public class InterPoolEngine extends Engine implements Refiner {
             // create a transformation catalog entry object
             // corresponding to the executable set
             String executable = job.getRemoteExecutable();
-            tcEntry = new TransformationCatalogEntry();
-            tcEntry.setLogicalTransformation(
+            TransformationCatalogEntry entry = new TransformationCatalogEntry();
+            entry.setLogicalTransformation(
                     job.getTXNamespace(), job.getTXName(), job.getTXVersion());
-            tcEntry.setResourceId(job.getSiteHandle());
-            tcEntry.setPhysicalTransformation(executable);
+            entry.setResourceId(job.getSiteHandle());
+            entry.setPhysicalTransformation(executable);
             // hack to determine whether an executable is
             // installed or static binary
-            tcEntry.setType(executable.startsWith("/") ? TCType.INSTALLED : TCType.STAGEABLE);
+            entry.setType(executable.startsWith("/") ? TCType.INSTALLED : TCType.STAGEABLE);
+            tcEntry = new ResolvedEntry(entry);
         }
 
         return tcEntry;
@@ -573,15 +661,16 @@ public class InterPoolEngine extends Engine implements Refiner {
                 // query the TCMapper and get hold of all the valid TC
                 // entries for that site
                 String lfn[] = Separator.split(input.getLFN());
-                List tcEntries = mTCMapper.getTCList(lfn[0], lfn[1], lfn[2], siteHandle);
+                Resolution resolution =
+                        mTCResolutionCache.resolve(lfn[0], lfn[1], lfn[2], siteHandle, "Staged");
 
                 StringBuffer error;
-                if (tcEntries != null && tcEntries.size() > 0) {
+                if (resolution.isMapped()) {
                     // select a tc entry calling out to
                     // the transformation selector , we only should stage
                     // never pick any installed one.
-                    TransformationCatalogEntry tcEntry = selectTCEntry(tcEntries, job, "Staged");
-                    if (tcEntry == null) {
+                    ResolvedEntry resolved = resolution.select();
+                    if (resolved == null) {
                         error = new StringBuffer();
                         error.append("Transformation selection operation for job  ")
                                 .append(job.getCompleteTCName())
@@ -592,6 +681,7 @@ public class InterPoolEngine extends Engine implements Refiner {
                         throw new RuntimeException(error.toString());
                     }
 
+                    TransformationCatalogEntry tcEntry = resolved.getEntry();
                     if (tcEntry.getType().equals(TCType.STAGEABLE)) {
 
                         SiteCatalogEntry site = mSiteStore.lookup(stagingSiteHandle);
@@ -633,34 +723,6 @@ public class InterPoolEngine extends Engine implements Refiner {
         }
     }
 
-    /**
-     * Calls out to the transformation selector to select an entry from a list of valid
-     * transformation catalog entries.
-     *
-     * @param entries list of <code>TransformationCatalogEntry</code> objects.
-     * @param job the job.
-     * @param selectors the selector to be called
-     * @return the selected <code>TransformationCatalogEntry</code> object null when transformation
-     *     selector is unable to select any transformation
-     */
-    private TransformationCatalogEntry selectTCEntry(List entries, Job job, String selector) {
-
-        // load the transformation selector. different
-        // selectors may end up being loaded for different jobs.
-        mTXSelector = TransformationSelector.loadTXSelector(selector);
-        entries = mTXSelector.getTCEntry(entries, job.getSiteHandle());
-        return (entries == null || entries.size() == 0)
-                ? null
-                : entries.size() > 1
-                        ?
-                        // select a random entry
-                        (TransformationCatalogEntry)
-                                entries.get(PegRandom.getInteger(entries.size() - 1))
-                        :
-                        // return the first one
-                        (TransformationCatalogEntry) entries.get(0);
-    }
-
     /**
      * It incorporates a hint in the namespace to the job. After the hint is incorporated the key is
      * deleted from the hint namespace for that job.
@@ -704,13 +766,25 @@ public class InterPoolEngine extends Engine implements Refiner {
         return false;
     }
 
+    /**
+     * Incorporate estimates for all the jobs, retrieved from the estimator in one call
+     *
+     * @param jobs the mapped jobs
+     */
+    protected void incorporateEstimates(List<Job> jobs) {
+        Map<String, Map<String, String>> estimates = mEstimator.getAllEstimates(jobs);
+        for (Job job : jobs) {
+            incorporateEstimates(job, estimates.get(job.getID()));
+        }
+    }
+
     /**
      * Incorporate estimates
      *
      * @param job
+     * @param estimates the estimates for the job
      */
-    protected void incorporateEstimates(Job job) {
-        Map<String, String> estimates = mEstimator.getAllEstimates(job);
+    protected void incorporateEstimates(Job job, Map<String, String> estimates) {
 
         for (Map.Entry<String, String> entry : estimates.entrySet()) {
             String key = entry.getKey();
@@ -276,13 +276,10 @@ public class MainEngine extends Engine {
             mRemoveEng = null;
         }
 
+        // PM-714 prune redundant edges from the executable workflow
+        reduceEdges(mReducedDag, abstractWFName);
+
         try {
-            /* PM-714. The approach does not scale for the planner performace test case.
-            mLogger.logEventStart( "workflow.prune", LoggingKeys.DAX_ID, abstractWFName );
-            ReduceEdges p = new ReduceEdges();
-            p.reduce(mReducedDag);
-            mLogger.logEventCompletion();
-            */
             // PM-1535 write out the properties file in the submit directory
             propsBeforePlanning.writeOutProperties();
         } catch (IOException ex) {
@@ -292,6 +289,35 @@ public class MainEngine extends Engine {
         return mReducedDag;
     }
 
+    /**
+     * Removes redundant edges from the workflow, as determined by the edge reduction dial in the
+     * properties. The legacy ReduceEdges approach does not scale for the planner performance test
+     * case and is only used if explicitly selected.
+     *
+     * @param dag the workflow
+     * @param abstractWFName the name of the abstract workflow for logging events
+     */
+    private void reduceEdges(ADag dag, String abstractWFName) {
+        PegasusProperties.EDGE_REDUCTION reduction = mProps.getEdgeReduction();
+        if (reduction == PegasusProperties.EDGE_REDUCTION.none) {
+            return;
+        }
+
+        mLogger.logEventStart(
+                LoggingKeys.EVENT_PEGASUS_REDUCE_EDGES, LoggingKeys.DAX_ID, abstractWFName);
+        if (reduction == PegasusProperties.EDGE_REDUCTION.legacy) {
+            ReduceEdges p = new ReduceEdges();
+            p.reduce(dag);
+        } else {
+            TransitiveReduction p = new TransitiveReduction();
+            p.reduce(dag);
+            mLogger.log(
+                    "Removed " + p.getRemovedEdges() + " redundant edges from the workflow",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+        }
+        mLogger.logEventCompletion();
+    }
+
     /**
      * Returns the cleanup dag for the concrete dag.
      *
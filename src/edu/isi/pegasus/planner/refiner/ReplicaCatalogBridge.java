@@ -21,6 +21,10 @@ import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
 import edu.isi.pegasus.planner.catalog.replica.classes.ReplicaStore;
+import edu.isi.pegasus.planner.catalog.replica.impl.Directory;
+import edu.isi.pegasus.planner.catalog.replica.impl.JDBCRC;
+import edu.isi.pegasus.planner.catalog.replica.impl.JournaledFile;
+import edu.isi.pegasus.planner.catalog.replica.impl.ReplicaLookupCache;
 import edu.isi.pegasus.planner.catalog.site.classes.GridGateway;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TCType;
@@ -37,8 +41,11 @@ import edu.isi.pegasus.planner.namespace.Dagman;
 import edu.isi.pegasus.planner.namespace.Metadata;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -46,6 +53,12 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This coordinates the look up to the Replica Location Service, to determine the logical to
@@ -106,9 +119,24 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
     /** The name of the URL key for the replica catalog impelementer to be picked up. */
     public static final String REPLICA_CATALOG_URL_KEY = "url";
 
+    /** The maximum number of threads on which the replica sources are loaded concurrently. */
+    public static final int MAX_LOADER_THREADS = 16;
+
+    /** The prefix of the keys for the replica lookup cache, in the replica catalog properties. */
+    public static final String LOOKUP_CACHE_KEY_PREFIX = "lookup.cache";
+
     /** The handle to the main Replica Catalog. */
     private ReplicaCatalog mReplicaCatalog;
 
+    /**
+     * Whether the mappings from the main Replica Catalog were loaded, either from the catalog or
+     * from the replica lookup cache.
+     */
+    private boolean mReplicaCatalogLoaded;
+
+    /** The file source of the main Replica Catalog, if it is file based. */
+    private File mReplicaCatalogFileSource;
+
     /**
      * The Vector of <code>String</code> objects containing the logical filenames of the files whose
      * locations are to be searched in the Replica Catalog.
@@ -230,42 +258,99 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
 
         mReplicaFileSources = new LinkedHashSet<File>();
 
+        // all the replica sources are loaded concurrently, and then applied
+        // in the order of their precedence below
+        Set<String> inputDirs = options.getInputDirectories();
+        Set<String> cacheFiles = options.getCacheFiles();
+        Set<String> inheritedFiles = options.getInheritedRCFiles();
+        int sources =
+                inputDirs.size()
+                        + cacheFiles.size()
+                        + inheritedFiles.size()
+                        + ((mSearchFiles != null && !mSearchFiles.isEmpty()) ? 1 : 0);
+        ExecutorService executor = createLoaderPool(sources);
         try {
-
-            // make sure that RLS can be loaded from local environment
-            // Karan May 1 2007
             mReplicaCatalog = null;
+            mReplicaCatalogLoaded = false;
+            mReplicaCatalogFileSource = null;
+            Future<ReplicaStore> catalogLoad = null;
             if (mSearchFiles != null && !mSearchFiles.isEmpty()) {
+                catalogLoad =
+                        executor.submit(() -> this.lookupFromReplicaCatalog(properties, options));
+            }
+            List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> directoryLoads =
+                    new ArrayList<Future<Map<String, Collection<ReplicaCatalogEntry>>>>();
+            for (String directory : inputDirs) {
+                final String dir = directory;
+                final Properties props =
+                        mProps.getVDSProperties().matchingSubset(ReplicaCatalog.c_prefix, false);
+                directoryLoads.add(executor.submit(() -> lookupFromDirectory(dir, props)));
+            }
+            List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> cacheLoads =
+                    this.submitReplicaFiles(executor, cacheFiles);
+            List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> inheritedLoads =
+                    this.submitReplicaFiles(executor, inheritedFiles);
+
+            this.initializeReplicaCatalog(catalogLoad, dag, options);
+
+            if (requireDefaultCategoryForRegistrationJobs(this.mReplicaCatalog, this.mProps)) {
+                // specify maxjobs to 1 for File based replica catalog
+                // JIRA PM-377
+                // we set the default category value to 1
+                // in the properties
+                String key = getDefaultRegistrationMaxJobsPropertyKey();
+                if (mProps.getProperty(key) == null) {
+                    mLogger.log(
+                            "Setting property "
+                                    + key
+                                    + " to 1 to set max jobs for registrations jobs category",
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                    mProps.setProperty(key, "1");
+                }
+            }
 
-                // need to clone before setting any read only properites
-                PegasusProperties props = (PegasusProperties) properties.clone();
-
-                // set the read only property for the file based rc
-                // we are connecting via PegasusProperties add the prefix
-                String name =
-                        ReplicaCatalog.c_prefix + "." + ReplicaCatalogBridge.CACHE_READ_ONLY_KEY;
-                props.setProperty(name, "true");
+            // incorporate all mappings from input directory if specified
+            if (!inputDirs.isEmpty()) {
+                mDirectoryReplicaStore = getReplicaStoreFromDirectories(inputDirs, directoryLoads);
+            }
 
-                String proxy = getPathToLocalProxy();
-                if (proxy != null) {
-                    mLogger.log(
-                            "Proxy used for Replica Catalog is " + proxy,
-                            LogManager.CONFIG_MESSAGE_LEVEL);
-                    props.setProperty(
-                            ReplicaCatalog.c_prefix + "." + ReplicaCatalog.PROXY_KEY, proxy);
+            // incorporate the caching if any
+            if (!cacheFiles.isEmpty()) {
+                loadCacheFiles(cacheFiles, cacheLoads);
+                for (String source : cacheFiles) {
+                    mReplicaFileSources.add(new File(source));
                 }
+            }
 
-                PegasusBag bag = new PegasusBag();
-                bag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
-                bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
-                bag.add(PegasusBag.PLANNER_DIRECTORY, mBag.getPlannerDirectory());
-                mReplicaCatalog = ReplicaFactory.loadInstance(bag);
+            // load inherited replica store
+            if (!inheritedFiles.isEmpty()) {
+                this.loadInheritedReplicaStore(inheritedFiles, inheritedLoads);
+                for (String source : inheritedFiles) {
+                    mReplicaFileSources.add(new File(source));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                // load all the mappings.
-                mReplicaStore = new ReplicaStore(mReplicaCatalog.lookup(mSearchFiles));
+    /**
+     * Waits for the main replica catalog to be loaded and sets up the replica store from it. If the
+     * catalog cannot be loaded, the planner only continues if there are other sources of replicas.
+     *
+     * @param catalogLoad the load of the main replica catalog, null if there are no files to look
+     *     up
+     * @param dag the workflow that is being worked on.
+     * @param options the options passed to the planner at runtime.
+     */
+    private void initializeReplicaCatalog(
+            Future<ReplicaStore> catalogLoad, ADag dag, PlannerOptions options) {
+        try {
+            if (catalogLoad != null) {
+                mReplicaStore = join(catalogLoad);
 
                 // PM-1535 if connect props has a file property add it back to the
-                File catalogFile = mReplicaCatalog.getFileSource();
+                File catalogFile = mReplicaCatalogFileSource;
                 if (catalogFile != null && catalogFile.exists()) {
                     this.mBag.add(PegasusBag.REPLICA_CATALOG_FILE_SOURCE, catalogFile);
                     mReplicaFileSources.add(catalogFile);
@@ -300,43 +385,239 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
             // set replica store to an empty store if required
             mReplicaStore = (mReplicaStore == null) ? new ReplicaStore() : mReplicaStore;
         }
+    }
 
-        if (requireDefaultCategoryForRegistrationJobs(this.mReplicaCatalog, this.mProps)) {
-            // specify maxjobs to 1 for File based replica catalog
-            // JIRA PM-377
-            // we set the default category value to 1
-            // in the properties
-            String key = getDefaultRegistrationMaxJobsPropertyKey();
-            if (mProps.getProperty(key) == null) {
+    /**
+     * Looks up the files in the main replica catalog. If the lookups are cached, only the files
+     * that are not in the replica lookup cache are looked up in the catalog, and the catalog is not
+     * connected to at all if all of them are.
+     *
+     * @param properties the properties passed to the planner.
+     * @param options the options passed to the planner at runtime.
+     * @return the replica store with the mappings found
+     * @throws Exception in case of error while loading the catalog
+     */
+    private ReplicaStore lookupFromReplicaCatalog(
+            PegasusProperties properties, PlannerOptions options) throws Exception {
+        Map<String, Collection<ReplicaCatalogEntry>> result;
+        ReplicaLookupCache cache = this.getReplicaLookupCache(properties, options);
+        if (cache == null) {
+            // make sure that RLS can be loaded from local environment
+            // Karan May 1 2007
+            mReplicaCatalog = ReplicaFactory.loadInstance(this.getReplicaCatalogBag(properties));
+
+            // load all the mappings.
+            result = lookupLFNs(mReplicaCatalog, this.getSearchFiles());
+            mReplicaCatalogFileSource = mReplicaCatalog.getFileSource();
+        } else {
+            cache.load();
+            Set<String> misses = new HashSet<String>();
+            result = cache.lookup(this.getSearchFiles(), misses);
+            mLogger.log(
+                    "Found "
+                            + (mSearchFiles.size() - misses.size())
+                            + " of "
+                            + mSearchFiles.size()
+                            + " files in the replica lookup cache "
+                            + cache.getFile(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            if (!misses.isEmpty()) {
+                mReplicaCatalog =
+                        ReplicaFactory.loadInstance(this.getReplicaCatalogBag(properties));
+                Map<String, Collection<ReplicaCatalogEntry>> found =
+                        lookupLFNs(mReplicaCatalog, misses);
+                cache.put(misses, found);
+                cache.setFileSource(mReplicaCatalog.getFileSource());
+                result.putAll(found);
+            }
+            mReplicaCatalogFileSource = cache.getFileSource();
+            try {
+                cache.save();
+            } catch (IOException e) {
                 mLogger.log(
-                        "Setting property "
-                                + key
-                                + " to 1 to set max jobs for registrations jobs category",
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-                mProps.setProperty(key, "1");
+                        "Unable to save the replica lookup cache " + cache.getFile(),
+                        e,
+                        LogManager.WARNING_MESSAGE_LEVEL);
             }
         }
+        mReplicaCatalogLoaded = true;
+        return new ReplicaStore(result);
+    }
 
-        // incorporate all mappings from input directory if specified
-        Set<String> inputDirs = options.getInputDirectories();
-        if (!inputDirs.isEmpty()) {
-            mDirectoryReplicaStore = getReplicaStoreFromDirectories(inputDirs);
+    /**
+     * Returns the cache of the lookups against the main replica catalog, that is kept in the base
+     * submit directory. The cached lookups of a file based catalog are valid until the file is
+     * modified. A database catalog has no such change token, so only the LFNs it has mappings for
+     * are cached, until they expire.
+     *
+     * @param properties the properties passed to the planner.
+     * @param options the options passed to the planner at runtime.
+     * @return the cache, or null if the lookups are not to be cached or the catalog cannot be
+     *     cached
+     */
+    private ReplicaLookupCache getReplicaLookupCache(
+            PegasusProperties properties, PlannerOptions options) {
+        String base = options.getBaseSubmitDirectory();
+        if (!properties.cacheReplicaLookups() || base == null) {
+            return null;
         }
 
-        // incorporate the caching if any
-        if (!options.getCacheFiles().isEmpty()) {
-            loadCacheFiles(options.getCacheFiles());
-            for (String source : options.getCacheFiles()) {
-                mReplicaFileSources.add(new File(source));
+        Properties connectProps = properties.matchingSubset(ReplicaCatalog.c_prefix, false);
+        String type = properties.getReplicaMode();
+        String fileProperty = connectProps.getProperty(ReplicaCatalog.FILE_KEY);
+        File file = null;
+        if (fileProperty != null) {
+            file = new File(fileProperty);
+        } else if (type == null) {
+            // PM-1486 default files in the planner directory
+            File dir = mBag.getPlannerDirectory();
+            File defaultYAML = new File(dir, ReplicaFactory.DEFAULT_YAML_REPLICA_CATALOG_BASENAME);
+            file =
+                    defaultYAML.exists()
+                            ? defaultYAML
+                            : new File(dir, ReplicaFactory.DEFAULT_FILE_REPLICA_CATALOG_BASENAME);
+        }
+
+        String token;
+        if (file != null && !connectProps.containsKey(Directory.DIRECTORY_PROPERTY_KEY)) {
+            token = ReplicaLookupCache.getChangeToken(file);
+        } else if (type != null
+                && type.substring(type.lastIndexOf('.') + 1)
+                        .equalsIgnoreCase(JDBCRC.class.getSimpleName())) {
+            token = "";
+        } else {
+            token = null;
+        }
+        if (token == null) {
+            mLogger.log(
+                    "Lookups against replica catalog of type " + type + " are not cached",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            return null;
+        }
+
+        // the catalog is identified by its connection properties
+        StringBuilder identity = new StringBuilder();
+        identity.append(type).append('\n');
+        Map<Object, Object> sorted = new TreeMap<Object, Object>(connectProps);
+        for (Map.Entry<Object, Object> entry : sorted.entrySet()) {
+            String key = (String) entry.getKey();
+            if (!key.startsWith(ReplicaCatalogBridge.LOOKUP_CACHE_KEY_PREFIX)) {
+                identity.append(key).append('=').append(entry.getValue()).append('\n');
             }
         }
+        identity.append(mBag.getPlannerDirectory());
+
+        return new ReplicaLookupCache(
+                new File(base, ReplicaLookupCache.CACHE_DIRECTORY_NAME),
+                identity.toString(),
+                token,
+                properties.getReplicaLookupCacheTTL() * 1000,
+                properties.getReplicaLookupCacheMaxEntries());
+    }
+
+    /**
+     * Returns the bag with which to load the main replica catalog.
+     *
+     * @param properties the properties passed to the planner.
+     * @return the bag
+     */
+    private PegasusBag getReplicaCatalogBag(PegasusProperties properties) {
+        // need to clone before setting any read only properites
+        PegasusProperties props = (PegasusProperties) properties.clone();
+
+        // set the read only property for the file based rc
+        // we are connecting via PegasusProperties add the prefix
+        String name = ReplicaCatalog.c_prefix + "." + ReplicaCatalogBridge.CACHE_READ_ONLY_KEY;
+        props.setProperty(name, "true");
+
+        String proxy = getPathToLocalProxy();
+        if (proxy != null) {
+            mLogger.log(
+                    "Proxy used for Replica Catalog is " + proxy, LogManager.CONFIG_MESSAGE_LEVEL);
+            props.setProperty(ReplicaCatalog.c_prefix + "." + ReplicaCatalog.PROXY_KEY, proxy);
+        }
 
-        // load inherited replica store
-        if (!options.getInheritedRCFiles().isEmpty()) {
-            this.loadInheritedReplicaStore(options.getInheritedRCFiles());
-            for (String source : options.getInheritedRCFiles()) {
-                mReplicaFileSources.add(new File(source));
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PLANNER_DIRECTORY, mBag.getPlannerDirectory());
+        return bag;
+    }
+
+    /**
+     * Creates the pool of threads on which the replica sources are loaded.
+     *
+     * @param sources the number of sources to load
+     * @return the executor
+     */
+    private ExecutorService createLoaderPool(int sources) {
+        int threads = Math.max(1, Math.min(sources, ReplicaCatalogBridge.MAX_LOADER_THREADS));
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(
+                threads,
+                (Runnable r) -> {
+                    Thread t = new Thread(r, "replica-loader-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Submits the loads of replica files, one per file.
+     *
+     * @param executor the executor to load the files on
+     * @param files the paths to the files
+     * @return the loads in the order of the files
+     */
+    private List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> submitReplicaFiles(
+            ExecutorService executor, Set<String> files) {
+        List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> loads =
+                new ArrayList<Future<Map<String, Collection<ReplicaCatalogEntry>>>>();
+        for (String file : files) {
+            final String path = file;
+            loads.add(executor.submit(() -> lookupFromReplicaFile(path)));
+        }
+        return loads;
+    }
+
+    /**
+     * Waits for a load to complete, and returns its result.
+     *
+     * @param load the load
+     * @return the result
+     * @throws Exception the exception thrown by the load
+     */
+    private static <T> T join(Future<T> load) throws Exception {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a load that does not throw any checked exceptions to complete.
+     *
+     * @param load the load
+     * @return the result
+     */
+    private static <T> T joinUnchecked(Future<T> load) {
+        try {
+            return join(load);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading replica sources", e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -381,7 +662,7 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
 
         // check in the main replica catalog
         if ((this.mDAXReplicaStore.isEmpty() && mDirectoryReplicaStore.isEmpty())
-                && (mRCDown || mReplicaCatalog == null)) {
+                && (mRCDown || !mReplicaCatalogLoaded)) {
             mLogger.log(
                     "Replica Catalog is either down or connection to it was never opened ",
                     LogManager.WARNING_MESSAGE_LEVEL);
@@ -848,29 +1129,37 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
      * Ends up loading the inherited replica files.
      *
      * @param files set of paths to the inherited replica files.
+     * @param loads the loads of the files in the same order
      */
-    private void loadInheritedReplicaStore(Set files) {
+    private void loadInheritedReplicaStore(
+            Set<String> files, List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> loads) {
         mLogger.log(
                 "Loading Inhertied ReplicaFiles files: " + files, LogManager.DEBUG_MESSAGE_LEVEL);
-        this.mInheritedReplicaStore = this.getReplicaStoreFromFiles(files);
+        this.mInheritedReplicaStore = this.getReplicaStoreFromFiles(files, loads);
     }
     /**
      * Ends up loading the cache files so as to enable the lookup for the transient files created by
      * the parent jobs.
      *
      * @param cacheFiles set of paths to the cache files.
+     * @param loads the loads of the files in the same order
      */
-    private void loadCacheFiles(Set cacheFiles) {
+    private void loadCacheFiles(
+            Set<String> cacheFiles,
+            List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> loads) {
         mLogger.log("Loading cache files: " + cacheFiles, LogManager.DEBUG_MESSAGE_LEVEL);
-        mCacheStore = this.getReplicaStoreFromFiles(cacheFiles);
+        mCacheStore = this.getReplicaStoreFromFiles(cacheFiles, loads);
     }
 
     /**
-     * Ends up loading a Replica Store from replica catalog files
+     * Ends up loading a Replica Store from replica catalog files, by waiting for the loads of the
+     * files and merging them in order.
      *
      * @param files set of paths to the cache files.
+     * @param loads the loads of the files in the same order
      */
-    private ReplicaStore getReplicaStoreFromFiles(Set files) {
+    private ReplicaStore getReplicaStoreFromFiles(
+            Set<String> files, List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> loads) {
         ReplicaStore store = new ReplicaStore();
 
         mLogger.logEventStart(
@@ -878,48 +1167,9 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
                 LoggingKeys.DAX_ID,
                 mDag.getAbstractWorkflowName());
 
-        for (Iterator it = files.iterator(); it.hasNext(); ) {
-            // read each of the cache file and load in memory
-            String file = (String) it.next();
-
-            // suck in all the entries into the cache replica store.
-            Map<String, Collection<ReplicaCatalogEntry>> cacheMap =
-                    lookupFromCacheFile(file, mSearchFiles);
-
-            File metaCacheFile = new File(file + ".meta");
-            if (metaCacheFile.exists()) {
-                // PM-1257 rerieve metatadata from cache.meta file that can include
-                // checksum data and merge in cache map
-                Map<String, Collection<ReplicaCatalogEntry>> metadataCacheMap =
-                        lookupFromCacheFile(file + ".meta", mSearchFiles);
-                for (Map.Entry<String, Collection<ReplicaCatalogEntry>> metadataEntry :
-                        metadataCacheMap.entrySet()) {
-                    String lfn = metadataEntry.getKey();
-
-                    for (ReplicaCatalogEntry metadataRCE : metadataEntry.getValue()) {
-                        // check if entry has a checksum value
-                        if (metadataRCE.hasAttribute(Metadata.CHECKSUM_VALUE_KEY)) {
-                            String checksum =
-                                    (String) metadataRCE.getAttribute(Metadata.CHECKSUM_VALUE_KEY);
-                            String type =
-                                    (String) metadataRCE.getAttribute(Metadata.CHECKSUM_TYPE_KEY);
-                            // update entry in the cache map with this
-                            Collection<ReplicaCatalogEntry> cacheEntries = cacheMap.get(lfn);
-                            if (cacheEntries != null) {
-                                for (ReplicaCatalogEntry cacheRCE : cacheEntries) {
-                                    cacheRCE.addAttribute(Metadata.CHECKSUM_VALUE_KEY, checksum);
-                                    if (type != null) {
-                                        cacheRCE.addAttribute(Metadata.CHECKSUM_TYPE_KEY, type);
-                                    }
-                                }
-                            }
-                            // update with first checksum value found for lfn
-                            break;
-                        }
-                    }
-                }
-            }
-
+        Iterator<Future<Map<String, Collection<ReplicaCatalogEntry>>>> loadIT = loads.iterator();
+        for (String file : files) {
+            Map<String, Collection<ReplicaCatalogEntry>> cacheMap = joinUnchecked(loadIT.next());
             store.add(cacheMap);
             mLogger.log(
                     "Loaded " + cacheMap.size() + " entry from file " + file,
@@ -930,6 +1180,53 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
         return store;
     }
 
+    /**
+     * Retrieves locations of search files from a replica file, along with the checksums from the
+     * accompanying meta file if it exists. This is called concurrently for the replica files.
+     *
+     * @param file the replica file
+     * @return the mappings found
+     */
+    private Map<String, Collection<ReplicaCatalogEntry>> lookupFromReplicaFile(String file) {
+        // suck in all the entries into the cache replica store.
+        Map<String, Collection<ReplicaCatalogEntry>> cacheMap =
+                lookupFromCacheFile(file, this.getSearchFiles());
+
+        File metaCacheFile = new File(file + ".meta");
+        if (metaCacheFile.exists()) {
+            // PM-1257 rerieve metatadata from cache.meta file that can include
+            // checksum data and merge in cache map
+            Map<String, Collection<ReplicaCatalogEntry>> metadataCacheMap =
+                    lookupFromCacheFile(file + ".meta", this.getSearchFiles());
+            for (Map.Entry<String, Collection<ReplicaCatalogEntry>> metadataEntry :
+                    metadataCacheMap.entrySet()) {
+                String lfn = metadataEntry.getKey();
+
+                for (ReplicaCatalogEntry metadataRCE : metadataEntry.getValue()) {
+                    // check if entry has a checksum value
+                    if (metadataRCE.hasAttribute(Metadata.CHECKSUM_VALUE_KEY)) {
+                        String checksum =
+                                (String) metadataRCE.getAttribute(Metadata.CHECKSUM_VALUE_KEY);
+                        String type = (String) metadataRCE.getAttribute(Metadata.CHECKSUM_TYPE_KEY);
+                        // update entry in the cache map with this
+                        Collection<ReplicaCatalogEntry> cacheEntries = cacheMap.get(lfn);
+                        if (cacheEntries != null) {
+                            for (ReplicaCatalogEntry cacheRCE : cacheEntries) {
+                                cacheRCE.addAttribute(Metadata.CHECKSUM_VALUE_KEY, checksum);
+                                if (type != null) {
+                                    cacheRCE.addAttribute(Metadata.CHECKSUM_TYPE_KEY, type);
+                                }
+                            }
+                        }
+                        // update with first checksum value found for lfn
+                        break;
+                    }
+                }
+            }
+        }
+        return cacheMap;
+    }
+
     /**
      * Retrieves locations of search files from a cache file
      *
@@ -980,46 +1277,96 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
     }
 
     /**
-     * Loads the mappings from the input directory
+     * Loads the mappings from the input directories, by waiting for the loads of the directories
+     * and merging them in order.
      *
-     * @param directies set of directories to load from
+     * @param directories set of directories to load from
+     * @param loads the loads of the directories in the same order
      */
-    private ReplicaStore getReplicaStoreFromDirectories(Set<String> directories) {
+    private ReplicaStore getReplicaStoreFromDirectories(
+            Set<String> directories,
+            List<Future<Map<String, Collection<ReplicaCatalogEntry>>>> loads) {
         ReplicaStore store = new ReplicaStore();
-        Properties properties =
-                mProps.getVDSProperties().matchingSubset(ReplicaCatalog.c_prefix, false);
 
+        Iterator<Future<Map<String, Collection<ReplicaCatalogEntry>>>> loadIT = loads.iterator();
         for (String directory : directories) {
             mLogger.logEventStart(
                     LoggingKeys.EVENT_PEGASUS_LOAD_DIRECTORY_CACHE,
                     LoggingKeys.DAX_ID,
                     mDag.getAbstractWorkflowName());
+            store.add(joinUnchecked(loadIT.next()));
+            mLogger.logEventCompletion();
+        }
+        return store;
+    }
 
-            ReplicaCatalog catalog = null;
+    /**
+     * Loads the mappings from an input directory. This is called concurrently for the input
+     * directories.
+     *
+     * @param directory the directory to load from
+     * @param properties the replica catalog properties, exclusive to this directory
+     * @return the mappings found
+     */
+    private Map<String, Collection<ReplicaCatalogEntry>> lookupFromDirectory(
+            String directory, Properties properties) {
+        Map<String, Collection<ReplicaCatalogEntry>> result =
+                new HashMap<String, Collection<ReplicaCatalogEntry>>();
+        Directory catalog = null;
 
-            // set the appropriate property to designate path to file
-            properties.setProperty(ReplicaCatalogBridge.DIRECTORY_REPLICA_CATALOG_KEY, directory);
+        // set the appropriate property to designate path to file
+        properties.setProperty(ReplicaCatalogBridge.DIRECTORY_REPLICA_CATALOG_KEY, directory);
 
-            mLogger.log("Loading from directory: " + directory, LogManager.DEBUG_MESSAGE_LEVEL);
-            try {
-                catalog =
-                        ReplicaFactory.loadInstance(
-                                DIRECTORY_REPLICA_CATALOG_IMPLEMENTER, this.mBag, properties);
+        mLogger.log("Loading from directory: " + directory, LogManager.DEBUG_MESSAGE_LEVEL);
+        try {
+            // only the files the workflow refers to are loaded from the directory
+            catalog = new Directory();
+            catalog.setLFNFilter(this.getSearchFiles());
+            if (!catalog.connect(properties)) {
+                throw new RuntimeException(
+                        ReplicaFactory.CONNECT_TO_RC_FAILED_MESSAGE
+                                + " "
+                                + DIRECTORY_REPLICA_CATALOG_IMPLEMENTER
+                                + " with props "
+                                + properties);
+            }
 
-                store.add(catalog.lookup(mSearchFiles));
-            } catch (Exception e) {
-                mLogger.log(
-                        "Unable to load from directory  " + directory,
-                        e,
-                        LogManager.ERROR_MESSAGE_LEVEL);
-            } finally {
-                if (catalog != null) {
-                    catalog.close();
-                }
+            result = lookupLFNs(catalog, this.getSearchFiles());
+        } catch (Exception e) {
+            mLogger.log(
+                    "Unable to load from directory  " + directory,
+                    e,
+                    LogManager.ERROR_MESSAGE_LEVEL);
+        } finally {
+            if (catalog != null) {
+                catalog.close();
             }
-            mLogger.logEventCompletion();
         }
-        return store;
+        return result;
+    }
+
+    /**
+     * Returns the logical filenames of the files referred to in the workflow.
+     *
+     * @return the set of LFNs to look up
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> getSearchFiles() {
+        return (Set<String>) mSearchFiles;
+    }
+
+    /**
+     * Looks up the locations of a set of logical filenames in a replica catalog, whose interface
+     * returns an untyped map.
+     *
+     * @param catalog the replica catalog
+     * @param lfns the logical filenames to look up
+     * @return map indexed by the LFN, to the collection of replica catalog entries
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Collection<ReplicaCatalogEntry>> lookupLFNs(
+            ReplicaCatalog catalog, Set<String> lfns) {
+        return catalog.lookup(lfns);
     }
 
     /**
@@ -1056,6 +1403,11 @@ public class ReplicaCatalogBridge extends Engine // for the time being.
         }
         return require;
         */
-        return true;
+        // registration jobs can run concurrently only against a journaled
+        // file based output replica catalog, as it locks on updates
+        String output = props.getProperty(ReplicaCatalogBridge.OUTPUT_REPLICA_CATALOG_PREFIX);
+        return !(output != null
+                && (output.equalsIgnoreCase("JournaledFile")
+                        || output.equals(JournaledFile.class.getCanonicalName())));
     }
 }
@@ -419,15 +419,18 @@ public class TransferEngine extends Engine {
             currentJob.setLevel(node.getDepth());
             currentJobName = currentJob.getName();
 
-            mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
-            msg = "Job being traversed is " + currentJobName;
-            mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
-            msg = "To be run at " + currentJob.executionPool;
-            mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
+            if (mLogger.isDebugEnabled()) {
+                mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
+                msg = "Job being traversed is " + currentJobName;
+                mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
+                msg = "To be run at " + currentJob.executionPool;
+                mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
+                mLogger.log(
+                        "Parents of job:" + node.parentsToString(), LogManager.DEBUG_MESSAGE_LEVEL);
+            }
 
             // getting the parents of that node
             Collection<GraphNode> parents = node.getParents();
-            mLogger.log("Parents of job:" + node.parentsToString(), LogManager.DEBUG_MESSAGE_LEVEL);
             processParents(currentJob, parents);
 
             // transfer the nodes output files
@@ -1062,14 +1065,16 @@ public class TransferEngine extends Engine {
                         // to create an output map for the sub workflow referred to by the dax job
                         // the output map should transfer files to the staging site of the compute
                         // job in question. we log in the output map file for the DAX job
-                        mLogger.log(
-                                "Parent DAX job "
-                                        + pJob.getID()
-                                        + " will transfer output file to "
-                                        + ft.getDestURL()
-                                        + " which is required by "
-                                        + job.getID(),
-                                LogManager.DEBUG_MESSAGE_LEVEL);
+                        if (mLogger.isDebugEnabled()) {
+                            mLogger.log(
+                                    "Parent DAX job "
+                                            + pJob.getID()
+                                            + " will transfer output file to "
+                                            + ft.getDestURL()
+                                            + " which is required by "
+                                            + job.getID(),
+                                    LogManager.DEBUG_MESSAGE_LEVEL);
+                        }
                         ((DAXJob) pJob).addOutputFileLocation(mBag, ft);
 
                         // PM-1608 explicitly disable integrity checking as we don't
@@ -1267,7 +1272,7 @@ public class TransferEngine extends Engine {
         job.setArguments(arguments.toString());
 
         mLogger.log(
-                "Set arguments for DAX job " + job.getID() + " to " + arguments.toString(),
+                () -> "Set arguments for DAX job " + job.getID() + " to " + arguments.toString(),
                 LogManager.DEBUG_MESSAGE_LEVEL);
 
         this.getFilesFromRC((Job) job, searchFiles);
@@ -1539,19 +1544,21 @@ public class TransferEngine extends Engine {
                                             .getCanonicalPath()
                                             .equals(new File(dAbsPath).getCanonicalPath()))) {
                         // do not need to add any transfer node
-                        StringBuffer message = new StringBuffer();
-
-                        message.append(sAbsPath).append(" same as ").append(dAbsPath);
-                        mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-                        message = new StringBuffer();
-                        message.append(" Not transferring ip file as ")
-                                .append(lfn)
-                                .append(" for job ")
-                                .append(job.jobName)
-                                .append(" to site ")
-                                .append(stagingSiteHandle);
-
-                        mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                        if (mLogger.isDebugEnabled()) {
+                            StringBuffer message = new StringBuffer();
+
+                            message.append(sAbsPath).append(" same as ").append(dAbsPath);
+                            mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                            message = new StringBuffer();
+                            message.append(" Not transferring ip file as ")
+                                    .append(lfn)
+                                    .append(" for job ")
+                                    .append(job.jobName)
+                                    .append(" to site ")
+                                    .append(stagingSiteHandle);
+
+                            mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                        }
                         continue;
                     }
                 } catch (IOException ioe) {
@@ -2100,6 +2107,9 @@ public class TransferEngine extends Engine {
      * @param removed whether removal was successful or not.
      */
     private void logRemoval(Job job, PegasusFile file, String prefix, boolean removed) {
+        if (removed && !mLogger.isDebugEnabled()) {
+            return;
+        }
         StringBuilder message = new StringBuilder();
         message.append(prefix).append(" : ");
         if (removed) {
@@ -2133,7 +2143,7 @@ public class TransferEngine extends Engine {
         try {
             File f = mSubmitDirMapper.getRelativeDir(job);
             mLogger.log(
-                    "Directory for job " + job.getID() + " is " + f,
+                    () -> "Directory for job " + job.getID() + " is " + f,
                     LogManager.DEBUG_MESSAGE_LEVEL);
             relative = f.getPath();
         } catch (Exception ex) {
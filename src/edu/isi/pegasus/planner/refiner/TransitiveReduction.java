@@ -0,0 +1,196 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the transitive reduction of the workflow, i.e. removes an edge A->C if C is also
+ * reachable from A through some other path. For example if A->B->C and A->C exists, we can delete
+ * edge A->C.
+ *
+ * <p>Unlike {@link ReduceEdges}, the graph is first converted to an int indexed adjacency
+ * representation, and every node is assigned a level that is the length of the longest path from a
+ * root to it. An edge A->C where level(C) == level(A) + 1 can never be redundant, as any other path
+ * from A to C has at least two edges. Only the remaining edges are candidates for deletion, and for
+ * a node with candidate edges a single traversal over its descendants, bounded by the maximum level
+ * of the candidates, determines all the redundant edges of that node. Traversals reuse a stamp
+ * array, so no per node allocation happens. For the wide and deep workflows that Pegasus typically
+ * deals with, most edges connect adjacent levels and the pass runs in time close to linear in the
+ * number of edges.
+ *
+ * @author Karan Vahi
+ */
+public class TransitiveReduction {
+
+    /** The number of edges removed in the last invocation of reduce. */
+    private long mRemovedEdges;
+
+    /** The default constructor. */
+    public TransitiveReduction() {
+        mRemovedEdges = 0;
+    }
+
+    /**
+     * Prunes redundant edges from the workflow.
+     *
+     * @param dag the workflow
+     * @return the workflow with redundant edges removed
+     */
+    public ADag reduce(ADag dag) {
+        // ADag implements the Graph interface
+        Graph resultGraph = this.reduce((Graph) dag);
+
+        return (ADag) resultGraph;
+    }
+
+    /**
+     * Prunes redundant edges from the workflow.
+     *
+     * @param workflow the workflow
+     * @return the workflow with redundant edges removed
+     * @throws RuntimeException if the workflow has a cycle
+     */
+    public Graph reduce(Graph workflow) {
+        mRemovedEdges = 0;
+        int n = workflow.size();
+        if (n == 0) {
+            return workflow;
+        }
+
+        // assign an index to each node
+        GraphNode[] nodes = new GraphNode[n];
+        Map<GraphNode, Integer> index = new HashMap<GraphNode, Integer>(n * 4 / 3 + 1);
+        int i = 0;
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            nodes[i] = node;
+            index.put(node, i);
+            i++;
+        }
+
+        // build the adjacency lists and the in degree of each node
+        int[][] children = new int[n][];
+        int[] inDegree = new int[n];
+        for (i = 0; i < n; i++) {
+            int[] adj = new int[nodes[i].getChildren().size()];
+            int j = 0;
+            for (GraphNode child : nodes[i].getChildren()) {
+                int c = index.get(child);
+                adj[j++] = c;
+                inDegree[c]++;
+            }
+            children[i] = adj;
+        }
+        index = null;
+
+        // kahn's algorithm to compute the level of each node
+        // as the longest path from any root
+        int[] level = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int v = queue[head++];
+            for (int c : children[v]) {
+                level[c] = Math.max(level[c], level[v] + 1);
+                if (--inDegree[c] == 0) {
+                    queue[tail++] = c;
+                }
+            }
+        }
+        if (tail != n) {
+            throw new RuntimeException(
+                    "Unable to reduce edges as the workflow has cyclic dependencies");
+        }
+
+        // reached[x] == stamp  means x is reachable from the current node via path of length >= 2
+        // expanded[x] == stamp means the children of x have been pushed for the current node
+        int[] reached = new int[n];
+        int[] expanded = new int[n];
+        int[] stack = queue;
+        List<GraphNode[]> redundant = new ArrayList<GraphNode[]>();
+        for (int v = 0; v < n; v++) {
+            int maxLevel = -1;
+            for (int c : children[v]) {
+                if (level[c] > level[v] + 1) {
+                    maxLevel = Math.max(maxLevel, level[c]);
+                }
+            }
+            if (maxLevel < 0) {
+                // all edges of the node connect adjacent levels
+                continue;
+            }
+
+            int stamp = v + 1;
+            int top = 0;
+            for (int c : children[v]) {
+                if (level[c] < maxLevel) {
+                    expanded[c] = stamp;
+                    stack[top++] = c;
+                }
+            }
+            while (top > 0) {
+                int x = stack[--top];
+                for (int y : children[x]) {
+                    if (level[y] > maxLevel) {
+                        continue;
+                    }
+                    reached[y] = stamp;
+                    if (level[y] < maxLevel && expanded[y] != stamp) {
+                        expanded[y] = stamp;
+                        stack[top++] = y;
+                    }
+                }
+            }
+
+            for (int c : children[v]) {
+                if (reached[c] == stamp) {
+                    redundant.add(new GraphNode[] {nodes[v], nodes[c]});
+                }
+            }
+        }
+
+        // removal of redundant edges does not change reachability or the levels,
+        // so we can safely delete them all at the end
+        for (GraphNode[] edge : redundant) {
+            edge[0].removeChild(edge[1]);
+            edge[1].removeParent(edge[0]);
+        }
+        mRemovedEdges = redundant.size();
+
+        return workflow;
+    }
+
+    /**
+     * Returns the number of edges removed in the last invocation of reduce.
+     *
+     * @return the number of removed edges
+     */
+    public long getRemovedEdges() {
+        return mRemovedEdges;
+    }
+}
@@ -20,11 +20,13 @@ import edu.isi.pegasus.planner.classes.TransferJob;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.Choice;
+import edu.isi.pegasus.planner.refiner.cleanup.constraint.Dependencies;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.FloatingFile;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.OutOfSpaceError;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.Utilities;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -52,31 +54,43 @@ public class Constraint extends AbstractCleanupStrategy {
     private static final String DEFAULT_MAX_SPACE = "10737418240";
 
     /** Maximum available space per site. */
-    private static long maxSpacePerSite;
+    private long maxSpacePerSite;
 
     /** Map of max available space per site. */
-    private static Map<String, Long> maxAvailableSpacePerSite;
+    private Map<String, Long> maxAvailableSpacePerSite;
 
     /** Maps of how much space is still available per site. */
-    private static Map<String, Long> availableSpacePerSite;
+    private Map<String, Long> availableSpacePerSite;
 
     /** */
-    private static boolean deferStageins;
+    private boolean deferStageins;
 
-    /** Dependency list. Maps from a node to the set of nodes dependent on it. */
-    private static Map<GraphNode, Set<GraphNode>> dependencies;
+    /** Map from file name to file size, as read from the CSV file. Null if not specified. */
+    private Map<String, Long> fileSizes;
+
+    /** The dependencies i.e. the ancestors of every node in the workflow. */
+    private Dependencies dependencies;
+
+    /** The stage-in and inter site transfer jobs, indexed as in the dependencies. */
+    private BitSet stageIns;
+
+    /** The jobs at the current site, indexed as in the dependencies. */
+    private BitSet siteJobs;
+
+    /** The jobs at the current site that are yet to execute, indexed as in the dependencies. */
+    private BitSet pendingSiteJobs;
 
     /** Set of current heads (jobs that can be run immediately. */
-    private static Set<GraphNode> heads;
+    private Set<GraphNode> heads;
 
     /** Set of jobs that have finished execution. */
-    private static Set<GraphNode> executed;
+    private Set<GraphNode> executed;
 
     /** List of files that are pending cleanup. */
-    private static NavigableMap<Long, List<FloatingFile>> floatingFiles;
+    private NavigableMap<Long, List<FloatingFile>> floatingFiles;
 
     /** Set of external stage-ins for which space is reserved in advance. */
-    private static HashSet<Job> reservations;
+    private HashSet<Job> reservations;
 
     /**
      * Adds cleanup jobs to the workflow.
@@ -109,9 +123,10 @@ public class Constraint extends AbstractCleanupStrategy {
 
         // read file sizes from a CSV file
         String CSVName = System.getProperty("pegasus.file.cleanup.constraint.csv");
+        fileSizes = null;
         if (CSVName != null) {
             try {
-                Utilities.loadHashMap(CSVName);
+                fileSizes = Utilities.loadHashMap(CSVName);
             } catch (IOException e) {
                 mLogger.log(
                         "Falling back to the old mechanism due to IOException while reading CSV: "
@@ -120,6 +135,13 @@ public class Constraint extends AbstractCleanupStrategy {
             }
         }
         dependencies = Utilities.calculateDependencies(workflow, mLogger);
+        stageIns = new BitSet(dependencies.size());
+        for (int i = 0; i < dependencies.size(); i++) {
+            int type = ((Job) dependencies.getNode(i).getContent()).getJobType();
+            if (type == Job.STAGE_IN_JOB || type == Job.INTER_POOL_JOB) {
+                stageIns.set(i);
+            }
+        }
 
         // for each site do the process of adding cleanup jobs
         for (Iterator it = mResMap.entrySet().iterator(); it.hasNext(); ) {
@@ -193,6 +215,9 @@ public class Constraint extends AbstractCleanupStrategy {
             markStageIns(workflow, site, currentSiteJobs);
         }
 
+        siteJobs = dependencies.toBitSet(currentSiteJobs);
+        pendingSiteJobs = (BitSet) siteJobs.clone();
+
         // locate initial set of heads
         locateInitialHeads(site, currentSiteJobs);
         mLogger.log(
@@ -280,39 +305,35 @@ public class Constraint extends AbstractCleanupStrategy {
      * @param currentSiteJobs The set of jobs at the current site
      */
     private void locateInitialHeads(String site, Set<GraphNode> currentSiteJobs) {
+        // stage-ins from other sites
+        BitSet remoteStageIns = (BitSet) stageIns.clone();
+        remoteStageIns.andNot(siteJobs);
+
         for (GraphNode currentNode : currentSiteJobs) {
-            // assume all nodes are head nodes
-            boolean currentNodeIsHead = true;
-            // iterate over all dependencies
-            Set<GraphNode> dependenciesForNode = dependencies.get(currentNode);
-            for (GraphNode dependency : dependenciesForNode) {
-                // if we find a dependency thats running here this is not a head job
-                if (currentSiteJobs.contains(dependency)) {
-                    // the dependency is scheduled to run here
-                    currentNodeIsHead = false;
-                } else {
-                    // this dependency node is running elsewhere
-                    // we must check if it is an inter-site stage-in and reserve space if so
-                    Job j = (Job) dependency.getContent();
-                    int type = j.getJobType();
-                    if ((type == Job.STAGE_IN_JOB || type == Job.INTER_POOL_JOB)
-                            && !reservations.contains(j)) {
-                        reservations.add(j);
+            // if we find a dependency thats running here this is not a head job
+            boolean currentNodeIsHead = !dependencies.hasDependencyIn(currentNode, siteJobs);
+
+            // for dependencies running elsewhere, we must check if they are
+            // inter-site stage-ins and reserve space if so
+            for (GraphNode dependency :
+                    dependencies.getDependenciesIn(currentNode, remoteStageIns)) {
+                Job j = (Job) dependency.getContent();
+                if (!reservations.contains(j)) {
+                    reservations.add(j);
+                    mLogger.log("Input stage in job " + j.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+                    // figure out sizes and reserve that much space
+                    Set<PegasusFile> outputs = j.getOutputFiles();
+                    for (PegasusFile currentOutput : outputs) {
+                        long currentOutputFileSize =
+                                Utilities.getFileSize(currentOutput, fileSizes);
                         mLogger.log(
-                                "Input stage in job " + j.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
-                        // figure out sizes and reserve that much space
-                        Set<PegasusFile> outputs = j.getOutputFiles();
-                        for (PegasusFile currentOutput : outputs) {
-                            long currentOutputFileSize = Utilities.getFileSize(currentOutput);
-                            mLogger.log(
-                                    "Found stage in of file "
-                                            + currentOutput.getLFN()
-                                            + " of size "
-                                            + currentOutputFileSize,
-                                    LogManager.DEBUG_MESSAGE_LEVEL);
-                            availableSpacePerSite.put(
-                                    site, availableSpacePerSite.get(site) - currentOutputFileSize);
-                        }
+                                "Found stage in of file "
+                                        + currentOutput.getLFN()
+                                        + " of size "
+                                        + currentOutputFileSize,
+                                LogManager.DEBUG_MESSAGE_LEVEL);
+                        availableSpacePerSite.put(
+                                site, availableSpacePerSite.get(site) - currentOutputFileSize);
                     }
                 }
             }
@@ -322,23 +343,14 @@ public class Constraint extends AbstractCleanupStrategy {
                             "Job " + currentNode.getID() + " is a create dir.",
                             LogManager.DEBUG_MESSAGE_LEVEL);
                     // when create dir, add immediate children if they are scheduled to run here
-                    executed.add(currentNode);
+                    markExecuted(currentNode);
                     for (GraphNode child : currentNode.getChildren()) {
                         if (currentSiteJobs.contains(child)) {
                             heads.add(child);
                         }
                     }
                 } else {
-                    // It may still not be a head if its indirect dependencies run on this node
-                    for (GraphNode dependency : dependencies.get(currentNode)) {
-                        if (currentSiteJobs.contains(dependency)) {
-                            currentNodeIsHead = false;
-                            break;
-                        }
-                    }
-                    if (currentNodeIsHead) {
-                        heads.add(currentNode);
-                    }
+                    heads.add(currentNode);
                 }
             }
         }
@@ -382,7 +394,7 @@ public class Constraint extends AbstractCleanupStrategy {
                                     + "' on executing '"
                                     + currentJob.getID(),
                             LogManager.DEBUG_MESSAGE_LEVEL);
-                    final long fileSize = Utilities.getFileSize(outputFile);
+                    final long fileSize = Utilities.getFileSize(outputFile, fileSizes);
                     if (!floatsForChoice.containsKey(fileSize)) {
                         List<FloatingFile> floats = new ArrayList<FloatingFile>(1);
                         floats.add(
@@ -414,7 +426,8 @@ public class Constraint extends AbstractCleanupStrategy {
                         && !transferJob.getNonThirdPartySite().equals(site)) {
                     intermediateRequirement = 0;
                 } else {
-                    intermediateRequirement = Utilities.getIntermediateRequirement(currentJob);
+                    intermediateRequirement =
+                            Utilities.getIntermediateRequirement(currentJob, fileSizes);
                 }
             }
         } else {
@@ -476,7 +489,8 @@ public class Constraint extends AbstractCleanupStrategy {
                                                 + "' on executing '"
                                                 + currentJob.getID(),
                                         LogManager.DEBUG_MESSAGE_LEVEL);
-                                final long fileSize = Utilities.getFileSize(candidateFile);
+                                final long fileSize =
+                                        Utilities.getFileSize(candidateFile, fileSizes);
                                 if (!floatsForChoice.containsKey(fileSize)) {
                                     List<FloatingFile> files = new ArrayList<FloatingFile>(1);
                                     files.add(new FloatingFile(dependenciesForFile, candidateFile));
@@ -516,7 +530,7 @@ public class Constraint extends AbstractCleanupStrategy {
                                 LogManager.DEBUG_MESSAGE_LEVEL);
                         Set<GraphNode> dependenciesForFile = new HashSet<GraphNode>(1);
                         dependenciesForFile.add(toExecute);
-                        Long fileSize = Utilities.getFileSize(outputFile);
+                        Long fileSize = Utilities.getFileSize(outputFile, fileSizes);
                         if (!floatsForChoice.containsKey(fileSize)) {
                             List<FloatingFile> files = new ArrayList<FloatingFile>(1);
                             files.add(new FloatingFile(dependenciesForFile, outputFile));
@@ -529,7 +543,7 @@ public class Constraint extends AbstractCleanupStrategy {
                     }
                 }
             }
-            intermediateRequirement = Utilities.getIntermediateRequirement(currentJob);
+            intermediateRequirement = Utilities.getIntermediateRequirement(currentJob, fileSizes);
         }
         // The list of jobs run on executing this file is a singleton containing only this job
         LinkedList<GraphNode> list = new LinkedList<GraphNode>();
@@ -671,7 +685,7 @@ public class Constraint extends AbstractCleanupStrategy {
             node.removeParent(node);
 
             mLogger.log(
-                    Utilities.cleanUpJobToString(parents, heads, listOfFiles),
+                    Utilities.cleanUpJobToString(parents, heads, listOfFiles, fileSizes),
                     LogManager.DEBUG_MESSAGE_LEVEL);
             workflow.addNode(node);
         }
@@ -718,22 +732,16 @@ public class Constraint extends AbstractCleanupStrategy {
 
         // Phase I: Mark nodes as executed and remove them from head
         for (GraphNode node : selected.listOfJobs) {
-            executed.add(node);
+            markExecuted(node);
             heads.remove(node);
             candidateHeads.addAll(node.getChildren());
         }
 
         // Phase II:Examine candidate heads and add if necessary
         for (GraphNode candidateHead : candidateHeads) {
-            boolean unsatisfiedDependency = false;
-            if (dependencies.containsKey(candidateHead)) {
-                for (GraphNode dependency : dependencies.get(candidateHead)) {
-                    if (!executed.contains(dependency) && currentSiteJobs.contains(dependency)) {
-                        unsatisfiedDependency = true;
-                        break;
-                    }
-                }
-            }
+            // a dependency is unsatisfied if it runs here and is yet to execute
+            boolean unsatisfiedDependency =
+                    dependencies.hasDependencyIn(candidateHead, pendingSiteJobs);
             if (!unsatisfiedDependency && currentSiteJobs.contains(candidateHead)) {
                 mLogger.log(
                         "Can now execute " + candidateHead.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
@@ -745,6 +753,19 @@ public class Constraint extends AbstractCleanupStrategy {
         updateFloats(selected.floatingFiles);
     }
 
+    /**
+     * Marks a node as executed.
+     *
+     * @param node the node
+     */
+    private void markExecuted(GraphNode node) {
+        executed.add(node);
+        int index = dependencies.indexOf(node);
+        if (index >= 0) {
+            pendingSiteJobs.clear(index);
+        }
+    }
+
     /**
      * Safely merge a new floating file list into the internal floating files list.
      *
@@ -75,19 +75,23 @@ public class InPlace extends AbstractCleanupStrategy {
      */
     private void addCleanUpJobs(String site, Set leaves, Graph workflow) {
 
-        mLogger.log(site + " " + leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
+        boolean debug = mLogger.isDebugEnabled();
         HashMap cleanedBy = new HashMap();
 
         // the below in case we get rid of the primitive java 1.4
         // PriorityQueue<GraphNode> pQ=new
         // PriorityQueue<GraphNode>(resMap.get(site).size(),GraphNode_ORDER);
-        StringBuffer message = new StringBuffer();
-        message.append("Leaf  jobs scheduled at site ").append(site).append(" are ");
-        for (Iterator it = leaves.iterator(); it.hasNext(); ) {
-            message.append(((GraphNode) it.next()).getID());
-            message.append(",");
+        StringBuffer message;
+        if (debug) {
+            mLogger.log(site + " " + leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
+            message = new StringBuffer();
+            message.append("Leaf  jobs scheduled at site ").append(site).append(" are ");
+            for (Iterator it = leaves.iterator(); it.hasNext(); ) {
+                message.append(((GraphNode) it.next()).getID());
+                message.append(",");
+            }
+            mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
         }
-        mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
 
         // its a Set of GraphNode's
         Set[] pQA = new Set[mMaxDepth + 1];
@@ -129,12 +133,14 @@ public class InPlace extends AbstractCleanupStrategy {
                         // PM-969 we only consider the cleanup attribute and not the transfer flag
                         // itself
                         it.remove();
-                        mLogger.log(
-                                "File "
-                                        + pf.getLFN()
-                                        + " will not be cleaned up for job "
-                                        + curGN_SI.getID(),
-                                LogManager.DEBUG_MESSAGE_LEVEL);
+                        if (debug) {
+                            mLogger.log(
+                                    "File "
+                                            + pf.getLFN()
+                                            + " will not be cleaned up for job "
+                                            + curGN_SI.getID(),
+                                    LogManager.DEBUG_MESSAGE_LEVEL);
+                        }
                     }
                 }
 
@@ -143,7 +149,7 @@ public class InPlace extends AbstractCleanupStrategy {
                     if (pf.canBeCleanedup()) {
                         // PM-739 only add if the cleanup flag is set to true
                         fileSet.add(pf);
-                    } else {
+                    } else if (debug) {
                         mLogger.log(
                                 "File "
                                         + pf.getLFN()
@@ -190,12 +196,14 @@ public class InPlace extends AbstractCleanupStrategy {
                 // create a cleanup job if the cleanup cleanupNode has any files to delete
                 //                if( nuGN.getParents().size() >= 1 ){
                 if (!cleanupFiles.isEmpty()) {
-                    mLogger.log(
-                            "Adding stub cleanup node with ID "
-                                    + nuGN.getID()
-                                    + " to the level list for level "
-                                    + curP,
-                            LogManager.DEBUG_MESSAGE_LEVEL);
+                    if (debug) {
+                        mLogger.log(
+                                "Adding stub cleanup node with ID "
+                                        + nuGN.getID()
+                                        + " to the level list for level "
+                                        + curP,
+                                LogManager.DEBUG_MESSAGE_LEVEL);
+                    }
 
                     // PM-663, we need to store the compute job
                     // with the cleanupNode but do with a copy
@@ -234,13 +242,15 @@ public class InPlace extends AbstractCleanupStrategy {
                                         + cleanupNode.getID());
                     }
                     computeJob = (Job) node.getContent();
-                    message = new StringBuffer();
-                    message.append("For cleanup job ")
-                            .append(cleanupNode.getID())
-                            .append(" the associated compute job is ")
-                            .append(computeJob.getID());
-
-                    mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                    if (debug) {
+                        message = new StringBuffer();
+                        message.append("For cleanup job ")
+                                .append(cleanupNode.getID())
+                                .append(" the associated compute job is ")
+                                .append(computeJob.getID());
+
+                        mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                    }
 
                 } else {
                     computeJob = curGN_SI;
@@ -266,16 +276,18 @@ public class InPlace extends AbstractCleanupStrategy {
         mLogger.log(
                 "For site: " + site + " number of files cleaned up - " + cleanedBy.keySet().size(),
                 LogManager.INFO_MESSAGE_LEVEL);
-        mLogger.log("CLEANUP LIST", LogManager.DEBUG_MESSAGE_LEVEL);
-        for (Iterator it = cleanedBy.keySet().iterator(); it.hasNext(); ) {
-            String lfn = (String) it.next();
-            GraphNode cl_GN = (GraphNode) cleanedBy.get(lfn);
-            Job cl_si = (Job) cl_GN.getContent();
-            // Arun please use a StringBuffer first
-            // Karan March 13, 2007
-            mLogger.log(
-                    "file:" + lfn + "  site:" + cl_si.getSiteHandle() + " " + cl_GN.getID(),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
+        if (debug) {
+            mLogger.log("CLEANUP LIST", LogManager.DEBUG_MESSAGE_LEVEL);
+            for (Iterator it = cleanedBy.keySet().iterator(); it.hasNext(); ) {
+                String lfn = (String) it.next();
+                GraphNode cl_GN = (GraphNode) cleanedBy.get(lfn);
+                Job cl_si = (Job) cl_GN.getContent();
+                // Arun please use a StringBuffer first
+                // Karan March 13, 2007
+                mLogger.log(
+                        "file:" + lfn + "  site:" + cl_si.getSiteHandle() + " " + cl_GN.getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
         }
 
         // reduce dependencies. for each cleanup job X, look at the parents of
@@ -283,9 +295,11 @@ public class InPlace extends AbstractCleanupStrategy {
         // If a path exists, then the edge from Z to cleanup job can
         // be removed.
         for (GraphNode cleanupNode : wfCleanupNodes) {
-            mLogger.log(
-                    "Reducing edges for the cleanup node " + cleanupNode.getID(),
-                    mLogger.DEBUG_MESSAGE_LEVEL);
+            if (debug) {
+                mLogger.log(
+                        "Reducing edges for the cleanup node " + cleanupNode.getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
             reduceDependency(cleanupNode);
         }
     }
@@ -369,12 +383,14 @@ public class InPlace extends AbstractCleanupStrategy {
             if (!job.condorVariables.containsKey(Condor.PRIORITY_KEY)) {
 
                 // log to debug
-                StringBuilder sb = new StringBuilder();
-                sb.append("Applying priority of ")
-                        .append(node.getDepth())
-                        .append(" to ")
-                        .append(job.getID());
-                mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                if (mLogger.isDebugEnabled()) {
+                    StringBuilder sb = new StringBuilder();
+                    sb.append("Applying priority of ")
+                            .append(node.getDepth())
+                            .append(" to ")
+                            .append(job.getID());
+                    mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+                }
 
                 // apply a priority to the job overwriting any preexisting priority
                 job.condorVariables.construct(
@@ -605,12 +621,14 @@ public class InPlace extends AbstractCleanupStrategy {
                     // level, the file was designated to cleaned up by a
                     // clustered cleanup node
                     GraphNode existingCleanupNode = (GraphNode) cleanedBy.get(file.getLFN());
-                    mLogger.log(
-                            "\t\tFile "
-                                    + file.getLFN()
-                                    + " already cleaned by clustered cleanup node "
-                                    + existingCleanupNode.getID(),
-                            LogManager.DEBUG_MESSAGE_LEVEL);
+                    if (mLogger.isDebugEnabled()) {
+                        mLogger.log(
+                                "\t\tFile "
+                                        + file.getLFN()
+                                        + " already cleaned by clustered cleanup node "
+                                        + existingCleanupNode.getID(),
+                                LogManager.DEBUG_MESSAGE_LEVEL);
+                    }
 
                     if (!existingCleanupNode.getParents().contains(primaryNode)) {
                         existingCleanupNode.addParent(primaryNode);
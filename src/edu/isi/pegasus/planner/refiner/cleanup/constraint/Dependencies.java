@@ -0,0 +1,361 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup.constraint;
+
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The transitive closure of the parent relation of a workflow, i.e. for every node the set of all
+ * the nodes it depends on.
+ *
+ * <p>Every node is assigned a dense index, that is its position in a post order traversal of the
+ * parents of the workflow starting at the leaves. This is a topological order in which the
+ * ancestors of a node are numbered right before it whenever they form a tree, so the ancestor set
+ * of a node is stored as a sorted list of disjoint index intervals rather than a set of nodes. For
+ * the chains and fan-in trees that make up most of the workflows, a node has only a handful of
+ * intervals regardless of the number of its ancestors.
+ *
+ * <p>Sets of nodes that the cleanup strategy needs to check the ancestors against, like the jobs
+ * scheduled on a site that have not executed yet, are passed as {@link BitSet} over the same index,
+ * so that a check costs one lookup per interval.
+ *
+ * @author Rafael Ferreira da Silva
+ */
+public class Dependencies {
+
+    /** An empty interval list. */
+    private static final int[] EMPTY = new int[0];
+
+    /** The nodes indexed by their position in the traversal. */
+    private final GraphNode[] mNodes;
+
+    /** Maps a node to its index. */
+    private final Map<GraphNode, Integer> mIndex;
+
+    /**
+     * The ancestor intervals for each node, as a flattened array of start (inclusive) and end
+     * (exclusive) pairs sorted by start.
+     */
+    private final int[][] mAncestors;
+
+    /**
+     * Computes the dependencies for all the nodes in the workflow.
+     *
+     * @param workflow the workflow
+     * @throws RuntimeException if the workflow has a cycle
+     */
+    public Dependencies(Graph workflow) {
+        int n = workflow.size();
+        GraphNode[] nodes = new GraphNode[n];
+        Map<GraphNode, Integer> position = new HashMap<GraphNode, Integer>(n * 4 / 3 + 1);
+        int i = 0;
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            nodes[i] = node;
+            position.put(node, i);
+            i++;
+        }
+
+        int[][] parents = new int[n][];
+        boolean[] leaf = new boolean[n];
+        for (i = 0; i < n; i++) {
+            Collection<GraphNode> p = nodes[i].getParents();
+            int[] adj = new int[p.size()];
+            int j = 0;
+            for (GraphNode parent : p) {
+                adj[j++] = position.get(parent);
+            }
+            parents[i] = adj;
+            leaf[i] = nodes[i].getChildren().isEmpty();
+        }
+
+        // iterative post order traversal over the parents. order[x] is the
+        // new index of node x, -1 while the node is on the stack
+        int[] order = new int[n];
+        Arrays.fill(order, Integer.MIN_VALUE);
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        int numbered = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int start = 0; start < n; start++) {
+                // start at leaves first, and then pick up anything left
+                // over which can only happen for cyclic graphs
+                if (order[start] != Integer.MIN_VALUE || (pass == 0 && !leaf[start])) {
+                    continue;
+                }
+                int top = 0;
+                stack[top++] = start;
+                order[start] = -1;
+                next[start] = 0;
+                while (top > 0) {
+                    int x = stack[top - 1];
+                    if (next[x] < parents[x].length) {
+                        int p = parents[x][next[x]++];
+                        if (order[p] == -1) {
+                            throw new RuntimeException(
+                                    "Unable to compute dependencies as the workflow has a cycle at "
+                                            + nodes[p].getID());
+                        }
+                        if (order[p] == Integer.MIN_VALUE) {
+                            order[p] = -1;
+                            next[p] = 0;
+                            stack[top++] = p;
+                        }
+                    } else {
+                        order[x] = numbered++;
+                        top--;
+                    }
+                }
+            }
+        }
+
+        mNodes = new GraphNode[n];
+        mIndex = position;
+        int[] original = stack;
+        for (i = 0; i < n; i++) {
+            mNodes[order[i]] = nodes[i];
+            original[order[i]] = i;
+            position.put(nodes[i], order[i]);
+        }
+
+        // parents always have a lower index than their children, so the
+        // ancestors can be computed in a single pass in index order
+        mAncestors = new int[n][];
+        long[] buffer = new long[16];
+        for (int v = 0; v < n; v++) {
+            int[] p = parents[original[v]];
+            if (p.length == 0) {
+                mAncestors[v] = EMPTY;
+                continue;
+            }
+            int count = 0;
+            for (int x : p) {
+                int parent = order[x];
+                int[] intervals = mAncestors[parent];
+                if (count + intervals.length / 2 + 1 > buffer.length) {
+                    buffer =
+                            Arrays.copyOf(
+                                    buffer,
+                                    Math.max(buffer.length * 2, count + intervals.length / 2 + 1));
+                }
+                buffer[count++] = pack(parent, parent + 1);
+                for (int k = 0; k < intervals.length; k += 2) {
+                    buffer[count++] = pack(intervals[k], intervals[k + 1]);
+                }
+            }
+            mAncestors[v] = merge(buffer, count);
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the index.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return mNodes.length;
+    }
+
+    /**
+     * Returns the index of a node.
+     *
+     * @param node the node
+     * @return the index, or -1 if the node was not part of the workflow when the dependencies were
+     *     computed
+     */
+    public int indexOf(GraphNode node) {
+        Integer index = mIndex.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the node at an index.
+     *
+     * @param index the index
+     * @return the node
+     */
+    public GraphNode getNode(int index) {
+        return mNodes[index];
+    }
+
+    /**
+     * Returns a bit set over the index with the bits of the given nodes set. Nodes that are not
+     * part of the index are ignored.
+     *
+     * @param nodes the nodes
+     * @return the bit set
+     */
+    public BitSet toBitSet(Collection<GraphNode> nodes) {
+        BitSet result = new BitSet(mNodes.length);
+        for (GraphNode node : nodes) {
+            int index = indexOf(node);
+            if (index >= 0) {
+                result.set(index);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a node depends on another node.
+     *
+     * @param node the node
+     * @param dependency the potential dependency
+     * @return true if dependency is an ancestor of node
+     */
+    public boolean dependsOn(GraphNode node, GraphNode dependency) {
+        int v = indexOf(node);
+        int d = indexOf(dependency);
+        if (v < 0 || d < 0) {
+            return false;
+        }
+        int[] intervals = mAncestors[v];
+        // binary search for the last interval starting at or before d
+        int low = 0;
+        int high = intervals.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (intervals[2 * mid] <= d) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && d < intervals[2 * high + 1];
+    }
+
+    /**
+     * Returns whether any of the dependencies of a node is in a set.
+     *
+     * @param node the node
+     * @param set bit set over the index
+     * @return true if the node has an ancestor whose bit is set, false otherwise or if the node is
+     *     not part of the index
+     */
+    public boolean hasDependencyIn(GraphNode node, BitSet set) {
+        int v = indexOf(node);
+        if (v < 0) {
+            return false;
+        }
+        int[] intervals = mAncestors[v];
+        for (int k = 0; k < intervals.length; k += 2) {
+            int bit = set.nextSetBit(intervals[k]);
+            if (bit < 0) {
+                return false;
+            }
+            if (bit < intervals[k + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the dependencies of a node that are in a set.
+     *
+     * @param node the node
+     * @param set bit set over the index
+     * @return the ancestors of the node whose bit is set, in index order
+     */
+    public List<GraphNode> getDependenciesIn(GraphNode node, BitSet set) {
+        int v = indexOf(node);
+        if (v < 0) {
+            return Collections.emptyList();
+        }
+        List<GraphNode> result = new ArrayList<GraphNode>();
+        int[] intervals = mAncestors[v];
+        for (int k = 0; k < intervals.length; k += 2) {
+            for (int bit = set.nextSetBit(intervals[k]);
+                    bit >= 0 && bit < intervals[k + 1];
+                    bit = set.nextSetBit(bit + 1)) {
+                result.add(mNodes[bit]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all the dependencies of a node.
+     *
+     * @param node the node
+     * @return the ancestors of the node, in index order
+     */
+    public List<GraphNode> getDependencies(GraphNode node) {
+        int v = indexOf(node);
+        if (v < 0) {
+            return Collections.emptyList();
+        }
+        List<GraphNode> result = new ArrayList<GraphNode>();
+        int[] intervals = mAncestors[v];
+        for (int k = 0; k < intervals.length; k += 2) {
+            for (int i = intervals[k]; i < intervals[k + 1]; i++) {
+                result.add(mNodes[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of intervals used to store the dependencies of all the nodes. Useful to
+     * gauge how well the index compresses a workflow.
+     *
+     * @return the number of intervals
+     */
+    public long getIntervalCount() {
+        long count = 0;
+        for (int[] intervals : mAncestors) {
+            count += intervals.length / 2;
+        }
+        return count;
+    }
+
+    /** Packs an interval into a long that sorts by start. */
+    private static long pack(int start, int end) {
+        return ((long) start << 32) | (end & 0xffffffffL);
+    }
+
+    /**
+     * Sorts and merges overlapping or adjacent intervals.
+     *
+     * @param buffer the packed intervals
+     * @param count the number of intervals in the buffer
+     * @return flattened array of start and end pairs
+     */
+    private static int[] merge(long[] buffer, int count) {
+        Arrays.sort(buffer, 0, count);
+        int[] result = new int[2 * count];
+        int size = 0;
+        for (int k = 0; k < count; k++) {
+            int start = (int) (buffer[k] >>> 32);
+            int end = (int) buffer[k];
+            if (size > 0 && start <= result[size - 1]) {
+                result[size - 1] = Math.max(result[size - 1], end);
+            } else {
+                result[size++] = start;
+                result[size++] = end;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
@@ -34,10 +34,14 @@ public class Utilities {
 
     // Default file size of 10 MB
     private static final long DEFAULT_FILE_SIZE = 10485760;
-    // Maps from file name to file size
-    static Map<String, Long> sizes = null;
-
-    public static long getFileSize(PegasusFile file) {
+    /**
+     * Returns the size of a file.
+     *
+     * @param file the file
+     * @param sizes map from file name to file size, as read by loadHashMap. Can be null.
+     * @return the size from the map if present, else the size of the file, else the default size
+     */
+    public static long getFileSize(PegasusFile file, Map<String, Long> sizes) {
         if (sizes == null || sizes.get(file.getLFN()) == null) {
             long fileSize = (long) file.getSize();
             return fileSize == -1 ? DEFAULT_FILE_SIZE : fileSize;
@@ -48,7 +52,8 @@ public class Utilities {
     public static String cleanUpJobToString(
             Iterable<GraphNode> parents,
             Iterable<GraphNode> heads,
-            Iterable<PegasusFile> listOfFiles) {
+            Iterable<PegasusFile> listOfFiles,
+            Map<String, Long> sizes) {
         StringBuilder sb = new StringBuilder("CleanupJob{parents = {");
         for (GraphNode parent : parents) {
             sb.append(parent.getID());
@@ -61,7 +66,7 @@ public class Utilities {
         }
         sb.replace(sb.length() - 1, sb.length(), "}, files = {");
         for (PegasusFile file : listOfFiles) {
-            sb.append(file.getLFN()).append(':').append(getFileSize(file)).append(',');
+            sb.append(file.getLFN()).append(':').append(getFileSize(file, sizes)).append(',');
         }
         sb.replace(sb.length() - 1, sb.length(), "}}");
         return sb.toString();
@@ -71,16 +76,17 @@ public class Utilities {
      * Read file sizes from CSV file.
      *
      * @param csvName CSV file name.
+     * @return map from file name to file size
      * @throws IOException
      */
-    public static void loadHashMap(String csvName) throws IOException {
+    public static Map<String, Long> loadHashMap(String csvName) throws IOException {
         final CellProcessor[] processors =
                 new CellProcessor[] {null, null, null, null, new ParseLong()};
         CsvBeanReader beanReader =
                 new CsvBeanReader(new FileReader(csvName), CsvPreference.STANDARD_PREFERENCE);
         final String[] header = beanReader.getHeader(true);
         FileDataBean fileDataBean;
-        sizes = new HashMap<String, Long>();
+        Map<String, Long> sizes = new HashMap<String, Long>();
         while ((fileDataBean = beanReader.read(FileDataBean.class, header, processors)) != null) {
             Long currentSize = sizes.get(fileDataBean.filename);
             if (currentSize != null) {
@@ -88,101 +94,41 @@ public class Utilities {
             }
             sizes.put(fileDataBean.filename, fileDataBean.length);
         }
+        return sizes;
     }
 
     /**
-     * @param workflow
-     * @param mLogger
-     * @return
+     * Computes the dependencies of every node in the workflow.
+     *
+     * @param workflow the workflow
+     * @param mLogger the logger
+     * @return the dependencies
      */
-    public static Map<GraphNode, Set<GraphNode>> calculateDependencies(
-            Graph workflow, LogManager mLogger) {
-        // Dependencies is used to map from node to its dependencies
-        Map<GraphNode, Set<GraphNode>> dependencies = new HashMap<GraphNode, Set<GraphNode>>();
-
-        // This is our BFS queue
-        LinkedList<GraphNode> bfsQueue = new LinkedList<GraphNode>();
-
-        // This is a marker node used to indicate an increase in depth while exploring
-        final GraphNode marker = new GraphNode("Marker");
-
-        // Initially, add all root nodes to the BFS queue
-        for (GraphNode currentRoot : workflow.getRoots()) {
-            bfsQueue.addLast(currentRoot);
-        }
-
-        try {
-            outer:
-            while (true) {
-                // Remove one node from the BFS queue
-                GraphNode currentNode = bfsQueue.removeFirst();
-
-                // Ensure that the removed node is not already explored
-                if (dependencies.containsKey(currentNode)) {
-                    continue;
-                }
-
-                // Move past any marker nodes we see
-                while (currentNode == marker) {
-                    currentNode = bfsQueue.removeFirst();
-                }
-                mLogger.log(
-                        "Pre analysis of node " + currentNode.getID(),
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-
-                // Initialise the dependency set for the current node
-                Set<GraphNode> currentNodeDependencies = new HashSet<GraphNode>();
-
-                // Iterate over all the parent nodes
-                for (GraphNode parent : currentNode.getParents()) {
-                    // Ensure that we've already calculated dependencies for this parent node
-                    // Otherwise we could end up in trouble here
-                    if (!dependencies.containsKey(parent)) {
-                        // if we've not yet calculated dependencies for even one of the parents
-                        // then push this node sufficiently back in the queue
-                        // that we would have calculated all parent dependencies when we return
-                        // Basically, push the node to the start of the next level
-                        ListIterator<GraphNode> iterator = bfsQueue.listIterator();
-                        for (GraphNode searchElement = iterator.next();
-                                iterator.hasNext();
-                                searchElement = iterator.next()) {
-                            if (searchElement == marker) {
-                                iterator.add(currentNode);
-                                break;
-                            }
-                        }
-                        continue outer;
-                    }
-                    // Update the current node's dependencies
-                    currentNodeDependencies.add(parent);
-                    currentNodeDependencies.addAll(dependencies.get(parent));
-                }
-
-                // Add the current node to the dependencies table
-                dependencies.put(currentNode, currentNodeDependencies);
-
-                // Add a marker followed by this node's children
-                bfsQueue.add(marker);
-                bfsQueue.addAll(currentNode.getChildren());
-            }
-        } catch (NoSuchElementException e) {
-        }
+    public static Dependencies calculateDependencies(Graph workflow, LogManager mLogger) {
+        Dependencies dependencies = new Dependencies(workflow);
+        mLogger.log(
+                "Dependencies for "
+                        + dependencies.size()
+                        + " nodes stored in "
+                        + dependencies.getIntervalCount()
+                        + " intervals",
+                LogManager.DEBUG_MESSAGE_LEVEL);
         return dependencies;
     }
 
-    public static long getIntermediateRequirement(Job currentJob) {
+    public static long getIntermediateRequirement(Job currentJob, Map<String, Long> sizes) {
         long spaceUsed = 0;
         switch (currentJob.getJobType()) {
             case Job.CLEANUP_JOB:
                 for (PegasusFile currentFile : (Set<PegasusFile>) currentJob.getInputFiles()) {
-                    spaceUsed -= getFileSize(currentFile);
+                    spaceUsed -= getFileSize(currentFile, sizes);
                 }
                 break;
             case Job.STAGE_OUT_JOB:
                 return 0;
             default:
                 for (PegasusFile currentFile : (Set<PegasusFile>) currentJob.getOutputFiles()) {
-                    spaceUsed += getFileSize(currentFile);
+                    spaceUsed += getFileSize(currentFile, sizes);
                 }
         }
         return spaceUsed;
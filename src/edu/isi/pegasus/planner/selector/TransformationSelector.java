@@ -50,6 +50,17 @@ public abstract class TransformationSelector {
     public abstract List getTCEntry(
             List<TransformationCatalogEntry> tcentries, String preferredSite);
 
+    /**
+     * Returns whether the selector always returns the same entries for the same list of entries and
+     * preferred site, so that the entries it selects for a transformation on a site can be reused
+     * for all the jobs referring to it.
+     *
+     * @return false by default, implementations that select deterministically override it
+     */
+    public boolean isDeterministic() {
+        return false;
+    }
+
     /**
      * Loads the implementing class corresponding to the mode specified by the user at runtime in
      * the properties file.
@@ -23,17 +23,21 @@ import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PegasusFile;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the class that implements a call-out to a site selector which is an application or
@@ -157,6 +161,29 @@ import java.util.StringTokenizer;
  * selector, see property <code>pegasus.selector.site.timeout</code>. By default, a site selector is
  * given up upon after 60 s.
  *
+ * <p>Starting a process for each job is expensive for large workflows. If the property <code>
+ * pegasus.selector.site.callout</code> is set to <code>persistent</code>, the external application
+ * is started once per workflow, with the single commandline argument <code>-</code>. The jobs are
+ * then streamed to it on its stdin, one record per line. A record consists of the key-value pairs
+ * described above separated by tabs, preceded by a <code>request.id</code> pair that identifies the
+ * record. For each record, the application writes a line to stdout with the request id, followed by
+ * a whitespace and the solution in the format described above, for example
+ *
+ * <p>
+ *
+ * <pre>
+ *   17 SOLUTION:mysite:my.job.mgr/jobmanager-batch
+ * </pre>
+ *
+ * The records are pipelined, so that up to {@link #MAX_OUTSTANDING_REQUESTS} jobs can be awaiting a
+ * solution at any time, and the solutions may be written out in any order. Once all the jobs are
+ * sent, the stdin of the application is closed, and it should exit after writing out the remaining
+ * solutions. The timeout is measured from when the pending records were last flushed to the
+ * application, or from its last solution if that is later. If no solution is received within the
+ * timeout while jobs are awaiting one, the application is destroyed and the remaining jobs are left
+ * unmapped. The default value <code>perjob</code> of the property retains the invocation for each
+ * job.
+ *
  * <p>
  *
  * @author Karan Vahi
@@ -192,6 +219,18 @@ public class NonJavaCallout extends AbstractPerJob {
     /** The version number associated with this API of non java callout site selection. */
     public static final String VERSION = "2.0";
 
+    /** The value of the callout property designating one long lived site selector process. */
+    public static final String PERSISTENT_CALLOUT = "persistent";
+
+    /** The commandline argument to a persistent site selector, to read the records from stdin. */
+    public static final String STDIN_ARGUMENT = "-";
+
+    /** The key of the pair identifying a record sent to a persistent site selector. */
+    public static final String REQUEST_ID_KEY = "request.id";
+
+    /** The maximum number of jobs awaiting a solution from a persistent site selector. */
+    public static final int MAX_OUTSTANDING_REQUESTS = 128;
+
     // tristate variables for keeping the temporary files generated
 
     /** The state denoting never to keep the temporary files. */
@@ -228,6 +267,12 @@ public class NonJavaCallout extends AbstractPerJob {
     /** The abstract DAG. */
     private ADag mAbstractDag;
 
+    /** Whether to call out to one long lived site selector process for the whole workflow. */
+    private boolean mPersistent;
+
+    /** The persistent site selector process, while the workflow is being mapped. */
+    private PersistentSelector mPersistentSelector;
+
     /** The default constructor. */
     public NonJavaCallout() {
         super();
@@ -235,6 +280,7 @@ public class NonJavaCallout extends AbstractPerJob {
         mTimeout = 60;
         // default would be onerror
         mKeepTMP = KEEP_ONERROR;
+        mPersistent = false;
     }
 
     /**
@@ -252,6 +298,7 @@ public class NonJavaCallout extends AbstractPerJob {
         this.loadEnvironmentVariables();
         // get the value from the properties file.
         mKeepTMP = getKeepTMPValue(mProps.getSiteSelectorKeep());
+        mPersistent = PERSISTENT_CALLOUT.equalsIgnoreCase(mProps.getSiteSelectorCallout());
     }
 
     /**
@@ -264,8 +311,22 @@ public class NonJavaCallout extends AbstractPerJob {
      */
     public void mapWorkflow(ADag workflow, List sites) {
         mAbstractDag = workflow;
-        // PM-747 no need for conversion as ADag now implements Graph interface
-        super.mapWorkflow(workflow, sites);
+        if (!mPersistent) {
+            // PM-747 no need for conversion as ADag now implements Graph interface
+            super.mapWorkflow(workflow, sites);
+            return;
+        }
+
+        // the jobs are streamed to the selector as they are
+        // traversed, and the solutions are collected at the end
+        mPersistentSelector = new PersistentSelector();
+        try {
+            mPersistentSelector.start();
+            super.mapWorkflow(workflow, sites);
+        } finally {
+            mPersistentSelector.finish();
+            mPersistentSelector = null;
+        }
     }
 
     /**
@@ -292,6 +353,10 @@ public class NonJavaCallout extends AbstractPerJob {
      * @see org.griphyn.cPlanner.classes.Job
      */
     public void mapJob(Job job, List sites) {
+        if (mPersistentSelector != null) {
+            mPersistentSelector.submit(job, sites);
+            return;
+        }
         Runtime rt = Runtime.getRuntime();
 
         // prepare the temporary file that needs to be sent to the
@@ -449,77 +514,10 @@ public class NonJavaCallout extends AbstractPerJob {
 
         try {
             pw = new PrintWriter(new FileWriter(f));
-
-            // write out the version of the api
-            pw.println("version=" + this.VERSION);
-
-            // fw.write("\nvds_job_name=" + job.jobName);
-            pw.println("transformation=" + job.getCompleteTCName());
-            pw.println("derivation=" + job.getCompleteDVName());
-
-            // write out the job id and level as gotten from dax
-            pw.println("job.level=" + job.level);
-            pw.println("job.id=" + job.logicalId);
-
-            // at present Pegasus always asks to schedule compute jobs
-            // User should be able to specify through vdl or the pool config file.
-            // Karan Feb 10 3:00 PM PDT
-            // pw.println("vds_scheduler_preference=regular");
-
-            // write down the list of exec Pools and their corresponding grid
-            // ftp servers
-            if (pools.isEmpty()) {
-                // just write out saying illustrating no exec pool or grid ftp
-                // server passed to site selector. Upto the selector to do what
-                // it wants.
-
-                // FIXME: We need to define this part of the interface. If there
-                // are not site candidates, should it ever reach this part of
-                // the code? If now, insert assertion and abort here. If yes, we
-                // need to define this case! But just silently write the below
-                // will not site will with our set of site selectors.
-                pw.println("resource.id=NONE NONE");
-            } else {
-                String st, pool;
-                for (Iterator i = pools.iterator(); i.hasNext(); ) {
-                    pool = (String) i.next();
-                    st = "resource.id=" + pool + " ";
-
-                    SiteCatalogEntry site = mSiteStore.lookup(pool);
-                    /*
-                    for( Iterator it = site.getHeadNodeFS().getScratch().getSharedDirectory().getFileServersIterator(); it.hasNext();){
-                        pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
-                    }*/
-                    Directory d = site.getDirectory(Directory.TYPE.shared_scratch);
-                    if (d != null) {
-                        for (FileServer.OPERATION op : FileServer.OPERATION.values()) {
-                            for (Iterator it = d.getFileServersIterator(op); it.hasNext(); ) {
-                                pw.println(st + ((FileServer) it.next()).getURLPrefix());
-                            }
-                        }
-                    }
-                } // for
+            for (String line : this.getJobDescription(job, pools)) {
+                pw.println(line);
             }
 
-            // write the input files
-            for (Iterator i = job.inputFiles.iterator(); i.hasNext(); )
-                pw.println("input.lfn=" + ((PegasusFile) i.next()).getLFN());
-
-            // write workflow related metadata
-            if (this.mAbstractDag != null) {
-                pw.println("wf.name=" + mAbstractDag.getLabel());
-                pw.println("wf.index=" + mAbstractDag.getIndex());
-                // pw.println("workflow.time=" + mAbstractDag.dagInfo.time??);
-                // FIXME: Try File.lastModified() on the DAX file
-
-                // should actually be picked up from the properties file
-                pw.println("wf.manager=" + "dagman");
-            }
-
-            // uninitialized values
-            pw.println("vo.name=" + "NONE");
-            pw.println("vo.group=" + "NONE");
-
             // done
             pw.flush();
             pw.close();
@@ -541,6 +539,93 @@ public class NonJavaCallout extends AbstractPerJob {
         return f;
     }
 
+    /**
+     * Returns the key-value pairs describing a job to the external site selector. The job knowledge
+     * derives from the contents of the DAX job's <code>Job</code> record, and the a list of site
+     * candidates. The format of the pairs is laid out in the class's introductory documentation.
+     *
+     * @param job is a representation of the DAX compute job whose site of execution need to be
+     *     determined.
+     * @param pools is a list of site candidates. The items of the list are <code>String</code>
+     *     objects.
+     * @return the pairs in the key=value format, one per element
+     */
+    private List<String> getJobDescription(Job job, List<?> pools) {
+        List<String> pw = new ArrayList<String>();
+
+        // write out the version of the api
+        pw.add("version=" + VERSION);
+
+        // fw.write("\nvds_job_name=" + job.jobName);
+        pw.add("transformation=" + job.getCompleteTCName());
+        pw.add("derivation=" + job.getCompleteDVName());
+
+        // write out the job id and level as gotten from dax
+        pw.add("job.level=" + job.level);
+        pw.add("job.id=" + job.logicalId);
+
+        // at present Pegasus always asks to schedule compute jobs
+        // User should be able to specify through vdl or the pool config file.
+        // Karan Feb 10 3:00 PM PDT
+        // pw.println("vds_scheduler_preference=regular");
+
+        // write down the list of exec Pools and their corresponding grid
+        // ftp servers
+        if (pools.isEmpty()) {
+            // just write out saying illustrating no exec pool or grid ftp
+            // server passed to site selector. Upto the selector to do what
+            // it wants.
+
+            // FIXME: We need to define this part of the interface. If there
+            // are not site candidates, should it ever reach this part of
+            // the code? If now, insert assertion and abort here. If yes, we
+            // need to define this case! But just silently write the below
+            // will not site will with our set of site selectors.
+            pw.add("resource.id=NONE NONE");
+        } else {
+            String st, pool;
+            for (Iterator i = pools.iterator(); i.hasNext(); ) {
+                pool = (String) i.next();
+                st = "resource.id=" + pool + " ";
+
+                SiteCatalogEntry site = mSiteStore.lookup(pool);
+                /*
+                for( Iterator it = site.getHeadNodeFS().getScratch().getSharedDirectory().getFileServersIterator(); it.hasNext();){
+                    pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
+                }*/
+                Directory d = site.getDirectory(Directory.TYPE.shared_scratch);
+                if (d != null) {
+                    for (FileServer.OPERATION op : FileServer.OPERATION.values()) {
+                        for (Iterator it = d.getFileServersIterator(op); it.hasNext(); ) {
+                            pw.add(st + ((FileServer) it.next()).getURLPrefix());
+                        }
+                    }
+                }
+            } // for
+        }
+
+        // write the input files
+        for (Iterator i = job.inputFiles.iterator(); i.hasNext(); )
+            pw.add("input.lfn=" + ((PegasusFile) i.next()).getLFN());
+
+        // write workflow related metadata
+        if (this.mAbstractDag != null) {
+            pw.add("wf.name=" + mAbstractDag.getLabel());
+            pw.add("wf.index=" + mAbstractDag.getIndex());
+            // pw.println("workflow.time=" + mAbstractDag.dagInfo.time??);
+            // FIXME: Try File.lastModified() on the DAX file
+
+            // should actually be picked up from the properties file
+            pw.add("wf.manager=" + "dagman");
+        }
+
+        // uninitialized values
+        pw.add("vo.name=" + "NONE");
+        pw.add("vo.group=" + "NONE");
+
+        return pw;
+    }
+
     /**
      * Extracts the chosen site from the site selector's answer. Parses the <i>stdout</i> sent by
      * the selector, to see, if the execution pool and the jobmanager were sent or not.
@@ -678,6 +763,277 @@ public class NonJavaCallout extends AbstractPerJob {
         return val;
     }
 
+    /**
+     * A long lived site selector process, to which the jobs are streamed on stdin and which streams
+     * back the solutions on stdout. The solutions are read by a separate thread, so that the
+     * records for further jobs can be written out while the earlier ones are being worked upon.
+     */
+    private class PersistentSelector {
+
+        /** The process. */
+        private Process mProcess;
+
+        /** The writer to the stdin of the process. */
+        private PrintWriter mStdin;
+
+        /** The jobs awaiting a solution, indexed by request id. Guarded by this. */
+        private final Map<String, Job> mPending;
+
+        /**
+         * The time in milliseconds when the records were last flushed to the site selector, or a
+         * solution was last received. The timeout is measured from it. Guarded by this.
+         */
+        private long mLastActivity;
+
+        /** Whether the process has closed its stdout. Guarded by this. */
+        private boolean mEOF;
+
+        /** Whether the process was given up upon. Guarded by this. */
+        private boolean mFailed;
+
+        /** The id of the next request. */
+        private int mNextID;
+
+        /** The default constructor. */
+        PersistentSelector() {
+            mPending = new HashMap<String, Job>();
+            mEOF = false;
+            mFailed = false;
+            mNextID = 0;
+        }
+
+        /** Starts the site selector process, and the threads reading its stdout and stderr. */
+        void start() {
+            String command = NonJavaCallout.this.mSiteSelectorPath;
+            if (command == null) {
+                throw new RuntimeException(
+                        "Site Selector: Please set the path to the external site "
+                                + "selector in the properties! ");
+            }
+            command += " " + STDIN_ARGUMENT;
+            mLogger.log(
+                    "Starting persistent site selector " + command, LogManager.DEBUG_MESSAGE_LEVEL);
+            try {
+                mProcess = Runtime.getRuntime().exec(command, getEnvArrFromMap());
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to start the site selector " + command, e);
+            }
+            mStdin =
+                    new PrintWriter(
+                            new BufferedWriter(new OutputStreamWriter(mProcess.getOutputStream())));
+            mLastActivity = System.currentTimeMillis();
+
+            Thread stdout =
+                    new Thread(
+                            new Runnable() {
+                                public void run() {
+                                    readSolutions();
+                                }
+                            },
+                            "site-selector-stdout");
+            stdout.setDaemon(true);
+            stdout.start();
+
+            Thread stderr =
+                    new Thread(
+                            new Runnable() {
+                                public void run() {
+                                    readErrors();
+                                }
+                            },
+                            "site-selector-stderr");
+            stderr.setDaemon(true);
+            stderr.start();
+        }
+
+        /**
+         * Sends a job to the site selector. Blocks while the maximum number of jobs is awaiting a
+         * solution.
+         *
+         * @param job the job to be mapped.
+         * @param sites the list of <code>String</code> objects representing the execution sites
+         *     that can be used.
+         */
+        void submit(Job job, List<?> sites) {
+            List<String> description;
+            try {
+                description = getJobDescription(job, sites);
+            } catch (Exception e) {
+                mLogger.log(
+                        "Unable to describe job " + job.getID() + " to the site selector: " + e,
+                        LogManager.ERROR_MESSAGE_LEVEL);
+                job.setSiteHandle(null);
+                return;
+            }
+
+            String id = Integer.toString(mNextID++);
+            StringBuilder record = new StringBuilder();
+            record.append(REQUEST_ID_KEY).append("=").append(id);
+            for (String pair : description) {
+                // a record has to fit on a line
+                record.append('\t').append(pair.replace('\t', ' ').replace('\n', ' '));
+            }
+
+            boolean full;
+            synchronized (this) {
+                full = mPending.size() >= MAX_OUTSTANDING_REQUESTS;
+            }
+            if (full) {
+                // the records written so far have to reach the selector
+                // before waiting for it. not done with the lock held, as
+                // the selector may be blocked on writing out solutions
+                this.flush();
+            }
+            synchronized (this) {
+                while (mPending.size() >= MAX_OUTSTANDING_REQUESTS && this.await()) {}
+                if (mFailed || mEOF) {
+                    job.setSiteHandle(null);
+                    return;
+                }
+                mPending.put(id, job);
+            }
+            mStdin.println(record);
+        }
+
+        /**
+         * Closes the stdin of the site selector, and waits for the solutions to the jobs sent and
+         * then for the site selector to exit. The jobs for which no solution is received are left
+         * unmapped.
+         */
+        void finish() {
+            // closing stdin lets the selector know that no more jobs are coming
+            mStdin.close();
+            synchronized (this) {
+                // the records still buffered only reached the selector now
+                mLastActivity = System.currentTimeMillis();
+                while (!mPending.isEmpty() && this.await()) {}
+                for (Job job : mPending.values()) {
+                    mLogger.log(
+                            "No solution received from site selector for job " + job.getID(),
+                            LogManager.ERROR_MESSAGE_LEVEL);
+                    job.setSiteHandle(null);
+                }
+                mPending.clear();
+            }
+
+            try {
+                int status;
+                if (mTimeout > 0 && !mFailed) {
+                    if (mProcess.waitFor(mTimeout, TimeUnit.SECONDS)) {
+                        status = mProcess.exitValue();
+                    } else {
+                        mLogger.log(
+                                "Site Selector did not exit within " + mTimeout + " seconds",
+                                LogManager.WARNING_MESSAGE_LEVEL);
+                        mProcess.destroy();
+                        return;
+                    }
+                } else if (mFailed) {
+                    return;
+                } else {
+                    status = mProcess.waitFor();
+                }
+                if (status != 0) {
+                    // let the user know site selector exited with non zero
+                    mLogger.log(
+                            "Site Selector exited with non zero exit " + "status " + status,
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mProcess.destroy();
+                mLogger.log(
+                        "Waiting for site selector to exit: " + e.getMessage(),
+                        LogManager.ERROR_MESSAGE_LEVEL);
+            }
+        }
+
+        /**
+         * Flushes the records written out so far to the site selector. The records may have been
+         * buffered for longer than the timeout, so it is measured afresh from the flush.
+         */
+        private void flush() {
+            mStdin.flush();
+            synchronized (this) {
+                mLastActivity = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * Waits for a solution or the site selector to exit. Gives up on the site selector if no
+         * solution is received within the timeout. Has to be called with the lock held.
+         *
+         * @return true if the wait may be continued, false if no more solutions are to be expected
+         */
+        private boolean await() {
+            if (mEOF || mFailed) {
+                return false;
+            }
+            long timeout = mTimeout * 1000L;
+            long left = (timeout <= 0) ? 0 : mLastActivity + timeout - System.currentTimeMillis();
+            if (timeout > 0 && left <= 0) {
+                mLogger.log(
+                        "External Site Selector timeout after " + mTimeout + " seconds",
+                        LogManager.ERROR_MESSAGE_LEVEL);
+                mFailed = true;
+                mProcess.destroy();
+                return false;
+            }
+            try {
+                this.wait(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mFailed = true;
+                mProcess.destroy();
+                return false;
+            }
+            return true;
+        }
+
+        /** Reads the solutions from the stdout of the site selector. */
+        private void readSolutions() {
+            try (BufferedReader br =
+                    new BufferedReader(new InputStreamReader(mProcess.getInputStream()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    mLogger.log("[Site Selector stdout] " + line, LogManager.DEBUG_MESSAGE_LEVEL);
+                    String s = line.trim();
+                    int space = s.indexOf(' ');
+                    if (space == -1) {
+                        continue;
+                    }
+                    synchronized (this) {
+                        Job job = mPending.get(s.substring(0, space));
+                        if (job != null && parseStdOut(job, s.substring(space + 1))) {
+                            mPending.remove(s.substring(0, space));
+                            mLastActivity = System.currentTimeMillis();
+                            this.notifyAll();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                mLogger.log("[Site selector] " + e.getMessage(), LogManager.ERROR_MESSAGE_LEVEL);
+            }
+            synchronized (this) {
+                mEOF = true;
+                this.notifyAll();
+            }
+        }
+
+        /** Reads the stderr of the site selector, and logs it. */
+        private void readErrors() {
+            try (BufferedReader ebr =
+                    new BufferedReader(new InputStreamReader(mProcess.getErrorStream()))) {
+                String se;
+                while ((se = ebr.readLine()) != null) {
+                    mLogger.log("[Site Selector stderr] " + se, LogManager.ERROR_MESSAGE_LEVEL);
+                }
+            } catch (IOException e) {
+                // the process was destroyed
+            }
+        }
+    }
+
     /**
      * The main program that allows you to test. FIXME: Test programs should have prefix
      * Test.....java
@@ -50,4 +50,13 @@ public class Installed extends TransformationSelector {
         }
         return results;
     }
+
+    /**
+     * Returns true, as the selection only depends on the entries passed.
+     *
+     * @return true
+     */
+    public boolean isDeterministic() {
+        return true;
+    }
 }
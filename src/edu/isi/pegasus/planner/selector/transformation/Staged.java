@@ -49,4 +49,13 @@ public class Staged extends TransformationSelector {
         }
         return results;
     }
+
+    /**
+     * Returns true, as the selection only depends on the entries passed.
+     *
+     * @return true
+     */
+    public boolean isDeterministic() {
+        return true;
+    }
 }
@@ -52,4 +52,13 @@ public class Submit extends TransformationSelector {
         }
         return results;
     }
+
+    /**
+     * Returns true, as the selection only depends on the entries passed.
+     *
+     * @return true
+     */
+    public boolean isDeterministic() {
+        return true;
+    }
 }
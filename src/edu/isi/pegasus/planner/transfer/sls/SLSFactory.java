@@ -84,7 +84,7 @@ public class SLSFactory {
      * @see #DEFAULT_PACKAGE_NAME
      * @throws SLSFactoryException
      */
-    public SLS loadInstance(Job job) throws SLSFactoryException {
+    public synchronized SLS loadInstance(Job job) throws SLSFactoryException {
 
         // sanity checks first
         if (!mInitialized) {
@@ -95,7 +95,8 @@ public class SLSFactory {
         String shortName = this.getSLSShortName(job);
 
         // try loading on the basis of short name from the cache
-        Object obj = this.mSLSImplementationTable.get(shortName);
+        // the implementations are registered by lower case names
+        Object obj = this.mSLSImplementationTable.get(shortName.toLowerCase());
         if (obj == null) {
             // load via reflection and register in the cache
             obj = this.loadInstance(mBag, shortName);
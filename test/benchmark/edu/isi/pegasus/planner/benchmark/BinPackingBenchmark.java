@@ -0,0 +1,231 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.cluster.BinPacker;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the runtime based bin packing of BinPacker against the earlier implementation in
+ * Horizontal, that kept the bins in linked lists and parsed the runtimes of the jobs in the inner
+ * loops. Both implementations pack the same jobs, either bounded by a maximum runtime or into a
+ * fixed number of bins.
+ *
+ * <p>The legacy implementation does not finish in reasonable time at larger scales, so run those
+ * with only the binPacker benchmark selected, e.g. -Dbenchmark.args="BinPackingBenchmark.b -p
+ * scale=10".
+ *
+ * @author Rajiv Mayani
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class BinPackingBenchmark {
+
+    /** The seed for the random generator, so that runs are comparable. */
+    private static final long SEED = 42;
+
+    /** The maximum runtime of a clustered job. */
+    private static final double MAX_RUN_TIME = 3600;
+
+    /** The number of bins for the fixed number of bins packing. */
+    private static final int NUM_BINS = 100;
+
+    /** The distribution of the runtimes of the jobs. */
+    @Param({"uniform", "bimodal", "identical"})
+    public String workload;
+
+    /** Whether the bins are bounded by a maximum runtime, or their number is fixed. */
+    @Param({"maxruntime", "numbins"})
+    public String mode;
+
+    /** Scales the number of jobs. */
+    @Param({"1"})
+    public int scale;
+
+    /** The jobs to be packed. */
+    private List<Job> mJobs;
+
+    /** The bin packer to benchmark. */
+    private BinPacker mPacker;
+
+    @Setup
+    public void create() {
+        LogManager logger = LogManagerFactory.loadSingletonInstance();
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("pegasus.cluster.benchmark", "workload", workload);
+        mPacker = new BinPacker(logger);
+
+        int count = 20000 * scale;
+        Random r = new Random(SEED);
+        mJobs = new ArrayList<Job>(count);
+        for (int i = 0; i < count; i++) {
+            double runtime;
+            switch (workload) {
+                case "uniform":
+                    runtime = 1 + r.nextInt(600);
+                    break;
+                case "bimodal":
+                    runtime = r.nextBoolean() ? 10 + r.nextInt(20) : 1000 + r.nextInt(1000);
+                    break;
+                case "identical":
+                    runtime = 60;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown workload " + workload);
+            }
+            Job j = new Job();
+            j.setName("job_" + i);
+            j.setLogicalID("ID" + i);
+            j.vdsNS.construct(Pegasus.RUNTIME_KEY, Double.toString(runtime));
+            mJobs.add(j);
+        }
+    }
+
+    @Benchmark
+    public int legacy() {
+        List<Job> jobs = new ArrayList<Job>(mJobs);
+        Collections.sort(jobs, Legacy.comparator());
+        List<List<Job>> bins =
+                mode.equals("maxruntime")
+                        ? Legacy.bestFitBinPack(jobs, MAX_RUN_TIME)
+                        : Legacy.bestFitBinPack(jobs, NUM_BINS);
+        return bins.size();
+    }
+
+    @Benchmark
+    public int binPacker() {
+        List<List<Job>> bins =
+                mode.equals("maxruntime")
+                        ? mPacker.pack(mJobs, MAX_RUN_TIME)
+                        : mPacker.pack(mJobs, NUM_BINS);
+        return bins.size();
+    }
+
+    /** The bin packing as implemented in Horizontal before BinPacker, without the logging. */
+    private static class Legacy {
+
+        private static double runtime(Job job) {
+            return Double.parseDouble((String) job.vdsNS.get(Pegasus.RUNTIME_KEY));
+        }
+
+        private static Comparator<Job> comparator() {
+            return new Comparator<Job>() {
+                @Override
+                public int compare(Job job1, Job job2) {
+                    return (int) (runtime(job2) - runtime(job1));
+                }
+            };
+        }
+
+        private static List<List<Job>> bestFitBinPack(List<Job> jobs, double maxTime) {
+            List<List<Job>> bins = new LinkedList<List<Job>>();
+            List<List<Job>> returnBins = new LinkedList<List<Job>>();
+            List<Double> binTime = new LinkedList<Double>();
+            double minJobRunTime = Double.MAX_VALUE;
+
+            if (jobs != null && jobs.size() > 0) {
+                minJobRunTime = runtime(jobs.get(jobs.size() - 1));
+            }
+
+            for (Job j : jobs) {
+                List<Job> bin;
+                double currentBinTime;
+                boolean isBreak = false;
+                double jobRunTime = runtime(j);
+
+                if (bins.size() == 0) {
+                    bins.add(new LinkedList<Job>());
+                    binTime.add(0, 0d);
+                }
+
+                for (int i = 0, k = bins.size(); i < k; ++i) {
+                    currentBinTime = binTime.get(i);
+                    if (maxTime < jobRunTime) {
+                        break;
+                    }
+                    if (maxTime >= currentBinTime + jobRunTime) {
+                        bin = bins.get(i);
+                        bin.add(j);
+                        binTime.set(i, currentBinTime + jobRunTime);
+                        isBreak = true;
+                    } else if (i == k - 1) {
+                        bin = new LinkedList<Job>();
+                        bin.add(j);
+                        bins.add(bin);
+                        binTime.add(binTime.size(), jobRunTime);
+                    }
+                    if (binTime.get(i) + minJobRunTime > maxTime) {
+                        returnBins.add(bins.remove(i));
+                        binTime.remove(i);
+                    }
+                    if (isBreak) break;
+                }
+            }
+
+            returnBins.addAll(bins);
+            return returnBins;
+        }
+
+        private static List<List<Job>> bestFitBinPack(List<Job> jobs, int maxBins) {
+            final double[] time = new double[Math.min(maxBins, jobs.size())];
+            List<List<Job>> bins = new ArrayList<List<Job>>();
+            PriorityQueue<Integer> queue =
+                    new PriorityQueue<Integer>(
+                            Math.max(1, time.length),
+                            new Comparator<Integer>() {
+                                @Override
+                                public int compare(Integer b1, Integer b2) {
+                                    return (int) (time[b1] - time[b2]);
+                                }
+                            });
+            for (int i = 0; i < time.length; ++i) {
+                bins.add(new LinkedList<Job>());
+                queue.add(i);
+            }
+            for (Job j : jobs) {
+                int bin = queue.poll();
+                bins.get(bin).add(j);
+                time[bin] += runtime(j);
+                queue.offer(bin);
+            }
+            return bins;
+        }
+    }
+}
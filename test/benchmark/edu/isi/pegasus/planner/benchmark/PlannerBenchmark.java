@@ -0,0 +1,269 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.client.CPlanner;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+/**
+ * Benchmarks the planning of synthetic workflows end to end, using file based catalogs so that it
+ * runs offline. Each invocation plans the workflow in a fresh submit directory with the planner
+ * running in process. The time of the whole planning is measured by JMH, while the time taken by
+ * each stage of the planner (parsing, data reuse, site selection, clustering, transfer, create dir,
+ * cleanup and code generation) is picked up from the stage metrics the planner writes out, and
+ * averaged over the measurement iterations.
+ *
+ * <p>The averages for each stage are written to stages-[shape]-[jobs]-[files]-[cluster].json in
+ * the directory set by the pegasus.benchmark.dir system property, so that the numbers can be
+ * compared across releases.
+ *
+ * <p>The benchmarks are run via ant benchmark, with the JMH options passed in the benchmark.args
+ * property. As the planner generates the DAGMan submit file, condor_submit_dag needs to be in the
+ * PATH.
+ *
+ * @author Karan Vahi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx8g"})
+public class PlannerBenchmark {
+
+    /** The system property for the directory where the inputs and results are written. */
+    public static final String BENCHMARK_DIR_PROPERTY = "pegasus.benchmark.dir";
+
+    /** The shape of the workflow. */
+    @Param({"FANOUT", "FANIN", "DIAMOND", "PIPELINE"})
+    public String shape;
+
+    /** The number of jobs in the workflow. */
+    @Param({"10000", "100000"})
+    public int jobs;
+
+    /** The number of files generated by each job. */
+    @Param({"1"})
+    public int files;
+
+    /** The clustering technique to use, or none. */
+    @Param({"none", "horizontal"})
+    public String cluster;
+
+    /** The directory with the generated workflow and catalogs. */
+    private File mInputDir;
+
+    /** The base submit directory. */
+    private File mSubmitDir;
+
+    /** The number of plans done so far, to give each a distinct submit directory. */
+    private int mRun;
+
+    /** Whether the current iteration is a measurement iteration. */
+    private boolean mMeasure;
+
+    /** The sum of the wall times of each stage over the measured plans. */
+    private Map<String, Double> mStageTimes;
+
+    /** The sum of the peak heap of each stage over the measured plans. */
+    private Map<String, Double> mStagePeaks;
+
+    /** The number of measured plans. */
+    private int mMeasured;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        File base = new File(System.getProperty(BENCHMARK_DIR_PROPERTY, "build/benchmark"));
+        SyntheticWorkflow workflow =
+                new SyntheticWorkflow(SyntheticWorkflow.Shape.valueOf(shape), jobs, files);
+        mInputDir = new File(base, workflow.getName()).getAbsoluteFile();
+        mSubmitDir = new File(mInputDir, "submit");
+        workflow.writeOut(mInputDir);
+
+        mRun = 0;
+        mMeasured = 0;
+        mStageTimes = new LinkedHashMap<String, Double>();
+        mStagePeaks = new LinkedHashMap<String, Double>();
+    }
+
+    @Setup(Level.Iteration)
+    public void iteration(IterationParams params) {
+        mMeasure = params.getType() == IterationType.MEASUREMENT;
+    }
+
+    @Benchmark
+    public int plan() throws IOException {
+        String relative = "run" + mRun++;
+        List<String> args = new ArrayList<String>();
+        args.add("--conf");
+        args.add(new File(mInputDir, SyntheticWorkflow.PROPERTIES_FILE).getPath());
+        args.add("--dir");
+        args.add(mSubmitDir.getPath());
+        args.add("--relative-dir");
+        args.add(relative);
+        args.add("--sites");
+        args.add(SyntheticWorkflow.COMPUTE_SITE);
+        args.add("--output-sites");
+        args.add("local");
+        args.add("--cleanup");
+        args.add("inplace");
+        args.add("--quiet");
+        if (!cluster.equals("none")) {
+            args.add("--cluster");
+            args.add(cluster);
+        }
+        args.add("--dax");
+        args.add(new File(mInputDir, SyntheticWorkflow.WORKFLOW_FILE).getPath());
+
+        CPlanner planner = new CPlanner();
+        planner.initialize(args.toArray(new String[0]), '6');
+        planner.executeCommand();
+        // close the planner event that main would have closed
+        LogManagerFactory.loadSingletonInstance().logEventCompletion();
+
+        File run = new File(mSubmitDir, relative);
+        if (mMeasure) {
+            this.collect(new File(run, CPlanner.STAGE_METRICS_FILE));
+        }
+        int count = run.list().length;
+        delete(run.toPath());
+        return count;
+    }
+
+    @TearDown(Level.Trial)
+    public void report() throws IOException {
+        String name =
+                "stages-" + shape.toLowerCase() + "-" + jobs + "-" + files + "-" + cluster + ".json";
+        File file = new File(mInputDir.getParentFile(), name);
+        JsonObject result = new JsonObject();
+        result.addProperty("shape", shape);
+        result.addProperty("jobs", jobs);
+        result.addProperty("files", files);
+        result.addProperty("cluster", cluster);
+        result.addProperty("plans", mMeasured);
+        JsonArray stages = new JsonArray();
+        for (Map.Entry<String, Double> entry : mStageTimes.entrySet()) {
+            JsonObject stage = new JsonObject();
+            stage.addProperty("name", entry.getKey());
+            stage.addProperty("wall_time", entry.getValue() / Math.max(1, mMeasured));
+            stage.addProperty(
+                    "peak_heap_bytes", mStagePeaks.get(entry.getKey()) / Math.max(1, mMeasured));
+            stages.add(stage);
+        }
+        result.add("stages", stages);
+        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
+            pw.println(result.toString());
+        }
+
+        System.out.println();
+        for (Map.Entry<String, Double> entry : mStageTimes.entrySet()) {
+            System.out.println(
+                    String.format(
+                            "%-45s %10.3f s",
+                            entry.getKey(), entry.getValue() / Math.max(1, mMeasured)));
+        }
+        delete(mSubmitDir.toPath());
+    }
+
+    /**
+     * Adds up the wall times and peak heap of the stages from the stage metrics of a plan.
+     * Events that occur more than once in a plan are summed up.
+     *
+     * @param file the stage metrics file written by the planner
+     * @throws IOException in case of error while reading the file
+     */
+    private void collect(File file) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("The planner did not write out the stage metrics " + file);
+        }
+        JsonObject json;
+        try (Reader reader = new FileReader(file)) {
+            json = new JsonParser().parse(reader).getAsJsonObject();
+        }
+        for (JsonElement element : json.getAsJsonArray("events")) {
+            JsonObject event = element.getAsJsonObject();
+            String name = event.get("name").getAsString();
+            Double time = mStageTimes.get(name);
+            mStageTimes.put(name, (time == null ? 0 : time) + event.get("wall_time").getAsDouble());
+            Double peak = mStagePeaks.get(name);
+            mStagePeaks.put(
+                    name, (peak == null ? 0 : peak) + event.get("peak_heap_bytes").getAsDouble());
+        }
+        mMeasured++;
+    }
+
+    /**
+     * Deletes a directory recursively.
+     *
+     * @param dir the directory
+     * @throws IOException in case of error while deleting
+     */
+    private static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(
+                dir,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                            throws IOException {
+                        Files.delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path d, IOException e)
+                            throws IOException {
+                        Files.delete(d);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.refiner.ReduceEdges;
+import edu.isi.pegasus.planner.refiner.SyntheticGraphs;
+import edu.isi.pegasus.planner.refiner.TransitiveReduction;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the legacy ReduceEdges against TransitiveReduction on synthetic graphs. Each invocation
+ * reduces a fresh copy of the graph, as both algorithms remove the edges in place.
+ *
+ * <p>The legacy algorithm does not finish in reasonable time at larger scales, so run those with
+ * only the transitiveReduction benchmark selected, e.g. -Dbenchmark.args="ReduceEdgesBenchmark.t
+ * -p scale=10".
+ *
+ * @author Karan Vahi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class ReduceEdgesBenchmark {
+
+    /** The shape of the graph. */
+    @Param({"layered", "fanout-fanin", "pipelines"})
+    public String shape;
+
+    /** Scales the size of the generated graph. */
+    @Param({"1"})
+    public int scale;
+
+    /** The graph to be reduced by the next invocation. */
+    private Graph mGraph;
+
+    @Setup(Level.Invocation)
+    public void create() {
+        switch (shape) {
+            case "layered":
+                mGraph = SyntheticGraphs.createLayered(10 * scale, 100 * scale, 3);
+                break;
+            case "fanout-fanin":
+                mGraph = SyntheticGraphs.createFanOutFanIn(1000 * scale);
+                break;
+            case "pipelines":
+                mGraph = SyntheticGraphs.createPipelines(10 * scale, 100 * scale, 4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    @Benchmark
+    public long legacy() {
+        return SyntheticGraphs.countEdges(new ReduceEdges().reduce(mGraph));
+    }
+
+    @Benchmark
+    public long transitiveReduction() {
+        return SyntheticGraphs.countEdges(new TransitiveReduction().reduce(mGraph));
+    }
+}
@@ -0,0 +1,398 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic workflows of a given shape along with file based site, transformation and
+ * replica catalogs, so that the planner can be benchmarked offline. Every job generates a
+ * configurable number of output files, and consumes all the files generated by its parents. The
+ * jobs without parents consume raw input files that are registered in the replica catalog.
+ *
+ * <p>The workflow is written out in the YAML format directly, without building it in memory, so
+ * that workflows with millions of files can be generated.
+ *
+ * <p>Usage: SyntheticWorkflow shape jobs files-per-job directory
+ *
+ * @author Karan Vahi
+ */
+public class SyntheticWorkflow {
+
+    /** The basename of the workflow file. */
+    public static final String WORKFLOW_FILE = "workflow.yml";
+
+    /** The basename of the site catalog. */
+    public static final String SITE_CATALOG_FILE = "sites.yml";
+
+    /** The basename of the transformation catalog. */
+    public static final String TRANSFORMATION_CATALOG_FILE = "transformations.yml";
+
+    /** The basename of the replica catalog. */
+    public static final String REPLICA_CATALOG_FILE = "rc.txt";
+
+    /** The basename of the properties file. */
+    public static final String PROPERTIES_FILE = "pegasus.properties";
+
+    /** The site on which the jobs are run. */
+    public static final String COMPUTE_SITE = "condorpool";
+
+    /** The length of a single chain in the pipeline shape. */
+    public static final int PIPELINE_DEPTH = 1000;
+
+    /** The shapes of the workflows that can be generated. */
+    public enum Shape {
+        /** A single root job with all other jobs as its children. */
+        FANOUT,
+        /** All jobs are parents of a single sink job. */
+        FANIN,
+        /**
+         * A lattice of diamonds, with square root of jobs levels. Every job has the job above it
+         * and the one diagonally above it as parents.
+         */
+        DIAMOND,
+        /** Independent chains of PIPELINE_DEPTH jobs each. */
+        PIPELINE
+    }
+
+    /** The shape of the workflow. */
+    private final Shape mShape;
+
+    /** The number of jobs in the workflow. */
+    private final int mJobs;
+
+    /** The number of files generated by each job. */
+    private final int mFiles;
+
+    /** The width of a level for the diamond shape. */
+    private final int mWidth;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param shape the shape of the workflow
+     * @param jobs the number of jobs
+     * @param files the number of files generated by each job
+     */
+    public SyntheticWorkflow(Shape shape, int jobs, int files) {
+        if (jobs < 2 || files < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid number of jobs " + jobs + " or files per job " + files);
+        }
+        mShape = shape;
+        mJobs = jobs;
+        mFiles = files;
+        mWidth = Math.max(1, (int) Math.sqrt(jobs));
+    }
+
+    /**
+     * Returns the indices of the parents of a job.
+     *
+     * @param job the index of the job
+     * @return the indices of the parents
+     */
+    public List<Integer> getParents(int job) {
+        List<Integer> parents = new ArrayList<Integer>(2);
+        switch (mShape) {
+            case FANOUT:
+                if (job > 0) {
+                    parents.add(0);
+                }
+                break;
+
+            case FANIN:
+                if (job == mJobs - 1) {
+                    for (int i = 0; i < mJobs - 1; i++) {
+                        parents.add(i);
+                    }
+                }
+                break;
+
+            case DIAMOND:
+                int level = job / mWidth;
+                if (level > 0) {
+                    int index = job % mWidth;
+                    int above = (level - 1) * mWidth;
+                    parents.add(above + index);
+                    int diagonal = above + (index + 1) % mWidth;
+                    if (diagonal != above + index) {
+                        parents.add(diagonal);
+                    }
+                }
+                break;
+
+            case PIPELINE:
+                if (job % PIPELINE_DEPTH != 0) {
+                    parents.add(job - 1);
+                }
+                break;
+        }
+        return parents;
+    }
+
+    /**
+     * Writes out the workflow and the catalogs to a directory.
+     *
+     * @param dir the directory
+     * @throws IOException in case of error while writing out the files
+     */
+    public void writeOut(File dir) throws IOException {
+        dir.mkdirs();
+        this.writeWorkflow(new File(dir, WORKFLOW_FILE));
+        this.writeReplicaCatalog(new File(dir, REPLICA_CATALOG_FILE), dir);
+        this.writeSiteCatalog(new File(dir, SITE_CATALOG_FILE), dir);
+        this.writeTransformationCatalog(new File(dir, TRANSFORMATION_CATALOG_FILE));
+        this.writeProperties(new File(dir, PROPERTIES_FILE), dir);
+    }
+
+    /**
+     * Writes out the workflow in the YAML format.
+     *
+     * @param file the file to write to
+     * @throws IOException in case of error while writing out the file
+     */
+    public void writeWorkflow(File file) throws IOException {
+        List<List<Integer>> children = new ArrayList<List<Integer>>(mJobs);
+        for (int job = 0; job < mJobs; job++) {
+            children.add(null);
+        }
+        for (int job = 0; job < mJobs; job++) {
+            for (int parent : this.getParents(job)) {
+                if (children.get(parent) == null) {
+                    children.set(parent, new ArrayList<Integer>());
+                }
+                children.get(parent).add(job);
+            }
+        }
+
+        try (Writer writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            writer.write("pegasus: \"5.0\"\n");
+            writer.write("name: " + this.getName() + "\n");
+            writer.write("jobs:\n");
+            for (int job = 0; job < mJobs; job++) {
+                writer.write("  - type: job\n");
+                writer.write("    id: " + jobID(job) + "\n");
+                writer.write("    name: task\n");
+                writer.write("    namespace: benchmark\n");
+                writer.write("    version: \"1.0\"\n");
+                writer.write("    arguments: [\"-j\", \"" + jobID(job) + "\"]\n");
+                writer.write("    uses:\n");
+                List<Integer> parents = this.getParents(job);
+                if (parents.isEmpty()) {
+                    for (int f = 0; f < mFiles; f++) {
+                        writeUse(writer, inputLFN(job, f), "input", false);
+                    }
+                }
+                for (int parent : parents) {
+                    for (int f = 0; f < mFiles; f++) {
+                        writeUse(writer, outputLFN(parent, f), "input", false);
+                    }
+                }
+                for (int f = 0; f < mFiles; f++) {
+                    // only the outputs of the last jobs are staged out
+                    writeUse(writer, outputLFN(job, f), "output", children.get(job) == null);
+                }
+            }
+
+            writer.write("jobDependencies:\n");
+            for (int job = 0; job < mJobs; job++) {
+                List<Integer> c = children.get(job);
+                if (c == null) {
+                    continue;
+                }
+                writer.write("  - id: " + jobID(job) + "\n");
+                writer.write("    children:\n");
+                for (int child : c) {
+                    writer.write("      - " + jobID(child) + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out the replica catalog in the File format, with all the raw inputs.
+     *
+     * @param file the file to write to
+     * @param dir the directory in which the raw inputs notionally reside
+     * @throws IOException in case of error while writing out the file
+     */
+    public void writeReplicaCatalog(File file, File dir) throws IOException {
+        String base = new File(dir, "inputs").getAbsolutePath();
+        try (Writer writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            for (int job = 0; job < mJobs; job++) {
+                if (!this.getParents(job).isEmpty()) {
+                    continue;
+                }
+                for (int f = 0; f < mFiles; f++) {
+                    String lfn = inputLFN(job, f);
+                    writer.write(lfn + " file://" + base + "/" + lfn + " site=\"local\"\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out the site catalog with the local site and the compute site.
+     *
+     * @param file the file to write to
+     * @param dir the directory under which the storage and scratch directories are
+     * @throws IOException in case of error while writing out the file
+     */
+    public void writeSiteCatalog(File file, File dir) throws IOException {
+        String outputs = new File(dir, "outputs").getAbsolutePath();
+        String work = new File(dir, "work").getAbsolutePath();
+        String scratch = new File(dir, "scratch").getAbsolutePath();
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("pegasus: \"5.0\"\n");
+            writer.write("sites:\n");
+            writer.write("  - name: \"" + COMPUTE_SITE + "\"\n");
+            writer.write("    arch: \"x86_64\"\n");
+            writer.write("    os.type: \"linux\"\n");
+            writer.write("    profiles:\n");
+            writer.write("      env:\n");
+            writer.write("        PEGASUS_HOME: \"/usr\"\n");
+            writer.write("      condor:\n");
+            writer.write("        universe: \"vanilla\"\n");
+            writer.write("      pegasus:\n");
+            writer.write("        style: \"condor\"\n");
+            // the raw inputs on the local site are accessible on the compute site
+            writer.write("        auxillary.local: \"true\"\n");
+            writer.write("    directories:\n");
+            writer.write("      - type: \"sharedScratch\"\n");
+            writer.write("        path: \"" + scratch + "\"\n");
+            writer.write("        fileServers:\n");
+            writer.write("          - operation: \"all\"\n");
+            writer.write("            url: \"file://" + scratch + "\"\n");
+            writer.write("  - name: \"local\"\n");
+            writer.write("    arch: \"x86_64\"\n");
+            writer.write("    os.type: \"linux\"\n");
+            writer.write("    profiles:\n");
+            writer.write("      env:\n");
+            writer.write("        PEGASUS_HOME: \"/usr\"\n");
+            writer.write("    directories:\n");
+            writer.write("      - type: \"sharedStorage\"\n");
+            writer.write("        path: \"" + outputs + "\"\n");
+            writer.write("        fileServers:\n");
+            writer.write("          - operation: \"all\"\n");
+            writer.write("            url: \"file://" + outputs + "\"\n");
+            writer.write("      - type: \"sharedScratch\"\n");
+            writer.write("        path: \"" + work + "\"\n");
+            writer.write("        fileServers:\n");
+            writer.write("          - operation: \"all\"\n");
+            writer.write("            url: \"file://" + work + "\"\n");
+        }
+    }
+
+    /**
+     * Writes out the transformation catalog with the single transformation all jobs refer to.
+     *
+     * @param file the file to write to
+     * @throws IOException in case of error while writing out the file
+     */
+    public void writeTransformationCatalog(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("pegasus: \"5.0\"\n");
+            writer.write("transformations:\n");
+            writer.write("  - namespace: benchmark\n");
+            writer.write("    name: task\n");
+            writer.write("    version: \"1.0\"\n");
+            writer.write("    sites:\n");
+            writer.write("      - name: " + COMPUTE_SITE + "\n");
+            writer.write("        type: installed\n");
+            writer.write("        pfn: /bin/true\n");
+            writer.write("        arch: x86_64\n");
+            writer.write("        os.type: linux\n");
+            writer.write("        profiles:\n");
+            writer.write("          pegasus:\n");
+            writer.write("            clusters.size: \"10\"\n");
+            writer.write("            runtime: \"60\"\n");
+        }
+    }
+
+    /**
+     * Writes out the properties that point the planner to the catalogs.
+     *
+     * @param file the file to write to
+     * @param dir the directory containing the catalogs
+     * @throws IOException in case of error while writing out the file
+     */
+    public void writeProperties(File file, File dir) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("pegasus.catalog.site.file = ");
+            writer.write(new File(dir, SITE_CATALOG_FILE).getAbsolutePath() + "\n");
+            writer.write("pegasus.catalog.transformation = YAML\n");
+            writer.write("pegasus.catalog.transformation.file = ");
+            writer.write(new File(dir, TRANSFORMATION_CATALOG_FILE).getAbsolutePath() + "\n");
+            writer.write("pegasus.catalog.replica = File\n");
+            writer.write("pegasus.catalog.replica.file = ");
+            writer.write(new File(dir, REPLICA_CATALOG_FILE).getAbsolutePath() + "\n");
+            writer.write("pegasus.data.configuration = sharedfs\n");
+            writer.write("pegasus.dir.storage.deep = false\n");
+            writer.write("pegasus.condor.logs.symlink = false\n");
+            // the compute site has a shared filesystem with pegasus installed
+            writer.write("pegasus.transfer.worker.package = false\n");
+            writer.write("pegasus.log.stage.metrics = true\n");
+        }
+    }
+
+    /**
+     * Returns the name of the workflow.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return mShape.toString().toLowerCase() + "-" + mJobs + "-" + mFiles;
+    }
+
+    private static void writeUse(Writer writer, String lfn, String type, boolean stageOut)
+            throws IOException {
+        writer.write("      - lfn: " + lfn + "\n");
+        writer.write("        type: " + type + "\n");
+        if (type.equals("output")) {
+            writer.write("        stageOut: " + stageOut + "\n");
+            writer.write("        registerReplica: false\n");
+        }
+    }
+
+    private static String jobID(int job) {
+        return "ID" + job;
+    }
+
+    private static String inputLFN(int job, int file) {
+        return "in_" + job + "_" + file;
+    }
+
+    private static String outputLFN(int job, int file) {
+        return "f_" + job + "_" + file;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: SyntheticWorkflow shape jobs files-per-job directory");
+            System.exit(1);
+        }
+        SyntheticWorkflow workflow =
+                new SyntheticWorkflow(
+                        Shape.valueOf(args[0].toUpperCase()),
+                        Integer.parseInt(args[1]),
+                        Integer.parseInt(args[2]));
+        workflow.writeOut(new File(args[3]));
+    }
+}
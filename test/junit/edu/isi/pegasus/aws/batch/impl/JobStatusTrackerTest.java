@@ -0,0 +1,230 @@
+/**
+ * Copyright 2007-2017 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.aws.batch.impl;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.aws.batch.classes.AWSJob;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.batch.BatchClient;
+import software.amazon.awssdk.services.batch.model.DescribeJobsRequest;
+import software.amazon.awssdk.services.batch.model.DescribeJobsResponse;
+import software.amazon.awssdk.services.batch.model.JobDetail;
+
+/**
+ * Test class for the JobStatusTracker, using a stub BatchClient that returns the statuses set by
+ * the tests.
+ *
+ * @author Karan Vahi
+ */
+public class JobStatusTrackerTest {
+
+    /** The maximum interval between polls. */
+    private static final long MAX_POLL_INTERVAL = 60000;
+
+    private StubBatchClient mClient;
+
+    private JobStatusTracker mTracker;
+
+    public JobStatusTrackerTest() {}
+
+    @Before
+    public void setUp() {
+        mClient = new StubBatchClient();
+        Logger logger = Logger.getLogger(JobStatusTrackerTest.class);
+        logger.setLevel(Level.WARN);
+        mTracker = new JobStatusTracker(mClient, null, null, logger, MAX_POLL_INTERVAL, 1);
+    }
+
+    @After
+    public void tearDown() {
+        mTracker.shutdown();
+    }
+
+    @Test
+    public void testDescribeInBatches() {
+        int count = JobStatusTracker.MAX_JOBS_PER_DESCRIBE * 2 + 50;
+        List<AWSJob> jobs = this.track(count);
+
+        assertTrue(mTracker.poll().isEmpty());
+        // only the outstanding jobs are described, at most a batch per request
+        assertEquals(3, mClient.mRequests.size());
+        for (List<String> request : mClient.mRequests) {
+            assertTrue(request.size() <= JobStatusTracker.MAX_JOBS_PER_DESCRIBE);
+        }
+        assertEquals(jobs.size(), mClient.described());
+        for (AWSJob job : jobs) {
+            assertEquals(AWSJob.JOBSTATE.runnable, job.getJobState());
+        }
+        assertEquals(3 * JobStatusTracker.POLL_INTERVAL_PER_REQUEST, mTracker.getPollInterval());
+
+        // complete all but the last batch
+        for (int i = 0; i < JobStatusTracker.MAX_JOBS_PER_DESCRIBE * 2; i++) {
+            String status = (i % 2 == 0) ? "SUCCEEDED" : "FAILED";
+            mClient.mStatuses.put(jobs.get(i).getAWSJobID(), status);
+        }
+        mClient.mRequests.clear();
+        assertEquals(JobStatusTracker.MAX_JOBS_PER_DESCRIBE * 2, mTracker.poll().size());
+        assertEquals(JobStatusTracker.MAX_JOBS_PER_DESCRIBE, mTracker.getSucceededCount());
+        assertEquals(JobStatusTracker.MAX_JOBS_PER_DESCRIBE, mTracker.getFailedCount());
+        assertEquals(50, mTracker.getOutstandingCount());
+
+        // the completed jobs are not described again
+        mClient.mRequests.clear();
+        assertTrue(mTracker.poll().isEmpty());
+        assertEquals(1, mClient.mRequests.size());
+        assertEquals(50, mClient.mRequests.get(0).size());
+    }
+
+    @Test
+    public void testJobNotDescribed() {
+        List<AWSJob> jobs = this.track(3);
+        // a recently submitted job may not be visible yet
+        mClient.mStatuses.remove(jobs.get(1).getAWSJobID());
+        mClient.mStatuses.put(jobs.get(0).getAWSJobID(), "SUCCEEDED");
+
+        List<AWSJob> completed = mTracker.poll();
+        assertEquals(1, completed.size());
+        assertSame(jobs.get(0), completed.get(0));
+        assertEquals(AWSJob.JOBSTATE.submitted, jobs.get(1).getJobState());
+        assertEquals(AWSJob.JOBSTATE.runnable, jobs.get(2).getJobState());
+        assertEquals(2, mTracker.getOutstandingCount());
+
+        // the job is still polled for, and is updated once it is described
+        mClient.mStatuses.put(jobs.get(1).getAWSJobID(), "RUNNING");
+        mClient.mRequests.clear();
+        assertTrue(mTracker.poll().isEmpty());
+        assertTrue(mClient.mRequests.get(0).contains(jobs.get(1).getAWSJobID()));
+        assertEquals(AWSJob.JOBSTATE.running, jobs.get(1).getJobState());
+    }
+
+    @Test
+    public void testBackoffWhileIdle() {
+        this.track(1);
+        mTracker.poll();
+        long interval = mTracker.getPollInterval();
+        assertEquals(JobStatusTracker.POLL_INTERVAL_PER_REQUEST, interval);
+
+        // nothing changes, so the interval doubles up to the maximum
+        for (int i = 0; i < 10; i++) {
+            mTracker.poll();
+            long next = mTracker.getPollInterval();
+            assertTrue(next >= interval);
+            interval = next;
+        }
+        assertEquals(32 * JobStatusTracker.POLL_INTERVAL_PER_REQUEST, interval);
+
+        // tracking a new job resets the backoff
+        this.track(1);
+        assertEquals(JobStatusTracker.POLL_INTERVAL_PER_REQUEST, mTracker.getPollInterval());
+    }
+
+    @Test
+    public void testClientFailure() {
+        int count = JobStatusTracker.MAX_JOBS_PER_DESCRIBE + 10;
+        List<AWSJob> jobs = this.track(count);
+        for (AWSJob job : jobs) {
+            mClient.mStatuses.put(job.getAWSJobID(), "SUCCEEDED");
+        }
+        mClient.mFailAfter = 1;
+
+        try {
+            mTracker.poll();
+            fail("Failure of the client was not propagated");
+        } catch (RuntimeException e) {
+            assertEquals("describe failed", e.getMessage());
+        }
+        // the jobs of the batch that was described are accounted for
+        assertEquals(JobStatusTracker.MAX_JOBS_PER_DESCRIBE, mTracker.getSucceededCount());
+        assertEquals(10, mTracker.getOutstandingCount());
+
+        // and the remaining ones are polled for once the client recovers
+        mClient.mFailAfter = -1;
+        assertEquals(10, mTracker.poll().size());
+        assertEquals(0, mTracker.getOutstandingCount());
+        assertEquals(count, mTracker.getSucceededCount());
+    }
+
+    /**
+     * Tracks new jobs, that the stub client describes as runnable.
+     *
+     * @param count the number of jobs
+     * @return the jobs
+     */
+    private List<AWSJob> track(int count) {
+        List<AWSJob> jobs = new ArrayList<AWSJob>();
+        int start = mClient.mStatuses.size();
+        for (int i = start; i < start + count; i++) {
+            AWSJob job = new AWSJob();
+            job.setID("job_" + i);
+            job.setAWSJobID("aws-" + i);
+            job.setState(AWSJob.JOBSTATE.submitted);
+            mClient.mStatuses.put(job.getAWSJobID(), "RUNNABLE");
+            mTracker.track(job);
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    /** A BatchClient that describes the jobs with the statuses it is given. */
+    private static class StubBatchClient implements BatchClient {
+
+        /** The statuses of the jobs indexed by AWS job id. */
+        private final Map<String, String> mStatuses = new HashMap<String, String>();
+
+        /** The jobs in each DescribeJobs request. */
+        private final List<List<String>> mRequests = new ArrayList<List<String>>();
+
+        /** The number of requests after which the requests fail, -1 to never fail. */
+        private int mFailAfter = -1;
+
+        public DescribeJobsResponse describeJobs(DescribeJobsRequest request) {
+            if (mFailAfter >= 0 && mRequests.size() >= mFailAfter) {
+                throw new RuntimeException("describe failed");
+            }
+            mRequests.add(new ArrayList<String>(request.jobs()));
+            List<JobDetail> details = new ArrayList<JobDetail>();
+            for (String id : request.jobs()) {
+                String status = mStatuses.get(id);
+                if (status != null) {
+                    details.add(JobDetail.builder().jobId(id).status(status).build());
+                }
+            }
+            return DescribeJobsResponse.builder().jobs(details).build();
+        }
+
+        public void close() {}
+
+        /**
+         * Returns the number of jobs described over all requests.
+         *
+         * @return the number of jobs
+         */
+        private int described() {
+            int described = 0;
+            for (List<String> request : mRequests) {
+                described += request.size();
+            }
+            return described;
+        }
+    }
+}
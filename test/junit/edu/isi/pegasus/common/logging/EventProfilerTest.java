@@ -0,0 +1,111 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class to test the recording of the resources used by the events logged
+ *
+ * @author Karan Vahi
+ */
+public class EventProfilerTest {
+
+    private LogManager mLogger;
+
+    private EventProfiler mProfiler;
+
+    @Before
+    public void setUp() {
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mProfiler = new EventProfiler();
+        mLogger.setEventProfiler(mProfiler);
+    }
+
+    @Test
+    public void testNestedEvents() throws Exception {
+        mLogger.logEventStart("test.outer", "dax.id", "blackdiamond");
+        mLogger.logEventStart("test.inner", "dax.id", "blackdiamond");
+        long[] allocated = new long[1024 * 1024];
+        Thread.sleep(20);
+        mLogger.logEventCompletion();
+        mLogger.logEventCompletion();
+
+        List<EventProfiler.Event> events = mProfiler.getCompletedEvents();
+        assertEquals(2, events.size());
+        EventProfiler.Event outer = events.get(0);
+        EventProfiler.Event inner = events.get(1);
+        assertEquals("test.outer", outer.getName());
+        assertEquals(0, outer.getDepth());
+        assertEquals("test.inner", inner.getName());
+        assertEquals("blackdiamond", inner.getEntityID());
+        assertEquals(1, inner.getDepth());
+
+        assertTrue(inner.getWallTime() >= 0.02);
+        assertTrue(outer.getWallTime() >= inner.getWallTime());
+        if (inner.getAllocatedBytes() != EventProfiler.NOT_AVAILABLE) {
+            assertTrue(inner.getAllocatedBytes() >= 8 * allocated.length);
+        }
+        assertTrue(outer.getPeakHeap() >= inner.getPeakHeap());
+        assertTrue(inner.getPeakHeap() >= inner.getHeapUsed());
+    }
+
+    @Test
+    public void testWriteOut() throws IOException {
+        mLogger.logEventStart("test.stage", "dax.id", "blackdiamond");
+        mLogger.logEventCompletion();
+
+        File file = File.createTempFile("pegasus", ".json");
+        file.deleteOnExit();
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("wf_uuid", "uuid");
+        mProfiler.writeOut(file, attributes);
+
+        JsonObject json;
+        try (Reader reader = new FileReader(file)) {
+            json = new JsonParser().parse(reader).getAsJsonObject();
+        }
+        assertEquals("uuid", json.get("wf_uuid").getAsString());
+        JsonArray events = json.getAsJsonArray("events");
+        assertEquals(1, events.size());
+        JsonObject event = events.get(0).getAsJsonObject();
+        assertEquals("test.stage", event.get("name").getAsString());
+        assertTrue(event.has("wall_time"));
+        assertTrue(event.has("cpu_time"));
+        assertTrue(event.has("allocated_bytes"));
+        assertTrue(event.has("peak_heap_bytes"));
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.setEventProfiler(null);
+        mProfiler.close();
+        mLogger = null;
+    }
+}
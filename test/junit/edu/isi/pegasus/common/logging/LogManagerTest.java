@@ -0,0 +1,82 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class to test the level checks and the lazily built messages of the LogManager
+ *
+ * @author Karan Vahi
+ */
+public class LogManagerTest {
+
+    private LogManager mLogger;
+
+    private int mLevel;
+
+    @Before
+    public void setUp() {
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLevel = mLogger.getLevel();
+        mLogger.logEventStart("test.pegasus.logging", "test", "logmanager");
+    }
+
+    @Test
+    public void testLevelEnabled() {
+        mLogger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        assertTrue(mLogger.isLevelEnabled(LogManager.ERROR_MESSAGE_LEVEL));
+        assertTrue(mLogger.isLevelEnabled(LogManager.INFO_MESSAGE_LEVEL));
+        assertFalse(mLogger.isLevelEnabled(LogManager.DEBUG_MESSAGE_LEVEL));
+        assertFalse(mLogger.isDebugEnabled());
+
+        mLogger.setLevel(LogManager.DEBUG_MESSAGE_LEVEL);
+        assertTrue(mLogger.isDebugEnabled());
+    }
+
+    @Test
+    public void testSupplierNotCalledWhenDisabled() {
+        mLogger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        final AtomicInteger calls = new AtomicInteger();
+        mLogger.log(
+                () -> {
+                    calls.incrementAndGet();
+                    return "lazy debug message";
+                },
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        assertEquals(0, calls.get());
+
+        mLogger.log(
+                () -> {
+                    calls.incrementAndGet();
+                    return "lazy info message";
+                },
+                LogManager.INFO_MESSAGE_LEVEL);
+        assertEquals(1, calls.get());
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        mLogger.setLevel(mLevel);
+        mLogger = null;
+    }
+}
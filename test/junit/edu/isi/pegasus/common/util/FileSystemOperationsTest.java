@@ -0,0 +1,123 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.*;
+
+/**
+ * Test class for the in process filesystem operations.
+ *
+ * @author Karan Vahi
+ */
+public class FileSystemOperationsTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("pegasus").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : mDirectory.listFiles()) {
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void testRelativeSymlinkInDirectory() throws IOException {
+        File source = new File(mDirectory, "run0001");
+        source.createNewFile();
+
+        FileSystemOperations.createSymbolicLink("run0001", "run", mDirectory, false);
+        Path link = new File(mDirectory, "run").toPath();
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals(Paths.get("run0001"), Files.readSymbolicLink(link));
+    }
+
+    @Test(expected = FileAlreadyExistsException.class)
+    public void testSymlinkWithoutOverwrite() throws IOException {
+        File dest = new File(mDirectory, "link");
+        dest.createNewFile();
+        FileSystemOperations.createSymbolicLink("/tmp", dest.getAbsolutePath(), null, false);
+    }
+
+    @Test
+    public void testSymlinkWithOverwrite() throws IOException {
+        File dest = new File(mDirectory, "link");
+        FileSystemOperations.createSymbolicLink("a", dest.getAbsolutePath(), null, true);
+        FileSystemOperations.createSymbolicLink("b", dest.getAbsolutePath(), null, true);
+
+        assertEquals(Paths.get("b"), Files.readSymbolicLink(dest.toPath()));
+        // no temporary links should be left behind
+        assertEquals(1, mDirectory.listFiles().length);
+    }
+
+    @Test
+    public void testSetExecutable() throws IOException {
+        File a = new File(mDirectory, "a.sh");
+        File b = new File(mDirectory, "b.sh");
+        a.createNewFile();
+        b.createNewFile();
+        Files.setPosixFilePermissions(a.toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+        Files.setPosixFilePermissions(b.toPath(), PosixFilePermissions.fromString("rw-------"));
+
+        FileSystemOperations.setExecutable(a, b);
+        assertEquals("rwxr-xr-x", permissions(a));
+        assertEquals("rwx------", permissions(b));
+    }
+
+    @Test
+    public void testSetExecutableReportsAllFailures() throws IOException {
+        File a = new File(mDirectory, "a.sh");
+        a.createNewFile();
+        try {
+            FileSystemOperations.setExecutable(
+                    new File(mDirectory, "missing1"), a, new File(mDirectory, "missing2"));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals(1, e.getSuppressed().length);
+        }
+        assertTrue(a.canExecute());
+    }
+
+    @Test
+    public void testAtomicMove() throws IOException {
+        File source = new File(mDirectory, "workflow.dag.tmp");
+        File dest = new File(mDirectory, "workflow.dag");
+        Files.write(source.toPath(), "new".getBytes());
+        Files.write(dest.toPath(), "old".getBytes());
+
+        FileSystemOperations.atomicMove(source.toPath(), dest.toPath());
+        assertFalse(source.exists());
+        assertEquals("new", new String(Files.readAllBytes(dest.toPath())));
+    }
+
+    private static String permissions(File f) throws IOException {
+        return PosixFilePermissions.toString(Files.getPosixFilePermissions(f.toPath()));
+    }
+}
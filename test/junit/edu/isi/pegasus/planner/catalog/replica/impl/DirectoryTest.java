@@ -0,0 +1,139 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.*;
+
+/**
+ * Test class to test the directory based replica catalog.
+ *
+ * @author Karan Vahi
+ */
+public class DirectoryTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("directory-rc").toFile();
+        // a tree of 4 x 4 subdirectories with 5 files each, and 2 files at the top
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                File dir = new File(mDir, "d" + i + File.separator + "e" + j);
+                assertTrue(dir.mkdirs());
+                for (int k = 0; k < 5; k++) {
+                    assertTrue(new File(dir, "f." + i + "." + j + "." + k).createNewFile());
+                }
+            }
+        }
+        assertTrue(new File(mDir, "top.a").createNewFile());
+        assertTrue(new File(mDir, "top.b").createNewFile());
+    }
+
+    @Test
+    public void testDeepLFNs() {
+        Directory c = connect(null, "4", false);
+        assertEquals(2 + 4 * 4 * 5, c.list().size());
+        String lfn = "d1" + File.separator + "e2" + File.separator + "f.1.2.3";
+        assertEquals("file://" + new File(mDir, lfn).getAbsolutePath(), c.lookup(lfn, "local"));
+        assertEquals(
+                "file://" + new File(mDir, "top.a").getAbsolutePath(), c.lookup("top.a", "local"));
+        c.close();
+    }
+
+    @Test
+    public void testFlatLFNs() {
+        Directory c = connect(null, "4", true);
+        assertEquals(2 + 4 * 4 * 5, c.list().size());
+        assertNotNull(c.lookup("f.3.3.4", "local"));
+        c.close();
+    }
+
+    @Test
+    public void testSameResultAcrossThreads() {
+        Directory sequential = connect(null, "1", false);
+        Directory parallel = connect(null, "8", false);
+        assertEquals(sequential.list(), parallel.list());
+        sequential.close();
+        parallel.close();
+    }
+
+    @Test
+    public void testLFNFilter() {
+        Set<String> lfns = new HashSet<String>();
+        String deep = "d0" + File.separator + "e1" + File.separator + "f.0.1.2";
+        lfns.add(deep);
+        lfns.add("top.b");
+        lfns.add("missing");
+        lfns.add("d3" + File.separator + "missing");
+
+        Directory c = connect(lfns, "4", false);
+        Set<?> listed = c.list();
+        assertEquals(2, listed.size());
+        assertTrue(listed.contains(deep));
+        assertTrue(listed.contains("top.b"));
+        c.close();
+
+        // with flat lfns every subdirectory is traversed
+        lfns.add("f.3.0.0");
+        c = connect(lfns, "4", true);
+        assertEquals(2, c.list().size());
+        assertNotNull(c.lookup("f.3.0.0", "local"));
+        c.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walkFileTree(
+                mDir.toPath(),
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                            throws IOException {
+                        Files.delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path d, IOException e)
+                            throws IOException {
+                        Files.delete(d);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    private Directory connect(Set<String> filter, String threads, boolean flat) {
+        Directory c = new Directory();
+        c.setLFNFilter(filter);
+        Properties props = new Properties();
+        props.setProperty(Directory.DIRECTORY_PROPERTY_KEY, mDir.getPath());
+        props.setProperty(Directory.CRAWL_THREADS_PROPERTY_KEY, threads);
+        props.setProperty(Directory.FLAT_LFN_PROPERTY_KEY, Boolean.toString(flat));
+        assertTrue(c.connect(props));
+        return c;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.*;
+
+/**
+ * Test class to test the indexed file based replica catalog and its builder.
+ *
+ * @author Karan Vahi
+ */
+public class IndexedFileTest {
+
+    private static final int LFNS = 1000;
+
+    private File mDir;
+
+    private File mRC;
+
+    private IndexedFile mCatalog;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("indexed-rc").toFile();
+        mRC = new File(mDir, "replicas.idx");
+
+        // small runs and blocks to exercise the spilling and the index
+        IndexedFileBuilder builder = new IndexedFileBuilder(mRC);
+        builder.setRunSize(97);
+        builder.setBlockSize(256);
+        // add in reverse order, so that the runs need to be sorted and merged
+        for (int i = LFNS - 1; i >= 0; i--) {
+            String lfn = "f." + i;
+            ReplicaCatalogEntry rce = new ReplicaCatalogEntry("file:///local/" + lfn, "local");
+            rce.addAttribute("checksum.value", Integer.toString(i));
+            builder.add(lfn, rce);
+            if (i % 2 == 0) {
+                builder.add(lfn, new ReplicaCatalogEntry("gsiftp://remote/" + lfn, "remote"));
+            }
+        }
+        // replaces the earlier mapping with the same pfn and site
+        ReplicaCatalogEntry replaced = new ReplicaCatalogEntry("file:///local/f.0", "local");
+        replaced.addAttribute("checksum.value", "replaced");
+        builder.add("f.0", replaced);
+        assertEquals(LFNS, builder.build());
+
+        mCatalog = new IndexedFile();
+        Properties props = new Properties();
+        props.setProperty("file", mRC.getPath());
+        assertTrue(mCatalog.connect(props));
+    }
+
+    @Test
+    public void testCounts() {
+        assertEquals(LFNS, mCatalog.getLFNCount());
+        assertEquals(LFNS + LFNS / 2, mCatalog.getEntryCount());
+        assertEquals(LFNS, mCatalog.list().size());
+        assertEquals(11, mCatalog.list("f\\.1[0-9]?").size());
+    }
+
+    @Test
+    public void testLookupSet() {
+        Set<String> lfns = new HashSet<String>();
+        for (int i = 0; i < LFNS; i += 7) {
+            lfns.add("f." + i);
+        }
+        lfns.add("a.missing");
+        lfns.add("z.missing");
+        lfns.add("f.5.missing");
+
+        Map<String, Collection<ReplicaCatalogEntry>> result = mCatalog.lookup(lfns);
+        assertEquals(lfns.size(), result.size());
+        for (int i = 0; i < LFNS; i += 7) {
+            Collection<ReplicaCatalogEntry> rces = result.get("f." + i);
+            assertEquals("f." + i, i % 2 == 0 ? 2 : 1, rces.size());
+        }
+        assertTrue(result.get("a.missing").isEmpty());
+        assertTrue(result.get("z.missing").isEmpty());
+        assertTrue(result.get("f.5.missing").isEmpty());
+    }
+
+    @Test
+    public void testLookupByHandle() {
+        assertEquals("file:///local/f.999", mCatalog.lookup("f.999", "local"));
+        assertEquals("gsiftp://remote/f.998", mCatalog.lookup("f.998", "remote"));
+        assertNull(mCatalog.lookup("f.999", "remote"));
+
+        Set<String> lfns = new HashSet<String>();
+        lfns.add("f.2");
+        lfns.add("f.3");
+        lfns.add("f.missing");
+        Map<?, ?> result = mCatalog.lookupNoAttributes(lfns, "remote");
+        assertEquals(2, result.size());
+        assertEquals(1, ((Collection<?>) result.get("f.2")).size());
+        assertTrue(((Collection<?>) result.get("f.3")).isEmpty());
+    }
+
+    @Test
+    public void testReplacedEntry() {
+        Collection<ReplicaCatalogEntry> rces = mCatalog.lookup("f.0");
+        assertEquals(2, rces.size());
+        for (ReplicaCatalogEntry rce : rces) {
+            if (rce.getResourceHandle().equals("local")) {
+                assertEquals("replaced", rce.getAttribute("checksum.value"));
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        mCatalog.insert("f.new", new ReplicaCatalogEntry("file:///local/f.new", "local"));
+    }
+
+    @After
+    public void tearDown() {
+        mCatalog.close();
+        for (File f : mDir.listFiles()) {
+            f.delete();
+        }
+        mDir.delete();
+    }
+}
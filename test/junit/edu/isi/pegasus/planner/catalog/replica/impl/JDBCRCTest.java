@@ -265,6 +265,63 @@ public class JDBCRCTest {
         assertEquals(1, map.size());
     }
 
+    @Test
+    public void bulkInsertAndLookup() {
+        Map<String, List<ReplicaCatalogEntry>> mappings =
+                new HashMap<String, List<ReplicaCatalogEntry>>();
+        Set<String> lfns = new HashSet<String>();
+        for (int i = 0; i < 1200; i++) {
+            List<ReplicaCatalogEntry> entries = new ArrayList<ReplicaCatalogEntry>();
+            entries.add(new ReplicaCatalogEntry("pfn" + i, "x"));
+            entries.add(new ReplicaCatalogEntry("pfn" + i, "y"));
+            mappings.put("lfn" + i, entries);
+            lfns.add("lfn" + i);
+        }
+        assertEquals(2400, jdbcrc.insert(mappings));
+
+        lfns.add("missing");
+        Map<?, ?> result = jdbcrc.lookup(lfns);
+        assertEquals(1201, result.size());
+        assertTrue(((Collection<?>) result.get("missing")).isEmpty());
+        Collection<?> c = (Collection<?>) result.get("lfn1100");
+        assertTrue(c.contains(new ReplicaCatalogEntry("pfn1100", "x")));
+        assertTrue(c.contains(new ReplicaCatalogEntry("pfn1100", "y")));
+
+        Map<?, ?> pfns = jdbcrc.lookupNoAttributes(lfns, "y");
+        c = (Collection<?>) pfns.get("lfn7");
+        assertEquals(1, c.size());
+        assertTrue(c.contains("pfn7"));
+
+        jdbcrc.remove(lfns);
+    }
+
+    @Test
+    public void bulkReinsert() {
+        Map<String, List<ReplicaCatalogEntry>> mappings =
+                new HashMap<String, List<ReplicaCatalogEntry>>();
+        mappings.put("a", Collections.singletonList(new ReplicaCatalogEntry("b")));
+        mappings.put("c", Collections.singletonList(new ReplicaCatalogEntry("d", "site'x")));
+        assertEquals(2, jdbcrc.insert(mappings));
+
+        // reinserting the same mappings replaces the existing ones
+        assertEquals(2, jdbcrc.insert(mappings));
+        Collection<?> c = jdbcrc.lookup("a");
+        assertEquals(1, c.size());
+        assertTrue(c.contains(new ReplicaCatalogEntry("b")));
+        c = jdbcrc.lookup("c");
+        assertEquals(1, c.size());
+        assertTrue(c.contains(new ReplicaCatalogEntry("d", "site'x")));
+
+        // a mapping inserted singly is replaced by a bulk insert as well
+        jdbcrc.insert("e", new ReplicaCatalogEntry("f"));
+        mappings.clear();
+        mappings.put("e", Collections.singletonList(new ReplicaCatalogEntry("f")));
+        jdbcrc.insert(mappings);
+        assertEquals(1, jdbcrc.lookup("e").size());
+
+        jdbcrc.remove(new HashSet<String>(Arrays.asList("a", "c", "e")));
+    }
+
     @After
     public void tearDown() {
         jdbcrc.delete("a", "b");
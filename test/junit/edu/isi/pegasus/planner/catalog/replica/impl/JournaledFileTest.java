@@ -0,0 +1,191 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import org.junit.*;
+
+/**
+ * Test class to test the journaled file based replica catalog.
+ *
+ * @author Karan Vahi
+ */
+public class JournaledFileTest {
+
+    private File mDir;
+
+    private File mRC;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("journaled-rc").toFile();
+        mRC = new File(mDir, "replicas.txt");
+        try (PrintWriter pw = new PrintWriter(new FileWriter(mRC))) {
+            pw.println("f.a file:///input/f.a site=\"local\"");
+            pw.println("f.b file:///input/f.b site=\"local\"");
+        }
+    }
+
+    @Test
+    public void testInsertAppendsToJournal() throws IOException {
+        List<String> base = Files.readAllLines(mRC.toPath(), StandardCharsets.UTF_8);
+
+        JournaledFile c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        c.insert("f.c", new ReplicaCatalogEntry("file:///output/f.c", "local"));
+        c.close();
+
+        // the base file is not rewritten
+        assertEquals(base, Files.readAllLines(mRC.toPath(), StandardCharsets.UTF_8));
+        File journal = new File(mRC.getPath() + JournaledFile.JOURNAL_SUFFIX);
+        assertEquals(1, Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8).size());
+
+        c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        assertEquals("file:///output/f.c", c.lookup("f.c", "local"));
+        assertEquals("file:///input/f.a", c.lookup("f.a", "local"));
+        c.close();
+    }
+
+    @Test
+    public void testDeleteReplayed() {
+        JournaledFile c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        c.insert("f.c", new ReplicaCatalogEntry("file:///output/f.c", "local"));
+        c.delete("f.a", "file:///input/f.a");
+        c.close();
+
+        c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        c.remove("f.c");
+        c.close();
+
+        c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        assertNull(c.lookup("f.a", "local"));
+        assertNull(c.lookup("f.c", "local"));
+        assertEquals("file:///input/f.b", c.lookup("f.b", "local"));
+        c.close();
+    }
+
+    @Test
+    public void testConcurrentClients() throws Exception {
+        final int clients = 8;
+        final int mappings = 50;
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        for (int i = 0; i < clients; i++) {
+            final int client = i;
+            Thread t =
+                    new Thread(
+                            () -> {
+                                try {
+                                    // compact often to exercise compaction under contention
+                                    JournaledFile c = connect(512);
+                                    for (int j = 0; j < mappings; j++) {
+                                        String lfn = "out." + client + "." + j;
+                                        c.insert(
+                                                lfn,
+                                                new ReplicaCatalogEntry(
+                                                        "file:///output/" + lfn, "local"));
+                                    }
+                                    c.close();
+                                } catch (Throwable e) {
+                                    synchronized (errors) {
+                                        errors.add(e);
+                                    }
+                                }
+                            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        JournaledFile c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        assertEquals(2 + clients * mappings, c.list().size());
+        c.close();
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        JournaledFile c = connect(0);
+        c.insert("f.c", new ReplicaCatalogEntry("file:///output/f.c", "local"));
+        c.delete("f.a", "file:///input/f.a");
+        c.close();
+
+        File journal = new File(mRC.getPath() + JournaledFile.JOURNAL_SUFFIX);
+        assertEquals(0, journal.length());
+
+        // the base file can be read by the plain file catalog
+        SimpleFile s = new SimpleFile();
+        s.connect(mRC.getPath());
+        Collection<?> entries = s.lookup("f.c");
+        assertEquals(1, entries.size());
+        assertNull(s.lookup("f.a", "local"));
+        assertEquals("file:///input/f.b", s.lookup("f.b", "local"));
+        s.setReadOnly(true);
+        s.close();
+    }
+
+    @Test
+    public void testInvalidRecordIgnored() throws IOException {
+        JournaledFile c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        c.insert("f.c", new ReplicaCatalogEntry("file:///output/f.c", "local"));
+        c.close();
+
+        // a partially written record from a client that died
+        File journal = new File(mRC.getPath() + JournaledFile.JOURNAL_SUFFIX);
+        try (PrintWriter pw = new PrintWriter(new FileWriter(journal, true))) {
+            pw.print("{\"op\":\"insert\",\"lfn\":\"f.d");
+        }
+
+        c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        assertEquals("file:///output/f.c", c.lookup("f.c", "local"));
+        assertTrue(c.lookup("f.d").isEmpty());
+        c.insert("f.e", new ReplicaCatalogEntry("file:///output/f.e", "local"));
+        c.close();
+
+        // records appended after the partial record are not lost
+        c = connect(JournaledFile.DEFAULT_COMPACT_SIZE);
+        assertEquals("file:///output/f.e", c.lookup("f.e", "local"));
+        c.close();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : mDir.listFiles()) {
+            f.delete();
+        }
+        mDir.delete();
+    }
+
+    private JournaledFile connect(long compactSize) {
+        JournaledFile c = new JournaledFile();
+        Properties props = new Properties();
+        props.setProperty("file", mRC.getPath());
+        props.setProperty(JournaledFile.COMPACT_SIZE_KEY, Long.toString(compactSize));
+        assertTrue(c.connect(props));
+        return c;
+    }
+}
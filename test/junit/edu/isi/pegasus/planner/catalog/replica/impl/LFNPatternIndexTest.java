@@ -0,0 +1,137 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.*;
+
+/**
+ * Test class to test the index over the regular expressions of the Regex replica catalog.
+ *
+ * @author Karan Vahi
+ */
+public class LFNPatternIndexTest {
+
+    private static final String[] EXPRESSIONS = {
+        "input/f\\.([0-9]+)\\.txt",
+        "input/.*",
+        ".*\\.dat",
+        "(\\w+)_f[xyz]_(\\d+)\\.sgt.*",
+        "^run[0-9]{2,3}/out\\.log$",
+        "a|b",
+        "ab?c",
+        "(?i)case",
+        "x\\Q.\\E",
+        "data[.]bin",
+        "lit",
+        "input/f\\.1\\.txt"
+    };
+
+    @Test
+    public void testLiterals() {
+        assertLiterals("input/f\\.([0-9]+)\\.txt", "input/f.", ".txt");
+        assertLiterals(".*\\.dat", "", ".dat");
+        assertLiterals("(\\w+)_f[xyz]_(\\d+)\\.sgt.*", "", "");
+        assertLiterals("^run[0-9]{2,3}/out\\.log$", "run", "/out.log");
+        assertLiterals("ab?c", "a", "c");
+        assertLiterals("lit", "lit", "lit");
+        // not understood or alternations at the top level
+        assertLiterals("a|b", "", "");
+        assertLiterals("(?i)case", "", "");
+        assertLiterals("x\\Q.\\E", "", "");
+        assertLiterals("f(a|b)g", "f", "g");
+    }
+
+    @Test
+    public void testCandidatesInOrder() {
+        LFNPatternIndex index = index();
+        assertEquals(
+                Arrays.asList(
+                        "input/f\\.([0-9]+)\\.txt",
+                        "input/.*",
+                        "(\\w+)_f[xyz]_(\\d+)\\.sgt.*",
+                        "a|b",
+                        "(?i)case",
+                        "x\\Q.\\E",
+                        "input/f\\.1\\.txt"),
+                index.candidates("input/f.1.txt"));
+        assertFalse(index.candidates("other.txt").contains("input/.*"));
+        assertTrue(index.candidates("other.dat").contains(".*\\.dat"));
+    }
+
+    @Test
+    public void testSameMatchesAsAllExpressions() {
+        LFNPatternIndex index = index();
+        String[] lfns = {
+            "input/f.1.txt",
+            "input/f.22.txt",
+            "input/x",
+            "input/",
+            "y.dat",
+            ".dat",
+            "dat",
+            "TEST_fy_3810.sgt.md5",
+            "run12/out.log",
+            "run1234/out.log",
+            "a",
+            "b",
+            "ac",
+            "abc",
+            "abbc",
+            "CASE",
+            "x.",
+            "data.bin",
+            "dataxbin",
+            "lit",
+            "li",
+            "",
+            "input/f.1.txtx"
+        };
+        for (String lfn : lfns) {
+            List<String> expected = new ArrayList<String>();
+            for (String expression : EXPRESSIONS) {
+                if (Pattern.compile(expression).matcher(lfn).matches()) {
+                    expected.add(expression);
+                }
+            }
+            List<String> actual = new ArrayList<String>();
+            for (String expression : index.candidates(lfn)) {
+                if (Pattern.compile(expression).matcher(lfn).matches()) {
+                    actual.add(expression);
+                }
+            }
+            assertEquals(lfn, expected, actual);
+        }
+    }
+
+    private LFNPatternIndex index() {
+        LFNPatternIndex index = new LFNPatternIndex();
+        for (String expression : EXPRESSIONS) {
+            index.add(expression, Pattern.compile(expression));
+        }
+        assertEquals(EXPRESSIONS.length, index.size());
+        return index;
+    }
+
+    private void assertLiterals(String expression, String prefix, String suffix) {
+        String[] literals = LFNPatternIndex.literals(Pattern.compile(expression));
+        assertEquals(expression, prefix, literals[0]);
+        assertEquals(expression, suffix, literals[1]);
+    }
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
 import org.junit.*;
 
 /**
@@ -144,6 +145,25 @@ public class RegexRCTest {
         assertTrue(c.contains(new ReplicaCatalogEntry("b")));
     }
 
+    @Test
+    public void firstMatchingRegexWins() {
+        Map<String, String> attr = new HashMap<String, String>();
+        attr.put("regex", "true");
+        mRegex.insert(".*\\.dat", new ReplicaCatalogEntry("file:///any/[0]", attr));
+        mRegex.insert("input/(.*)\\.dat", new ReplicaCatalogEntry("file:///input/[1]", attr));
+        mRegex.insert("other/(.*)", new ReplicaCatalogEntry("file:///other/[1]", attr));
+
+        Collection<ReplicaCatalogEntry> c = mRegex.lookup("input/f.dat");
+        assertEquals(1, c.size());
+        assertEquals("file:///any/input/f.dat", c.iterator().next().getPFN());
+
+        c = mRegex.lookup("other/f.txt");
+        assertEquals(1, c.size());
+        assertEquals("file:///other/f.txt", c.iterator().next().getPFN());
+
+        assertEquals(0, mRegex.lookup("input/f.txt").size());
+    }
+
     @After
     public void tearDown() {
         mRCFile.delete();
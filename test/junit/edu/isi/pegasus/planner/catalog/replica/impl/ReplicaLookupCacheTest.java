@@ -0,0 +1,204 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.*;
+
+/**
+ * Test class to test the persistent cache of replica catalog lookups.
+ *
+ * @author Karan Vahi
+ */
+public class ReplicaLookupCacheTest {
+
+    private static final long TTL = 3600 * 1000;
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("rc-lookup-cache").toFile();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws IOException {
+        ReplicaLookupCache cache = cache("token", 100);
+        assertEquals(0, cache.load());
+        Set<String> misses = new HashSet<String>();
+        assertTrue(cache.lookup(lfns("f.a", "f.b", "f.c"), misses).isEmpty());
+        assertEquals(lfns("f.a", "f.b", "f.c"), misses);
+
+        Map<String, Collection<ReplicaCatalogEntry>> found = mappings("f.a", "f.b");
+        cache.put(misses, found);
+        cache.setFileSource(new File(mDir, "rc.txt"));
+        cache.save();
+
+        // a planner invocation later on
+        cache = cache("token", 100);
+        assertEquals(3, cache.load());
+        assertEquals(new File(mDir, "rc.txt").getAbsolutePath(), cache.getFileSource().getPath());
+        misses.clear();
+        Map<String, Collection<ReplicaCatalogEntry>> result =
+                cache.lookup(lfns("f.a", "f.b", "f.c", "f.d"), misses);
+        assertEquals(lfns("f.d"), misses);
+        // f.c is cached as not being in the catalog
+        assertEquals(lfns("f.a", "f.b"), result.keySet());
+        ReplicaCatalogEntry rce = result.get("f.a").iterator().next();
+        assertEquals("file:///local/f.a", rce.getPFN());
+        assertEquals("local", rce.getResourceHandle());
+        assertEquals("f.a", rce.getAttribute("checksum.value"));
+    }
+
+    @Test
+    public void testChangeToken() throws IOException {
+        ReplicaLookupCache cache = cache("token", 100);
+        cache.put(lfns("f.a"), mappings("f.a"));
+        cache.save();
+
+        assertEquals(1, cache("token", 100).load());
+        assertEquals(0, cache("modified", 100).load());
+
+        File rc = new File(mDir, "rc.txt");
+        assertNull(ReplicaLookupCache.getChangeToken(rc));
+        assertTrue(rc.createNewFile());
+        String token = ReplicaLookupCache.getChangeToken(rc);
+        assertNotNull(token);
+        assertTrue(rc.setLastModified(rc.lastModified() - 10000));
+        assertNotEquals(token, ReplicaLookupCache.getChangeToken(rc));
+
+        // the changes appended to the journal of the file change the token as well
+        token = ReplicaLookupCache.getChangeToken(rc);
+        File journal = new File(mDir, "rc.txt" + JournaledFile.JOURNAL_SUFFIX);
+        assertTrue(journal.createNewFile());
+        String journaled = ReplicaLookupCache.getChangeToken(rc);
+        assertNotEquals(token, journaled);
+        Files.write(journal.toPath(), "+ f.a file:///f.a\n".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(journaled, ReplicaLookupCache.getChangeToken(rc));
+    }
+
+    @Test
+    public void testExpiry() throws IOException {
+        ReplicaLookupCache cache = new ReplicaLookupCache(mDir, "catalog", "", -1, 100);
+        cache.put(lfns("f.a"), mappings("f.a"));
+        Set<String> misses = new HashSet<String>();
+        assertTrue(cache.lookup(lfns("f.a"), misses).isEmpty());
+        assertEquals(lfns("f.a"), misses);
+        cache.save();
+        assertEquals(0, new ReplicaLookupCache(mDir, "catalog", "", -1, 100).load());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws IOException {
+        ReplicaLookupCache cache = cache("token", 3);
+        cache.put(lfns("f.a", "f.b", "f.c"), mappings("f.a", "f.b", "f.c"));
+        // f.a is now the most recently looked up
+        cache.lookup(lfns("f.a"), new HashSet<String>());
+        cache.put(lfns("f.d"), mappings("f.d"));
+        cache.save();
+
+        cache = cache("token", 3);
+        assertEquals(3, cache.load());
+        Set<String> misses = new HashSet<String>();
+        cache.lookup(lfns("f.a", "f.b", "f.c", "f.d"), misses);
+        assertEquals(lfns("f.b"), misses);
+    }
+
+    @Test
+    public void testRegisterAfterMissWithoutChangeToken() throws IOException {
+        // a database catalog, that has no change token
+        ReplicaLookupCache cache = cache("", 100);
+        assertEquals(0, cache.load());
+        Set<String> misses = new HashSet<String>();
+        cache.lookup(lfns("f.a", "f.b"), misses);
+        cache.put(misses, mappings("f.a"));
+        cache.save();
+
+        // f.b is registered in the catalog before the next planner invocation, that has to
+        // look it up in the catalog again
+        cache = cache("", 100);
+        assertEquals(1, cache.load());
+        misses.clear();
+        Map<String, Collection<ReplicaCatalogEntry>> result =
+                cache.lookup(lfns("f.a", "f.b"), misses);
+        assertEquals(lfns("f.a"), result.keySet());
+        assertEquals(lfns("f.b"), misses);
+        cache.put(misses, mappings("f.b"));
+        cache.save();
+
+        cache = cache("", 100);
+        assertEquals(2, cache.load());
+        misses.clear();
+        result = cache.lookup(lfns("f.a", "f.b"), misses);
+        assertTrue(misses.isEmpty());
+        assertEquals("file:///local/f.b", result.get("f.b").iterator().next().getPFN());
+    }
+
+    @Test
+    public void testMissReplacesMappingWithoutChangeToken() throws IOException {
+        ReplicaLookupCache cache = cache("", 100);
+        cache.put(lfns("f.a"), mappings("f.a"));
+        // the mapping is deleted from the catalog, and the LFN looked up again after it expired
+        cache.put(lfns("f.a"), mappings());
+        Set<String> misses = new HashSet<String>();
+        assertTrue(cache.lookup(lfns("f.a"), misses).isEmpty());
+        assertEquals(lfns("f.a"), misses);
+        assertEquals(0, cache.size());
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : mDir.listFiles()) {
+            f.delete();
+        }
+        mDir.delete();
+    }
+
+    private ReplicaLookupCache cache(String token, int maxEntries) {
+        return new ReplicaLookupCache(mDir, "catalog", token, TTL, maxEntries);
+    }
+
+    private static Set<String> lfns(String... lfns) {
+        Set<String> s = new LinkedHashSet<String>();
+        for (String lfn : lfns) {
+            s.add(lfn);
+        }
+        return s;
+    }
+
+    private static Map<String, Collection<ReplicaCatalogEntry>> mappings(String... lfns) {
+        Map<String, Collection<ReplicaCatalogEntry>> m =
+                new HashMap<String, Collection<ReplicaCatalogEntry>>();
+        for (String lfn : lfns) {
+            ReplicaCatalogEntry rce = new ReplicaCatalogEntry("file:///local/" + lfn, "local");
+            rce.addAttribute("checksum.value", lfn);
+            Set<ReplicaCatalogEntry> rces = new HashSet<ReplicaCatalogEntry>();
+            rces.add(rce);
+            m.put(lfn, rces);
+        }
+        return m;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.site;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.classes.Profile;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Test class to test the cache of the entries loaded from site catalogs.
+ *
+ * @author Karan Vahi
+ */
+public class SiteCatalogCacheTest {
+
+    @Test
+    public void testEntriesAreCloned() {
+        SiteCatalogCache cache = new SiteCatalogCache();
+        assertNull(cache.get("catalog"));
+
+        List<SiteCatalogEntry> loaded = entries("local", "condorpool");
+        cache.put("catalog", loaded);
+        // the planner modifies the entries it loaded
+        loaded.get(0).addProfile(new Profile(Profile.ENV, "JAVA_HOME", "/usr"));
+
+        List<SiteCatalogEntry> first = cache.get("catalog");
+        assertEquals(2, first.size());
+        assertEquals("local", first.get(0).getSiteHandle());
+        assertEquals("condorpool", first.get(1).getSiteHandle());
+        assertNotSame(loaded.get(0), first.get(0));
+        assertTrue(first.get(0).getProfiles().get(Profiles.NAMESPACES.env).isEmpty());
+
+        first.get(1).addProfile(new Profile(Profile.ENV, "JAVA_HOME", "/usr"));
+        List<SiteCatalogEntry> second = cache.get("catalog");
+        assertNotSame(first.get(1), second.get(1));
+        assertTrue(second.get(1).getProfiles().get(Profiles.NAMESPACES.env).isEmpty());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        SiteCatalogCache cache = new SiteCatalogCache(2);
+        cache.put("a", entries("local"));
+        cache.put("b", entries("local"));
+        // a is now the most recently used
+        assertNotNull(cache.get("a"));
+        cache.put("c", entries("local"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    private static List<SiteCatalogEntry> entries(String... sites) {
+        List<SiteCatalogEntry> entries = new LinkedList<SiteCatalogEntry>();
+        for (String site : sites) {
+            entries.add(new SiteCatalogEntry(site));
+        }
+        return entries;
+    }
+}
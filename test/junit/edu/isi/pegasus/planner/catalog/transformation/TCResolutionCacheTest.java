@@ -0,0 +1,155 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.transformation;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.util.Separator;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
+import edu.isi.pegasus.planner.catalog.transformation.TCResolutionCache.Resolution;
+import edu.isi.pegasus.planner.catalog.transformation.TCResolutionCache.ResolvedEntry;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TCType;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.*;
+
+/**
+ * Test class to test the cache of the resolutions of transformations on sites.
+ *
+ * @author Karan Vahi
+ */
+public class TCResolutionCacheTest {
+
+    private CountingMapper mMapper;
+
+    private TCResolutionCache mCache;
+
+    @Before
+    public void setUp() {
+        mMapper = new CountingMapper(new PegasusBag());
+        mMapper.add(entry("keg", "condorpool", TCType.INSTALLED, "/usr/bin/keg"));
+        mMapper.add(entry("keg", "condorpool", TCType.STAGEABLE, "http://example.com/keg"));
+        mMapper.add(entry("keg", "local", TCType.STAGEABLE, "file:///opt/keg"));
+        mCache = new TCResolutionCache(mMapper);
+    }
+
+    @Test
+    public void testResolutionsAreShared() {
+        Resolution first = mCache.resolve("pegasus", "keg", "1.0", "condorpool", "Installed");
+        for (int i = 0; i < 10; i++) {
+            assertSame(first, mCache.resolve("pegasus", "keg", "1.0", "condorpool", "Installed"));
+        }
+        assertEquals(1, mMapper.mLookups);
+
+        // a different selector or site is a different resolution
+        Resolution staged = mCache.resolve("pegasus", "keg", "1.0", "condorpool", "Staged");
+        Resolution local = mCache.resolve("pegasus", "keg", "1.0", "local", "Installed");
+        assertNotSame(first, staged);
+        assertNotSame(first, local);
+        assertEquals(3, mCache.size());
+    }
+
+    @Test
+    public void testSelection() {
+        Resolution installed = mCache.resolve("pegasus", "keg", "1.0", "condorpool", "Installed");
+        assertTrue(installed.isMapped());
+        assertEquals("/usr/bin/keg", installed.select().getEntry().getPhysicalTransformation());
+
+        Resolution staged = mCache.resolve("pegasus", "keg", "1.0", "condorpool", "Staged");
+        assertEquals(
+                "http://example.com/keg", staged.select().getEntry().getPhysicalTransformation());
+
+        // the random selector is called for each job
+        Resolution random = mCache.resolve("pegasus", "keg", "1.0", "condorpool", "Random");
+        Set<String> pfns = new HashSet<String>();
+        for (int i = 0; i < 100; i++) {
+            pfns.add(random.select().getEntry().getPhysicalTransformation());
+        }
+        assertEquals(2, pfns.size());
+
+        // mapped, but nothing the selector can pick
+        Resolution none = mCache.resolve("pegasus", "keg", "1.0", "local", "Installed");
+        assertTrue(none.isMapped());
+        assertNull(none.select());
+
+        Resolution unmapped = mCache.resolve("pegasus", "keg", "1.0", "unknown", "Installed");
+        assertFalse(unmapped.isMapped());
+        assertNull(unmapped.select());
+    }
+
+    @Test
+    public void testProfilesSameAsEntry() {
+        TransformationCatalogEntry entry =
+                entry("keg", "condorpool", TCType.INSTALLED, "/usr/bin/keg");
+        entry.addProfile(new Profile(Profile.VDS, Pegasus.RUNTIME_KEY, "100"));
+        entry.addProfile(new Profile(Profile.ENV, "KEG_HOME", "/usr"));
+        entry.addProfile(new Profile(Profile.CONDOR, "request_memory", "1024"));
+        ResolvedEntry resolved = new ResolvedEntry(entry);
+        List<Profile> env = resolved.getProfiles(Profiles.NAMESPACES.env);
+        assertEquals(1, env.size());
+        assertNull(resolved.getProfiles(Profiles.NAMESPACES.dagman));
+
+        Job expected = new Job();
+        expected.updateProfiles(entry);
+        Job actual = new Job();
+        actual.updateProfiles(resolved);
+        assertEquals(expected.vdsNS.toString(), actual.vdsNS.toString());
+        assertEquals(expected.envVariables.toString(), actual.envVariables.toString());
+        assertEquals(expected.condorVariables.toString(), actual.condorVariables.toString());
+        assertEquals("100", actual.vdsNS.getStringValue(Pegasus.RUNTIME_KEY));
+    }
+
+    private static TransformationCatalogEntry entry(
+            String name, String site, TCType type, String pfn) {
+        TransformationCatalogEntry entry = new TransformationCatalogEntry("pegasus", name, "1.0");
+        entry.setResourceId(site);
+        entry.setType(type);
+        entry.setPhysicalTransformation(pfn);
+        return entry;
+    }
+
+    /** A mapper over a fixed set of entries, that counts the lookups made against it. */
+    private static class CountingMapper extends Mapper {
+
+        private int mLookups;
+
+        private CountingMapper(PegasusBag bag) {
+            super(bag);
+            mLookups = 0;
+        }
+
+        private void add(TransformationCatalogEntry entry) {
+            mTCMap.setSiteTCEntries(
+                    Separator.combine(entry.getLogicalNamespace(), entry.getLogicalName(), "1.0"),
+                    entry.getResourceId(),
+                    entry);
+        }
+
+        @SuppressWarnings("rawtypes")
+        public Map getSiteMap(String namespace, String name, String version, List siteids) {
+            mLookups++;
+            return mTCMap.getSitesTCEntries(Separator.combine(namespace, name, version), siteids);
+        }
+
+        public String getMode() {
+            return "Counting Mapper";
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the PlannerDaemon, checking that the workflows planned one after the other by a
+ * daemon each see the configuration of their own request.
+ *
+ * @author Karan Vahi
+ */
+public class PlannerDaemonTest {
+
+    /** The property the planning runs report the value of. */
+    private static final String TEST_PROPERTY = "pegasus.daemon.test";
+
+    /** The property for the delimiter in the names of the staged executables. */
+    private static final String DELIMITER_PROPERTY = "pegasus.transfer.staging.delimiter";
+
+    private File mDirectory;
+
+    private LogManager mLogger;
+
+    public PlannerDaemonTest() {}
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("pegasus-plan-daemon").toFile();
+        mLogger = new DefaultTestSetup().loadLogger(PegasusProperties.nonSingletonInstance());
+        mLogger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        mLogger.logEventStart("test.planner.client.daemon", "directory", mDirectory.getName());
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        for (File f : mDirectory.listFiles()) {
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void testRequestsWithDifferentProperties() throws Exception {
+        final RecordingDaemon daemon = new RecordingDaemon(mDirectory, mLogger);
+        daemon.start();
+        Thread server =
+                new Thread(
+                        new Runnable() {
+                            public void run() {
+                                try {
+                                    daemon.serve();
+                                } catch (IOException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        });
+        server.start();
+        try {
+            List<String> first = new ArrayList<String>();
+            first.add("-D" + DELIMITER_PROPERTY + "=_");
+            first.add("-D");
+            first.add(TEST_PROPERTY + "=first");
+            first.add("--dax");
+            first.add("first.yml");
+            assertEquals(PlannerDaemon.EXIT_RESPONSE + " 0", this.request(first));
+
+            List<String> second = new ArrayList<String>();
+            second.add("-D" + TEST_PROPERTY + "=second");
+            second.add("--dax");
+            second.add("second.yml");
+            assertEquals(PlannerDaemon.EXIT_RESPONSE + " 0", this.request(second));
+        } finally {
+            server.join(30000);
+            daemon.stop();
+        }
+
+        assertEquals(2, daemon.mRuns.size());
+        Map<String, Object> first = daemon.mRuns.get(0);
+        Map<String, Object> second = daemon.mRuns.get(1);
+        assertEquals("[--dax, first.yml]", first.get("args"));
+        assertEquals("first", first.get(TEST_PROPERTY));
+        assertEquals("pegasus_keg_1_0", first.get("staged"));
+        assertEquals("[--dax, second.yml]", second.get("args"));
+        assertEquals("second", second.get(TEST_PROPERTY));
+        // the delimiter of the first request does not carry over
+        assertEquals("pegasus-keg-1_0", second.get("staged"));
+        assertNotSame(first.get("logger"), second.get("logger"));
+
+        // the properties of the requests are not left behind
+        assertNull(System.getProperty(TEST_PROPERTY));
+        assertNull(System.getProperty(DELIMITER_PROPERTY));
+    }
+
+    @Test
+    public void testRequestWhilePlanning() throws Exception {
+        final CountDownLatch planning = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingDaemon daemon =
+                new RecordingDaemon(mDirectory, mLogger) {
+                    protected int runPlanner(String[] args) {
+                        planning.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return super.runPlanner(args);
+                    }
+                };
+        daemon.start();
+        Thread server =
+                new Thread(
+                        new Runnable() {
+                            public void run() {
+                                try {
+                                    daemon.serve();
+                                } catch (IOException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        });
+        server.start();
+        final List<String> first = new ArrayList<String>();
+        first.add("--dax");
+        first.add("first.yml");
+        final List<String> responses = new LinkedList<String>();
+        Thread client =
+                new Thread(
+                        new Runnable() {
+                            public void run() {
+                                try {
+                                    responses.add(request(first));
+                                } catch (IOException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        });
+        client.start();
+        try {
+            assertTrue(planning.await(30, TimeUnit.SECONDS));
+
+            // the request does not wait for the one being planned
+            List<String> second = new ArrayList<String>();
+            second.add("--dax");
+            second.add("second.yml");
+            String response = this.request(second);
+            assertNotNull(response);
+            assertTrue(response, response.startsWith(PlannerDaemon.REJECT_RESPONSE + " "));
+        } finally {
+            release.countDown();
+            client.join(30000);
+            server.join(30000);
+            daemon.stop();
+        }
+
+        // and the daemon does not exit while a request is being planned
+        assertEquals(1, daemon.mRuns.size());
+        assertEquals("[--dax, first.yml]", daemon.mRuns.get(0).get("args"));
+        assertEquals(1, responses.size());
+        assertEquals(PlannerDaemon.EXIT_RESPONSE + " 0", responses.get(0));
+    }
+
+    /**
+     * Sends a request to the daemon, the way the client does.
+     *
+     * @param args the arguments to pegasus-plan
+     * @return the response
+     */
+    private String request(List<String> args) throws IOException {
+        String[] state =
+                new String(
+                                Files.readAllBytes(
+                                        new File(mDirectory, PlannerDaemon.STATE_FILENAME)
+                                                .toPath()),
+                                StandardCharsets.UTF_8)
+                        .trim()
+                        .split(" ");
+        try (Socket socket =
+                new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state[0]))) {
+            PrintWriter out =
+                    new PrintWriter(
+                            new OutputStreamWriter(
+                                    socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.print(PlannerDaemon.PROTOCOL_VERSION + "\n");
+            out.print(state[1] + "\n");
+            out.print(mDirectory.getAbsolutePath() + "\n");
+            out.print(args.size() + "\n");
+            for (String arg : args) {
+                out.print(arg + "\n");
+            }
+            out.flush();
+            BufferedReader in =
+                    new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            return in.readLine();
+        }
+    }
+
+    /** A daemon that records what each planning run sees, instead of planning. */
+    private static class RecordingDaemon extends PlannerDaemon {
+
+        private final List<Map<String, Object>> mRuns = new LinkedList<Map<String, Object>>();
+
+        private RecordingDaemon(File directory, LogManager logger) {
+            super(directory, 1, logger);
+        }
+
+        protected int runPlanner(String[] args) {
+            Map<String, Object> run = new HashMap<String, Object>();
+            List<String> list = new ArrayList<String>();
+            for (String arg : args) {
+                list.add(arg);
+            }
+            run.put("args", list.toString());
+            run.put(
+                    TEST_PROPERTY,
+                    PegasusProperties.nonSingletonInstance().getProperty(TEST_PROPERTY));
+            run.put("staged", Job.getStagedExecutableBaseName("pegasus", "keg", "1.0"));
+            run.put("logger", LogManagerFactory.loadSingletonInstance());
+            mRuns.add(run);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the runtime based bin packing.
+ *
+ * @author Rajiv Mayani
+ */
+public class BinPackerTest {
+
+    private LogManager mLogger;
+
+    private BinPacker mPacker;
+
+    @Before
+    public void setUp() {
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.logEventStart("test.pegasus.cluster", "test", "binpacker");
+        mPacker = new BinPacker(mLogger);
+    }
+
+    @Test
+    public void testMaxRunTime() {
+        List<Job> jobs = createJobs(50, 40, 30, 30, 20, 20, 10);
+
+        List<List<Job>> bins = mPacker.pack(jobs, 60d);
+        // 50+10, 40+20, 30+30, 20
+        assertEquals(4, bins.size());
+        assertEquals(60d, runtime(bins.get(0)), 0);
+        assertEquals(60d, runtime(bins.get(1)), 0);
+        assertEquals(60d, runtime(bins.get(2)), 0);
+        assertEquals(20d, runtime(bins.get(3)), 0);
+        assertEquals(jobs.size(), count(bins));
+    }
+
+    @Test
+    public void testOversizedJobsAreNotClustered() {
+        List<Job> jobs = createJobs(100, 30, 20);
+
+        List<List<Job>> bins = mPacker.pack(jobs, 60d);
+        assertEquals(1, bins.size());
+        assertEquals(2, count(bins));
+        assertEquals(50d, runtime(bins.get(0)), 0);
+    }
+
+    @Test
+    public void testFractionalRunTimes() {
+        // an int comparison of the differences would treat these as equal
+        List<Job> jobs = createJobs(0.25, 0.75, 0.5);
+
+        List<List<Job>> bins = mPacker.pack(jobs, 3);
+        assertEquals(3, bins.size());
+        assertEquals("0.75", bins.get(0).get(0).vdsNS.get(Pegasus.RUNTIME_KEY));
+        assertEquals("0.5", bins.get(1).get(0).vdsNS.get(Pegasus.RUNTIME_KEY));
+        assertEquals("0.25", bins.get(2).get(0).vdsNS.get(Pegasus.RUNTIME_KEY));
+    }
+
+    @Test
+    public void testNumBins() {
+        List<Job> jobs = new ArrayList<Job>();
+        for (int i = 1; i <= 100; i++) {
+            jobs.add(createJob(i, Integer.toString(i)));
+        }
+
+        List<List<Job>> bins = mPacker.pack(jobs, 7);
+        assertEquals(7, bins.size());
+        assertEquals(jobs.size(), count(bins));
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (List<Job> bin : bins) {
+            min = Math.min(min, runtime(bin));
+            max = Math.max(max, runtime(bin));
+        }
+        // the least loaded bin always gets the next job, so the bins differ
+        // by at most the largest runtime
+        assertTrue(max - min <= 100);
+
+        bins = mPacker.pack(jobs.subList(0, 3), 7);
+        assertEquals(3, bins.size());
+    }
+
+    @Test
+    public void testDeprecatedRunTimeKey() {
+        Job j = new Job();
+        j.setName("deprecated");
+        j.vdsNS.construct(Pegasus.DEPRECATED_RUNTIME_KEY, "42");
+        assertEquals(42d, mPacker.getRunTime(j), 0);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingRunTime() {
+        Job j = new Job();
+        j.setName("missing");
+        mPacker.getRunTime(j);
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        mLogger = null;
+        mPacker = null;
+    }
+
+    private List<Job> createJobs(double... runtimes) {
+        List<Job> jobs = new ArrayList<Job>();
+        for (int i = 0; i < runtimes.length; i++) {
+            String value =
+                    (runtimes[i] == Math.rint(runtimes[i]))
+                            ? Long.toString((long) runtimes[i])
+                            : Double.toString(runtimes[i]);
+            jobs.add(createJob(i, value));
+        }
+        return jobs;
+    }
+
+    private Job createJob(int i, String runtime) {
+        Job j = new Job();
+        j.setName("job_" + i);
+        j.vdsNS.construct(Pegasus.RUNTIME_KEY, runtime);
+        return j;
+    }
+
+    private double runtime(List<Job> bin) {
+        double time = 0;
+        for (Job j : bin) {
+            time += Double.parseDouble((String) j.vdsNS.get(Pegasus.RUNTIME_KEY));
+        }
+        return time;
+    }
+
+    private int count(List<List<Job>> bins) {
+        int count = 0;
+        for (List<Job> bin : bins) {
+            count += bin.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.generator.condor;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.classes.SysInfo;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the CondorGenerator, checking that the submit files and the .dag file written out
+ * on a worker pool are the same as the ones written out sequentially.
+ *
+ * @author Karan Vahi
+ */
+public class CondorGeneratorTest {
+
+    private static final String DEFAULT_SITE_NAME = "condor_pool";
+
+    private static final Profile PEGASUS_HOME = new Profile("env", "PEGASUS_HOME", "/usr/");
+
+    private static final Profile CONDOR_STYLE =
+            new Profile("pegasus", Pegasus.STYLE_KEY, Pegasus.CONDOR_STYLE);
+
+    /** The number of levels in the generated workflow. */
+    private static final int LEVELS = 5;
+
+    /** The number of jobs in each level of the generated workflow. */
+    private static final int WIDTH = 12;
+
+    private TestSetup mTestSetup;
+
+    private File mDirectory;
+
+    public CondorGeneratorTest() {}
+
+    @Before
+    public void setUp() throws IOException {
+        mTestSetup = new DefaultTestSetup();
+        mDirectory = Files.createTempDirectory("pegasus-condor-generator").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    @Test
+    public void testParallelOutputMatchesSequential() throws Exception {
+        Map<String, String> sequential = this.generate("sequential", 1);
+        Map<String, String> parallel = this.generate("parallel", 4);
+
+        // a submit file for every job, and the .dag file
+        assertTrue(sequential.containsKey("diamond-0.dag"));
+        assertTrue(sequential.size() > LEVELS * WIDTH);
+        assertEquals(sequential.keySet(), parallel.keySet());
+        for (Map.Entry<String, String> entry : sequential.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue(), parallel.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Generates the code for the test workflow in a fresh submit directory.
+     *
+     * @param name the name of the submit directory
+     * @param threads the value for pegasus.code.generator.threads
+     * @return map indexed by the basename of the .sub and .dag files written out, to their contents
+     *     with the submit directory replaced by a placeholder
+     */
+    private Map<String, String> generate(String name, int threads) throws Exception {
+        File submitDir = new File(mDirectory, name);
+        submitDir.mkdirs();
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.code.generator.threads", Integer.toString(threads));
+        props.setPropertiesFileBackend(submitDir.getAbsolutePath());
+        LogManager logger = mTestSetup.loadLogger(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("test.code.generator.condor", "generate", name);
+
+        PlannerOptions options = new PlannerOptions();
+        options.setSubmitDirectory(submitDir);
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+
+        SiteStore store = new SiteStore();
+        SiteCatalogEntry entry = new SiteCatalogEntry();
+        entry.setSiteHandle(DEFAULT_SITE_NAME);
+        entry.setArchitecture(SysInfo.Architecture.x86_64);
+        entry.setOS(SysInfo.OS.linux);
+        entry.addProfile(PEGASUS_HOME);
+        store.addEntry(entry);
+        store.setForPlannerUse(props, options);
+        bag.add(PegasusBag.SITE_STORE, store);
+
+        CondorGenerator generator = new NoDAGManSubmitGenerator();
+        generator.initialize(bag);
+        generator.generateCode(this.createWorkflow());
+        logger.logEventCompletion();
+
+        Map<String, String> result = new TreeMap<String, String>();
+        for (File f : submitDir.listFiles()) {
+            if (f.getName().endsWith(".sub") || f.getName().endsWith(".dag")) {
+                String contents = new String(Files.readAllBytes(f.toPath()));
+                result.put(f.getName(), contents.replace(submitDir.getAbsolutePath(), "@DIR@"));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a layered workflow, where every job consumes the outputs of two jobs in the previous
+     * level. Every other job has no kickstart, and every third job a priority.
+     *
+     * @return the workflow
+     */
+    private ADag createWorkflow() {
+        ADag dag = new ADag();
+        dag.setLabel("diamond");
+        dag.setIndex("0");
+        dag.setWorkflowUUID("00000000-0000-0000-0000-000000000001");
+        dag.setRootWorkflowUUID("00000000-0000-0000-0000-000000000001");
+        for (int l = 0; l < LEVELS; l++) {
+            for (int w = 0; w < WIDTH; w++) {
+                Job job = new Job();
+                String id = id(l, w);
+                job.setName(id);
+                job.setLogicalID(id);
+                job.setTransformation("diamond", "level" + l, "1.0");
+                job.setRemoteExecutable("/bin/echo");
+                job.setArguments("-o " + id + ".out");
+                job.setSiteHandle(DEFAULT_SITE_NAME);
+                job.setJobType(Job.COMPUTE_JOB);
+                job.addProfile(CONDOR_STYLE);
+                job.addOutputFile(new PegasusFile(id + ".out"));
+                if (l > 0) {
+                    job.addInputFile(new PegasusFile(id(l - 1, w) + ".out"));
+                    job.addInputFile(new PegasusFile(id(l - 1, (w + 1) % WIDTH) + ".out"));
+                }
+                if (w % 2 == 1) {
+                    job.addProfile(new Profile("pegasus", Pegasus.GRIDSTART_KEY, "None"));
+                }
+                if (w % 3 == 0) {
+                    job.addProfile(new Profile("condor", "priority", Integer.toString(w)));
+                }
+                dag.add(job);
+            }
+        }
+        for (int l = 1; l < LEVELS; l++) {
+            for (int w = 0; w < WIDTH; w++) {
+                dag.addNewRelation(id(l - 1, w), id(l, w));
+                dag.addNewRelation(id(l - 1, (w + 1) % WIDTH), id(l, w));
+            }
+        }
+        return dag;
+    }
+
+    /**
+     * A CondorGenerator that does not write out the .dag.condor.sub file, as that requires
+     * condor_submit_dag to be installed.
+     */
+    private static class NoDAGManSubmitGenerator extends CondorGenerator {
+
+        @Override
+        protected void writeOutDAGManSubmitFile(ADag dag, File dagFile) {}
+    }
+
+    private static String id(int level, int position) {
+        return "job_" + level + "_" + position;
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.gridstart;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
+import edu.isi.pegasus.planner.catalog.classes.SysInfo;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the PegasusLite wrappers, checking that the wrappers sourcing a shared prelude
+ * carry out the same steps as the ones with the prelude inlined.
+ *
+ * @author Karan Vahi
+ */
+public class PegasusLiteTest {
+
+    /** The execution sites, the jobs on the second one with a worker node directory. */
+    private static final String[] SITES = {"condor_pool", "scratch_pool"};
+
+    /** The worker node directory of the second site. */
+    private static final String WORKER_NODE_DIRECTORY = "/local/scratch";
+
+    /** The line in a wrapper that sources the shared prelude. */
+    private static final String SOURCE_PREFIX = ". " + PegasusLite.PEGASUS_LITE_PRELUDE_FILE_PREFIX;
+
+    private TestSetup mTestSetup;
+
+    private File mDirectory;
+
+    public PegasusLiteTest() {}
+
+    @Before
+    public void setUp() throws IOException {
+        mTestSetup = new DefaultTestSetup();
+        mDirectory = Files.createTempDirectory("pegasus-lite").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    @Test
+    public void testInlinePrelude() throws IOException {
+        File inline = new File(mDirectory, "inline");
+        PegasusLite lite = this.createPegasusLite(inline, false);
+        for (int i = 0; i < 4; i++) {
+            Job job = this.createJob(i);
+            assertTrue(lite.enable(job, true));
+            String wrapper = read(new File(inline, job.getID() + ".sh"));
+            assertFalse(wrapper.contains(SOURCE_PREFIX));
+            assertTrue(wrapper.contains("pegasus_lite_init\n"));
+            assertTrue(wrapper.contains("pegasus_lite_setup_work_dir\n"));
+            assertEquals(
+                    job.getSiteHandle().equals(SITES[1]),
+                    wrapper.contains(
+                            PegasusLite.WORKER_NODE_DIRECTORY_KEY + "=" + WORKER_NODE_DIRECTORY));
+            assertFalse(
+                    job.condorVariables
+                            .getIPFilesForTransfer()
+                            .contains(PegasusLite.PEGASUS_LITE_PRELUDE_FILE_PREFIX));
+        }
+        assertEquals(0, this.preludes(inline).length);
+    }
+
+    @Test
+    public void testSharedPrelude() throws IOException {
+        File inline = new File(mDirectory, "inline");
+        File shared = new File(mDirectory, "shared");
+        PegasusLite inlineLite = this.createPegasusLite(inline, false);
+        PegasusLite sharedLite = this.createPegasusLite(shared, true);
+        for (int i = 0; i < 4; i++) {
+            Job job = this.createJob(i);
+            assertTrue(inlineLite.enable(job, true));
+            String expected = read(new File(inline, job.getID() + ".sh"));
+
+            job = this.createJob(i);
+            assertTrue(sharedLite.enable(job, true));
+            String wrapper = read(new File(shared, job.getID() + ".sh"));
+
+            // the prelude is sourced instead of inlined
+            int start = wrapper.indexOf(SOURCE_PREFIX);
+            assertTrue(wrapper, start > 0);
+            int end = wrapper.indexOf('\n', start);
+            String name = wrapper.substring(start + 2, end);
+            File prelude = new File(shared, name);
+            assertTrue(job.condorVariables.getIPFilesForTransfer(), prelude.exists());
+            assertTrue(
+                    job.condorVariables
+                            .getIPFilesForTransfer()
+                            .contains(prelude.getAbsolutePath()));
+
+            // and with the prelude put back in place the wrapper is the inlined one
+            String contents = read(prelude);
+            contents = contents.substring(contents.indexOf('\n') + 1);
+            String comment = "# settings and set up shared by the jobs\n";
+            int line = wrapper.lastIndexOf(comment, start);
+            assertTrue(line > 0);
+            assertEquals(
+                    expected, wrapper.substring(0, line) + contents + wrapper.substring(end + 2));
+        }
+        // one prelude per site, shared by the jobs on the site
+        assertEquals(SITES.length, this.preludes(shared).length);
+    }
+
+    @Test
+    public void testPreludesOfInstancesSharingSubmitDirectory() throws IOException {
+        // the second instance disables the worker package checks, as the one for sub workflows
+        File shared = new File(mDirectory, "shared");
+        PegasusLite lite = this.createPegasusLite(shared, true);
+        Properties properties = new Properties();
+        properties.setProperty(
+                PegasusProperties.PEGASUS_TRANSFER_WORKER_PACKAGE_STRICT_PROPERTY, "false");
+        properties.setProperty(
+                PegasusProperties.PEGASUS_TRANSFER_WORKER_PACKAGE_AUTODOWNLOAD_PROPERTY, "false");
+        PegasusLite subLite = this.createPegasusLite(shared, true, properties);
+
+        Map<String, String> preludes = new HashMap<String, String>();
+        for (int i = 0; i < 4; i++) {
+            PegasusLite instance = (i < 2) ? lite : subLite;
+            Job job = this.createJob(i);
+            assertTrue(instance.enable(job, true));
+            String wrapper = read(new File(shared, job.getID() + ".sh"));
+            int start = wrapper.indexOf(SOURCE_PREFIX);
+            assertTrue(wrapper, start > 0);
+            String name = wrapper.substring(start + 2, wrapper.indexOf('\n', start));
+            preludes.put(job.getID(), name);
+        }
+        // every instance keeps its own preludes, that are not overwritten by the other
+        assertEquals(4, new HashSet<String>(preludes.values()).size());
+        assertEquals(4, this.preludes(shared).length);
+        for (Map.Entry<String, String> entry : preludes.entrySet()) {
+            String prelude = read(new File(shared, entry.getValue()));
+            boolean sub = entry.getKey().endsWith("_2") || entry.getKey().endsWith("_3");
+            assertEquals(
+                    entry.getKey(),
+                    !sub,
+                    prelude.contains("pegasus_lite_enforce_strict_wp_check=\"true\""));
+        }
+    }
+
+    /**
+     * Creates the PegasusLite implementation writing to a submit directory.
+     *
+     * @param submitDir the submit directory
+     * @param share the value for pegasus.gridstart.pegasuslite.prelude
+     * @return the initialized implementation
+     */
+    private PegasusLite createPegasusLite(File submitDir, boolean share) {
+        return this.createPegasusLite(submitDir, share, new Properties());
+    }
+
+    /**
+     * Creates the PegasusLite implementation writing to a submit directory.
+     *
+     * @param submitDir the submit directory
+     * @param share the value for pegasus.gridstart.pegasuslite.prelude
+     * @param properties the additional properties to set
+     * @return the initialized implementation
+     */
+    private PegasusLite createPegasusLite(File submitDir, boolean share, Properties properties) {
+        submitDir.mkdirs();
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        for (String key : properties.stringPropertyNames()) {
+            props.setProperty(key, properties.getProperty(key));
+        }
+        props.setProperty("pegasus.gridstart.pegasuslite.prelude", Boolean.toString(share));
+        props.setProperty("pegasus.data.configuration", "nonsharedfs");
+        LogManager logger = mTestSetup.loadLogger(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("test.code.gridstart.pegasuslite", "share", Boolean.toString(share));
+
+        PlannerOptions options = new PlannerOptions();
+        options.setSubmitDirectory(submitDir);
+
+        SiteStore store = new SiteStore();
+        for (String site : SITES) {
+            SiteCatalogEntry entry = new SiteCatalogEntry();
+            entry.setSiteHandle(site);
+            entry.setArchitecture(SysInfo.Architecture.x86_64);
+            entry.setOS(SysInfo.OS.linux);
+            entry.addProfile(
+                    new Profile(Profiles.NAMESPACES.env.toString(), "PEGASUS_HOME", "/usr"));
+            store.addEntry(entry);
+        }
+        store.setForPlannerUse(props, options);
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.SITE_STORE, store);
+
+        PegasusLite lite = new PegasusLite();
+        lite.initialize(bag, new ADag());
+        logger.logEventCompletion();
+        return lite;
+    }
+
+    /**
+     * Creates an auxiliary job, on one of the sites in turn.
+     *
+     * @param i the index of the job
+     * @return the job
+     */
+    private Job createJob(int i) {
+        Job job = new Job();
+        job.setName("job_" + i);
+        job.setTransformation("pegasus", "dirmanager", "");
+        job.setRemoteExecutable("/usr/bin/pegasus-transfer");
+        job.setArguments("-f");
+        job.setJobType(Job.CREATE_DIR_JOB);
+        job.setSiteHandle(SITES[i % SITES.length]);
+        job.vdsNS.construct(Pegasus.DATA_CONFIGURATION_KEY, "nonsharedfs");
+        if (job.getSiteHandle().equals(SITES[1])) {
+            job.envVariables.construct(
+                    PegasusLite.WORKER_NODE_DIRECTORY_KEY, WORKER_NODE_DIRECTORY);
+        }
+        return job;
+    }
+
+    private File[] preludes(File dir) {
+        return dir.listFiles(
+                (d, name) -> name.startsWith(PegasusLite.PEGASUS_LITE_PRELUDE_FILE_PREFIX));
+    }
+
+    private static String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
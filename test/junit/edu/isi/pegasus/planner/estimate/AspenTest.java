@@ -0,0 +1,281 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.estimate;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the Aspen estimator, using shell scripts as stub estimate clients that record
+ * their invocations in the models directory.
+ *
+ * @author Karan Vahi
+ */
+public class AspenTest {
+
+    /** The name of the file in the models directory the invocations are recorded in. */
+    private static final String INVOCATIONS_FILE = "invocations";
+
+    /** Writes the estimates for the key=value arguments passed, each prefixed by $prefix. */
+    private static final String ESTIMATE_FUNCTION =
+            "estimate() {\n"
+                    + "  size=0\n"
+                    + "  for kv in \"$@\"; do\n"
+                    + "    case \"$kv\" in size=*) size=${kv#size=} ;; esac\n"
+                    + "  done\n"
+                    + "  echo \"${prefix}runtime=$((size * 10))\"\n"
+                    + "  echo \"${prefix}memory=$((size * 2))\"\n"
+                    + "}\n";
+
+    /**
+     * Estimates either a batch of argument sets read from stdin, recording each of them, or the
+     * arguments passed.
+     */
+    private static final String BATCH_CLIENT =
+            "#!/bin/bash\n"
+                    + ESTIMATE_FUNCTION
+                    + "echo \"$*\" >> \"$ASPENPATH/"
+                    + INVOCATIONS_FILE
+                    + "\"\n"
+                    + "if [ \"$1\" = \"--batch\" ]; then\n"
+                    + "  i=0\n"
+                    + "  while read -r line; do\n"
+                    + "    echo \"< $line\" >> \"$ASPENPATH/"
+                    + INVOCATIONS_FILE
+                    + "\"\n"
+                    + "    prefix=\"$i \" estimate $line\n"
+                    + "    i=$((i + 1))\n"
+                    + "  done\n"
+                    + "else\n"
+                    + "  prefix= estimate \"$@\"\n"
+                    + "fi\n"
+                    + "exit 0\n";
+
+    /** Rejects the batch argument, the way a client predating the batch mode does. */
+    private static final String LEGACY_CLIENT =
+            "#!/bin/bash\n"
+                    + ESTIMATE_FUNCTION
+                    + "echo \"$*\" >> \"$ASPENPATH/"
+                    + INVOCATIONS_FILE
+                    + "\"\n"
+                    + "case \"$1\" in\n"
+                    + "  --*) echo \"unknown option $1\" 1>&2; exit 1 ;;\n"
+                    + "esac\n"
+                    + "prefix= estimate \"$@\"\n"
+                    + "exit 0\n";
+
+    private TestSetup mTestSetup;
+
+    private File mDirectory;
+
+    public AspenTest() {}
+
+    @Before
+    public void setUp() throws IOException {
+        mTestSetup = new DefaultTestSetup();
+        mDirectory = Files.createTempDirectory("pegasus-aspen").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    @Test
+    public void testBatchedEstimates() throws IOException {
+        Aspen aspen = this.createEstimator(BATCH_CLIENT);
+        List<Job> jobs = this.createJobs(1, 2, 1, 3, 2);
+        Map<String, Map<String, String>> estimates = aspen.getAllEstimates(jobs);
+
+        // the distinct argument sets are estimated by a single invocation
+        List<String> expected = new ArrayList<String>();
+        expected.add(Aspen.ASPEN_BATCH_ARGUMENT);
+        expected.add("< size=1 type=tr");
+        expected.add("< size=2 type=tr");
+        expected.add("< size=3 type=tr");
+        assertEquals(expected, this.invocations());
+        assertEquals(jobs.size(), estimates.size());
+        for (Job job : jobs) {
+            this.assertEstimates(job, estimates.get(job.getID()));
+        }
+    }
+
+    @Test
+    public void testPerJobFallback() throws IOException {
+        Aspen aspen = this.createEstimator(LEGACY_CLIENT);
+        List<Job> jobs = this.createJobs(1, 2, 1, 3);
+        Map<String, Map<String, String>> estimates = aspen.getAllEstimates(jobs);
+
+        // the rejected batch is followed by an invocation per distinct argument set
+        List<String> expected = new ArrayList<String>();
+        expected.add(Aspen.ASPEN_BATCH_ARGUMENT);
+        expected.add("size=1 type=tr");
+        expected.add("size=2 type=tr");
+        expected.add("size=3 type=tr");
+        assertEquals(expected, this.invocations());
+        for (Job job : jobs) {
+            this.assertEstimates(job, estimates.get(job.getID()));
+        }
+
+        // and the batch mode is not attempted again
+        jobs = this.createJobs(4, 5);
+        estimates = aspen.getAllEstimates(jobs);
+        expected.add("size=4 type=tr");
+        expected.add("size=5 type=tr");
+        assertEquals(expected, this.invocations());
+        for (Job job : jobs) {
+            this.assertEstimates(job, estimates.get(job.getID()));
+        }
+    }
+
+    @Test
+    public void testMemoization() throws IOException {
+        Aspen aspen = this.createEstimator(BATCH_CLIENT);
+        List<Job> jobs = this.createJobs(1, 1);
+        // the order the metadata is associated in does not matter
+        Job reordered = new Job();
+        reordered.setName("reordered");
+        reordered.addMetadata("type", "tr");
+        reordered.addMetadata("size", "1");
+        jobs.add(reordered);
+        for (Job job : jobs) {
+            assertEquals("10", aspen.getRuntime(job));
+            assertEquals("2", aspen.getMemory(job));
+        }
+        List<String> expected = new ArrayList<String>();
+        expected.add("size=1 type=tr");
+        assertEquals(expected, this.invocations());
+
+        // only the argument sets not estimated so far are sent in a batch
+        jobs.addAll(this.createJobs(2, 3));
+        Map<String, Map<String, String>> estimates = aspen.getAllEstimates(jobs);
+        expected.add(Aspen.ASPEN_BATCH_ARGUMENT);
+        expected.add("< size=2 type=tr");
+        expected.add("< size=3 type=tr");
+        assertEquals(expected, this.invocations());
+        for (Job job : jobs) {
+            this.assertEstimates(job, estimates.get(job.getID()));
+        }
+
+        // the estimates handed out are copies of the memoized ones
+        estimates.get(reordered.getID()).put("runtime", "0");
+        aspen.getAllEstimates(reordered).put("memory", "0");
+        this.assertEstimates(reordered, aspen.getAllEstimates(reordered));
+        assertEquals(expected, this.invocations());
+    }
+
+    /**
+     * Creates the estimator, calling out to a stub estimate client.
+     *
+     * @param script the contents of the estimate client
+     * @return the initialized estimator
+     */
+    private Aspen createEstimator(String script) throws IOException {
+        File bin = new File(mDirectory, "bin");
+        bin.mkdirs();
+        File client = new File(bin, Aspen.PEGASUS_ASPEN_CLIENT_NAME);
+        try (PrintWriter pw = new PrintWriter(client)) {
+            pw.print(script);
+        }
+        client.setExecutable(true);
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty(Aspen.ASPEN_BIN_PROPERTY_KEY, bin.getAbsolutePath());
+        props.setProperty(Aspen.ASPEN_MODELS_PROPERTY_KEY, mDirectory.getAbsolutePath());
+        LogManager logger = mTestSetup.loadLogger(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("test.estimate.aspen", "estimate", "0");
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+
+        Aspen aspen = new Aspen();
+        aspen.initialize(new ADag(), bag);
+        return aspen;
+    }
+
+    /**
+     * Creates jobs of the same transformation, with a size metadata attribute each.
+     *
+     * @param sizes the sizes of the jobs
+     * @return the jobs
+     */
+    private List<Job> createJobs(int... sizes) {
+        List<Job> jobs = new ArrayList<Job>();
+        for (int size : sizes) {
+            Job job = new Job();
+            job.setName("job_" + size + "_" + jobs.size());
+            job.addMetadata("size", Integer.toString(size));
+            job.addMetadata("type", "tr");
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    /**
+     * Asserts the estimates of a job are the ones the stub clients compute for its size.
+     *
+     * @param job the job
+     * @param estimates the estimates
+     */
+    private void assertEstimates(Job job, Map<String, String> estimates) {
+        int size = Integer.parseInt((String) job.getMetadata().get("size"));
+        assertNotNull(job.getID(), estimates);
+        assertEquals(job.getID(), 2, estimates.size());
+        assertEquals(job.getID(), Integer.toString(size * 10), estimates.get("runtime"));
+        assertEquals(job.getID(), Integer.toString(size * 2), estimates.get("memory"));
+    }
+
+    /**
+     * Returns the invocations of the estimate client so far.
+     *
+     * @return the arguments of each invocation
+     */
+    private List<String> invocations() throws IOException {
+        File f = new File(mDirectory, INVOCATIONS_FILE);
+        if (!f.exists()) {
+            return new ArrayList<String>();
+        }
+        return Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
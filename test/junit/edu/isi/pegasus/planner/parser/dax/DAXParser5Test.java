@@ -14,9 +14,11 @@ import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.WorkflowMetrics;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.parser.DAXParserFactory;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.test.DefaultTestSetup;
 import edu.isi.pegasus.planner.test.TestSetup;
 import java.io.File;
+import java.util.Iterator;
 import java.util.LinkedList;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -106,6 +108,23 @@ public class DAXParser5Test {
                 metrics.getNumDAXFiles(WorkflowMetrics.FILE_TYPE.total));
     }
 
+    @Test
+    public void testWorkflowDependencies() {
+        assertEquals("number of jobs ", 4, mParsedDAX.size());
+        int edges = 0;
+        int roots = 0;
+        int leaves = 0;
+        for (Iterator<GraphNode> it = mParsedDAX.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            edges += node.getChildren().size();
+            roots += node.getParents().isEmpty() ? 1 : 0;
+            leaves += node.getChildren().isEmpty() ? 1 : 0;
+        }
+        assertEquals("number of edges ", 4, edges);
+        assertEquals("number of root jobs ", 1, roots);
+        assertEquals("number of leaf jobs ", 1, leaves);
+    }
+
     @After
     public void tearDown() {
         mLogger = null;
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Unit tests for the multilevel partitioner.
+ *
+ * @author Karan Vahi
+ */
+public class MultilevelTest {
+
+    @Test
+    public void testChains() {
+        // 40 independent chains of 25 jobs, merged by a final job
+        Map<String, GraphNode> graph = new LinkedHashMap<String, GraphNode>();
+        GraphNode merge = add(graph, "merge", null);
+        for (int c = 0; c < 40; c++) {
+            GraphNode previous = null;
+            for (int i = 0; i < 25; i++) {
+                GraphNode node = add(graph, "c" + c + "_" + i, null);
+                if (previous != null) {
+                    edge(previous, node);
+                }
+                previous = node;
+            }
+            edge(previous, merge);
+        }
+
+        Recorder r = partition(graph, 4);
+        assertEquals(4, r.partitions.size());
+        int[] sizes = r.check(graph);
+        for (int size : sizes) {
+            assertTrue("Unbalanced partition of size " + size, size <= 1001 * 1.05 / 4 + 1);
+        }
+        // only the edges into the merge job should be cut
+        assertTrue("Cut too large " + r.cut(graph), r.cut(graph) <= 40);
+    }
+
+    @Test
+    public void testRandomGraph() {
+        Map<String, GraphNode> graph = new LinkedHashMap<String, GraphNode>();
+        Random random = new Random(42);
+        List<GraphNode> nodes = new ArrayList<GraphNode>();
+        for (int i = 0; i < 3000; i++) {
+            GraphNode node = add(graph, "j" + i, null);
+            // edges only go from earlier to later jobs
+            for (int p = 0; p < 2 && i > 0; p++) {
+                int parent = Math.max(0, i - 1 - random.nextInt(50));
+                edge(nodes.get(parent), node);
+            }
+            nodes.add(node);
+        }
+
+        Recorder r = partition(graph, 8);
+        assertEquals(8, r.partitions.size());
+        int[] sizes = r.check(graph);
+        for (int size : sizes) {
+            assertTrue("Unbalanced partition of size " + size, size <= 3000 * 1.05 / 8 + 1);
+        }
+    }
+
+    @Test
+    public void testRuntimeWeights() {
+        // a chain where the first job runs as long as all the others
+        Map<String, GraphNode> graph = new LinkedHashMap<String, GraphNode>();
+        GraphNode previous = null;
+        for (int i = 0; i < 10; i++) {
+            GraphNode node = add(graph, "j" + i, (i == 0) ? "900" : "100");
+            if (previous != null) {
+                edge(previous, node);
+            }
+            previous = node;
+        }
+
+        Recorder r = partition(graph, 2);
+        r.check(graph);
+        assertEquals(1, r.partitions.get(0).getSize());
+        assertEquals("j0", r.partitions.get(0).getNodes().get(0).getID());
+        assertEquals(9, r.partitions.get(1).getSize());
+    }
+
+    @Test
+    public void testJobWeights() {
+        // the nodes carry the weights of the jobs, as the ones constructed by DAX2Graph
+        Map<String, GraphNode> graph = new LinkedHashMap<String, GraphNode>();
+        GraphNode previous = null;
+        for (int i = 0; i < 10; i++) {
+            GraphNode node = add(graph, "j" + i, (i == 9) ? "900" : "100");
+            node.setContent(new JobWeight((Job) node.getContent()));
+            if (previous != null) {
+                edge(previous, node);
+            }
+            previous = node;
+        }
+
+        Recorder r = partition(graph, 2);
+        r.check(graph);
+        assertEquals(9, r.partitions.get(0).getSize());
+        assertEquals(1, r.partitions.get(1).getSize());
+        assertEquals("j9", r.partitions.get(1).getNodes().get(0).getID());
+
+        // only the files generated by the parent with a known size count
+        Job parent = new Job();
+        parent.addOutputFile(file("f.a", 2048));
+        parent.addOutputFile(file("f.b", -1));
+        Job child = new Job();
+        child.addInputFile(file("f.a", 2048));
+        child.addInputFile(file("f.b", -1));
+        child.addInputFile(file("f.c", 4096));
+        assertEquals(2048, new JobWeight(parent).getTransferSize(new JobWeight(child)));
+        assertEquals(0, new JobWeight(child).getTransferSize(new JobWeight(parent)));
+    }
+
+    private Recorder partition(Map<String, GraphNode> graph, int partitions) {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty(
+                "pegasus.partitioner.multilevel.partitions", Integer.toString(partitions));
+        GraphNode root = new GraphNode("dummy", "dummy");
+        Map<String, GraphNode> map = new HashMap<String, GraphNode>(graph);
+        map.put(root.getID(), root);
+        Partitioner p =
+                PartitionerFactory.loadInstance(
+                        props, root, map, PartitionerFactory.MULTILEVEL_PARTITIONING_CLASS);
+        Recorder r = new Recorder();
+        p.determinePartitions(r);
+        assertTrue(r.done);
+        return r;
+    }
+
+    private static GraphNode add(Map<String, GraphNode> graph, String id, String runtime) {
+        GraphNode node = null;
+        if (runtime == null) {
+            node = new GraphNode(id, "preprocess");
+        } else {
+            Job job = new Job();
+            job.setLogicalID(id);
+            job.vdsNS.construct(Pegasus.RUNTIME_KEY, runtime);
+            node = new GraphNode(id, job);
+        }
+        graph.put(id, node);
+        return node;
+    }
+
+    private static PegasusFile file(String lfn, double size) {
+        PegasusFile file = new PegasusFile(lfn);
+        file.setSize(size);
+        return file;
+    }
+
+    private static void edge(GraphNode parent, GraphNode child) {
+        parent.addChild(child);
+        child.addParent(parent);
+    }
+
+    /** Records the partitions and relations passed to the callback. */
+    private static class Recorder implements Callback {
+
+        List<Partition> partitions = new ArrayList<Partition>();
+
+        Map<String, List<String>> parents = new HashMap<String, List<String>>();
+
+        boolean done;
+
+        public void cbPartition(Partition partition) {
+            partitions.add(partition);
+        }
+
+        @SuppressWarnings("rawtypes")
+        public void cbParents(String child, List parents) {
+            List<String> ids = new ArrayList<String>();
+            for (Object parent : parents) {
+                ids.add((String) parent);
+            }
+            this.parents.put(child, ids);
+        }
+
+        public void cbDone() {
+            done = true;
+        }
+
+        /**
+         * Checks that every node is in exactly one partition, and that every edge between
+         * partitions is reported as a relation from an earlier to a later partition.
+         *
+         * @return the sizes of the partitions
+         */
+        int[] check(Map<String, GraphNode> graph) {
+            Map<String, Integer> index = this.index();
+            assertEquals(graph.keySet(), index.keySet());
+            int[] sizes = new int[partitions.size()];
+            for (GraphNode node : graph.values()) {
+                int p = index.get(node.getID());
+                sizes[p]++;
+                for (GraphNode child : node.getChildren()) {
+                    int q = index.get(child.getID());
+                    assertTrue(p <= q);
+                    if (p != q) {
+                        String id = partitions.get(q).getID();
+                        assertTrue(parents.get(id).contains(partitions.get(p).getID()));
+                    }
+                }
+            }
+            return sizes;
+        }
+
+        /** Returns the number of edges between partitions. */
+        int cut(Map<String, GraphNode> graph) {
+            Map<String, Integer> index = this.index();
+            int cut = 0;
+            for (GraphNode node : graph.values()) {
+                for (GraphNode child : node.getChildren()) {
+                    if (!index.get(node.getID()).equals(index.get(child.getID()))) {
+                        cut++;
+                    }
+                }
+            }
+            return cut;
+        }
+
+        private Map<String, Integer> index() {
+            Map<String, Integer> index = new HashMap<String, Integer>();
+            for (int p = 0; p < partitions.size(); p++) {
+                for (GraphNode node : partitions.get(p).getNodes()) {
+                    assertEquals(null, index.put(node.getID(), p));
+                }
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * Unit tests for the compact graph, mostly checking that it behaves like the MapGraph.
+ *
+ * @author Karan Vahi
+ */
+public class CompactGraphTest {
+
+    @Test
+    public void testEdges() {
+        Graph g = createGraph("a", "b", "c", "d");
+        g.addEdge("a", "b");
+        g.addEdge("a", "c");
+        g.addEdge("b", "d");
+        g.addEdge("c", "d");
+        // adding an edge again is a noop
+        g.addEdge("c", "d");
+
+        GraphNode d = g.getNode("d");
+        assertEquals(ids("b", "c"), ids(d.getParents()));
+        assertTrue(d.getChildren().isEmpty());
+        assertTrue(d.getParents().contains(g.getNode("b")));
+        // nodes are equal if the ids match
+        assertTrue(d.getParents().contains(new GraphNode("b", "b")));
+
+        assertEquals(ids("a"), ids(g.getRoots()));
+        assertEquals(ids("d"), ids(g.getLeaves()));
+        assertFalse(g.hasCycles());
+
+        d.removeParent(g.getNode("b"));
+        assertEquals(ids("c"), ids(d.getParents()));
+
+        d.setParents(Arrays.asList(g.getNode("a"), g.getNode("b")));
+        assertEquals(ids("a", "b"), ids(d.getParents()));
+
+        d.resetEdges();
+        assertTrue(d.getParents().isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        Graph g = createGraph("a", "b", "c");
+        g.addEdge("a", "b");
+        g.addEdge("b", "c");
+        GraphNode b = g.getNode("b");
+
+        assertTrue(g.remove("b"));
+        assertFalse(g.remove("b"));
+        assertNull(g.getNode("b"));
+        assertEquals(2, g.size());
+        assertEquals(ids("a"), ids(g.getNode("c").getParents()));
+        assertEquals(ids("c"), ids(g.getNode("a").getChildren()));
+
+        // the removed node keeps its edges like in a MapGraph
+        assertEquals(ids("a"), ids(b.getParents()));
+        b.addChild(new GraphNode("x", "x"));
+        assertEquals(ids("c", "x"), ids(b.getChildren()));
+    }
+
+    @Test
+    public void testAddRoot() {
+        Graph g = createGraph("a", "b");
+        g.addRoot(new GraphNode("root", "root"));
+        assertEquals(ids("root"), ids(g.getRoots()));
+        assertEquals(ids("a", "b"), ids(g.getNode("root").getChildren()));
+        assertEquals(ids("root"), ids(g.getNode("a").getParents()));
+    }
+
+    @Test
+    public void testLargeFanIn() {
+        Graph g = new CompactGraph();
+        GraphNode sink = new GraphNode("sink", "sink");
+        g.addNode(sink);
+        for (int i = 0; i < 1000; i++) {
+            g.addNode(new GraphNode("n" + i, "n" + i));
+            g.addEdge("n" + i, "sink");
+            // duplicates are only detected when the parents are read
+            g.addEdge("n" + i, "sink");
+        }
+        assertEquals(1000, sink.getParents().size());
+        assertTrue(sink.getParents().contains(g.getNode("n999")));
+
+        for (Iterator<GraphNode> it = sink.getParents().iterator(); it.hasNext(); ) {
+            if (it.next().getID().endsWith("0")) {
+                it.remove();
+            }
+        }
+        assertEquals(900, sink.getParents().size());
+
+        ((CompactGraph) g).compact();
+        assertEquals(900, sink.getParents().size());
+        assertEquals(1000, g.getRoots().size());
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final int width = 100;
+        final int sinks = 400;
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // the readers race on the first read after the edges are added
+            // so repeat with a fresh graph a few times
+            for (int round = 0; round < 50; round++) {
+                final Graph g = new CompactGraph();
+                for (int i = 0; i < width; i++) {
+                    g.addNode(new GraphNode("n" + i, "n" + i));
+                }
+                for (int j = 0; j < sinks; j++) {
+                    g.addNode(new GraphNode("s" + j, "s" + j));
+                    for (int i = 0; i < width; i++) {
+                        // duplicates in large fan ins and fan outs are removed on the first read
+                        g.addEdge("n" + i, "s" + j);
+                        g.addEdge("n" + i, "s" + j);
+                    }
+                }
+
+                // one reader goes through the parents, the others through the children
+                // as the main thread and the code generator workers do
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+                for (int t = 0; t < threads; t++) {
+                    final boolean parents = (t == 0);
+                    final int offset = t;
+                    results.add(
+                            executor.submit(
+                                    new Callable<Boolean>() {
+                                        public Boolean call() throws Exception {
+                                            start.await();
+                                            return parents
+                                                    ? readEdges(g, "s", sinks, width, true, offset)
+                                                    : readEdges(
+                                                            g, "n", width, sinks, false, offset);
+                                        }
+                                    }));
+                }
+                start.countDown();
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMatchesMapGraph() {
+        Random r = new Random(7);
+        Graph map = new MapGraph();
+        Graph compact = new CompactGraph();
+        int n = 300;
+        for (int i = 0; i < n; i++) {
+            map.addNode(new GraphNode("n" + i, "n" + i));
+            compact.addNode(new GraphNode("n" + i, "n" + i));
+        }
+        for (int k = 0; k < 3 * n; k++) {
+            int parent = r.nextInt(n - 1);
+            int child = parent + 1 + r.nextInt(n - parent - 1);
+            map.addEdge("n" + parent, "n" + child);
+            compact.addEdge("n" + parent, "n" + child);
+        }
+        for (int k = 0; k < n / 10; k++) {
+            String id = "n" + r.nextInt(n);
+            assertEquals(map.remove(id), compact.remove(id));
+        }
+        ((CompactGraph) compact).compact();
+
+        assertEquals(map.size(), compact.size());
+        assertEquals(ids(map.getRoots()), ids(compact.getRoots()));
+        assertEquals(ids(map.getLeaves()), ids(compact.getLeaves()));
+        for (Iterator<GraphNode> it = map.nodeIterator(); it.hasNext(); ) {
+            GraphNode expected = it.next();
+            GraphNode actual = compact.getNode(expected.getID());
+            assertEquals(ids(expected.getParents()), ids(actual.getParents()));
+            assertEquals(ids(expected.getChildren()), ids(actual.getChildren()));
+        }
+
+        assertEquals(depths(map.iterator()), depths(compact.iterator()));
+        assertEquals(depths(map.bottomUpIterator()), depths(compact.bottomUpIterator()));
+    }
+
+    @Test
+    public void testOverwriteNode() {
+        Graph g = createGraph("a", "b");
+        g.addEdge("a", "b");
+        GraphNode b = g.getNode("b");
+
+        GraphNode replacement = new GraphNode("b", "b");
+        g.addNode(replacement);
+        assertSame(replacement, g.getNode("b"));
+        assertTrue(replacement.getParents().isEmpty());
+        // the overwritten node retains its edges
+        assertEquals(ids("a"), ids(b.getParents()));
+    }
+
+    @Test
+    public void testAddAfterCompactingRemovedNodes() {
+        CompactGraph g = new CompactGraph();
+        MapGraph map = new MapGraph();
+        for (Graph graph : new Graph[] {g, map}) {
+            for (int i = 0; i < 40; i++) {
+                graph.addNode(new GraphNode("n" + i, "n" + i));
+            }
+            // the segments left behind by the hub are reclaimed while n1 gains children,
+            // laying out the slots not in use yet as well
+            for (int i = 1; i < 31; i++) {
+                graph.addEdge("n0", "n" + i);
+            }
+            graph.remove("n0");
+            for (int i = 2; i < 40; i++) {
+                graph.addEdge("n1", "n" + i);
+            }
+            graph.remove("n1");
+        }
+        g.compact();
+
+        // the slots assigned after compacting start out without any edges
+        for (Graph graph : new Graph[] {g, map}) {
+            for (int i = 40; i < 45; i++) {
+                graph.addNode(new GraphNode("n" + i, "n" + i));
+                graph.addEdge("n" + i, "n" + (i - 38));
+                graph.addEdge("n" + (i - 1), "n" + i);
+            }
+        }
+        g.compact();
+
+        for (Iterator<GraphNode> it = map.nodeIterator(); it.hasNext(); ) {
+            GraphNode expected = it.next();
+            GraphNode node = g.getNode(expected.getID());
+            assertEquals(expected.getID(), ids(expected.getParents()), ids(node.getParents()));
+            assertEquals(expected.getID(), ids(expected.getChildren()), ids(node.getChildren()));
+        }
+    }
+
+    /**
+     * Reads the parents or children of a set of nodes, starting at an offset.
+     *
+     * @return whether every node had the expected number of distinct parents or children
+     */
+    private boolean readEdges(
+            Graph g, String prefix, int count, int expected, boolean parents, int offset) {
+        boolean valid = true;
+        for (int k = 0; k < count; k++) {
+            GraphNode node = g.getNode(prefix + (k + offset) % count);
+            Collection<GraphNode> edges = parents ? node.getParents() : node.getChildren();
+            valid &= edges.size() == expected;
+            valid &= ids(edges).size() == expected;
+        }
+        return valid;
+    }
+
+    private Map<String, Integer> depths(Iterator<GraphNode> it) {
+        Map<String, Integer> depths = new HashMap<String, Integer>();
+        while (it.hasNext()) {
+            GraphNode node = it.next();
+            depths.put(node.getID(), node.getDepth());
+        }
+        return depths;
+    }
+
+    private Set<String> ids(String... ids) {
+        return new HashSet<String>(Arrays.asList(ids));
+    }
+
+    private Set<String> ids(Iterable<GraphNode> nodes) {
+        Set<String> ids = new HashSet<String>();
+        for (GraphNode node : nodes) {
+            ids.add(node.getID());
+        }
+        return ids;
+    }
+
+    private Graph createGraph(String... ids) {
+        Graph g = new CompactGraph();
+        for (String id : ids) {
+            g.addNode(new GraphNode(id, id));
+        }
+        return g;
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.TransformationCatalog;
+import edu.isi.pegasus.planner.catalog.classes.SysInfo;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the InterPoolEngine, checking that the site mappings incorporated on a pool of
+ * worker threads are the same as the ones incorporated sequentially.
+ *
+ * @author Karan Vahi
+ */
+public class InterPoolEngineTest {
+
+    /** The execution sites. */
+    private static final String[] SITES = {"isi", "wind"};
+
+    /** The number of transformations in the transformation catalog. */
+    private static final int TRANSFORMATIONS = 4;
+
+    /** The number of jobs in the workflow. */
+    private static final int JOBS = 40;
+
+    private TestSetup mTestSetup;
+
+    private File mDirectory;
+
+    public InterPoolEngineTest() {}
+
+    @Before
+    public void setUp() throws IOException {
+        mTestSetup = new DefaultTestSetup();
+        mDirectory = Files.createTempDirectory("pegasus-interpool").toFile();
+        this.writeTransformationCatalog(new File(mDirectory, "tc.text"));
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    @Test
+    public void testParallelMappingMatchesSequential() throws Exception {
+        Map<String, String> sequential = this.map(1, this.createWorkflow(TRANSFORMATIONS));
+        Map<String, String> parallel = this.map(4, this.createWorkflow(TRANSFORMATIONS));
+
+        assertEquals(JOBS, sequential.size());
+        assertEquals(
+                new ArrayList<String>(sequential.keySet()),
+                new ArrayList<String>(parallel.keySet()));
+        for (Map.Entry<String, String> entry : sequential.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue(), parallel.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testParallelMappingReportsFirstFailure() throws Exception {
+        // the jobs referring to the last transformation are not in the catalog
+        String sequential = null;
+        try {
+            this.map(1, this.createWorkflow(TRANSFORMATIONS + 1));
+            fail("Sequential mapping of unknown transformation succeeded");
+        } catch (RuntimeException e) {
+            sequential = e.getMessage();
+        }
+        String parallel = null;
+        try {
+            this.map(4, this.createWorkflow(TRANSFORMATIONS + 1));
+            fail("Parallel mapping of unknown transformation succeeded");
+        } catch (RuntimeException e) {
+            parallel = e.getMessage();
+        }
+        assertNotNull(sequential);
+        assertEquals(sequential, parallel);
+    }
+
+    /**
+     * Maps the workflow with the round robin site selector.
+     *
+     * @param threads the value for pegasus.site.mapping.threads
+     * @param dag the workflow to be mapped
+     * @return map indexed by the job id, to the description of the mapped job, in the order of the
+     *     jobs in the workflow
+     */
+    private Map<String, String> map(int threads, ADag dag) throws Exception {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.site.mapping.threads", Integer.toString(threads));
+        props.setProperty("pegasus.selector.site", "RoundRobin");
+        props.setProperty("pegasus.catalog.transformation", "Text");
+        props.setProperty(
+                "pegasus.catalog.transformation.file",
+                new File(mDirectory, "tc.text").getAbsolutePath());
+        LogManager logger = mTestSetup.loadLogger(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("test.refiner.interpool", "map", Integer.toString(threads));
+
+        PlannerOptions options = new PlannerOptions();
+        options.setSubmitDirectory(mDirectory);
+        List<String> sites = new ArrayList<String>();
+        for (String site : SITES) {
+            sites.add(site);
+        }
+        options.setExecutionSites(sites);
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PLANNER_DIRECTORY, mDirectory);
+
+        SiteStore store = new SiteStore();
+        for (String site : SITES) {
+            SiteCatalogEntry entry = new SiteCatalogEntry();
+            entry.setSiteHandle(site);
+            entry.setArchitecture(SysInfo.Architecture.x86_64);
+            entry.setOS(SysInfo.OS.linux);
+            store.addEntry(entry);
+        }
+        store.setForPlannerUse(props, options);
+        bag.add(PegasusBag.SITE_STORE, store);
+
+        TransformationCatalog catalog = TransformationFactory.loadInstance(bag);
+        bag.add(PegasusBag.TRANSFORMATION_CATALOG, catalog);
+        try {
+            InterPoolEngine engine = new InterPoolEngine(dag, bag);
+            engine.determineSites();
+        } finally {
+            catalog.close();
+            logger.logEventCompletion();
+        }
+
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            result.put(
+                    job.getID(),
+                    job.getSiteHandle()
+                            + " "
+                            + job.getStagingSiteHandle()
+                            + " "
+                            + job.getRemoteExecutable()
+                            + " "
+                            + job.envVariables
+                            + " "
+                            + job.vdsNS);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a workflow of independent jobs, that cycle through the transformations.
+     *
+     * @param transformations the number of transformations referred to by the jobs
+     * @return the workflow
+     */
+    private ADag createWorkflow(int transformations) {
+        ADag dag = new ADag();
+        dag.setLabel("interpool");
+        dag.setIndex("0");
+        for (int i = 0; i < JOBS; i++) {
+            Job job = new Job();
+            String id = "ID" + i;
+            job.setName("job_" + i);
+            job.setLogicalID(id);
+            job.setTransformation("test", "tr" + (i % transformations), "1.0");
+            job.setJobType(Job.COMPUTE_JOB);
+            dag.add(job);
+        }
+        return dag;
+    }
+
+    /**
+     * Writes out a text transformation catalog, with each transformation installed on all the
+     * execution sites with a profile that differs per site.
+     *
+     * @param file the file to write to
+     */
+    private void writeTransformationCatalog(File file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(file)) {
+            for (int t = 0; t < TRANSFORMATIONS; t++) {
+                pw.println("tr test::tr" + t + ":1.0 {");
+                pw.println("  profile env \"TR\" \"" + t + "\"");
+                for (String site : SITES) {
+                    pw.println("  site " + site + " {");
+                    pw.println("    profile env \"SITE\" \"" + site + t + "\"");
+                    pw.println("    pfn \"/" + site + "/bin/tr" + t + "\"");
+                    pw.println("    arch \"x86_64\"");
+                    pw.println("    os \"linux\"");
+                    pw.println("    type \"INSTALLED\"");
+                    pw.println("  }");
+                }
+                pw.println("}");
+            }
+        }
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.ReplicaLocation;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the ReplicaCatalogBridge, checking that the precedence between the replica sources
+ * does not depend on the order in which their concurrent loads complete.
+ *
+ * @author Karan Vahi
+ */
+public class ReplicaCatalogBridgeTest {
+
+    /** The number of cache files, and of inherited replica files. */
+    private static final int FILES = 6;
+
+    /** The number of input directories. */
+    private static final int DIRECTORIES = 3;
+
+    /** The number of entries padding the slowest file of each kind. */
+    private static final int PADDING = 50000;
+
+    /** The number of times the sources are loaded. */
+    private static final int ROUNDS = 5;
+
+    private TestSetup mTestSetup;
+
+    private File mDirectory;
+
+    public ReplicaCatalogBridgeTest() {}
+
+    @Before
+    public void setUp() throws IOException {
+        mTestSetup = new DefaultTestSetup();
+        mDirectory = Files.createTempDirectory("pegasus-rc-bridge").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    @Test
+    public void testPrecedenceWithOverlappingSources() throws Exception {
+        PlannerOptions options = new PlannerOptions();
+        options.setCacheFiles(this.paths("cache"));
+        options.setInheritedRCFiles(this.paths("inherited"));
+        Set<String> dirs = new LinkedHashSet<String>();
+        for (int i = 0; i < DIRECTORIES; i++) {
+            dirs.add(new File(mDirectory, "input" + i).getAbsolutePath());
+        }
+        options.setInputDirectories(dirs);
+
+        // the first source of each kind in the order of precedence is the slowest to load
+        List<String> cacheFiles = new ArrayList<String>(options.getCacheFiles());
+        List<String> inheritedFiles = new ArrayList<String>(options.getInheritedRCFiles());
+        List<String> inputDirs = new ArrayList<String>(options.getInputDirectories());
+        for (int i = 0; i < FILES; i++) {
+            this.writeReplicaFile(cacheFiles.get(i), "f.cache", "cache" + i, i == 0);
+            this.writeReplicaFile(inheritedFiles.get(i), "f.inherited", "inherited" + i, i == 0);
+        }
+        for (int i = 0; i < DIRECTORIES; i++) {
+            File dir = new File(inputDirs.get(i));
+            dir.mkdirs();
+            new File(dir, "f.dir").createNewFile();
+            if (i == 0) {
+                for (int j = 0; j < PADDING / 10; j++) {
+                    new File(dir, "pad." + j).createNewFile();
+                }
+            }
+        }
+        File rc = new File(mDirectory, "rc.txt");
+        try (PrintWriter pw = new PrintWriter(rc)) {
+            pw.println("f.rc file:///rc/f.rc site=\"local\"");
+            pw.println("f.cache file:///rc/f.cache site=\"local\"");
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            ReplicaCatalogBridge bridge =
+                    new ReplicaCatalogBridge(this.createWorkflow(), this.createBag(options, rc));
+
+            // the cache files are applied in order, and the metadata of a LFN is taken from the
+            // first file that maps it, even though that is the last one to be loaded
+            List<String> expected = new ArrayList<String>();
+            for (String file : cacheFiles) {
+                expected.add("file://" + file + "/f.cache");
+            }
+            assertEquals(expected, pfns(bridge.getFileLocs("f.cache")));
+            ReplicaLocation same = bridge.getFileLocs("f.cache.same");
+            assertEquals(1, same.getPFNCount());
+            assertEquals("cache0", same.getMetadata("source"));
+
+            // and so are the inherited files
+            expected.clear();
+            for (String file : inheritedFiles) {
+                expected.add("file://" + file + "/f.inherited");
+            }
+            assertEquals(expected, pfns(bridge.getFileLocs("f.inherited")));
+            same = bridge.getFileLocs("f.inherited.same");
+            assertEquals(1, same.getPFNCount());
+            assertEquals("inherited0", same.getMetadata("source"));
+
+            expected.clear();
+            for (String dir : inputDirs) {
+                expected.add("file://" + dir + File.separator + "f.dir");
+            }
+            assertEquals(expected, pfns(bridge.getFileLocs("f.dir")));
+
+            assertEquals(
+                    "file:///rc/f.rc", bridge.getFileLocs("f.rc").getPFNList().get(0).getPFN());
+
+            List<File> sources = new ArrayList<File>();
+            sources.add(rc);
+            for (String file : cacheFiles) {
+                sources.add(new File(file));
+            }
+            for (String file : inheritedFiles) {
+                sources.add(new File(file));
+            }
+            assertEquals(sources, new ArrayList<File>(bridge.getReplicaFileSources()));
+            bridge.closeConnection();
+        }
+    }
+
+    /**
+     * Returns the paths of the replica files of a kind.
+     *
+     * @param kind the kind of the files
+     * @return the paths
+     */
+    private Set<String> paths(String kind) {
+        Set<String> paths = new LinkedHashSet<String>();
+        for (int i = 0; i < FILES; i++) {
+            paths.add(new File(mDirectory, kind + i + ".txt").getAbsolutePath());
+        }
+        return paths;
+    }
+
+    /**
+     * Writes out a replica file, with a mapping for a LFN that is unique to the file, and one for
+     * another LFN that is the same in all the files apart from its metadata.
+     *
+     * @param path the path to the file
+     * @param lfn the LFN mapped in all the files of a kind
+     * @param source the value of the source attribute
+     * @param pad whether to pad the file with entries not referred to by the workflow
+     */
+    private void writeReplicaFile(String path, String lfn, String source, boolean pad)
+            throws IOException {
+        try (PrintWriter pw = new PrintWriter(path)) {
+            if (pad) {
+                for (int j = 0; j < PADDING; j++) {
+                    pw.println("pad." + j + " file:///pad/" + j + " site=\"local\"");
+                }
+            }
+            pw.println(lfn + " file://" + path + "/" + lfn + " site=\"local\"");
+            pw.println(
+                    lfn
+                            + ".same file:///same/"
+                            + lfn
+                            + " site=\"local\" source=\""
+                            + source
+                            + "\"");
+        }
+    }
+
+    /**
+     * Creates a workflow referring to the LFNs mapped in the sources.
+     *
+     * @return the workflow
+     */
+    private ADag createWorkflow() {
+        ADag dag = new ADag();
+        dag.setLabel("precedence");
+        dag.setIndex("0");
+        String[] lfns = {
+            "f.cache", "f.cache.same", "f.inherited", "f.inherited.same", "f.dir", "f.rc"
+        };
+        for (String lfn : lfns) {
+            dag.getDAGInfo().updateLFNMap(lfn, "i");
+        }
+        return dag;
+    }
+
+    /**
+     * Creates the bag for the bridge, with the main replica catalog a file.
+     *
+     * @param options the planner options
+     * @param rc the main replica catalog file
+     * @return the bag
+     */
+    private PegasusBag createBag(PlannerOptions options, File rc) {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.catalog.replica", "File");
+        props.setProperty("pegasus.catalog.replica.file", rc.getAbsolutePath());
+        LogManager logger = mTestSetup.loadLogger(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("test.refiner.rcbridge", "load", "0");
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+        bag.add(PegasusBag.PLANNER_DIRECTORY, mDirectory);
+        // the credential handlers for the main catalog require a site store
+        SiteStore store = new SiteStore();
+        SiteCatalogEntry local = new SiteCatalogEntry();
+        local.setSiteHandle("local");
+        store.addEntry(local);
+        bag.add(PegasusBag.SITE_STORE, store);
+        return bag;
+    }
+
+    private static List<String> pfns(ReplicaLocation rl) {
+        List<String> result = new ArrayList<String>();
+        for (ReplicaCatalogEntry rce : rl.getPFNList()) {
+            result.add(rce.getPFN());
+        }
+        return result;
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Builds synthetic workflow graphs of various shapes with redundant edges, for use by the unit
+ * tests and the benchmarks of the graph algorithms.
+ *
+ * @author Karan Vahi
+ */
+public class SyntheticGraphs {
+
+    /** The seed for the random generator, so that the generated graphs are reproducible. */
+    private static final long SEED = 42;
+
+    /**
+     * Creates a layered graph, where each node in a level is connected to a few random nodes in the
+     * next level, and additionally has some skip edges to nodes further down. The skip edges are
+     * the ones that are mostly redundant.
+     *
+     * @param levels the number of levels
+     * @param width the number of nodes in each level
+     * @param skip the number of skip edges per node
+     * @return the graph
+     */
+    public static Graph createLayered(int levels, int width, int skip) {
+        Random r = new Random(SEED);
+        Graph g = new MapGraph();
+        for (int l = 0; l < levels; l++) {
+            for (int w = 0; w < width; w++) {
+                g.addNode(new GraphNode(id(l, w)));
+            }
+        }
+        for (int l = 0; l < levels - 1; l++) {
+            for (int w = 0; w < width; w++) {
+                // guarantee connectivity
+                g.addEdge(id(l, w), id(l + 1, w));
+                g.addEdge(id(l, w), id(l + 1, r.nextInt(width)));
+                for (int s = 0; s < skip && l + 2 < levels; s++) {
+                    int target = l + 2 + r.nextInt(Math.min(levels - l - 2, 5));
+                    g.addEdge(id(l, w), id(target, r.nextInt(width)));
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Creates a fan out / fan in workflow, where a single root fans out to width nodes, which all
+     * fan in to a single leaf. The root is additionally connected to the leaf directly, and so is
+     * every second middle node to a final cleanup node.
+     *
+     * @param width the number of nodes in the middle
+     * @return the graph
+     */
+    public static Graph createFanOutFanIn(int width) {
+        Graph g = new MapGraph();
+        g.addNode(new GraphNode("root"));
+        g.addNode(new GraphNode("merge"));
+        g.addNode(new GraphNode("cleanup"));
+        for (int w = 0; w < width; w++) {
+            String id = id(1, w);
+            g.addNode(new GraphNode(id));
+            g.addEdge("root", id);
+            g.addEdge(id, "merge");
+            if (w % 2 == 0) {
+                g.addEdge(id, "cleanup");
+            }
+        }
+        g.addEdge("root", "merge");
+        g.addEdge("merge", "cleanup");
+        g.addEdge("root", "cleanup");
+        return g;
+    }
+
+    /**
+     * Creates a deep pipeline of width independent chains, where every node is also connected to
+     * all nodes up to depth steps further down its chain.
+     *
+     * @param width the number of chains
+     * @param length the length of each chain
+     * @param depth the number of nodes further down the chain each node is connected to
+     * @return the graph
+     */
+    public static Graph createPipelines(int width, int length, int depth) {
+        Graph g = new MapGraph();
+        for (int w = 0; w < width; w++) {
+            for (int l = 0; l < length; l++) {
+                g.addNode(new GraphNode(id(l, w)));
+            }
+            for (int l = 0; l < length; l++) {
+                for (int d = 1; d <= depth && l + d < length; d++) {
+                    g.addEdge(id(l, w), id(l + d, w));
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Counts the number of edges in the graph.
+     *
+     * @param g the graph
+     * @return the number of edges
+     */
+    public static long countEdges(Graph g) {
+        long edges = 0;
+        for (Iterator<GraphNode> it = g.nodeIterator(); it.hasNext(); ) {
+            edges += it.next().getChildren().size();
+        }
+        return edges;
+    }
+
+    /**
+     * Returns the id of the node at a particular level and position.
+     *
+     * @param level the level
+     * @param position the position in the level
+     * @return the id
+     */
+    private static String id(int level, int position) {
+        return "n_" + level + "_" + position;
+    }
+}
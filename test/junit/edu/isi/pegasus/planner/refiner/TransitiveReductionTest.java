@@ -0,0 +1,173 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Unit tests for the transitive reduction of the workflow.
+ *
+ * @author Karan Vahi
+ */
+public class TransitiveReductionTest {
+
+    @Test
+    public void testSimpleTriangle() {
+        Graph g = createGraph("a", "b", "c");
+        g.addEdge("a", "b");
+        g.addEdge("b", "c");
+        g.addEdge("a", "c");
+
+        TransitiveReduction tr = new TransitiveReduction();
+        tr.reduce(g);
+        assertEquals(1, tr.getRemovedEdges());
+        assertEdge(g, "a", "b", true);
+        assertEdge(g, "b", "c", true);
+        assertEdge(g, "a", "c", false);
+        assertFalse(g.getNode("c").getParents().contains(g.getNode("a")));
+    }
+
+    @Test
+    public void testDiamondWithShortcuts() {
+        // same as TestReduceEdges test 1
+        Graph g = createGraph("a", "b", "c", "d", "e");
+        g.addEdge("a", "b");
+        g.addEdge("a", "c");
+        g.addEdge("b", "d");
+        g.addEdge("c", "d");
+        g.addEdge("b", "e");
+        g.addEdge("d", "e");
+        g.addEdge("a", "e");
+        g.addEdge("c", "e");
+
+        new TransitiveReduction().reduce(g);
+        assertEquals(5, countEdges(g));
+        assertEdge(g, "a", "b", true);
+        assertEdge(g, "a", "c", true);
+        assertEdge(g, "b", "d", true);
+        assertEdge(g, "c", "d", true);
+        assertEdge(g, "d", "e", true);
+    }
+
+    @Test
+    public void testLongPathShortcut() {
+        // a -> g -> h -> i -> j -> k -> f and a -> b -> f
+        // the edge g -> f spans many levels and is redundant
+        Graph g = createGraph("a", "b", "f", "g", "h", "i", "j", "k");
+        g.addEdge("a", "b");
+        g.addEdge("b", "f");
+        g.addEdge("a", "g");
+        g.addEdge("g", "h");
+        g.addEdge("h", "i");
+        g.addEdge("i", "j");
+        g.addEdge("j", "k");
+        g.addEdge("k", "f");
+        g.addEdge("g", "f");
+
+        new TransitiveReduction().reduce(g);
+        assertEquals(8, countEdges(g));
+        assertEdge(g, "b", "f", true);
+        assertEdge(g, "g", "f", false);
+    }
+
+    @Test
+    public void testNoRedundantEdges() {
+        Graph g = createGraph("a", "b", "c", "d");
+        g.addEdge("a", "b");
+        g.addEdge("a", "c");
+        g.addEdge("b", "d");
+        g.addEdge("c", "d");
+
+        TransitiveReduction tr = new TransitiveReduction();
+        tr.reduce(g);
+        assertEquals(0, tr.getRemovedEdges());
+        assertEquals(4, countEdges(g));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Graph g = SyntheticGraphs.createLayered(8, 20, 3);
+        Graph expected = SyntheticGraphs.createLayered(8, 20, 3);
+
+        new TransitiveReduction().reduce(g);
+
+        // an edge p -> c is redundant iff c is reachable from another child of p
+        for (Iterator<GraphNode> it = expected.nodeIterator(); it.hasNext(); ) {
+            GraphNode parent = it.next();
+            for (GraphNode child : parent.getChildren()) {
+                boolean redundant = false;
+                for (GraphNode other : parent.getChildren()) {
+                    if (other != child && reachable(other, child)) {
+                        redundant = true;
+                        break;
+                    }
+                }
+                assertEdge(g, parent.getID(), child.getID(), !redundant);
+            }
+        }
+    }
+
+    private boolean reachable(GraphNode from, GraphNode to) {
+        Set<GraphNode> visited = new HashSet<GraphNode>();
+        LinkedList<GraphNode> queue = new LinkedList<GraphNode>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            GraphNode node = queue.removeFirst();
+            if (node == to) {
+                return true;
+            }
+            for (GraphNode child : node.getChildren()) {
+                if (visited.add(child)) {
+                    queue.add(child);
+                }
+            }
+        }
+        return false;
+    }
+
+    private Graph createGraph(String... ids) {
+        Graph g = new MapGraph();
+        for (String id : ids) {
+            g.addNode(new GraphNode(id, id));
+        }
+        return g;
+    }
+
+    private void assertEdge(Graph g, String parent, String child, boolean exists) {
+        GraphNode p = g.getNode(parent);
+        GraphNode c = g.getNode(child);
+        assertEquals("Edge " + parent + " -> " + child, exists, p.getChildren().contains(c));
+        assertEquals("Edge " + parent + " -> " + child, exists, c.getParents().contains(p));
+    }
+
+    private long countEdges(Graph g) {
+        long edges = 0;
+        for (Iterator<GraphNode> it = g.nodeIterator(); it.hasNext(); ) {
+            edges += it.next().getChildren().size();
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup.constraint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
+import edu.isi.pegasus.planner.refiner.SyntheticGraphs;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Unit tests for the dependencies computed for the Constraint cleanup strategy.
+ *
+ * @author Rafael Ferreira da Silva
+ */
+public class DependenciesTest {
+
+    @Test
+    public void testChain() {
+        Graph g = createGraph("a", "b", "c", "d");
+        g.addEdge("a", "b");
+        g.addEdge("b", "c");
+        g.addEdge("c", "d");
+
+        Dependencies d = new Dependencies(g);
+        assertEquals(4, d.size());
+        assertEquals(0, d.getDependencies(g.getNode("a")).size());
+        assertEquals(
+                new HashSet<GraphNode>(
+                        Arrays.asList(g.getNode("a"), g.getNode("b"), g.getNode("c"))),
+                new HashSet<GraphNode>(d.getDependencies(g.getNode("d"))));
+        assertTrue(d.dependsOn(g.getNode("d"), g.getNode("a")));
+        assertFalse(d.dependsOn(g.getNode("a"), g.getNode("d")));
+        // a chain is a single interval per node
+        assertEquals(3, d.getIntervalCount());
+    }
+
+    @Test
+    public void testDependenciesIn() {
+        Graph g = createGraph("a", "b", "c", "d", "e");
+        g.addEdge("a", "c");
+        g.addEdge("b", "c");
+        g.addEdge("c", "d");
+        g.addEdge("e", "d");
+
+        Dependencies d = new Dependencies(g);
+        BitSet set = d.toBitSet(Arrays.asList(g.getNode("b"), g.getNode("e")));
+        assertTrue(d.hasDependencyIn(g.getNode("d"), set));
+        assertTrue(d.hasDependencyIn(g.getNode("c"), set));
+        assertFalse(d.hasDependencyIn(g.getNode("a"), set));
+        assertEquals(
+                new HashSet<GraphNode>(Arrays.asList(g.getNode("b"), g.getNode("e"))),
+                new HashSet<GraphNode>(d.getDependenciesIn(g.getNode("d"), set)));
+
+        // nodes added after the dependencies were computed have none
+        GraphNode late = new GraphNode("late", "late");
+        assertEquals(-1, d.indexOf(late));
+        assertFalse(d.hasDependencyIn(late, set));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCycle() {
+        Graph g = createGraph("a", "b", "c");
+        g.addEdge("a", "b");
+        g.addEdge("b", "c");
+        g.addEdge("c", "b");
+        new Dependencies(g);
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Graph g = SyntheticGraphs.createLayered(10, 30, 3);
+        Dependencies d = new Dependencies(g);
+        assertEquals(g.size(), d.size());
+        for (Iterator<GraphNode> it = g.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Set<GraphNode> expected = ancestors(node);
+            assertEquals(node.getID(), expected, new HashSet<GraphNode>(d.getDependencies(node)));
+            for (GraphNode parent : node.getParents()) {
+                // parents are always indexed before their children
+                assertTrue(d.indexOf(parent) < d.indexOf(node));
+            }
+        }
+    }
+
+    private Set<GraphNode> ancestors(GraphNode node) {
+        Set<GraphNode> visited = new HashSet<GraphNode>();
+        LinkedList<GraphNode> queue = new LinkedList<GraphNode>(node.getParents());
+        while (!queue.isEmpty()) {
+            GraphNode n = queue.removeFirst();
+            if (visited.add(n)) {
+                queue.addAll(n.getParents());
+            }
+        }
+        return visited;
+    }
+
+    private Graph createGraph(String... ids) {
+        Graph g = new MapGraph();
+        for (String id : ids) {
+            g.addNode(new GraphNode(id, id));
+        }
+        return g;
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the persistent mode of the NonJavaCallout site selector, using shell scripts as
+ * stub site selectors.
+ *
+ * @author Karan Vahi
+ */
+public class NonJavaCalloutTest {
+
+    /** The execution sites passed to the site selector. */
+    private static final String[] SITES = {"isi", "wind"};
+
+    /**
+     * Answers the records in pairs, the second one of a pair first, with the solution site derived
+     * from the job id.
+     */
+    private static final String SWAPPING_SELECTOR =
+            "#!/bin/bash\n"
+                    + "answer() {\n"
+                    + "  id=${1%%$'\\t'*}\n"
+                    + "  id=${id#request.id=}\n"
+                    + "  job=${1#*job.id=}\n"
+                    + "  job=${job%%$'\\t'*}\n"
+                    + "  echo \"$id SOLUTION:site_$job\"\n"
+                    + "}\n"
+                    + "held=\n"
+                    + "while IFS= read -r line; do\n"
+                    + "  if [ -z \"$held\" ]; then\n"
+                    + "    held=$line\n"
+                    + "  else\n"
+                    + "    answer \"$line\"\n"
+                    + "    answer \"$held\"\n"
+                    + "    held=\n"
+                    + "  fi\n"
+                    + "done\n"
+                    + "[ -n \"$held\" ] && answer \"$held\"\n"
+                    + "exit 0\n";
+
+    /** Answers all the records but the one for job ID1, and then hangs instead of exiting. */
+    private static final String HANGING_SELECTOR =
+            "#!/bin/bash\n"
+                    + "while IFS= read -r line; do\n"
+                    + "  id=${line%%$'\\t'*}\n"
+                    + "  id=${id#request.id=}\n"
+                    + "  case \"$line\" in\n"
+                    + "    *job.id=ID1$'\\t'*) ;;\n"
+                    + "    *) echo \"$id SOLUTION:isi\" ;;\n"
+                    + "  esac\n"
+                    + "done\n"
+                    + "exec sleep 60\n";
+
+    private TestSetup mTestSetup;
+
+    private File mDirectory;
+
+    public NonJavaCalloutTest() {}
+
+    @Before
+    public void setUp() throws IOException {
+        mTestSetup = new DefaultTestSetup();
+        mDirectory = Files.createTempDirectory("pegasus-site-selector").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    @Test
+    public void testPersistentSolutionsOutOfOrder() throws Exception {
+        // more jobs than can be awaiting a solution at once
+        int count = NonJavaCallout.MAX_OUTSTANDING_REQUESTS * 2 + 1;
+        ADag dag = this.createWorkflow(count, 0);
+        this.createSelector(SWAPPING_SELECTOR, 30).mapWorkflow(dag, this.sites());
+
+        for (Job job : this.jobs(dag)) {
+            assertEquals(job.getID(), "site_" + job.getLogicalID(), job.getSiteHandle());
+        }
+    }
+
+    @Test
+    public void testPersistentTimeoutMeasuredFromFlush() throws Exception {
+        // describing the jobs takes longer than the timeout, while the records are buffered
+        ADag dag = this.createWorkflow(6, 300);
+        this.createSelector(SWAPPING_SELECTOR, 1).mapWorkflow(dag, this.sites());
+
+        for (Job job : this.jobs(dag)) {
+            assertEquals(job.getID(), "site_" + job.getLogicalID(), job.getSiteHandle());
+        }
+    }
+
+    @Test
+    public void testPersistentTimeout() throws Exception {
+        ADag dag = this.createWorkflow(4, 0);
+        long start = System.currentTimeMillis();
+        this.createSelector(HANGING_SELECTOR, 1).mapWorkflow(dag, this.sites());
+
+        // the selector is given up upon, instead of waiting for it to exit
+        assertTrue(System.currentTimeMillis() - start < 30000);
+        for (Job job : this.jobs(dag)) {
+            if (job.getLogicalID().equals("ID1")) {
+                assertNull(job.getSiteHandle());
+            } else {
+                assertEquals(job.getID(), "isi", job.getSiteHandle());
+            }
+        }
+    }
+
+    /**
+     * Creates the site selector, calling out to a persistent stub script.
+     *
+     * @param script the contents of the script
+     * @param timeout the timeout in seconds
+     * @return the initialized site selector
+     */
+    private NonJavaCallout createSelector(String script, int timeout) throws IOException {
+        File selector = new File(mDirectory, "selector.sh");
+        try (PrintWriter pw = new PrintWriter(selector)) {
+            pw.print(script);
+        }
+        selector.setExecutable(true);
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.selector.site.path", selector.getAbsolutePath());
+        props.setProperty("pegasus.selector.site.callout", NonJavaCallout.PERSISTENT_CALLOUT);
+        props.setProperty("pegasus.selector.site.timeout", Integer.toString(timeout));
+        props.setProperty(NonJavaCallout.PREFIX_PROPERTIES + "PATH", "/usr/bin:/bin");
+        LogManager logger = mTestSetup.loadLogger(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart("test.selector.site", "map", "0");
+
+        SiteStore store = new SiteStore();
+        for (String site : SITES) {
+            SiteCatalogEntry entry = new SiteCatalogEntry();
+            entry.setSiteHandle(site);
+            store.addEntry(entry);
+        }
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        bag.add(PegasusBag.SITE_STORE, store);
+
+        NonJavaCallout callout = new NonJavaCallout();
+        callout.initialize(bag);
+        return callout;
+    }
+
+    /**
+     * Creates a workflow of independent jobs.
+     *
+     * @param count the number of jobs
+     * @param delay the time in milliseconds it takes to describe each job to the site selector
+     * @return the workflow
+     */
+    private ADag createWorkflow(int count, final long delay) {
+        ADag dag = new ADag();
+        dag.setLabel("selector");
+        dag.setIndex("0");
+        for (int i = 0; i < count; i++) {
+            Job job =
+                    new Job() {
+                        public String getCompleteTCName() {
+                            try {
+                                Thread.sleep(delay);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return super.getCompleteTCName();
+                        }
+                    };
+            job.setName("job_" + i);
+            job.setLogicalID("ID" + i);
+            job.setTransformation("test", "tr", "1.0");
+            job.setJobType(Job.COMPUTE_JOB);
+            dag.add(job);
+        }
+        return dag;
+    }
+
+    private List<String> sites() {
+        List<String> sites = new ArrayList<String>();
+        for (String site : SITES) {
+            sites.add(site);
+        }
+        return sites;
+    }
+
+    private List<Job> jobs(ADag dag) {
+        List<Job> jobs = new ArrayList<Job>();
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
+            jobs.add((Job) it.next().getContent());
+        }
+        return jobs;
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
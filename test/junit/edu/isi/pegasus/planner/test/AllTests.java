@@ -23,16 +23,26 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.common.util.VersionTest.class,
     edu.isi.pegasus.common.util.PegasusURLTest.class,
     edu.isi.pegasus.common.util.FileDetectorTest.class,
+    edu.isi.pegasus.common.util.FileSystemOperationsTest.class,
+    edu.isi.pegasus.common.logging.LogManagerTest.class,
+    edu.isi.pegasus.common.logging.EventProfilerTest.class,
+    edu.isi.pegasus.aws.batch.impl.JobStatusTrackerTest.class,
     edu.isi.pegasus.planner.namespace.PegasusTest.class,
     edu.isi.pegasus.planner.namespace.MetadataTest.class,
     edu.isi.pegasus.planner.catalog.replica.ReplicaFactoryTest.class,
     edu.isi.pegasus.planner.catalog.replica.classes.ReplicaStoreTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.RegexRCTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.LFNPatternIndexTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.YAMLRCTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.MetaRCTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.JDBCRCTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.SimpleFileTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.JournaledFileTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.IndexedFileTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.DirectoryTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.ReplicaLookupCacheTest.class,
     edu.isi.pegasus.planner.catalog.site.SiteFactoryTest.class,
+    edu.isi.pegasus.planner.catalog.site.SiteCatalogCacheTest.class,
     edu.isi.pegasus.planner.catalog.site.impl.XMLTest.class,
     edu.isi.pegasus.planner.catalog.site.impl.YAMLTest.class,
     edu.isi.pegasus.planner.catalog.site.classes.DirectoryTest.class,
@@ -40,6 +50,7 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.planner.catalog.site.classes.GridGatewayTest.class,
     edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntryTest.class,
     edu.isi.pegasus.planner.catalog.transformation.TransformationFactoryTest.class,
+    edu.isi.pegasus.planner.catalog.transformation.TCResolutionCacheTest.class,
     edu.isi.pegasus.planner.catalog.transformation.classes.TransformationCatalogEntryTest.class,
     edu.isi.pegasus.planner.catalog.transformation.classes.ContainerTest.class,
     edu.isi.pegasus.planner.catalog.transformation.classes.TransformationTest.class,
@@ -47,22 +58,34 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.planner.catalog.transformation.mapper.StagedTest.class,
     edu.isi.pegasus.planner.catalog.transformation.impl.TextTest.class,
     edu.isi.pegasus.planner.catalog.transformation.impl.YAMLTest.class,
+    edu.isi.pegasus.planner.client.PlannerDaemonTest.class,
     edu.isi.pegasus.planner.classes.PegasusFileTest.class,
     edu.isi.pegasus.planner.classes.JobTest.class,
     edu.isi.pegasus.planner.classes.NotificationsTest.class,
+    edu.isi.pegasus.planner.cluster.BinPackerTest.class,
     edu.isi.pegasus.planner.cluster.RuntimeClusteringTest.class,
     edu.isi.pegasus.planner.code.GridStartTest.class,
     edu.isi.pegasus.planner.code.generator.condor.CondorEnvironmentEscapeTest.class,
+    edu.isi.pegasus.planner.code.generator.condor.CondorGeneratorTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.GliteTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.CondorTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.CondorGTest.class,
+    edu.isi.pegasus.planner.selector.site.NonJavaCalloutTest.class,
     edu.isi.pegasus.planner.mapper.output.FlatOutputMapperTest.class,
     edu.isi.pegasus.planner.mapper.output.HashedOutputMapperTest.class,
     edu.isi.pegasus.planner.mapper.output.ReplicaOutputMapperTest.class,
     edu.isi.pegasus.planner.mapper.output.FixedOutputMapperTest.class,
     edu.isi.pegasus.planner.refiner.DataReuseEngineTest.class,
+    edu.isi.pegasus.planner.refiner.TransitiveReductionTest.class,
+    edu.isi.pegasus.planner.refiner.ReplicaCatalogBridgeTest.class,
+    edu.isi.pegasus.planner.refiner.InterPoolEngineTest.class,
+    edu.isi.pegasus.planner.code.gridstart.PegasusLiteTest.class,
+    edu.isi.pegasus.planner.estimate.AspenTest.class,
+    edu.isi.pegasus.planner.refiner.cleanup.constraint.DependenciesTest.class,
     edu.isi.pegasus.common.util.GLiteEscapeTest.class,
     edu.isi.pegasus.common.util.VariableExpanderTest.class,
+    edu.isi.pegasus.planner.partitioner.MultilevelTest.class,
+    edu.isi.pegasus.planner.partitioner.graph.CompactGraphTest.class,
     edu.isi.pegasus.planner.partitioner.graph.CycleCheckerTest.class,
     edu.isi.pegasus.planner.parser.DAXParserFactoryTest.class,
     edu.isi.pegasus.planner.parser.dax.DAXParser3Test.class,